@@ -0,0 +1,172 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.benchmark;
+
+import com.nearstar.sftpmanager.util.MultiDigest;
+import com.nearstar.sftpmanager.util.MultiDigest.Algorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-pass {@link MultiDigest} against the old two-pass FileChecksum approach,
+ * plus the individual algorithms and local file reads (mapped vs streamed).
+ * <p>
+ * Run with: mvn -Pbenchmark compile exec:exec -Djmh.args=ChecksumBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChecksumBenchmark
+{
+    @Param({ "65536", "16777216" })
+    private int size;
+
+    private byte[] data;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        data = new byte[size];
+        new Random( 42 ).nextBytes( data );
+        file = Files.createTempFile( "checksum-bench", ".bin" );
+        Files.write( file, data );
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists( file );
+    }
+
+    /**
+     * What FileChecksum used to do for both digests: two reads with an 8 KB buffer and String.format hex
+     */
+    @Benchmark
+    public void legacyMd5ThenSha256( Blackhole bh ) throws Exception
+    {
+        bh.consume( legacy( "MD5", new ByteArrayInputStream( data ) ) );
+        bh.consume( legacy( "SHA-256", new ByteArrayInputStream( data ) ) );
+    }
+
+    @Benchmark
+    public void multiMd5AndSha256( Blackhole bh ) throws IOException
+    {
+        MultiDigest digest = MultiDigest.of( Algorithm.MD5, Algorithm.SHA256 );
+        digest.update( new ByteArrayInputStream( data ), new byte[65536] );
+        bh.consume( digest.hex() );
+    }
+
+    @Benchmark
+    public String md5()
+    {
+        return single( Algorithm.MD5 );
+    }
+
+    @Benchmark
+    public String sha256()
+    {
+        return single( Algorithm.SHA256 );
+    }
+
+    @Benchmark
+    public String crc32c()
+    {
+        return single( Algorithm.CRC32C );
+    }
+
+    @Benchmark
+    public String xxh64()
+    {
+        return single( Algorithm.XXH64 );
+    }
+
+    @Benchmark
+    public String fileMapped() throws IOException
+    {
+        MultiDigest digest = new MultiDigest( EnumSet.of( Algorithm.MD5, Algorithm.CRC32C ) );
+        digest.updateFile( file );
+        return digest.format();
+    }
+
+    @Benchmark
+    public String fileStreamed() throws IOException
+    {
+        MultiDigest digest = new MultiDigest( EnumSet.of( Algorithm.MD5, Algorithm.CRC32C ) );
+        try ( InputStream in = Files.newInputStream( file ) )
+        {
+            digest.update( in, new byte[65536] );
+        }
+        return digest.format();
+    }
+
+    private String single( Algorithm algorithm )
+    {
+        MultiDigest digest = MultiDigest.of( algorithm );
+        digest.update( data, 0, data.length );
+        return digest.hex().get( algorithm );
+    }
+
+    private static String legacy( String algorithm, InputStream in ) throws Exception
+    {
+        MessageDigest md = MessageDigest.getInstance( algorithm );
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read( buffer )) > 0)
+        {
+            md.update( buffer, 0, read );
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : md.digest())
+        {
+            result.append( String.format( "%02x", b ) );
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nearstar.sftpmanager.model.dto.UserSession;
+import com.nearstar.sftpmanager.util.SftpAdmissionControl;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Runs file manager requests that target a site through {@link SftpAdmissionControl}.
+ * Requests that work against a second site (a relay's {@code targetSiteId}) are
+ * admitted for both, taking the permits in site id order so two opposite relays
+ * cannot each hold one site while waiting for the other. Requests that are not
+ * admitted in time get 429 with a Retry-After header.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SftpAdmissionInterceptor implements HandlerInterceptor
+{
+    private static final String PERMIT_ATTRIBUTE = SftpAdmissionInterceptor.class.getName() + ".permits";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final SftpAdmissionControl admissionControl;
+
+    @Override
+    public boolean preHandle( HttpServletRequest request, HttpServletResponse response, Object handler ) throws Exception
+    {
+        TreeSet<Long> siteIds = siteIds( request );
+        if ( siteIds.isEmpty() )
+        {
+            return true;
+        }
+
+        String user = user( request );
+        List<SftpAdmissionControl.Permit> permits = new ArrayList<>( siteIds.size() );
+        try
+        {
+            for (Long siteId : siteIds)
+            {
+                permits.add( admissionControl.acquire( siteId, user ) );
+            }
+            request.setAttribute( PERMIT_ATTRIBUTE, permits );
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            permits.forEach( SftpAdmissionControl.Permit::close );
+            throw e;
+        }
+        catch (SftpAdmissionControl.AdmissionRejectedException e)
+        {
+            permits.forEach( SftpAdmissionControl.Permit::close );
+            log.debug( "Rejected {} {}: {}", request.getMethod(), request.getRequestURI(), e.getMessage() );
+            response.setStatus( HttpStatus.TOO_MANY_REQUESTS.value() );
+            response.setHeader( HttpHeaders.RETRY_AFTER, String.valueOf( e.getRetryAfterSeconds() ) );
+            response.setContentType( MediaType.APPLICATION_JSON_VALUE );
+            response.getWriter().write( JSON.writeValueAsString( Map.of( "error", e.getMessage() ) ) );
+            return false;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void afterCompletion( HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex )
+    {
+        Object permits = request.getAttribute( PERMIT_ATTRIBUTE );
+        if ( permits != null )
+        {
+            request.removeAttribute( PERMIT_ATTRIBUTE );
+            ((List<SftpAdmissionControl.Permit>) permits).forEach( SftpAdmissionControl.Permit::close );
+        }
+    }
+
+    /**
+     * Sites the request works against, in the order their permits are taken
+     */
+    @SuppressWarnings("unchecked")
+    private static TreeSet<Long> siteIds( HttpServletRequest request )
+    {
+        TreeSet<Long> siteIds = new TreeSet<>();
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute( HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE );
+        Long siteId = parseId( variables != null ? variables.get( "siteId" ) : null );
+        if ( siteId == null )
+        {
+            return siteIds;
+        }
+        siteIds.add( siteId );
+
+        Long targetSiteId = parseId( request.getParameter( "targetSiteId" ) );
+        if ( targetSiteId != null )
+        {
+            siteIds.add( targetSiteId );
+        }
+        return siteIds;
+    }
+
+    private static Long parseId( String value )
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+        try
+        {
+            return Long.valueOf( value );
+        }
+        catch (NumberFormatException e)
+        {
+            // Let the controller reject it
+            return null;
+        }
+    }
+
+    private static String user( HttpServletRequest request )
+    {
+        HttpSession session = request.getSession( false );
+        UserSession userSession = session != null ? (UserSession) session.getAttribute( "user" ) : null;
+        if ( userSession != null && userSession.getUsername() != null )
+        {
+            return userSession.getUsername();
+        }
+        return "anonymous@" + request.getRemoteAddr();
+    }
+}
@@ -38,6 +38,7 @@ package com.nearstar.sftpmanager.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -164,12 +165,22 @@ public class WebConfig implements WebMvcConfigurer
     }
 
     /**
-     * Multipart resolver for file uploads
+     * Multipart resolver for file uploads. Direct and batch uploads are left unresolved
+     * so their body is parsed as it streams in instead of being spooled to disk first.
      */
     @Bean
     public MultipartResolver multipartResolver()
     {
-        return new StandardServletMultipartResolver();
+        return new StandardServletMultipartResolver()
+        {
+            @Override
+            public boolean isMultipart( HttpServletRequest request )
+            {
+                String path = request.getRequestURI().substring( request.getContextPath().length() );
+                return !path.startsWith( "/api/files/upload-direct/" ) && !path.startsWith( "/api/files/upload-batch/" )
+                        && super.isMultipart( request );
+            }
+        };
     }
 
     /**
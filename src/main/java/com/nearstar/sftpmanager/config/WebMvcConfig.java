@@ -46,11 +46,19 @@ public class WebMvcConfig implements WebMvcConfigurer
     @Autowired
     private SessionInterceptor sessionInterceptor;
 
+    @Autowired
+    private SftpAdmissionInterceptor sftpAdmissionInterceptor;
+
     @Override
     public void addInterceptors( InterceptorRegistry registry )
     {
         registry.addInterceptor( sessionInterceptor )
                 .addPathPatterns( "/**" )
                 .excludePathPatterns( "/login", "/api/login", "/css/**", "/js/**", "/assets/**" );
+
+        // Only operations that do SFTP work against a site are queued
+        registry.addInterceptor( sftpAdmissionInterceptor )
+                .addPathPatterns( "/api/files/**" )
+                .excludePathPatterns( "/api/files/close-session/**", "/api/files/site-info/**" );
     }
 }
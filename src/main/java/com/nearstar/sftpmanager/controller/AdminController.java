@@ -43,6 +43,7 @@ import com.nearstar.sftpmanager.model.enums.ActionType;
 import com.nearstar.sftpmanager.repository.ApplicationConfigRepository;
 import com.nearstar.sftpmanager.service.AuditService;
 import com.nearstar.sftpmanager.service.UserService;
+import com.nearstar.sftpmanager.util.BandwidthShaper;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -66,6 +67,7 @@ public class AdminController
     private final UserService userService;
     private final AuditService auditService;
     private final ApplicationConfigRepository configRepository;
+    private final BandwidthShaper bandwidthShaper;
 
     // Helper method to get current user from session
     private UserSession getCurrentUser( HttpSession session )
@@ -127,6 +129,8 @@ public class AdminController
                         oldValue, entry.getValue(),
                         "Updated config: " + entry.getKey(), currentUser.getUsername() );
             }
+            // Apply bandwidth caps now rather than at the next refresh
+            bandwidthShaper.refresh();
             return ResponseEntity.ok( Map.of( "message", "Configuration updated successfully" ) );
         }
         catch (Exception e)
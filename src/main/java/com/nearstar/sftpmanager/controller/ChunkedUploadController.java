@@ -0,0 +1,245 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.controller;
+
+import com.nearstar.sftpmanager.model.dto.UserSession;
+import com.nearstar.sftpmanager.model.entity.UploadSession;
+import com.nearstar.sftpmanager.service.ChunkedUploadService;
+import com.nearstar.sftpmanager.util.SiteCircuitBreaker;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Resumable chunked uploads. Create an upload, PUT (or PATCH) raw chunks with an
+ * Upload-Offset header, check progress with HEAD, then POST to /complete.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/files/uploads")
+@RequiredArgsConstructor
+public class ChunkedUploadController
+{
+    static final String UPLOAD_OFFSET = "Upload-Offset";
+    static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    /**
+     * Start a resumable upload of a file of known size
+     */
+    @PostMapping("/{siteId}")
+    public ResponseEntity<?> createUpload(
+            @PathVariable Long siteId,
+            @RequestParam String path,
+            @RequestParam String fileName,
+            @RequestParam long size,
+            HttpSession httpSession )
+    {
+        try
+        {
+            UserSession user = (UserSession) httpSession.getAttribute( "user" );
+            UploadSession session = chunkedUploadService.create( siteId, path, fileName, size,
+                    user != null ? user.getUsername() : null );
+
+            return ResponseEntity.created( URI.create( "/api/files/uploads/" + siteId + "/" + session.getUploadId() ) )
+                    .header( UPLOAD_OFFSET, "0" )
+                    .header( UPLOAD_LENGTH, String.valueOf( size ) )
+                    .body( describe( session ) );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error creating upload on site {}: {}", siteId, e.getMessage() );
+            return failure( "Failed to create upload: ", e );
+        }
+    }
+
+    /**
+     * Progress of an upload; HEAD returns just the Upload-Offset header
+     */
+    @GetMapping("/{siteId}/{uploadId}")
+    public ResponseEntity<?> getUpload( @PathVariable Long siteId, @PathVariable String uploadId )
+    {
+        Optional<UploadSession> session = chunkedUploadService.find( siteId, uploadId );
+        if ( session.isEmpty() )
+        {
+            return notFound();
+        }
+        return ResponseEntity.ok()
+                .cacheControl( CacheControl.noStore() )
+                .header( UPLOAD_OFFSET, String.valueOf( session.get().getBytesReceived() ) )
+                .header( UPLOAD_LENGTH, String.valueOf( session.get().getTotalSize() ) )
+                .body( describe( session.get() ) );
+    }
+
+    /**
+     * Write the request body at the offset given by the Upload-Offset header
+     */
+    @RequestMapping(value = "/{siteId}/{uploadId}", method = { RequestMethod.PUT, RequestMethod.PATCH })
+    public ResponseEntity<?> writeChunk(
+            @PathVariable Long siteId,
+            @PathVariable String uploadId,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            HttpServletRequest request )
+    {
+        Optional<UploadSession> session = chunkedUploadService.find( siteId, uploadId );
+        if ( session.isEmpty() )
+        {
+            return notFound();
+        }
+
+        try ( InputStream body = request.getInputStream() )
+        {
+            UploadSession updated = chunkedUploadService.writeChunk( session.get(), offset, body );
+            return ResponseEntity.noContent()
+                    .header( UPLOAD_OFFSET, String.valueOf( updated.getBytesReceived() ) )
+                    .build();
+        }
+        catch (Exception e)
+        {
+            log.error( "Error writing chunk at {} for upload {}: {}", offset, uploadId, e.getMessage() );
+            return failure( "Failed to write chunk: ", e );
+        }
+    }
+
+    /**
+     * Move a fully received upload into place
+     */
+    @PostMapping("/{siteId}/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload( @PathVariable Long siteId, @PathVariable String uploadId )
+    {
+        Optional<UploadSession> session = chunkedUploadService.find( siteId, uploadId );
+        if ( session.isEmpty() )
+        {
+            return notFound();
+        }
+
+        try
+        {
+            return ResponseEntity.ok( describe( chunkedUploadService.complete( session.get() ) ) );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error completing upload {}: {}", uploadId, e.getMessage() );
+            return failure( "Failed to complete upload: ", e );
+        }
+    }
+
+    /**
+     * Abandon an upload
+     */
+    @DeleteMapping("/{siteId}/{uploadId}")
+    public ResponseEntity<?> cancelUpload( @PathVariable Long siteId, @PathVariable String uploadId )
+    {
+        Optional<UploadSession> session = chunkedUploadService.find( siteId, uploadId );
+        if ( session.isEmpty() )
+        {
+            return notFound();
+        }
+
+        try
+        {
+            chunkedUploadService.cancel( session.get() );
+            return ResponseEntity.noContent().build();
+        }
+        catch (Exception e)
+        {
+            log.error( "Error cancelling upload {}: {}", uploadId, e.getMessage() );
+            return failure( "Failed to cancel upload: ", e );
+        }
+    }
+
+    private static Map<String, Object> describe( UploadSession session )
+    {
+        Map<String, Object> result = new HashMap<>();
+        result.put( "uploadId", session.getUploadId() );
+        result.put( "siteId", session.getSite().getId() );
+        result.put( "path", session.getTargetPath() );
+        result.put( "fileName", session.getFileName() );
+        result.put( "size", session.getTotalSize() );
+        result.put( "offset", session.getBytesReceived() );
+        result.put( "receivedRanges", session.getReceivedRanges() );
+        result.put( "status", session.getStatus().name() );
+        result.put( "createdAt", session.getCreatedAt() );
+        result.put( "updatedAt", session.getUpdatedAt() );
+        result.put( "completedAt", session.getCompletedAt() );
+        return result;
+    }
+
+    private static ResponseEntity<?> notFound()
+    {
+        return ResponseEntity.status( HttpStatus.NOT_FOUND )
+                .body( Map.of( "error", "Upload not found" ) );
+    }
+
+    private static ResponseEntity<?> failure( String message, Exception e )
+    {
+        if ( e instanceof ChunkedUploadService.UploadConflictException conflict )
+        {
+            return ResponseEntity.status( HttpStatus.CONFLICT )
+                    .header( UPLOAD_OFFSET, String.valueOf( conflict.getOffset() ) )
+                    .body( Map.of( "error", conflict.getMessage(), "offset", conflict.getOffset() ) );
+        }
+        if ( e instanceof IllegalArgumentException )
+        {
+            return ResponseEntity.badRequest()
+                    .body( Map.of( "error", e.getMessage() ) );
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+        {
+            if ( cause instanceof SiteCircuitBreaker.CircuitOpenException open )
+            {
+                return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE )
+                        .header( HttpHeaders.RETRY_AFTER, String.valueOf( open.getRetryAfterSeconds() ) )
+                        .body( Map.of( "error", open.getMessage() ) );
+            }
+        }
+        return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
+                .body( Map.of( "error", message + e.getMessage() ) );
+    }
+}
@@ -35,15 +35,24 @@
  */
 package com.nearstar.sftpmanager.controller;
 
-import com.jcraft.jsch.ChannelSftp;
 import com.nearstar.sftpmanager.model.dto.FileDTO;
 import com.nearstar.sftpmanager.model.dto.FileOperationDTO;
 import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.VerificationStrategy;
 import com.nearstar.sftpmanager.repository.SiteRepository;
+import com.nearstar.sftpmanager.service.ArchiveDownloadService;
+import com.nearstar.sftpmanager.service.BatchUploadService;
 import com.nearstar.sftpmanager.service.FileManagerService;
+import com.nearstar.sftpmanager.service.RelayTransferService;
+import com.nearstar.sftpmanager.util.ByteRange;
+import com.nearstar.sftpmanager.util.MultipartStreamReader;
+import com.nearstar.sftpmanager.util.SftpClient;
+import com.nearstar.sftpmanager.util.SiteCircuitBreaker;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -52,9 +61,12 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 @Slf4j
 @RestController
@@ -64,6 +76,9 @@ public class FileManagerController
 {
 
     private final FileManagerService fileManagerService;
+    private final BatchUploadService batchUploadService;
+    private final ArchiveDownloadService archiveDownloadService;
+    private final RelayTransferService relayTransferService;
     private final SiteRepository siteRepository;
 
     /**
@@ -89,8 +104,7 @@ public class FileManagerController
         catch (Exception e)
         {
             log.error( "Error listing files for site {}: {}", siteId, e.getMessage(), e );
-            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
-                    .body( Map.of( "error", "Failed to list files: " + e.getMessage() ) );
+            return errorResponse( "Failed to list files: ", e );
         }
     }
 
@@ -101,161 +115,86 @@ public class FileManagerController
     public void downloadFile(
             @PathVariable Long siteId,
             @RequestParam String path,
+            HttpServletRequest request,
             HttpServletResponse response )
     {
-        try
-        {
-            log.info( "Downloading file from site {}: {}", siteId, path );
-
-            // Get file info first to get the name
-            FileDTO fileInfo = fileManagerService.getFileInfo( siteId, path );
-            if ( fileInfo.isDirectory() )
-            {
-                response.sendError( HttpServletResponse.SC_BAD_REQUEST, "Cannot download a directory" );
-                return;
-            }
-
-            // Download file data
-            byte[] fileData = fileManagerService.downloadFile( siteId, path );
-
-            // Set response headers
-            response.setContentType( "application/octet-stream" );
-            response.setContentLength( fileData.length );
-            response.setHeader( "Content-Disposition",
-                    "attachment; filename=\"" + fileInfo.getName() + "\"" );
-
-            // Write file data to response
-            response.getOutputStream().write( fileData );
-            response.getOutputStream().flush();
-
-            log.info( "File downloaded successfully: {} ({} bytes)",
-                    fileInfo.getName(), fileData.length );
-
-        }
-        catch (Exception e)
-        {
-            log.error( "Error downloading file from site {}: {}", siteId, e.getMessage(), e );
-            try
-            {
-                response.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                        "Failed to download file: " + e.getMessage() );
-            }
-            catch (IOException ex)
-            {
-                log.error( "Error sending error response", ex );
-            }
-        }
+        log.info( "Downloading file from site {}: {}", siteId, path );
+        streamDownload( siteId, path, request, response );
     }
 
     /**
-     * Download a file using streaming (better for large files)
+     * Download a file using streaming. Supports Range requests (206 Partial Content,
+     * including multipart/byteranges) so downloads can be resumed or fetched in segments.
      */
     @GetMapping("/download-stream/{siteId}")
     public void downloadFileStream(
             @PathVariable Long siteId,
             @RequestParam String path,
+            HttpServletRequest request,
             HttpServletResponse response )
     {
+        log.info( "Stream downloading file from site {}: {} (range: {})", siteId, path, request.getHeader( HttpHeaders.RANGE ) );
+        streamDownload( siteId, path, request, response );
+    }
 
-        ChannelSftp channelSftp = null;
-        InputStream sftpInputStream = null;
-
+    /**
+     * Download a directory as a zip, tar or tar.gz archive streamed as the remote tree is
+     * read. compression is auto (store already-compressed files), store or deflate.
+     */
+    @GetMapping("/download-archive/{siteId}")
+    public void downloadArchive(
+            @PathVariable Long siteId,
+            @RequestParam String path,
+            @RequestParam(required = false) String format,
+            @RequestParam(required = false) String compression,
+            HttpServletResponse response )
+    {
+        log.info( "Archive download from site {}: {} ({})", siteId, path, format );
         try
         {
-            log.info( "Stream downloading file from site {}: {}", siteId, path );
-
-            // Get site and file info
-            Site site = siteRepository.findById( siteId )
-                    .orElseThrow( () -> new RuntimeException( "Site not found" ) );
-
-            FileDTO fileInfo = fileManagerService.getFileInfo( siteId, path );
-            if ( fileInfo.isDirectory() )
-            {
-                response.sendError( HttpServletResponse.SC_BAD_REQUEST, "Cannot download a directory" );
-                return;
-            }
-
-            // Set response headers before streaming
-            response.setContentType( "application/octet-stream" );
-            response.setContentLengthLong( fileInfo.getSize() );
-            response.setHeader( "Content-Disposition",
-                    "attachment; filename=\"" + fileInfo.getName() + "\"" );
-
-            // Get SFTP channel and stream file directly to response
-            channelSftp = fileManagerService.getChannel( site );
-            sftpInputStream = channelSftp.get( path );
-
-            // Stream directly to response
-            byte[] buffer = new byte[8192];
-            int bytesRead;
-            long totalBytes = 0;
-
-            try ( OutputStream out = response.getOutputStream() )
-            {
-                while ((bytesRead = sftpInputStream.read( buffer )) != -1)
-                {
-                    out.write( buffer, 0, bytesRead );
-                    totalBytes += bytesRead;
-
-                    // Log progress for large files (every 10MB)
-                    if ( totalBytes % (10 * 1024 * 1024) == 0 )
+            int files = archiveDownloadService.download( siteId, path, ArchiveDownloadService.Format.of( format ),
+                    ArchiveDownloadService.Compression.of( compression ), ( fileName, archiveFormat ) ->
                     {
-                        log.debug( "Streamed {} MB of {}",
-                                totalBytes / (1024 * 1024), fileInfo.getName() );
-                    }
-                }
-                out.flush();
-            }
-
-            log.info( "File streamed successfully: {} ({} bytes)",
-                    fileInfo.getName(), totalBytes );
+                        response.setContentType( archiveFormat.getContentType() );
+                        response.setHeader( "Content-Disposition", "attachment; filename=\"" + fileName + "\"" );
+                        return response.getOutputStream();
+                    } );
 
+            log.info( "Archive streamed successfully: {} ({} files)", path, files );
         }
         catch (Exception e)
         {
-            log.error( "Error streaming file from site {}: {}", siteId, e.getMessage(), e );
+            log.error( "Error streaming archive from site {}: {}", siteId, e.getMessage(), e );
             try
             {
-                if ( !response.isCommitted() )
-                {
-                    response.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                            "Failed to download file: " + e.getMessage() );
-                }
-            }
-            catch (IOException ex)
-            {
-                log.error( "Error sending error response", ex );
-            }
-        }
-        finally
-        {
-            // Clean up resources
-            if ( sftpInputStream != null )
-            {
-                try
+                if ( response.isCommitted() )
                 {
-                    sftpInputStream.close();
+                    return;
                 }
-                catch (IOException e)
+                if ( e instanceof IllegalArgumentException )
                 {
-                    log.error( "Error closing SFTP input stream", e );
+                    response.sendError( HttpServletResponse.SC_BAD_REQUEST, e.getMessage() );
+                    return;
                 }
+                sendDownloadError( response, e );
             }
-            if ( channelSftp != null && channelSftp.isConnected() )
+            catch (IOException ex)
             {
-                channelSftp.disconnect();
+                log.error( "Error sending error response", ex );
             }
         }
     }
 
     /**
-     * Upload a file with enhanced debugging
+     * Upload a file with enhanced debugging. verify selects the post-upload check
+     * (none, size, checksum, reread) and defaults to the site's strategy.
      */
     @PostMapping("/upload/{siteId}")
     public ResponseEntity<?> uploadFile(
             @PathVariable Long siteId,
             @RequestParam String path,
-            @RequestParam("file") MultipartFile file )
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) String verify )
     {
 
         // Input validation
@@ -266,6 +205,16 @@ public class FileManagerController
                     .body( Map.of( "error", "File is empty" ) );
         }
 
+        VerificationStrategy verification;
+        try
+        {
+            verification = VerificationStrategy.parse( verify );
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest().body( Map.of( "error", e.getMessage() ) );
+        }
+
         try
         {
             log.info( "=== Upload Request Received ===" );
@@ -277,7 +226,7 @@ public class FileManagerController
             log.info( "Content Type: {}", file.getContentType() );
 
             // Call the service to perform upload
-            fileManagerService.uploadFile( siteId, path, file );
+            fileManagerService.uploadFile( siteId, path, file, verification );
 
             log.info( "=== Upload Request Completed Successfully ===" );
             return ResponseEntity.ok( Map.of(
@@ -293,6 +242,11 @@ public class FileManagerController
             log.error( "=== Upload Request Failed ===" );
             log.error( "Error uploading file to site {}: ", siteId, e );
 
+            if ( circuitOpen( e ) != null )
+            {
+                return errorResponse( "Failed to upload file: ", e );
+            }
+
             String errorMessage = e.getMessage();
             if ( e.getCause() != null )
             {
@@ -340,8 +294,126 @@ public class FileManagerController
         catch (Exception e)
         {
             log.error( "Error stream uploading file to site {}: {}", siteId, e.getMessage(), e );
-            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
-                    .body( Map.of( "error", "Failed to upload file: " + e.getMessage() ) );
+            return errorResponse( "Failed to upload file: ", e );
+        }
+    }
+
+    /**
+     * Upload files by streaming the multipart body straight into SFTP. Unlike /upload,
+     * nothing is spooled to disk and the remote write starts with the first bytes received.
+     * The target directory is taken from the "path" query parameter, since reading form
+     * parameters would make the container parse (and spool) the whole body first.
+     */
+    @PostMapping("/upload-direct/{siteId}")
+    public ResponseEntity<?> uploadFileDirect( @PathVariable Long siteId, HttpServletRequest request )
+    {
+        String path = queryParameter( request, "path" );
+        if ( path == null || path.isEmpty() )
+        {
+            return ResponseEntity.badRequest()
+                    .body( Map.of( "error", "Query parameter 'path' is required" ) );
+        }
+        String boundary = MultipartStreamReader.boundaryOf( request.getContentType() );
+        if ( boundary == null )
+        {
+            return ResponseEntity.status( HttpStatus.UNSUPPORTED_MEDIA_TYPE )
+                    .body( Map.of( "error", "Expected a multipart/form-data body" ) );
+        }
+
+        try ( InputStream body = request.getInputStream() )
+        {
+            List<Map<String, Object>> files = fileManagerService.uploadMultipartStream( siteId, path, body, boundary );
+            if ( files.isEmpty() )
+            {
+                return ResponseEntity.badRequest()
+                        .body( Map.of( "error", "No files in request" ) );
+            }
+
+            log.info( "Direct upload to site {} completed: {} file(s)", siteId, files.size() );
+            return ResponseEntity.ok( Map.of(
+                    "message", "Files uploaded successfully (direct)",
+                    "files", files,
+                    "path", path
+            ) );
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest()
+                    .body( Map.of( "error", e.getMessage() ) );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error direct uploading to site {}: {}", siteId, e.getMessage(), e );
+            return errorResponse( "Failed to upload file: ", e );
+        }
+    }
+
+    /**
+     * Upload many files in one request: a multipart form with several files, or a tar,
+     * tar.gz or zip archive that is unpacked into the target directory. The body is
+     * streamed as for /upload-direct, and the response lists the outcome of every file.
+     */
+    @PostMapping("/upload-batch/{siteId}")
+    public ResponseEntity<?> uploadBatch( @PathVariable Long siteId, HttpServletRequest request )
+    {
+        String path = queryParameter( request, "path" );
+        if ( path == null || path.isEmpty() )
+        {
+            return ResponseEntity.badRequest()
+                    .body( Map.of( "error", "Query parameter 'path' is required" ) );
+        }
+        if ( !BatchUploadService.isSupported( request.getContentType() ) )
+        {
+            return ResponseEntity.status( HttpStatus.UNSUPPORTED_MEDIA_TYPE )
+                    .body( Map.of( "error", "Expected a multipart/form-data, tar, tar.gz or zip body" ) );
+        }
+
+        try ( InputStream body = request.getInputStream() )
+        {
+            Map<String, Object> manifest = batchUploadService.upload( siteId, path, body, request.getContentType() );
+            log.info( "Batch upload to site {}: {} uploaded, {} failed", siteId, manifest.get( "uploaded" ),
+                    manifest.get( "failed" ) );
+            return ResponseEntity.ok( manifest );
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest()
+                    .body( Map.of( "error", e.getMessage() ) );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error batch uploading to site {}: {}", siteId, e.getMessage(), e );
+            return errorResponse( "Failed to upload files: ", e );
+        }
+    }
+
+    /**
+     * Copy a file or directory from this site into a directory on another (or the same)
+     * site, streaming between the two without staging it here
+     */
+    @PostMapping("/relay/{siteId}")
+    public ResponseEntity<?> relay(
+            @PathVariable Long siteId,
+            @RequestParam String path,
+            @RequestParam Long targetSiteId,
+            @RequestParam String targetPath )
+    {
+        try
+        {
+            Map<String, Object> manifest = relayTransferService.relay( siteId, path, targetSiteId, targetPath );
+            log.info( "Relay from site {} to site {}: {} transferred, {} failed", siteId, targetSiteId,
+                    manifest.get( "transferred" ), manifest.get( "failed" ) );
+            return ResponseEntity.ok( manifest );
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest()
+                    .body( Map.of( "error", e.getMessage() ) );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error relaying from site {} to site {}: {}", siteId, targetSiteId, e.getMessage(), e );
+            return errorResponse( "Failed to relay: ", e );
         }
     }
 
@@ -393,8 +465,7 @@ public class FileManagerController
         catch (Exception e)
         {
             log.error( "Error creating directory on site {}: {}", siteId, e.getMessage(), e );
-            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
-                    .body( Map.of( "error", "Failed to create directory: " + e.getMessage() ) );
+            return errorResponse( "Failed to create directory: ", e );
         }
     }
 
@@ -422,8 +493,7 @@ public class FileManagerController
         catch (Exception e)
         {
             log.error( "Error deleting on site {}: {}", siteId, e.getMessage(), e );
-            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
-                    .body( Map.of( "error", "Failed to delete: " + e.getMessage() ) );
+            return errorResponse( "Failed to delete: ", e );
         }
     }
 
@@ -451,8 +521,7 @@ public class FileManagerController
         catch (Exception e)
         {
             log.error( "Error renaming on site {}: {}", siteId, e.getMessage(), e );
-            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
-                    .body( Map.of( "error", "Failed to rename: " + e.getMessage() ) );
+            return errorResponse( "Failed to rename: ", e );
         }
     }
 
@@ -480,8 +549,7 @@ public class FileManagerController
         catch (Exception e)
         {
             log.error( "Error changing permissions on site {}: {}", siteId, e.getMessage(), e );
-            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
-                    .body( Map.of( "error", "Failed to change permissions: " + e.getMessage() ) );
+            return errorResponse( "Failed to change permissions: ", e );
         }
     }
 
@@ -502,8 +570,7 @@ public class FileManagerController
         catch (Exception e)
         {
             log.error( "Error getting file info for site {}: {}", siteId, e.getMessage(), e );
-            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
-                    .body( Map.of( "error", "Failed to get file info: " + e.getMessage() ) );
+            return errorResponse( "Failed to get file info: ", e );
         }
     }
 
@@ -546,6 +613,15 @@ public class FileManagerController
         }
     }
 
+    /**
+     * Connection pool statistics (for debugging)
+     */
+    @GetMapping("/connection-stats")
+    public ResponseEntity<?> getConnectionStats()
+    {
+        return ResponseEntity.ok( fileManagerService.getConnectionStats() );
+    }
+
     /**
      * Get site information (for debugging)
      */
@@ -573,4 +649,238 @@ public class FileManagerController
                     .body( Map.of( "error", "Site not found" ) );
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Error response for a failed SFTP operation. Sites whose circuit breaker is open
+     * get 503 with Retry-After, so clients back off instead of retrying immediately.
+     */
+    private ResponseEntity<?> errorResponse( String message, Exception e )
+    {
+        SiteCircuitBreaker.CircuitOpenException open = circuitOpen( e );
+        if ( open != null )
+        {
+            return ResponseEntity.status( HttpStatus.SERVICE_UNAVAILABLE )
+                    .header( HttpHeaders.RETRY_AFTER, String.valueOf( open.getRetryAfterSeconds() ) )
+                    .body( Map.of( "error", open.getMessage() ) );
+        }
+        return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
+                .body( Map.of( "error", message + e.getMessage() ) );
+    }
+
+    /**
+     * Stream a remote file straight to the response; headers are set once the file has been stat'ed
+     */
+    private void streamDownload( Long siteId, String path, HttpServletRequest request, HttpServletResponse response )
+    {
+        try
+        {
+            long bytes = fileManagerService.downloadFile( siteId, path, new HttpDownloadSink( request, response ) );
+
+            log.info( "File streamed successfully: {} ({} bytes)", path, bytes );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error streaming file from site {}: {}", siteId, e.getMessage(), e );
+            try
+            {
+                if ( response.isCommitted() )
+                {
+                    return;
+                }
+                if ( e instanceof IllegalArgumentException )
+                {
+                    response.sendError( HttpServletResponse.SC_BAD_REQUEST, e.getMessage() );
+                    return;
+                }
+                sendDownloadError( response, e );
+            }
+            catch (IOException ex)
+            {
+                log.error( "Error sending error response", ex );
+            }
+        }
+    }
+
+    private void sendDownloadError( HttpServletResponse response, Exception e ) throws IOException
+    {
+        SiteCircuitBreaker.CircuitOpenException open = circuitOpen( e );
+        if ( open != null )
+        {
+            response.setHeader( HttpHeaders.RETRY_AFTER, String.valueOf( open.getRetryAfterSeconds() ) );
+            response.sendError( HttpServletResponse.SC_SERVICE_UNAVAILABLE, open.getMessage() );
+            return;
+        }
+        response.sendError( HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                "Failed to download file: " + e.getMessage() );
+    }
+
+    /**
+     * Read a query string parameter without touching the request body
+     */
+    private static String queryParameter( HttpServletRequest request, String name )
+    {
+        if ( request.getQueryString() == null )
+        {
+            return null;
+        }
+        for (String pair : request.getQueryString().split( "&" ))
+        {
+            int eq = pair.indexOf( '=' );
+            String key = URLDecoder.decode( eq < 0 ? pair : pair.substring( 0, eq ), StandardCharsets.UTF_8 );
+            if ( key.equals( name ) )
+            {
+                return eq < 0 ? "" : URLDecoder.decode( pair.substring( eq + 1 ), StandardCharsets.UTF_8 );
+            }
+        }
+        return null;
+    }
+
+    private static SiteCircuitBreaker.CircuitOpenException circuitOpen( Throwable e )
+    {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+        {
+            if ( cause instanceof SiteCircuitBreaker.CircuitOpenException open )
+            {
+                return open;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes a download to the HTTP response, honouring Range and If-Range. Ranges that
+     * cannot be satisfied get 416; several ranges are sent as multipart/byteranges.
+     */
+    private static class HttpDownloadSink implements FileManagerService.DownloadSink
+    {
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private String boundary;
+        private long size;
+        private OutputStream out;
+
+        HttpDownloadSink( HttpServletRequest request, HttpServletResponse response )
+        {
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public List<ByteRange> begin( SftpClient.RemoteFile file ) throws IOException
+        {
+            size = file.getSize();
+            String etag = "\"" + Long.toHexString( size ) + "-" + Long.toHexString( file.getModifiedSeconds() ) + "\"";
+            response.setHeader( HttpHeaders.ACCEPT_RANGES, "bytes" );
+            response.setHeader( HttpHeaders.ETAG, etag );
+            response.setDateHeader( HttpHeaders.LAST_MODIFIED, file.getModifiedSeconds() * 1000 );
+
+            List<ByteRange> ranges = null;
+            if ( ifRangeMatches( etag, file.getModifiedSeconds() ) )
+            {
+                ranges = ByteRange.parse( request.getHeader( HttpHeaders.RANGE ), size );
+            }
+
+            if ( ranges != null && ranges.isEmpty() )
+            {
+                response.setStatus( HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value() );
+                response.setHeader( HttpHeaders.CONTENT_RANGE, "bytes */" + size );
+                response.setContentLength( 0 );
+                return List.of();
+            }
+
+            response.setHeader( "Content-Disposition", "attachment; filename=\"" + file.getName() + "\"" );
+            if ( ranges == null )
+            {
+                response.setContentType( "application/octet-stream" );
+                response.setContentLengthLong( size );
+                ranges = size > 0 ? List.of( new ByteRange( 0, size - 1 ) ) : List.of();
+            }
+            else if ( ranges.size() == 1 )
+            {
+                response.setStatus( HttpStatus.PARTIAL_CONTENT.value() );
+                response.setContentType( "application/octet-stream" );
+                response.setHeader( HttpHeaders.CONTENT_RANGE, ranges.get( 0 ).toContentRange( size ) );
+                response.setContentLengthLong( ranges.get( 0 ).getLength() );
+            }
+            else
+            {
+                boundary = UUID.randomUUID().toString().replace( "-", "" );
+                long length = closing().length;
+                for (ByteRange range : ranges)
+                {
+                    length += partHeader( range ).length + range.getLength();
+                }
+                response.setStatus( HttpStatus.PARTIAL_CONTENT.value() );
+                response.setContentType( "multipart/byteranges; boundary=" + boundary );
+                response.setContentLengthLong( length );
+            }
+
+            if ( "HEAD".equalsIgnoreCase( request.getMethod() ) )
+            {
+                return List.of();
+            }
+            out = response.getOutputStream();
+            return ranges;
+        }
+
+        @Override
+        public OutputStream part( ByteRange range ) throws IOException
+        {
+            if ( boundary != null )
+            {
+                out.write( partHeader( range ) );
+            }
+            return out;
+        }
+
+        @Override
+        public void end() throws IOException
+        {
+            if ( out == null )
+            {
+                return;
+            }
+            if ( boundary != null )
+            {
+                out.write( closing() );
+            }
+            out.flush();
+        }
+
+        /**
+         * A Range is only honoured if If-Range is absent or still matches the file
+         */
+        private boolean ifRangeMatches( String etag, long modifiedSeconds )
+        {
+            String ifRange = request.getHeader( HttpHeaders.IF_RANGE );
+            if ( ifRange == null )
+            {
+                return true;
+            }
+            if ( ifRange.startsWith( "\"" ) || ifRange.startsWith( "W/" ) )
+            {
+                return ifRange.equals( etag );
+            }
+            try
+            {
+                return request.getDateHeader( HttpHeaders.IF_RANGE ) / 1000 == modifiedSeconds;
+            }
+            catch (IllegalArgumentException e)
+            {
+                return false;
+            }
+        }
+
+        private byte[] partHeader( ByteRange range )
+        {
+            return ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: application/octet-stream\r\n"
+                    + "Content-Range: " + range.toContentRange( size ) + "\r\n\r\n").getBytes( StandardCharsets.US_ASCII );
+        }
+
+        private byte[] closing()
+        {
+            return ("\r\n--" + boundary + "--\r\n").getBytes( StandardCharsets.US_ASCII );
+        }
+    }
+}
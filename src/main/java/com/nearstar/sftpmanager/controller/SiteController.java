@@ -38,7 +38,9 @@ package com.nearstar.sftpmanager.controller;
 import com.nearstar.sftpmanager.model.dto.SiteDTO;
 import com.nearstar.sftpmanager.model.dto.UserSession;
 import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.service.SiteHealthCheckService;
 import com.nearstar.sftpmanager.service.SiteService;
+import com.nearstar.sftpmanager.service.TransportBenchmarkService;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -49,6 +51,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -58,6 +61,8 @@ public class SiteController
 {
 
     private final SiteService siteService;
+    private final SiteHealthCheckService siteHealthCheckService;
+    private final TransportBenchmarkService transportBenchmarkService;
 
     // Helper method to get current user from session
     private UserSession getCurrentUser( HttpSession session )
@@ -238,6 +243,95 @@ public class SiteController
         }
     }
 
+    @PostMapping("/{id}/transport-benchmark")
+    public ResponseEntity<?> benchmarkTransport( @PathVariable Long id,
+                                                 @RequestParam(defaultValue = "8") int sizeMb,
+                                                 @RequestParam(defaultValue = "true") boolean compressible,
+                                                 HttpSession session )
+    {
+        UserSession currentUser = getCurrentUser( session );
+        if ( currentUser == null )
+        {
+            return ResponseEntity.status( HttpStatus.UNAUTHORIZED ).build();
+        }
+
+        // Benchmarks write test files to the partner - admins only
+        if ( !currentUser.isAdmin() )
+        {
+            return ResponseEntity.status( HttpStatus.FORBIDDEN ).build();
+        }
+
+        // Runs in the background; poll the returned benchmarkId for the results
+        try
+        {
+            return ResponseEntity.accepted()
+                    .body( transportBenchmarkService.start( id, sizeMb, compressible, currentUser.getUsername() ) );
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest().body( Map.of( "error", e.getMessage() ) );
+        }
+        catch (IllegalStateException e)
+        {
+            return ResponseEntity.status( HttpStatus.CONFLICT ).body( Map.of( "error", e.getMessage() ) );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error benchmarking transport profiles", e );
+            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
+                    .body( Map.of( "error", "Failed to benchmark transport profiles" ) );
+        }
+    }
+
+    @GetMapping("/{id}/transport-benchmark/{benchmarkId}")
+    public ResponseEntity<?> getTransportBenchmark( @PathVariable Long id, @PathVariable String benchmarkId,
+                                                    HttpSession session )
+    {
+        UserSession currentUser = getCurrentUser( session );
+        if ( currentUser == null )
+        {
+            return ResponseEntity.status( HttpStatus.UNAUTHORIZED ).build();
+        }
+        if ( !currentUser.isAdmin() )
+        {
+            return ResponseEntity.status( HttpStatus.FORBIDDEN ).build();
+        }
+
+        return transportBenchmarkService.find( id, benchmarkId )
+                .<ResponseEntity<?>>map( ResponseEntity::ok )
+                .orElseGet( () -> ResponseEntity.status( HttpStatus.NOT_FOUND )
+                        .body( Map.of( "error", "Benchmark not found" ) ) );
+    }
+
+    @GetMapping("/health")
+    public ResponseEntity<?> getHealthSweep( HttpSession session )
+    {
+        if ( getCurrentUser( session ) == null )
+        {
+            return ResponseEntity.status( HttpStatus.UNAUTHORIZED ).build();
+        }
+        return ResponseEntity.ok( siteHealthCheckService.getLastSweep() );
+    }
+
+    @PostMapping("/health/sweep")
+    public ResponseEntity<?> startHealthSweep( HttpSession session )
+    {
+        UserSession currentUser = getCurrentUser( session );
+        if ( currentUser == null )
+        {
+            return ResponseEntity.status( HttpStatus.UNAUTHORIZED ).build();
+        }
+
+        // Only admins can trigger a fleet-wide sweep
+        if ( !currentUser.isAdmin() )
+        {
+            return ResponseEntity.status( HttpStatus.FORBIDDEN ).build();
+        }
+
+        CompletableFuture.runAsync( siteHealthCheckService::sweep );
+        return ResponseEntity.accepted().body( Map.of( "message", "Health sweep started" ) );
+    }
+
     @GetMapping("/user-sites")
     public ResponseEntity<List<Site>> getUserSites( HttpSession session )
     {
@@ -0,0 +1,212 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.controller;
+
+import com.nearstar.sftpmanager.model.dto.FileTransferDTO;
+import com.nearstar.sftpmanager.model.dto.FileTransferRequest;
+import com.nearstar.sftpmanager.model.dto.UserSession;
+import com.nearstar.sftpmanager.model.entity.TransferJob;
+import com.nearstar.sftpmanager.service.TransferJobService;
+import jakarta.servlet.http.HttpSession;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Background transfer jobs. Submit one or many transfers, then poll their status and
+ * progress; jobs keep running after the client disconnects.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/transfers")
+@RequiredArgsConstructor
+public class TransferJobController
+{
+    private final TransferJobService transferJobService;
+
+    /**
+     * Queue a transfer
+     */
+    @PostMapping
+    public ResponseEntity<?> submit( @Valid @RequestBody FileTransferRequest request, HttpSession session )
+    {
+        try
+        {
+            FileTransferDTO job = transferJobService.submit( request, username( session ) );
+            return ResponseEntity.created( URI.create( "/api/transfers/" + job.getId() ) ).body( job );
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest()
+                    .body( Map.of( "error", e.getMessage() ) );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error queueing transfer: {}", e.getMessage(), e );
+            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
+                    .body( Map.of( "error", "Failed to queue transfer: " + e.getMessage() ) );
+        }
+    }
+
+    /**
+     * Queue many transfers at once; nothing is queued if any request is invalid
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<?> submitAll( @Valid @RequestBody List<FileTransferRequest> requests, HttpSession session )
+    {
+        try
+        {
+            return ResponseEntity.status( HttpStatus.CREATED )
+                    .body( transferJobService.submitAll( requests, username( session ) ) );
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest()
+                    .body( Map.of( "error", e.getMessage() ) );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error queueing transfers: {}", e.getMessage(), e );
+            return ResponseEntity.status( HttpStatus.INTERNAL_SERVER_ERROR )
+                    .body( Map.of( "error", "Failed to queue transfers: " + e.getMessage() ) );
+        }
+    }
+
+    /**
+     * Recent jobs, newest first
+     */
+    @GetMapping
+    public ResponseEntity<?> list(
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "200") int limit )
+    {
+        try
+        {
+            TransferJob.JobStatus filter = status == null || status.isBlank() ? null
+                    : TransferJob.JobStatus.valueOf( status.trim().toUpperCase( Locale.ROOT ) );
+            return ResponseEntity.ok()
+                    .cacheControl( CacheControl.noStore() )
+                    .body( transferJobService.list( filter, limit ) );
+        }
+        catch (IllegalArgumentException e)
+        {
+            return ResponseEntity.badRequest()
+                    .body( Map.of( "error", "Unknown status: " + status ) );
+        }
+    }
+
+    /**
+     * Job counts by status and current throughput
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats()
+    {
+        return ResponseEntity.ok()
+                .cacheControl( CacheControl.noStore() )
+                .body( transferJobService.getStats() );
+    }
+
+    /**
+     * Status and progress of one job
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> get( @PathVariable Long id )
+    {
+        return transferJobService.find( id )
+                .<ResponseEntity<?>>map( job -> ResponseEntity.ok().cacheControl( CacheControl.noStore() ).body( job ) )
+                .orElseGet( TransferJobController::notFound );
+    }
+
+    /**
+     * Cancel a queued or running job
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancel( @PathVariable Long id )
+    {
+        try
+        {
+            if ( !transferJobService.cancel( id ) )
+            {
+                return ResponseEntity.status( HttpStatus.CONFLICT )
+                        .body( Map.of( "error", "Transfer job has already ended" ) );
+            }
+            return ResponseEntity.noContent().build();
+        }
+        catch (IllegalArgumentException e)
+        {
+            return notFound();
+        }
+    }
+
+    /**
+     * Queue a failed or cancelled job again; it resumes from its committed offset
+     */
+    @PostMapping("/{id}/retry")
+    public ResponseEntity<?> retry( @PathVariable Long id )
+    {
+        if ( transferJobService.find( id ).isEmpty() )
+        {
+            return notFound();
+        }
+        if ( !transferJobService.retry( id ) )
+        {
+            return ResponseEntity.status( HttpStatus.CONFLICT )
+                    .body( Map.of( "error", "Only failed or cancelled jobs can be retried" ) );
+        }
+        return ResponseEntity.accepted().body( transferJobService.find( id ).orElse( null ) );
+    }
+
+    private static String username( HttpSession session )
+    {
+        UserSession user = (UserSession) session.getAttribute( "user" );
+        return user != null ? user.getUsername() : null;
+    }
+
+    private static ResponseEntity<?> notFound()
+    {
+        return ResponseEntity.status( HttpStatus.NOT_FOUND )
+                .body( Map.of( "error", "Transfer job not found" ) );
+    }
+}
@@ -36,6 +36,7 @@
 package com.nearstar.sftpmanager.model.dto;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 public class FileTransferDTO
 {
@@ -50,6 +51,14 @@ public class FileTransferDTO
     private LocalDateTime endTime;
     private String errorMessage;
     private double progressPercentage;
+    private String direction;
+    private Long siteId;
+    private Long targetSiteId;
+    private int priority;
+    private int attempts;
+    private LocalDateTime nextAttemptTime;
+    private String verification;
+    private Map<String, String> checksums;
 
     // Constructors
     public FileTransferDTO()
@@ -177,4 +186,84 @@ public class FileTransferDTO
     {
         this.progressPercentage = progressPercentage;
     }
+
+    public String getDirection()
+    {
+        return direction;
+    }
+
+    public void setDirection( String direction )
+    {
+        this.direction = direction;
+    }
+
+    public Long getSiteId()
+    {
+        return siteId;
+    }
+
+    public void setSiteId( Long siteId )
+    {
+        this.siteId = siteId;
+    }
+
+    public Long getTargetSiteId()
+    {
+        return targetSiteId;
+    }
+
+    public void setTargetSiteId( Long targetSiteId )
+    {
+        this.targetSiteId = targetSiteId;
+    }
+
+    public int getPriority()
+    {
+        return priority;
+    }
+
+    public void setPriority( int priority )
+    {
+        this.priority = priority;
+    }
+
+    public int getAttempts()
+    {
+        return attempts;
+    }
+
+    public void setAttempts( int attempts )
+    {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getNextAttemptTime()
+    {
+        return nextAttemptTime;
+    }
+
+    public void setNextAttemptTime( LocalDateTime nextAttemptTime )
+    {
+        this.nextAttemptTime = nextAttemptTime;
+    }
+
+    public String getVerification()
+    {
+        return verification;
+    }
+
+    public void setVerification( String verification )
+    {
+        this.verification = verification;
+    }
+
+    public Map<String, String> getChecksums()
+    {
+        return checksums;
+    }
+
+    public void setChecksums( Map<String, String> checksums )
+    {
+        this.checksums = checksums;
+    }
 }
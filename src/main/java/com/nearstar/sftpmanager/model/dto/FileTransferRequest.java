@@ -35,6 +35,8 @@
  */
 package com.nearstar.sftpmanager.model.dto;
 
+import com.nearstar.sftpmanager.model.entity.TransferJob;
+import com.nearstar.sftpmanager.model.enums.VerificationStrategy;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Data;
@@ -48,9 +50,20 @@ public class FileTransferRequest
     @NotBlank(message = "Remote path is required")
     private String remotePath;
 
-    private boolean verifyTransfer = true;
+    // Post-transfer check; null (or legacy true) uses the site's default, false means none
+    private VerificationStrategy verifyTransfer;
 
     private boolean createDirectories = false;
 
     private String localPath;
+
+    private TransferJob.Direction direction = TransferJob.Direction.DOWNLOAD;
+
+    // Destination of a relay; targetPath defaults to remotePath
+    private Long targetSiteId;
+
+    private String targetPath;
+
+    // Higher runs first
+    private int priority;
 }
\ No newline at end of file
@@ -37,6 +37,9 @@ package com.nearstar.sftpmanager.model.dto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.SftpEngine;
+import com.nearstar.sftpmanager.model.enums.VerificationStrategy;
+import com.nearstar.sftpmanager.model.enums.TransportProfile;
 
 public class SiteDTO
 {
@@ -53,7 +56,18 @@ public class SiteDTO
     private String description;
     private String emailNotification;
     private String sshKey;
+
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private String sshKeyPassphrase;
+
     private String knownHostsEntry;
+    private Integer sessionIdleTtlSeconds;
+    private Integer sessionMaxLifetimeSeconds;
+    private Integer transferSegments;
+    private Long bandwidthLimitBps;
+    private String transportProfile;
+    private String sftpEngine;
+    private String verificationStrategy;
     private boolean active;
     private String connectionStatus;
     private String lastTested;
@@ -78,6 +92,13 @@ public class SiteDTO
         this.emailNotification = site.getEmailNotification();
         this.sshKey = site.getSshKey();
         this.knownHostsEntry = site.getKnownHostsEntry();
+        this.sessionIdleTtlSeconds = site.getSessionIdleTtlSeconds();
+        this.sessionMaxLifetimeSeconds = site.getSessionMaxLifetimeSeconds();
+        this.transferSegments = site.getTransferSegments();
+        this.bandwidthLimitBps = site.getBandwidthLimitBps();
+        this.transportProfile = site.getTransportProfile() != null ? site.getTransportProfile().name() : null;
+        this.sftpEngine = site.getSftpEngine() != null ? site.getSftpEngine().name() : null;
+        this.verificationStrategy = site.getVerificationStrategy() != null ? site.getVerificationStrategy().name() : null;
 
         // REMOVED: this.active = site.isActive(); - method doesn't exist
         this.active = true; // Default value
@@ -104,6 +125,25 @@ public class SiteDTO
         site.setEmailNotification( this.emailNotification );
         site.setSshKey( this.sshKey );
         site.setKnownHostsEntry( this.knownHostsEntry );
+        site.setSessionIdleTtlSeconds( this.sessionIdleTtlSeconds );
+        site.setSessionMaxLifetimeSeconds( this.sessionMaxLifetimeSeconds );
+        site.setTransferSegments( this.transferSegments );
+        site.setBandwidthLimitBps( this.bandwidthLimitBps );
+        TransportProfile profile = TransportProfile.parse( this.transportProfile );
+        if ( profile != null )
+        {
+            site.setTransportProfile( profile );
+        }
+        SftpEngine engine = SftpEngine.parse( this.sftpEngine );
+        if ( engine != null )
+        {
+            site.setSftpEngine( engine );
+        }
+        VerificationStrategy verification = VerificationStrategy.parse( this.verificationStrategy );
+        if ( verification != null )
+        {
+            site.setVerificationStrategy( verification );
+        }
 
         // REMOVED: site.setActive(this.active); - method doesn't exist
 
@@ -222,6 +262,86 @@ public class SiteDTO
         this.knownHostsEntry = knownHostsEntry;
     }
 
+    public Integer getSessionIdleTtlSeconds()
+    {
+        return sessionIdleTtlSeconds;
+    }
+
+    public void setSessionIdleTtlSeconds( Integer sessionIdleTtlSeconds )
+    {
+        this.sessionIdleTtlSeconds = sessionIdleTtlSeconds;
+    }
+
+    public Integer getTransferSegments()
+    {
+        return transferSegments;
+    }
+
+    public void setTransferSegments( Integer transferSegments )
+    {
+        this.transferSegments = transferSegments;
+    }
+
+    public Long getBandwidthLimitBps()
+    {
+        return bandwidthLimitBps;
+    }
+
+    public void setBandwidthLimitBps( Long bandwidthLimitBps )
+    {
+        this.bandwidthLimitBps = bandwidthLimitBps;
+    }
+
+    public String getTransportProfile()
+    {
+        return transportProfile;
+    }
+
+    public void setTransportProfile( String transportProfile )
+    {
+        this.transportProfile = transportProfile;
+    }
+
+    public String getSftpEngine()
+    {
+        return sftpEngine;
+    }
+
+    public void setSftpEngine( String sftpEngine )
+    {
+        this.sftpEngine = sftpEngine;
+    }
+
+    public String getVerificationStrategy()
+    {
+        return verificationStrategy;
+    }
+
+    public void setVerificationStrategy( String verificationStrategy )
+    {
+        this.verificationStrategy = verificationStrategy;
+    }
+
+    public String getSshKeyPassphrase()
+    {
+        return sshKeyPassphrase;
+    }
+
+    public void setSshKeyPassphrase( String sshKeyPassphrase )
+    {
+        this.sshKeyPassphrase = sshKeyPassphrase;
+    }
+
+    public Integer getSessionMaxLifetimeSeconds()
+    {
+        return sessionMaxLifetimeSeconds;
+    }
+
+    public void setSessionMaxLifetimeSeconds( Integer sessionMaxLifetimeSeconds )
+    {
+        this.sessionMaxLifetimeSeconds = sessionMaxLifetimeSeconds;
+    }
+
     public boolean isActive()
     {
         return active;
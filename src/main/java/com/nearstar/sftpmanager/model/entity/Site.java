@@ -37,7 +37,10 @@ package com.nearstar.sftpmanager.model.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.nearstar.sftpmanager.model.enums.SftpEngine;
+import com.nearstar.sftpmanager.model.enums.VerificationStrategy;
 import com.nearstar.sftpmanager.model.enums.Status;
+import com.nearstar.sftpmanager.model.enums.TransportProfile;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -91,6 +94,11 @@ public class Site
     @Lob
     private String sshKey;
 
+    // Passphrase for sshKey, encrypted like the password (null = unencrypted key)
+    @Column(name = "ssh_key_passphrase", columnDefinition = "TEXT")
+    @JsonIgnore
+    private String encryptedKeyPassphrase;
+
     @Column(name = "known_hosts_entry")
     @Lob
     private String knownHostsEntry;
@@ -99,6 +107,37 @@ public class Site
     @Column(name = "connection_status")
     private ConnectionStatus connectionStatus = ConnectionStatus.UNKNOWN;
 
+    // Cipher/KEX/compression and SFTP pipelining settings for this site
+    @Enumerated(EnumType.STRING)
+    @Column(name = "transport_profile")
+    private TransportProfile transportProfile = TransportProfile.BALANCED;
+
+    // SFTP client implementation used for this site's file operations
+    @Enumerated(EnumType.STRING)
+    @Column(name = "sftp_engine")
+    private SftpEngine sftpEngine = SftpEngine.JSCH;
+
+    // SSH session maintenance overrides (null = application default)
+    @Column(name = "session_idle_ttl_seconds")
+    private Integer sessionIdleTtlSeconds;
+
+    @Column(name = "session_max_lifetime_seconds")
+    private Integer sessionMaxLifetimeSeconds;
+
+    // Parallel segments for large transfers (null = application default)
+    @Column(name = "transfer_segments")
+    private Integer transferSegments;
+
+    // Bandwidth cap in bytes per second (null = application default, 0 = unlimited);
+    // updates that leave it out keep it, a negative value clears it
+    @Column(name = "bandwidth_limit_bps")
+    private Long bandwidthLimitBps;
+
+    // Default check applied after uploads and transfer jobs
+    @Enumerated(EnumType.STRING)
+    @Column(name = "verification_strategy")
+    private VerificationStrategy verificationStrategy = VerificationStrategy.SIZE;
+
     @OneToMany(mappedBy = "site", cascade = CascadeType.ALL)
     @JsonIgnore  // Prevent circular reference in JSON
     private Set<ScheduledTask> scheduledTasks;
@@ -0,0 +1,148 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.model.entity;
+
+import com.nearstar.sftpmanager.model.enums.VerificationStrategy;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A queued file transfer run in the background by the transfer engine. Data is
+ * written to a temporary file next to the destination, and bytesTransferred is the
+ * offset committed so far, from which a retry resumes.
+ */
+@Data
+@Entity
+@Table(name = "transfer_jobs")
+public class TransferJob
+{
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "direction", nullable = false, length = 20)
+    private Direction direction;
+
+    // Remote end of a download or upload, or the source of a relay
+    @ManyToOne
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    // Destination of a relay
+    @ManyToOne
+    @JoinColumn(name = "target_site_id")
+    private Site targetSite;
+
+    @Column(name = "source_path", nullable = false, length = 1000)
+    private String sourcePath;
+
+    @Column(name = "destination_path", nullable = false, length = 1000)
+    private String destinationPath;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    // Source size when the current attempt started, -1 until known
+    @Column(name = "file_size")
+    private long fileSize = -1;
+
+    @Column(name = "bytes_transferred")
+    private long bytesTransferred;
+
+    // Higher runs first
+    @Column(name = "priority")
+    private int priority;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20)
+    private JobStatus status = JobStatus.QUEUED;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "max_attempts")
+    private int maxAttempts;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "verification")
+    private VerificationStrategy verification = VerificationStrategy.SIZE;
+
+    @Column(name = "create_directories")
+    private boolean createDirectories;
+
+    // Digests of the delivered file as "algorithm:hex" pairs, e.g. "md5:...,crc32c:..."
+    @Column(name = "checksums", length = 500)
+    private String checksums;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public enum Direction
+    {
+        // Site to the server's transfer directory
+        DOWNLOAD,
+        // Server's transfer directory to a site
+        UPLOAD,
+        // Site to site
+        RELAY
+    }
+
+    public enum JobStatus
+    {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+}
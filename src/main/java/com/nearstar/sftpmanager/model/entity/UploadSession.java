@@ -0,0 +1,104 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.model.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Server-side state of a resumable chunked upload. Chunks are written into a
+ * temporary file next to the target, which is renamed into place on completion.
+ */
+@Data
+@Entity
+@Table(name = "upload_sessions")
+public class UploadSession
+{
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Opaque id handed to the client
+    @Column(name = "upload_id", nullable = false, unique = true, length = 36)
+    private String uploadId;
+
+    @ManyToOne
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "target_path", nullable = false, length = 1000)
+    private String targetPath;
+
+    @Column(name = "temp_path", nullable = false, length = 1000)
+    private String tempPath;
+
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    // Byte ranges written so far, e.g. "0-1048575,2097152-3145727"
+    @Column(name = "received_ranges", columnDefinition = "TEXT")
+    private String receivedRanges = "";
+
+    // Length of the contiguous prefix received from offset 0
+    @Column(name = "bytes_received")
+    private long bytesReceived;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20)
+    private UploadStatus status = UploadStatus.IN_PROGRESS;
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public enum UploadStatus
+    {
+        IN_PROGRESS, COMPLETED, CANCELLED, EXPIRED
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.model.enums;
+
+/**
+ * SFTP client implementation used for a site's file operations
+ */
+public enum SftpEngine
+{
+    JSCH( "JSch", "Pooled JSch channels, one request at a time per transfer" ),
+    PIPELINED( "Pipelined", "Apache MINA SSHD client keeping many read/write requests in flight, for long-haul links" );
+
+    private final String displayName;
+    private final String description;
+
+    SftpEngine( String displayName, String description )
+    {
+        this.displayName = displayName;
+        this.description = description;
+    }
+
+    public String getDisplayName()
+    {
+        return displayName;
+    }
+
+    public String getDescription()
+    {
+        return description;
+    }
+
+    /**
+     * Engine for a stored value, defaulting to {@link #JSCH}
+     */
+    public static SftpEngine of( SftpEngine engine )
+    {
+        return engine != null ? engine : JSCH;
+    }
+
+    /**
+     * Parse a request value, ignoring case; blank means not given (returned as null)
+     */
+    public static SftpEngine parse( String value )
+    {
+        if ( value == null || value.isBlank() )
+        {
+            return null;
+        }
+        try
+        {
+            return valueOf( value.trim().toUpperCase() );
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException( "Unknown SFTP engine: " + value );
+        }
+    }
+}
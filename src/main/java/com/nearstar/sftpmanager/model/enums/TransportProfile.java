@@ -0,0 +1,131 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.model.enums;
+
+import java.util.Properties;
+
+/**
+ * SSH transport settings a site can be tuned with. Algorithm lists are limited to
+ * what the bundled JSch supports; anything a server doesn't offer falls back to
+ * the next entry in the list.
+ */
+public enum TransportProfile
+{
+    BALANCED( "Balanced", "JSch defaults", 16, new String[0] ),
+    FAST_CIPHER( "Fast cipher", "AES-128-CTR with ECDH key exchange", 32, new String[]{
+            "cipher.s2c", "aes128-ctr,aes192-ctr,aes256-ctr,aes128-cbc",
+            "cipher.c2s", "aes128-ctr,aes192-ctr,aes256-ctr,aes128-cbc",
+            "mac.s2c", "hmac-sha2-256,hmac-sha1",
+            "mac.c2s", "hmac-sha2-256,hmac-sha1",
+            "kex", "ecdh-sha2-nistp256,ecdh-sha2-nistp384,diffie-hellman-group14-sha1,diffie-hellman-group-exchange-sha256" } ),
+    COMPRESSED( "Compressed", "zlib compression for compressible data such as CSV feeds", 32, new String[]{
+            "compression.s2c", "zlib@openssh.com,zlib,none",
+            "compression.c2s", "zlib@openssh.com,zlib,none",
+            "compression_level", "3" } ),
+    HIGH_LATENCY( "High latency", "Fast cipher with many outstanding SFTP requests for long-haul links", 128, new String[]{
+            "cipher.s2c", "aes128-ctr,aes192-ctr,aes256-ctr,aes128-cbc",
+            "cipher.c2s", "aes128-ctr,aes192-ctr,aes256-ctr,aes128-cbc",
+            "kex", "ecdh-sha2-nistp256,ecdh-sha2-nistp384,diffie-hellman-group14-sha1,diffie-hellman-group-exchange-sha256" } );
+
+    private final String displayName;
+    private final String description;
+    private final int bulkRequests;
+    private final Properties sessionConfig = new Properties();
+
+    TransportProfile( String displayName, String description, int bulkRequests, String[] config )
+    {
+        this.displayName = displayName;
+        this.description = description;
+        this.bulkRequests = bulkRequests;
+        for (int i = 0; i < config.length; i += 2)
+        {
+            sessionConfig.put( config[i], config[i + 1] );
+        }
+    }
+
+    public String getDisplayName()
+    {
+        return displayName;
+    }
+
+    public String getDescription()
+    {
+        return description;
+    }
+
+    /**
+     * Outstanding read/write requests per SFTP channel
+     */
+    public int getBulkRequests()
+    {
+        return bulkRequests;
+    }
+
+    /**
+     * JSch session config entries for this profile (shared, do not modify)
+     */
+    public Properties getSessionConfig()
+    {
+        return sessionConfig;
+    }
+
+    /**
+     * Profile for a stored value, defaulting to {@link #BALANCED}
+     */
+    public static TransportProfile of( TransportProfile profile )
+    {
+        return profile != null ? profile : BALANCED;
+    }
+
+    /**
+     * Parse a request value, ignoring case; blank means not given (returned as null)
+     */
+    public static TransportProfile parse( String value )
+    {
+        if ( value == null || value.isBlank() )
+        {
+            return null;
+        }
+        try
+        {
+            return valueOf( value.trim().toUpperCase() );
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new IllegalArgumentException( "Unknown transport profile: " + value );
+        }
+    }
+}
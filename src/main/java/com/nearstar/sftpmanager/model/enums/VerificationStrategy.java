@@ -0,0 +1,120 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.model.enums;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * How a finished upload or transfer is checked against what was sent, from free
+ * to a full second pass over the data
+ */
+public enum VerificationStrategy
+{
+    NONE( "None", "Trust the transfer; no extra round trips" ),
+    SIZE( "Stat size", "Stat the remote file and compare its size" ),
+    REMOTE_CHECKSUM( "Remote checksum", "Server-side MD5 via the check-file or md5-hash extension, re-reading the file when neither is offered" ),
+    REREAD( "Re-read", "Read the remote file back and compare its MD5" );
+
+    private final String displayName;
+    private final String description;
+
+    VerificationStrategy( String displayName, String description )
+    {
+        this.displayName = displayName;
+        this.description = description;
+    }
+
+    public String getDisplayName()
+    {
+        return displayName;
+    }
+
+    public String getDescription()
+    {
+        return description;
+    }
+
+    /**
+     * Whether the sent bytes have to be hashed for this strategy
+     */
+    public boolean needsDigest()
+    {
+        return this == REMOTE_CHECKSUM || this == REREAD;
+    }
+
+    /**
+     * Strategy for a stored value, defaulting to {@link #SIZE}
+     */
+    public static VerificationStrategy of( VerificationStrategy strategy )
+    {
+        return strategy != null ? strategy : SIZE;
+    }
+
+    /**
+     * Parse a request value. Besides the constant names this accepts the legacy
+     * booleans and a few short forms: "true" or blank means the site's default
+     * (returned as null), "false" means {@link #NONE}.
+     */
+    @JsonCreator
+    public static VerificationStrategy parse( String value )
+    {
+        if ( value == null || value.isBlank() )
+        {
+            return null;
+        }
+        switch (value.trim().toLowerCase().replace( '_', '-' ))
+        {
+            case "true":
+            case "default":
+                return null;
+            case "false":
+            case "none":
+                return NONE;
+            case "size":
+            case "stat-size":
+                return SIZE;
+            case "checksum":
+            case "remote-checksum":
+            case "md5":
+                return REMOTE_CHECKSUM;
+            case "reread":
+            case "re-read":
+                return REREAD;
+            default:
+                throw new IllegalArgumentException( "Unknown verification strategy: " + value );
+        }
+    }
+}
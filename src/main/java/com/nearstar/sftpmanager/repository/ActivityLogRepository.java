@@ -98,6 +98,11 @@ public interface ActivityLogRepository extends JpaRepository<ActivityLog, Long>
     @Query("SELECT COUNT(a) FROM ActivityLog a WHERE a.username = :username AND a.type = :type")
     long countByUsernameAndType( @Param("username") String username, @Param("type") ActivityType type );
 
+    // Site names ranked by activity since a date, busiest first
+    @Query("SELECT a.siteName FROM ActivityLog a WHERE a.siteName IS NOT NULL AND a.timestamp > :since " +
+            "GROUP BY a.siteName ORDER BY COUNT(a) DESC")
+    List<String> findMostActiveSiteNames( @Param("since") LocalDateTime since, Pageable pageable );
+
     // Find latest activities (limited)
     @Query("SELECT a FROM ActivityLog a ORDER BY a.timestamp DESC")
     List<ActivityLog> findLatestActivities( Pageable pageable );
@@ -38,9 +38,11 @@ package com.nearstar.sftpmanager.repository;
 import com.nearstar.sftpmanager.model.entity.Site;
 import com.nearstar.sftpmanager.model.enums.Status;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -86,4 +88,23 @@ public interface SiteRepository extends JpaRepository<Site, Long>
 
     // Alternative: Find sites by owner username
     List<Site> findByOwnerUsername( String username );
+
+    // Update only the connection status, without loading or re-saving the site
+    @Modifying
+    @Transactional
+    @Query("UPDATE Site s SET s.connectionStatus = :status WHERE s.id = :id")
+    int updateConnectionStatus( @Param("id") Long id, @Param("status") Site.ConnectionStatus status );
+
+    // Replace a stored password only if it still holds the expected value
+    @Modifying
+    @Transactional
+    @Query("UPDATE Site s SET s.encryptedPassword = :updated WHERE s.id = :id AND s.encryptedPassword = :current")
+    int updateEncryptedPassword( @Param("id") Long id, @Param("current") String current,
+                                 @Param("updated") String updated );
+
+    // Store a learned host key unless the site already has one
+    @Modifying
+    @Transactional
+    @Query("UPDATE Site s SET s.knownHostsEntry = :entry WHERE s.id = :id AND s.knownHostsEntry IS NULL")
+    int updateKnownHostsEntryIfMissing( @Param("id") Long id, @Param("entry") String entry );
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.repository;
+
+import com.nearstar.sftpmanager.model.entity.TransferJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface TransferJobRepository extends JpaRepository<TransferJob, Long>
+{
+    // Queued jobs that may run now, highest priority first
+    List<TransferJob> findByStatusAndNextAttemptAtLessThanEqualOrderByPriorityDescIdAsc(
+            TransferJob.JobStatus status, LocalDateTime now, Pageable page );
+
+    // Same, leaving out jobs that touch a busy site (busy must not be empty)
+    @Query("SELECT j FROM TransferJob j LEFT JOIN j.targetSite t WHERE j.status = :status "
+            + "AND j.nextAttemptAt <= :now AND j.site.id NOT IN :busy AND (t IS NULL OR t.id NOT IN :busy) "
+            + "ORDER BY j.priority DESC, j.id ASC")
+    List<TransferJob> findDueExcludingSites( @Param("status") TransferJob.JobStatus status,
+                                             @Param("now") LocalDateTime now,
+                                             @Param("busy") Collection<Long> busy, Pageable page );
+
+    List<TransferJob> findAllByOrderByIdDesc( Pageable page );
+
+    List<TransferJob> findByStatusOrderByIdDesc( TransferJob.JobStatus status, Pageable page );
+
+    long countByStatus( TransferJob.JobStatus status );
+
+    // Take a queued job for this process; only one caller can win
+    @Modifying
+    @Transactional
+    @Query("UPDATE TransferJob j SET j.status = :running, j.attempts = j.attempts + 1, j.startedAt = :now, "
+            + "j.updatedAt = :now WHERE j.id = :id AND j.status = :queued")
+    int claim( @Param("id") Long id, @Param("queued") TransferJob.JobStatus queued,
+               @Param("running") TransferJob.JobStatus running, @Param("now") LocalDateTime now );
+
+    // Commit progress of a running job
+    @Modifying
+    @Transactional
+    @Query("UPDATE TransferJob j SET j.bytesTransferred = :bytes, j.fileSize = :fileSize, j.updatedAt = :now "
+            + "WHERE j.id = :id AND j.status = :running")
+    int updateProgress( @Param("id") Long id, @Param("running") TransferJob.JobStatus running,
+                        @Param("bytes") long bytes, @Param("fileSize") long fileSize, @Param("now") LocalDateTime now );
+
+    // End an attempt of a running job: completed, failed, or queued again for a retry
+    @Modifying
+    @Transactional
+    @Query("UPDATE TransferJob j SET j.status = :updated, j.bytesTransferred = :bytes, j.errorMessage = :error, "
+            + "j.checksums = :checksums, j.nextAttemptAt = :nextAttemptAt, j.completedAt = :completedAt, "
+            + "j.updatedAt = :now WHERE j.id = :id AND j.status = :running")
+    int finish( @Param("id") Long id, @Param("running") TransferJob.JobStatus running,
+                @Param("updated") TransferJob.JobStatus updated, @Param("bytes") long bytes,
+                @Param("error") String error, @Param("checksums") String checksums,
+                @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                @Param("completedAt") LocalDateTime completedAt, @Param("now") LocalDateTime now );
+
+    // Move a job to a new status only if it is in one of the expected ones
+    @Modifying
+    @Transactional
+    @Query("UPDATE TransferJob j SET j.status = :updated, j.updatedAt = :now, j.completedAt = :completedAt, "
+            + "j.nextAttemptAt = :now, j.attempts = :attempts WHERE j.id = :id AND j.status IN :current")
+    int updateStatus( @Param("id") Long id, @Param("current") Collection<TransferJob.JobStatus> current,
+                      @Param("updated") TransferJob.JobStatus updated, @Param("attempts") int attempts,
+                      @Param("completedAt") LocalDateTime completedAt, @Param("now") LocalDateTime now );
+
+    // Jobs a previous run of the application left running
+    @Modifying
+    @Transactional
+    @Query("UPDATE TransferJob j SET j.status = :queued, j.nextAttemptAt = :now, j.updatedAt = :now "
+            + "WHERE j.status = :running")
+    int requeueRunning( @Param("running") TransferJob.JobStatus running, @Param("queued") TransferJob.JobStatus queued,
+                        @Param("now") LocalDateTime now );
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TransferJob j WHERE j.status IN :statuses AND j.completedAt < :cutoff")
+    int deleteFinishedBefore( @Param("statuses") Collection<TransferJob.JobStatus> statuses,
+                              @Param("cutoff") LocalDateTime cutoff );
+}
@@ -0,0 +1,74 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.repository;
+
+import com.nearstar.sftpmanager.model.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, Long>
+{
+    Optional<UploadSession> findByUploadId( String uploadId );
+
+    // Uploads left untouched since the cutoff
+    List<UploadSession> findByStatusAndUpdatedAtBefore( UploadSession.UploadStatus status, LocalDateTime cutoff );
+
+    // Record received ranges only if nobody else updated them since they were read
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession u SET u.receivedRanges = :updated, u.bytesReceived = :bytesReceived, u.updatedAt = :now "
+            + "WHERE u.id = :id AND u.receivedRanges = :current AND u.status = :status")
+    int updateReceivedRanges( @Param("id") Long id, @Param("current") String current, @Param("updated") String updated,
+                              @Param("bytesReceived") long bytesReceived, @Param("now") LocalDateTime now,
+                              @Param("status") UploadSession.UploadStatus status );
+
+    // Move an upload to a new status only if it is still in the expected one
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession u SET u.status = :updated, u.updatedAt = :now, u.completedAt = :now "
+            + "WHERE u.id = :id AND u.status = :current")
+    int updateStatus( @Param("id") Long id, @Param("current") UploadSession.UploadStatus current,
+                      @Param("updated") UploadSession.UploadStatus updated, @Param("now") LocalDateTime now );
+}
@@ -0,0 +1,736 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.service;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import com.nearstar.sftpmanager.util.BandwidthShaper;
+import com.nearstar.sftpmanager.util.SftpClient;
+import com.nearstar.sftpmanager.util.SftpClientProvider;
+import com.nearstar.sftpmanager.util.TransferBufferPool;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a remote directory tree as a zip or tar archive without staging anything
+ * locally. A few prefetch workers, each on its own channel, list the tree and read
+ * small files ahead within a memory budget; the caller's thread writes entries in
+ * order and streams large files itself. There are no more workers than the site has
+ * channels free, and ones that cannot get a channel leave the work to the rest.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ArchiveDownloadService
+{
+    private static final long POLL_MS = 200;
+
+    // Extensions whose content is already compressed and is stored as-is in AUTO mode
+    private static final Set<String> COMPRESSED = Set.of(
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "lz4", "jar", "war",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "mp3", "mp4", "m4a", "mov", "mkv", "avi",
+            "pdf", "docx", "xlsx", "pptx", "odt", "ods" );
+
+    private final SiteRepository siteRepository;
+    private final FileManagerService fileManagerService;
+    private final SftpClientProvider clientProvider;
+    private final TransferBufferPool bufferPool;
+    private final BandwidthShaper bandwidthShaper;
+
+    @Value("${sftp.archive.channels:4}")
+    private int channels;
+
+    @Value("${sftp.archive.prefetch.file.bytes:4194304}")
+    private int prefetchFileBytes;
+
+    @Value("${sftp.archive.prefetch.max.bytes:33554432}")
+    private int prefetchMaxBytes;
+
+    @Value("${sftp.archive.max.entries:100000}")
+    private int maxEntries;
+
+    @Value("${sftp.archive.deflate.level:1}")
+    private int deflateLevel;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool( new ThreadFactory()
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "sftp-archive-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Archive layout of the download
+     */
+    public enum Format
+    {
+        ZIP( "zip", "application/zip" ),
+        TAR( "tar", "application/x-tar" ),
+        TAR_GZ( "tar.gz", "application/gzip" );
+
+        private final String extension;
+        private final String contentType;
+
+        Format( String extension, String contentType )
+        {
+            this.extension = extension;
+            this.contentType = contentType;
+        }
+
+        public String getExtension()
+        {
+            return extension;
+        }
+
+        public String getContentType()
+        {
+            return contentType;
+        }
+
+        public static Format of( String value )
+        {
+            if ( value == null || value.isBlank() )
+            {
+                return ZIP;
+            }
+            switch ( value.trim().toLowerCase( Locale.ROOT ) )
+            {
+                case "zip":
+                    return ZIP;
+                case "tar":
+                    return TAR;
+                case "tar.gz":
+                case "tgz":
+                    return TAR_GZ;
+                default:
+                    throw new IllegalArgumentException( "Unsupported archive format: " + value );
+            }
+        }
+    }
+
+    /**
+     * How entries are compressed. AUTO stores files that are already compressed and
+     * deflates the rest; for tar.gz, where the whole stream is compressed, it deflates.
+     */
+    public enum Compression
+    {
+        AUTO, STORE, DEFLATE;
+
+        public static Compression of( String value )
+        {
+            if ( value == null || value.isBlank() )
+            {
+                return AUTO;
+            }
+            return valueOf( value.trim().toUpperCase( Locale.ROOT ) );
+        }
+    }
+
+    /**
+     * Receives the archive; begin is called once the directory has been found, so
+     * errors before that can still be reported as a normal response
+     */
+    public interface ArchiveSink
+    {
+        OutputStream begin( String fileName, Format format ) throws IOException;
+    }
+
+    /**
+     * Write the directory at path as an archive. Returns the number of file entries written.
+     *
+     * @throws IllegalArgumentException if the path is not a directory
+     */
+    public int download( Long siteId, String path, Format format, Compression compression,
+                         ArchiveSink sink ) throws Exception
+    {
+        Site site = siteRepository.findById( siteId )
+                .orElseThrow( () -> new RuntimeException( "Site not found" ) );
+        String root = path.length() > 1 && path.endsWith( "/" ) ? path.substring( 0, path.length() - 1 ) : path;
+        String baseName = root.substring( root.lastIndexOf( '/' ) + 1 );
+        if ( baseName.isEmpty() )
+        {
+            baseName = site.getSiteName().replaceAll( "[^A-Za-z0-9._-]", "_" );
+        }
+
+        long start = System.currentTimeMillis();
+        try ( SftpClient client = fileManagerService.openClient( site );
+              BandwidthShaper.Lease lease = bandwidthShaper.lease( site ) )
+        {
+            SftpClient.RemoteFile dir = client.stat( root );
+            if ( !dir.isDirectory() )
+            {
+                throw new IllegalArgumentException( "Not a directory: " + path );
+            }
+
+            Prefetch prefetch = new Prefetch( site, root, baseName );
+            try
+            {
+                prefetch.start();
+                OutputStream out = new BufferedOutputStream(
+                        lease.wrap( sink.begin( baseName + "." + format.getExtension(), format ) ), 65536 );
+                ArchiveWriter writer = open( out, format, compression );
+                int files = 0;
+                long bytes = 0;
+                Item item;
+                while ((item = prefetch.next()) != null)
+                {
+                    if ( item.file.isDirectory() )
+                    {
+                        writer.directory( item.entryName, item.file );
+                        continue;
+                    }
+                    long written = item.content != null
+                            ? writePrefetched( writer, prefetch, item )
+                            : writeDirect( writer, client, item );
+                    if ( written >= 0 )
+                    {
+                        files++;
+                        bytes += written;
+                    }
+                }
+                writer.finish();
+                out.flush();
+
+                log.info( "Archived {} on site {}: {} files, {} bytes in {} ms", root, site.getSiteName(), files,
+                        bytes, System.currentTimeMillis() - start );
+                return files;
+            }
+            finally
+            {
+                prefetch.close();
+            }
+        }
+    }
+
+    private long writePrefetched( ArchiveWriter writer, Prefetch prefetch, Item item ) throws IOException
+    {
+        try
+        {
+            byte[] data = prefetch.await( item );
+            writer.file( item.entryName, item.file, data.length, new ByteArrayInputStream( data ) );
+            return data.length;
+        }
+        catch (SftpClient.StatusException e)
+        {
+            log.warn( "Skipping {} in archive: {}", item.remotePath, e.getMessage() );
+            return -1;
+        }
+        finally
+        {
+            prefetch.release( item );
+        }
+    }
+
+    private long writeDirect( ArchiveWriter writer, SftpClient client, Item item ) throws IOException
+    {
+        InputStream in;
+        try
+        {
+            in = client.openRead( item.remotePath, 0 );
+        }
+        catch (SftpClient.StatusException e)
+        {
+            log.warn( "Skipping {} in archive: {}", item.remotePath, e.getMessage() );
+            return -1;
+        }
+        try ( in )
+        {
+            return writer.file( item.entryName, item.file, item.file.getSize(), in );
+        }
+    }
+
+    private ArchiveWriter open( OutputStream out, Format format, Compression compression ) throws IOException
+    {
+        if ( format == Format.ZIP )
+        {
+            return new ZipWriter( out, compression );
+        }
+        if ( format == Format.TAR_GZ )
+        {
+            int level = compression == Compression.STORE ? Deflater.NO_COMPRESSION : deflateLevel;
+            return new TarWriter( new GZIPOutputStream( out, 65536 )
+            {
+                {
+                    def.setLevel( level );
+                }
+            } );
+        }
+        return new TarWriter( out );
+    }
+
+    private static boolean isCompressed( String name )
+    {
+        int dot = name.lastIndexOf( '.' );
+        return dot >= 0 && COMPRESSED.contains( name.substring( dot + 1 ).toLowerCase( Locale.ROOT ) );
+    }
+
+    /**
+     * One directory or file of the tree; content is set for files read ahead by a worker
+     */
+    private static class Item
+    {
+        private final String remotePath;
+        private final String entryName;
+        private final SftpClient.RemoteFile file;
+        private CompletableFuture<byte[]> content;
+        private int reserved;
+
+        Item( String remotePath, String entryName, SftpClient.RemoteFile file )
+        {
+            this.remotePath = remotePath;
+            this.entryName = entryName;
+            this.file = file;
+        }
+    }
+
+    /**
+     * Walks the tree and reads small files ahead. Items are claimed strictly in order,
+     * and budget is reserved as they are claimed, so an earlier item never waits for
+     * memory held by a later one.
+     */
+    private class Prefetch
+    {
+        private final Site site;
+        private final Deque<String[]> directories = new ArrayDeque<>();
+        private final Deque<Item> listed = new ArrayDeque<>();
+        private final BlockingQueue<Item> ordered = new LinkedBlockingQueue<>();
+        private final Semaphore budget = new Semaphore( prefetchMaxBytes );
+        private final CompletableFuture<Void> failed = new CompletableFuture<>();
+        private final CountDownLatch stoppedWorkers;
+        private final int workerCount;
+        private final AtomicInteger unopened = new AtomicInteger();
+        private final List<Future<?>> workers = new ArrayList<>();
+        private final Item end = new Item( null, null, null );
+        private int entries;
+        private boolean exhausted;
+        private volatile boolean stopped;
+
+        Prefetch( Site site, String root, String baseName )
+        {
+            this.site = site;
+            this.directories.add( new String[]{ root, baseName } );
+            // Workers also drive the walk, so there is always at least one
+            this.workerCount = Math.max( 1, Math.min( channels, clientProvider.freeChannels( site ) ) );
+            this.stoppedWorkers = new CountDownLatch( workerCount );
+        }
+
+        void start()
+        {
+            for (int i = 0; i < workerCount; i++)
+            {
+                workers.add( executor.submit( () ->
+                {
+                    try
+                    {
+                        SftpClient client;
+                        try
+                        {
+                            client = clientProvider.openChannel( site );
+                        }
+                        catch (Throwable e)
+                        {
+                            notStarted( e );
+                            return null;
+                        }
+
+                        try ( client )
+                        {
+                            Item item;
+                            while ((item = claim( client )) != null)
+                            {
+                                fetch( client, item );
+                            }
+                        }
+                        catch (Throwable e)
+                        {
+                            failed.completeExceptionally( e );
+                        }
+                    }
+                    finally
+                    {
+                        stoppedWorkers.countDown();
+                    }
+                    return null;
+                } ) );
+            }
+        }
+
+        /**
+         * A worker without a channel leaves the prefetching to the others; with none left the download fails
+         */
+        private void notStarted( Throwable e )
+        {
+            if ( unopened.incrementAndGet() == workerCount )
+            {
+                failed.completeExceptionally( e );
+                return;
+            }
+            log.warn( "Archive of site {} continues with fewer prefetch workers: {}", site.getSiteName(), e.getMessage() );
+        }
+
+        /**
+         * Next item in archive order, or null when the tree is done
+         */
+        Item next() throws IOException
+        {
+            try
+            {
+                while (true)
+                {
+                    checkFailed();
+                    Item item = ordered.poll( POLL_MS, TimeUnit.MILLISECONDS );
+                    if ( item == end )
+                    {
+                        return null;
+                    }
+                    if ( item != null )
+                    {
+                        return item;
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Archive download interrupted" );
+            }
+        }
+
+        byte[] await( Item item ) throws IOException
+        {
+            try
+            {
+                CompletableFuture.anyOf( item.content, failed ).get();
+                if ( item.content.isDone() )
+                {
+                    return item.content.get();
+                }
+                checkFailed();
+                throw new IllegalStateException( "Prefetch stopped" );
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Archive download interrupted" );
+            }
+            catch (ExecutionException e)
+            {
+                throw failure( e.getCause() );
+            }
+        }
+
+        void release( Item item )
+        {
+            budget.release( item.reserved );
+            item.reserved = 0;
+        }
+
+        void close()
+        {
+            // Interrupts alone are not enough: a read may swallow one before the next claim
+            stopped = true;
+            for (Future<?> worker : workers)
+            {
+                worker.cancel( true );
+            }
+            try
+            {
+                if ( !stoppedWorkers.await( 30, TimeUnit.SECONDS ) )
+                {
+                    log.warn( "Archive prefetch workers did not stop in time" );
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Hand the next small file to a worker, queueing everything before it for the writer.
+         * Directories are listed on the claiming worker's channel.
+         */
+        private synchronized Item claim( SftpClient client ) throws Exception
+        {
+            while (!exhausted && !stopped)
+            {
+                Item item = walk( client );
+                if ( item == null )
+                {
+                    exhausted = true;
+                    ordered.add( end );
+                    break;
+                }
+                if ( item.file.isDirectory() || item.file.getSize() > prefetchFileBytes )
+                {
+                    ordered.add( item );
+                    continue;
+                }
+
+                item.reserved = (int) Math.max( 1, Math.min( item.file.getSize(), prefetchMaxBytes ) );
+                while (!budget.tryAcquire( item.reserved, POLL_MS, TimeUnit.MILLISECONDS ))
+                {
+                    if ( stopped )
+                    {
+                        return null;
+                    }
+                }
+                item.content = new CompletableFuture<>();
+                ordered.add( item );
+                return item;
+            }
+            return null;
+        }
+
+        private void fetch( SftpClient client, Item item )
+        {
+            try ( InputStream in = client.openRead( item.remotePath, 0 ) )
+            {
+                // Listed size is what the archive promises; a file that grew since is cut there
+                item.content.complete( in.readNBytes( (int) item.file.getSize() ) );
+            }
+            catch (Throwable e)
+            {
+                item.content.completeExceptionally( e );
+                if ( !(e instanceof SftpClient.StatusException) )
+                {
+                    failed.completeExceptionally( e );
+                }
+            }
+        }
+
+        private Item walk( SftpClient client ) throws Exception
+        {
+            while (listed.isEmpty())
+            {
+                String[] directory = directories.poll();
+                if ( directory == null )
+                {
+                    return null;
+                }
+
+                List<SftpClient.RemoteFile> children;
+                try
+                {
+                    children = client.list( directory[0] );
+                }
+                catch (SftpClient.StatusException e)
+                {
+                    log.warn( "Skipping unreadable directory {} in archive: {}", directory[0], e.getMessage() );
+                    continue;
+                }
+                children.sort( Comparator.comparing( SftpClient.RemoteFile::getName ) );
+                for (SftpClient.RemoteFile child : children)
+                {
+                    if ( ++entries > maxEntries )
+                    {
+                        throw new IOException( "Directory has more than " + maxEntries + " entries" );
+                    }
+                    String remotePath = directory[0].endsWith( "/" ) ? directory[0] + child.getName()
+                            : directory[0] + "/" + child.getName();
+                    String entryName = directory[1] + "/" + child.getName();
+                    listed.add( new Item( remotePath, entryName, child ) );
+                    if ( child.isDirectory() )
+                    {
+                        directories.add( new String[]{ remotePath, entryName } );
+                    }
+                }
+            }
+            return listed.poll();
+        }
+
+        private void checkFailed() throws IOException
+        {
+            if ( failed.isCompletedExceptionally() )
+            {
+                try
+                {
+                    failed.join();
+                }
+                catch (CompletionException e)
+                {
+                    throw failure( e.getCause() );
+                }
+            }
+        }
+
+        private IOException failure( Throwable e )
+        {
+            if ( e instanceof IOException io )
+            {
+                return io;
+            }
+            return new IOException( "Archive download failed: " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Format-specific entry writing
+     */
+    private interface ArchiveWriter
+    {
+        void directory( String name, SftpClient.RemoteFile dir ) throws IOException;
+
+        /**
+         * Write a file entry of the given size from in; returns the bytes written
+         */
+        long file( String name, SftpClient.RemoteFile file, long size, InputStream in ) throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    private class ZipWriter implements ArchiveWriter
+    {
+        private final ZipOutputStream zip;
+        private final Compression compression;
+
+        ZipWriter( OutputStream out, Compression compression )
+        {
+            this.zip = new ZipOutputStream( out );
+            this.compression = compression;
+        }
+
+        @Override
+        public void directory( String name, SftpClient.RemoteFile dir ) throws IOException
+        {
+            ZipEntry entry = new ZipEntry( name + "/" );
+            entry.setTime( dir.getModifiedSeconds() * 1000 );
+            zip.putNextEntry( entry );
+            zip.closeEntry();
+        }
+
+        @Override
+        public long file( String name, SftpClient.RemoteFile file, long size, InputStream in ) throws IOException
+        {
+            boolean store = compression == Compression.STORE
+                    || (compression == Compression.AUTO && isCompressed( name ));
+            zip.setLevel( store ? Deflater.NO_COMPRESSION : deflateLevel );
+
+            ZipEntry entry = new ZipEntry( name );
+            entry.setTime( file.getModifiedSeconds() * 1000 );
+            zip.putNextEntry( entry );
+            long copied = bufferPool.copy( in, zip, size );
+            zip.closeEntry();
+            return copied;
+        }
+
+        @Override
+        public void finish() throws IOException
+        {
+            zip.finish();
+        }
+    }
+
+    private class TarWriter implements ArchiveWriter
+    {
+        private final OutputStream out;
+        private final TarArchiveOutputStream tar;
+
+        TarWriter( OutputStream out )
+        {
+            this.out = out;
+            this.tar = new TarArchiveOutputStream( out );
+            tar.setLongFileMode( TarArchiveOutputStream.LONGFILE_POSIX );
+            tar.setBigNumberMode( TarArchiveOutputStream.BIGNUMBER_POSIX );
+            tar.setAddPaxHeadersForNonAsciiNames( true );
+        }
+
+        @Override
+        public void directory( String name, SftpClient.RemoteFile dir ) throws IOException
+        {
+            TarArchiveEntry entry = new TarArchiveEntry( name + "/" );
+            entry.setModTime( dir.getModifiedSeconds() * 1000 );
+            entry.setMode( 040000 | (dir.getPermissions() > 0 ? dir.getPermissions() : 0755) );
+            tar.putArchiveEntry( entry );
+            tar.closeArchiveEntry();
+        }
+
+        @Override
+        public long file( String name, SftpClient.RemoteFile file, long size, InputStream in ) throws IOException
+        {
+            TarArchiveEntry entry = new TarArchiveEntry( name );
+            entry.setSize( size );
+            entry.setModTime( file.getModifiedSeconds() * 1000 );
+            entry.setMode( 0100000 | (file.getPermissions() > 0 ? file.getPermissions() : 0644) );
+            tar.putArchiveEntry( entry );
+            long copied = bufferPool.copy( in, tar, size );
+            if ( copied < size )
+            {
+                // The header already promised size bytes
+                throw new EOFException( name + " shrank while being archived" );
+            }
+            tar.closeArchiveEntry();
+            return copied;
+        }
+
+        @Override
+        public void finish() throws IOException
+        {
+            // The tar stream pads its last block but does not flush or finish what it wraps
+            tar.finish();
+            if ( out instanceof GZIPOutputStream gzip )
+            {
+                gzip.finish();
+            }
+        }
+    }
+}
@@ -0,0 +1,596 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.service;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import com.nearstar.sftpmanager.util.BandwidthShaper;
+import com.nearstar.sftpmanager.util.MultipartStreamReader;
+import com.nearstar.sftpmanager.util.SftpClient;
+import com.nearstar.sftpmanager.util.SftpClientProvider;
+import com.nearstar.sftpmanager.util.TransferBufferPool;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Uploads many files from one request body: a multipart form with several files, or
+ * a tar (optionally gzipped) or zip archive whose directory structure is recreated.
+ * The target directory is checked once, small files are buffered and written in
+ * parallel over a few dedicated channels while the body is still being read, and
+ * larger files are streamed in place. Each file gets its own entry in the result,
+ * so one failure does not abort the rest of the batch.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BatchUploadService
+{
+    private final SiteRepository siteRepository;
+    private final FileManagerService fileManagerService;
+    private final SftpClientProvider clientProvider;
+    private final TransferBufferPool bufferPool;
+    private final BandwidthShaper bandwidthShaper;
+
+    @Value("${sftp.batch.channels:4}")
+    private int channels;
+
+    @Value("${sftp.batch.small.file.bytes:1048576}")
+    private int smallFileBytes;
+
+    @Value("${sftp.batch.max.files:10000}")
+    private int maxFiles;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool( new ThreadFactory()
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "sftp-batch-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Whether a request body of this content type can be uploaded as a batch
+     */
+    public static boolean isSupported( String contentType )
+    {
+        return formatOf( contentType ) != null;
+    }
+
+    /**
+     * Upload every file in the body into targetPath. Returns a manifest with one
+     * result per file plus totals; "error" is set if the body itself was unreadable.
+     */
+    public Map<String, Object> upload( Long siteId, String targetPath, InputStream body,
+                                       String contentType ) throws Exception
+    {
+        Format format = formatOf( contentType );
+        if ( format == null )
+        {
+            throw new IllegalArgumentException( "Unsupported batch content type: " + contentType );
+        }
+        Site site = siteRepository.findById( siteId )
+                .orElseThrow( () -> new RuntimeException( "Site not found" ) );
+        String root = targetPath.endsWith( "/" ) ? targetPath.substring( 0, Math.max( 1, targetPath.length() - 1 ) ) : targetPath;
+
+        long start = System.currentTimeMillis();
+        List<Future<Map<String, Object>>> results = new ArrayList<>();
+        String error = null;
+        List<Map<String, Object>> files = new ArrayList<>();
+        int uploaded = 0;
+        long bytes = 0;
+        Batch batch = new Batch( site );
+        byte[] buffer = bufferPool.acquire();
+
+        try ( SftpClient client = fileManagerService.openClient( site );
+              BandwidthShaper.Lease lease = bandwidthShaper.lease( site ) )
+        {
+            try
+            {
+                if ( !client.stat( root ).isDirectory() )
+                {
+                    throw new IllegalArgumentException( "Target path is not a directory: " + targetPath );
+                }
+            }
+            catch (SftpClient.StatusException e)
+            {
+                if ( e.isNoSuchFile() )
+                {
+                    throw new IllegalArgumentException( "Target directory does not exist: " + targetPath );
+                }
+                throw e;
+            }
+
+            Set<String> directories = new HashSet<>();
+            directories.add( root );
+            EntrySource source = open( format, lease.wrap( body ), contentType, buffer );
+            try
+            {
+                Entry entry;
+                while ((entry = source.next()) != null)
+                {
+                    if ( results.size() >= maxFiles )
+                    {
+                        error = "Batch limit of " + maxFiles + " files reached; remaining entries were not uploaded";
+                        break;
+                    }
+                    results.add( process( batch, client, root, directories, entry ) );
+                }
+            }
+            catch (IOException e)
+            {
+                // The body is unreadable from here on; keep what was already uploaded
+                if ( e instanceof BodyReadException )
+                {
+                    results.add( CompletableFuture.completedFuture( ((BodyReadException) e).result ) );
+                }
+                log.warn( "Batch upload to site {} stopped reading: {}", site.getSiteName(), e.getMessage() );
+                error = "Request body could not be read: " + e.getMessage();
+            }
+        }
+        catch (Exception e)
+        {
+            batch.close();
+            throw e;
+        }
+        finally
+        {
+            bufferPool.release( buffer );
+        }
+
+        try
+        {
+            for (Future<Map<String, Object>> result : results)
+            {
+                Map<String, Object> file = result.get();
+                files.add( file );
+                if ( "uploaded".equals( file.get( "status" ) ) )
+                {
+                    uploaded++;
+                    bytes += (Long) file.get( "size" );
+                }
+            }
+        }
+        finally
+        {
+            batch.close();
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        log.info( "Batch upload to site {}: {} of {} file(s), {} bytes in {} ms", site.getSiteName(), uploaded,
+                files.size(), bytes, elapsed );
+
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put( "path", targetPath );
+        manifest.put( "files", files );
+        manifest.put( "uploaded", uploaded );
+        manifest.put( "failed", files.size() - uploaded );
+        manifest.put( "bytes", bytes );
+        manifest.put( "durationMs", elapsed );
+        if ( error != null )
+        {
+            manifest.put( "error", error );
+        }
+        return manifest;
+    }
+
+    private Future<Map<String, Object>> process( Batch batch, SftpClient client, String root, Set<String> directories,
+                                                 Entry entry ) throws IOException
+    {
+        String relative = relativePath( entry.name );
+        if ( relative == null )
+        {
+            return CompletableFuture.completedFuture( result( entry.name, null, "failed", 0, "Unsafe or empty path" ) );
+        }
+        String fullPath = root.equals( "/" ) ? "/" + relative : root + "/" + relative;
+        if ( entry.content == null )
+        {
+            return CompletableFuture.completedFuture( result( relative, fullPath, "skipped", 0,
+                    "Links and special files are not uploaded" ) );
+        }
+
+        try
+        {
+            if ( entry.directory )
+            {
+                ensureDirectory( client, root, fullPath, directories );
+                return CompletableFuture.completedFuture( result( relative, fullPath, "directory", 0, null ) );
+            }
+            int slash = fullPath.lastIndexOf( '/' );
+            ensureDirectory( client, root, slash > 0 ? fullPath.substring( 0, slash ) : "/", directories );
+        }
+        catch (IOException e)
+        {
+            return CompletableFuture.completedFuture( result( relative, fullPath, "failed", 0, e.getMessage() ) );
+        }
+
+        // Small files go to the parallel writers; anything larger is streamed here
+        byte[] head = entry.content.readNBytes( smallFileBytes + 1 );
+        if ( head.length <= smallFileBytes )
+        {
+            return batch.write( relative, fullPath, head );
+        }
+
+        try ( OutputStream out = client.openWrite( fullPath, 0 ) )
+        {
+            out.write( head );
+            long size = head.length + bufferPool.copy( entry.content, out );
+            return CompletableFuture.completedFuture( result( relative, fullPath, "uploaded", size, null ) );
+        }
+        catch (IOException e)
+        {
+            // Never leave a truncated file under its final name
+            removeQuietly( client, fullPath );
+            if ( isRemote( e ) )
+            {
+                return CompletableFuture.completedFuture( result( relative, fullPath, "failed", 0, e.getMessage() ) );
+            }
+            throw new BodyReadException( result( relative, fullPath, "failed", 0,
+                    "Request body could not be read: " + e.getMessage() ), e );
+        }
+    }
+
+    private void ensureDirectory( SftpClient client, String root, String directory, Set<String> known ) throws IOException
+    {
+        if ( known.contains( directory ) )
+        {
+            return;
+        }
+        int slash = directory.lastIndexOf( '/' );
+        String parent = slash > 0 ? directory.substring( 0, slash ) : "/";
+        if ( !directory.equals( root ) && directory.length() > root.length() )
+        {
+            ensureDirectory( client, root, parent, known );
+        }
+        try
+        {
+            if ( !client.stat( directory ).isDirectory() )
+            {
+                throw new IOException( directory + " exists and is not a directory" );
+            }
+        }
+        catch (SftpClient.StatusException e)
+        {
+            if ( !e.isNoSuchFile() )
+            {
+                throw e;
+            }
+            client.mkdir( directory );
+        }
+        known.add( directory );
+    }
+
+    /**
+     * Normalized path below the target directory, or null if it would escape it
+     */
+    private static String relativePath( String name )
+    {
+        if ( name == null )
+        {
+            return null;
+        }
+        StringJoiner path = new StringJoiner( "/" );
+        for (String segment : name.replace( '\\', '/' ).split( "/" ))
+        {
+            if ( segment.isEmpty() || segment.equals( "." ) )
+            {
+                continue;
+            }
+            if ( segment.equals( ".." ) || segment.indexOf( ':' ) >= 0 )
+            {
+                return null;
+            }
+            path.add( segment );
+        }
+        return path.length() == 0 ? null : path.toString();
+    }
+
+    private static boolean isRemote( IOException e )
+    {
+        return e instanceof SftpClient.StatusException;
+    }
+
+    private static void removeQuietly( SftpClient client, String path )
+    {
+        try
+        {
+            client.rm( path );
+        }
+        catch (IOException e)
+        {
+            log.debug( "Could not remove partial file {}: {}", path, e.getMessage() );
+        }
+    }
+
+    private static Map<String, Object> result( String name, String path, String status, long size, String error )
+    {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put( "name", name );
+        result.put( "path", path );
+        result.put( "status", status );
+        result.put( "size", size );
+        if ( error != null )
+        {
+            result.put( "error", error );
+        }
+        return result;
+    }
+
+    private static Format formatOf( String contentType )
+    {
+        if ( contentType == null )
+        {
+            return null;
+        }
+        String type = contentType.split( ";" )[0].trim().toLowerCase( Locale.ROOT );
+        switch ( type )
+        {
+            case "multipart/form-data":
+                return Format.MULTIPART;
+            case "application/x-tar":
+            case "application/tar":
+                return Format.TAR;
+            case "application/gzip":
+            case "application/x-gzip":
+            case "application/x-gtar":
+            case "application/x-compressed-tar":
+                return Format.TAR_GZIP;
+            case "application/zip":
+            case "application/x-zip-compressed":
+                return Format.ZIP;
+            default:
+                return null;
+        }
+    }
+
+    private static EntrySource open( Format format, InputStream body, String contentType, byte[] buffer ) throws IOException
+    {
+        switch ( format )
+        {
+            case MULTIPART:
+                String boundary = MultipartStreamReader.boundaryOf( contentType );
+                if ( boundary == null )
+                {
+                    throw new IllegalArgumentException( "Multipart body without a boundary" );
+                }
+                MultipartStreamReader reader = new MultipartStreamReader( body, boundary, buffer );
+                return () ->
+                {
+                    MultipartStreamReader.Part part;
+                    while ((part = reader.nextPart()) != null)
+                    {
+                        if ( part.isFile() && !part.getFileName().isEmpty() )
+                        {
+                            // Only the file name counts; browsers may send a client-side path
+                            String name = part.getFileName().replace( '\\', '/' );
+                            return new Entry( name.substring( name.lastIndexOf( '/' ) + 1 ), false, part.getContent() );
+                        }
+                    }
+                    return null;
+                };
+            case TAR:
+                return archive( new TarArchiveInputStream( body ) );
+            case TAR_GZIP:
+                return archive( new TarArchiveInputStream( new GZIPInputStream( body, 65536 ) ) );
+            default:
+                return archive( new ZipArchiveInputStream( body, "UTF-8", true, true ) );
+        }
+    }
+
+    private static EntrySource archive( ArchiveInputStream<?> archive )
+    {
+        return () ->
+        {
+            ArchiveEntry entry;
+            while ((entry = archive.getNextEntry()) != null)
+            {
+                // Links and devices have no content to upload
+                if ( entry instanceof TarArchiveEntry tar && (tar.isSymbolicLink() || tar.isLink()
+                        || tar.isCharacterDevice() || tar.isBlockDevice() || tar.isFIFO()) )
+                {
+                    return new Entry( entry.getName(), false, null );
+                }
+                if ( !archive.canReadEntryData( entry ) )
+                {
+                    throw new IOException( "Unsupported archive entry: " + entry.getName() );
+                }
+                return new Entry( entry.getName(), entry.isDirectory(), archive );
+            }
+            return null;
+        };
+    }
+
+    private enum Format
+    {
+        MULTIPART, TAR, TAR_GZIP, ZIP
+    }
+
+    /**
+     * One file or directory in the request body; content is null for entries that are skipped
+     */
+    private record Entry( String name, boolean directory, InputStream content )
+    {
+    }
+
+    /**
+     * The body broke off in the middle of a streamed entry, whose manifest result it carries
+     */
+    private static class BodyReadException extends IOException
+    {
+        private final Map<String, Object> result;
+
+        BodyReadException( Map<String, Object> result, IOException cause )
+        {
+            super( cause.getMessage(), cause );
+            this.result = result;
+        }
+    }
+
+    private interface EntrySource
+    {
+        Entry next() throws IOException;
+    }
+
+    /**
+     * Parallel writers for one batch: at most {@code channels} buffered files are in
+     * flight at once, each written over a dedicated channel that is reused for the next
+     */
+    private class Batch
+    {
+        private final Site site;
+        private final Semaphore inFlight = new Semaphore( channels );
+        private final BlockingQueue<SftpClient> idle = new LinkedBlockingQueue<>();
+        private final List<SftpClient> all = Collections.synchronizedList( new ArrayList<>() );
+
+        Batch( Site site )
+        {
+            this.site = site;
+        }
+
+        Future<Map<String, Object>> write( String name, String path, byte[] data ) throws IOException
+        {
+            try
+            {
+                inFlight.acquire();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Batch upload interrupted" );
+            }
+
+            try
+            {
+                return executor.submit( () ->
+                {
+                    SftpClient client = null;
+                    try
+                    {
+                        client = take();
+                        try ( OutputStream out = client.openWrite( path, 0 ) )
+                        {
+                            out.write( data );
+                        }
+                        idle.add( client );
+                        return result( name, path, "uploaded", data.length, null );
+                    }
+                    catch (Exception e)
+                    {
+                        if ( e instanceof SftpClient.StatusException )
+                        {
+                            removeQuietly( client, path );
+                            idle.add( client );
+                        }
+                        else if ( client != null )
+                        {
+                            // The channel itself may be broken; the next file opens a fresh one
+                            all.remove( client );
+                            client.close();
+                        }
+                        return result( name, path, "failed", 0, e.getMessage() );
+                    }
+                    finally
+                    {
+                        inFlight.release();
+                    }
+                } );
+            }
+            catch (RejectedExecutionException e)
+            {
+                inFlight.release();
+                throw new IOException( "Batch upload is shutting down", e );
+            }
+        }
+
+        /**
+         * An idle channel, or a new one; in-flight writes never exceed the channel count
+         */
+        private SftpClient take() throws Exception
+        {
+            SftpClient client = idle.poll();
+            if ( client == null )
+            {
+                client = clientProvider.openChannel( site );
+                all.add( client );
+            }
+            return client;
+        }
+
+        /**
+         * Wait for outstanding writes, then close every channel
+         */
+        void close()
+        {
+            inFlight.acquireUninterruptibly( channels );
+            inFlight.release( channels );
+            synchronized (all)
+            {
+                for (SftpClient client : all)
+                {
+                    client.close();
+                }
+                all.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.service;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.entity.UploadSession;
+import com.nearstar.sftpmanager.model.entity.UploadSession.UploadStatus;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import com.nearstar.sftpmanager.repository.UploadSessionRepository;
+import com.nearstar.sftpmanager.util.BandwidthShaper;
+import com.nearstar.sftpmanager.util.ByteRange;
+import com.nearstar.sftpmanager.util.SftpClient;
+import com.nearstar.sftpmanager.util.TransferBufferPool;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resumable uploads: a client declares the file size up front, sends the content
+ * in chunks at explicit offsets (in any order, retrying any that fail) and then
+ * completes the upload, which renames the temporary file into place.
+ * <p>
+ * Received ranges are tracked in the database so any node can accept the next
+ * chunk. Concurrent chunks are only accepted by engines that can write at an
+ * arbitrary offset; JSch sites must send chunks in order.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChunkedUploadService
+{
+    private static final int MAX_RECORD_ATTEMPTS = 10;
+
+    private final SiteRepository siteRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final FileManagerService fileManagerService;
+    private final TransferBufferPool bufferPool;
+    private final BandwidthShaper bandwidthShaper;
+
+    @Value("${sftp.upload.session.expiry.hours:24}")
+    private long expiryHours;
+
+    /**
+     * Start an upload of totalSize bytes named fileName into targetPath
+     */
+    public UploadSession create( Long siteId, String targetPath, String fileName, long totalSize,
+                                 String username ) throws Exception
+    {
+        if ( fileName == null || fileName.isBlank() || fileName.contains( "/" ) || fileName.equals( ".." ) )
+        {
+            throw new IllegalArgumentException( "Invalid file name: " + fileName );
+        }
+        if ( totalSize < 0 )
+        {
+            throw new IllegalArgumentException( "Upload size must not be negative" );
+        }
+
+        Site site = siteRepository.findById( siteId )
+                .orElseThrow( () -> new IllegalArgumentException( "Site not found" ) );
+
+        String directory = targetPath.endsWith( "/" ) ? targetPath : targetPath + "/";
+        String uploadId = UUID.randomUUID().toString();
+
+        UploadSession session = new UploadSession();
+        session.setUploadId( uploadId );
+        session.setSite( site );
+        session.setFileName( fileName );
+        session.setTargetPath( directory + fileName );
+        session.setTempPath( directory + "." + fileName + "." + uploadId + ".part" );
+        session.setTotalSize( totalSize );
+        session.setCreatedBy( username );
+
+        try ( SftpClient client = fileManagerService.openClient( site ) )
+        {
+            try
+            {
+                if ( !client.stat( targetPath ).isDirectory() )
+                {
+                    throw new IllegalArgumentException( "Target path is not a directory: " + targetPath );
+                }
+            }
+            catch (SftpClient.StatusException e)
+            {
+                if ( e.isNoSuchFile() )
+                {
+                    throw new IllegalArgumentException( "Target directory does not exist: " + targetPath );
+                }
+                throw e;
+            }
+
+            // Create the empty temporary file so a missing one later means it was removed
+            client.openWrite( session.getTempPath(), 0 ).close();
+        }
+
+        session = uploadSessionRepository.save( session );
+        log.info( "Created upload {} for {} ({} bytes) on site {}", uploadId, session.getTargetPath(),
+                totalSize, site.getSiteName() );
+        return session;
+    }
+
+    /**
+     * Look up an upload, provided it belongs to the given site
+     */
+    public Optional<UploadSession> find( Long siteId, String uploadId )
+    {
+        return uploadSessionRepository.findByUploadId( uploadId )
+                .filter( s -> s.getSite().getId().equals( siteId ) );
+    }
+
+    /**
+     * Write one chunk starting at offset. Whatever part of the chunk reaches the server
+     * is recorded even if the client connection drops, so it need not be resent. The
+     * chunk is held to the site's and the requesting user's bandwidth caps.
+     */
+    public UploadSession writeChunk( UploadSession session, long offset, InputStream body ) throws Exception
+    {
+        requireInProgress( session );
+        if ( offset < 0 || offset > session.getTotalSize() )
+        {
+            throw new UploadConflictException( "Offset " + offset + " is outside the upload",
+                    session.getBytesReceived() );
+        }
+
+        long written = 0;
+        IOException failure = null;
+        try ( SftpClient client = fileManagerService.openClient( session.getSite() );
+              BandwidthShaper.Lease lease = bandwidthShaper.lease( session.getSite() ) )
+        {
+            InputStream in = lease.wrap( body );
+            OutputStream out = openChunk( client, session, offset );
+            long limit = session.getTotalSize() - offset;
+            boolean overrun = false;
+
+            byte[] buffer = bufferPool.acquire();
+            try
+            {
+                int read;
+                while ((read = in.read( buffer, 0, (int) Math.min( buffer.length, limit - written + 1 ) )) != -1)
+                {
+                    if ( written + read > limit )
+                    {
+                        // Keep what fits; the rest lies past the declared size
+                        out.write( buffer, 0, (int) (limit - written) );
+                        written = limit;
+                        overrun = true;
+                        break;
+                    }
+                    out.write( buffer, 0, read );
+                    written += read;
+                }
+            }
+            catch (IOException e)
+            {
+                failure = e;
+            }
+            finally
+            {
+                bufferPool.release( buffer );
+            }
+
+            try
+            {
+                out.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing from this chunk can be trusted to have reached the server
+                if ( failure != null )
+                {
+                    e.addSuppressed( failure );
+                }
+                throw e;
+            }
+
+            if ( written > 0 )
+            {
+                session = record( session, offset, written );
+            }
+            if ( overrun )
+            {
+                throw new IllegalArgumentException( "Chunk runs past the declared upload size of "
+                        + session.getTotalSize() + " bytes" );
+            }
+        }
+
+        if ( failure != null )
+        {
+            log.warn( "Upload {} chunk at {} interrupted after {} bytes: {}", session.getUploadId(), offset,
+                    written, failure.getMessage() );
+            throw failure;
+        }
+        log.debug( "Upload {} received {} bytes at {}", session.getUploadId(), written, offset );
+        return session;
+    }
+
+    /**
+     * Move the finished upload into place, replacing any existing file of the same name
+     */
+    public UploadSession complete( UploadSession session ) throws Exception
+    {
+        requireInProgress( session );
+        if ( session.getBytesReceived() != session.getTotalSize() )
+        {
+            throw new UploadConflictException( "Upload is incomplete: " + session.getBytesReceived() + " of "
+                    + session.getTotalSize() + " bytes received", session.getBytesReceived() );
+        }
+
+        try ( SftpClient client = fileManagerService.openClient( session.getSite() ) )
+        {
+            long size = client.stat( session.getTempPath() ).getSize();
+            if ( size > session.getTotalSize() )
+            {
+                client.truncate( session.getTempPath(), session.getTotalSize() );
+            }
+            else if ( size < session.getTotalSize() )
+            {
+                throw new IllegalStateException( "Temporary file holds " + size + " bytes, expected "
+                        + session.getTotalSize() );
+            }
+
+            try
+            {
+                client.rm( session.getTargetPath() );
+            }
+            catch (SftpClient.StatusException e)
+            {
+                if ( !e.isNoSuchFile() )
+                {
+                    throw e;
+                }
+            }
+            client.rename( session.getTempPath(), session.getTargetPath() );
+        }
+
+        transition( session, UploadStatus.COMPLETED );
+        log.info( "Completed upload {} to {} ({} bytes)", session.getUploadId(), session.getTargetPath(),
+                session.getTotalSize() );
+        return session;
+    }
+
+    /**
+     * Abandon an upload and remove its temporary file
+     */
+    public void cancel( UploadSession session ) throws Exception
+    {
+        requireInProgress( session );
+        transition( session, UploadStatus.CANCELLED );
+        removeTempFile( session );
+        log.info( "Cancelled upload {}", session.getUploadId() );
+    }
+
+    /**
+     * Expire uploads that have not received data within the expiry window
+     */
+    @Scheduled(fixedDelayString = "${sftp.upload.session.cleanup.interval.ms:3600000}")
+    public void expireStaleUploads()
+    {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours( expiryHours );
+        for (UploadSession session : uploadSessionRepository.findByStatusAndUpdatedAtBefore(
+                UploadStatus.IN_PROGRESS, cutoff ))
+        {
+            if ( uploadSessionRepository.updateStatus( session.getId(), UploadStatus.IN_PROGRESS,
+                    UploadStatus.EXPIRED, LocalDateTime.now() ) == 1 )
+            {
+                log.info( "Expired upload {} to {}", session.getUploadId(), session.getTargetPath() );
+                removeTempFile( session );
+            }
+        }
+    }
+
+    /**
+     * Ranges written so far, in offset order
+     */
+    public static List<ByteRange> parseRanges( String ranges )
+    {
+        List<ByteRange> result = new ArrayList<>();
+        if ( ranges == null || ranges.isBlank() )
+        {
+            return result;
+        }
+        for (String part : ranges.split( "," ))
+        {
+            int dash = part.indexOf( '-' );
+            result.add( new ByteRange( Long.parseLong( part.substring( 0, dash ) ),
+                    Long.parseLong( part.substring( dash + 1 ) ) ) );
+        }
+        return result;
+    }
+
+    private OutputStream openChunk( SftpClient client, UploadSession session, long offset ) throws IOException
+    {
+        try
+        {
+            return client.openWrite( session.getTempPath(), offset, false );
+        }
+        catch (SftpClient.StatusException e)
+        {
+            if ( e.getStatus() != SftpClient.SSH_FX_OP_UNSUPPORTED )
+            {
+                throw e;
+            }
+
+            // This engine can only append. A chunk that continues the received data is still
+            // fine once any unrecorded tail from an interrupted chunk is cut off.
+            List<ByteRange> received = parseRanges( session.getReceivedRanges() );
+            long end = received.isEmpty() ? 0 : received.get( received.size() - 1 ).getEnd() + 1;
+            if ( offset != end )
+            {
+                throw new UploadConflictException( "This site only accepts chunks in order, next offset is "
+                        + end, end );
+            }
+            client.truncate( session.getTempPath(), offset );
+            return client.openWrite( session.getTempPath(), offset, false );
+        }
+    }
+
+    private UploadSession record( UploadSession session, long offset, long length )
+    {
+        ByteRange chunk = new ByteRange( offset, offset + length - 1 );
+        for (int attempt = 0; attempt < MAX_RECORD_ATTEMPTS; attempt++)
+        {
+            UploadSession current = uploadSessionRepository.findById( session.getId() )
+                    .orElseThrow( () -> new IllegalStateException( "Upload no longer exists" ) );
+            requireInProgress( current );
+
+            List<ByteRange> ranges = parseRanges( current.getReceivedRanges() );
+            ranges.add( chunk );
+            ranges = ByteRange.merge( ranges );
+
+            StringBuilder updated = new StringBuilder();
+            for (ByteRange range : ranges)
+            {
+                if ( updated.length() > 0 )
+                {
+                    updated.append( ',' );
+                }
+                updated.append( range.getStart() ).append( '-' ).append( range.getEnd() );
+            }
+            long contiguous = ranges.get( 0 ).getStart() == 0 ? ranges.get( 0 ).getEnd() + 1 : 0;
+            LocalDateTime now = LocalDateTime.now();
+
+            if ( uploadSessionRepository.updateReceivedRanges( current.getId(), current.getReceivedRanges(),
+                    updated.toString(), contiguous, now, UploadStatus.IN_PROGRESS ) == 1 )
+            {
+                current.setReceivedRanges( updated.toString() );
+                current.setBytesReceived( contiguous );
+                current.setUpdatedAt( now );
+                return current;
+            }
+        }
+        throw new IllegalStateException( "Upload " + session.getUploadId() + " is being updated too often to record a chunk" );
+    }
+
+    private void transition( UploadSession session, UploadStatus status )
+    {
+        LocalDateTime now = LocalDateTime.now();
+        if ( uploadSessionRepository.updateStatus( session.getId(), UploadStatus.IN_PROGRESS, status, now ) != 1 )
+        {
+            throw new UploadConflictException( "Upload is no longer in progress", session.getBytesReceived() );
+        }
+        session.setStatus( status );
+        session.setUpdatedAt( now );
+        session.setCompletedAt( now );
+    }
+
+    private void removeTempFile( UploadSession session )
+    {
+        try ( SftpClient client = fileManagerService.openClient( session.getSite() ) )
+        {
+            client.rm( session.getTempPath() );
+        }
+        catch (SftpClient.StatusException e)
+        {
+            if ( !e.isNoSuchFile() )
+            {
+                log.warn( "Could not remove {} for upload {}: {}", session.getTempPath(), session.getUploadId(),
+                        e.getMessage() );
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn( "Could not remove {} for upload {}: {}", session.getTempPath(), session.getUploadId(),
+                    e.getMessage() );
+        }
+    }
+
+    private static void requireInProgress( UploadSession session )
+    {
+        if ( session.getStatus() != UploadStatus.IN_PROGRESS )
+        {
+            throw new UploadConflictException( "Upload is " + session.getStatus(), session.getBytesReceived() );
+        }
+    }
+
+    /**
+     * The request does not fit the current state of the upload; offset is where the client should resume
+     */
+    @Getter
+    public static class UploadConflictException extends RuntimeException
+    {
+        private final long offset;
+
+        public UploadConflictException( String message, long offset )
+        {
+            super( message );
+            this.offset = offset;
+        }
+    }
+}
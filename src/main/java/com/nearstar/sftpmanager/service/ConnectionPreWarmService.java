@@ -0,0 +1,205 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.service;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.repository.ActivityLogRepository;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import com.nearstar.sftpmanager.util.SftpConnectionPool;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens SSH sessions and channels ahead of demand: shortly before scheduled tasks fire,
+ * and for the busiest sites at startup, so the first transfers skip the handshake.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ConnectionPreWarmService
+{
+    private final SchedulerService schedulerService;
+    private final SiteRepository siteRepository;
+    private final ActivityLogRepository activityLogRepository;
+    private final SftpConnectionPool connectionPool;
+
+    @Value("${sftp.prewarm.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sftp.prewarm.lead.seconds:120}")
+    private int leadSeconds;
+
+    @Value("${sftp.prewarm.lookahead.tasks:500}")
+    private int lookaheadTasks;
+
+    @Value("${sftp.prewarm.parallelism:8}")
+    private int parallelism;
+
+    @Value("${sftp.prewarm.startup.sites:10}")
+    private int startupSites;
+
+    @Value("${sftp.prewarm.startup.activity.days:7}")
+    private int startupActivityDays;
+
+    // Execution time each task was last warmed for, so a run is only warmed once
+    private final Map<Long, LocalDateTime> warmedRuns = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init()
+    {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool( Math.max( 1, parallelism ), runnable ->
+        {
+            Thread thread = new Thread( runnable, "PreWarm-" + counter.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Warm the most-used sites once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmMostUsedSites()
+    {
+        if ( !enabled || startupSites <= 0 )
+        {
+            return;
+        }
+
+        try
+        {
+            List<String> siteNames = activityLogRepository.findMostActiveSiteNames(
+                    LocalDateTime.now().minusDays( startupActivityDays ), PageRequest.of( 0, startupSites ) );
+            log.info( "Pre-warming connections for {} most used sites", siteNames.size() );
+
+            for (String siteName : siteNames)
+            {
+                siteRepository.findBySiteName( siteName )
+                        .ifPresent( site -> executor.execute( () -> warmSite( site, 1 ) ) );
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn( "Startup pre-warm skipped: {}", e.getMessage() );
+        }
+    }
+
+    /**
+     * Warm sites whose scheduled tasks fire within the lead time. A site gets one
+     * channel per task due in the window, capped by the pool's per-site idle limit.
+     */
+    @Scheduled(fixedDelayString = "${sftp.prewarm.interval.ms:30000}")
+    public void warmUpcomingTasks()
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime horizon = now.plusSeconds( leadSeconds );
+        Map<Long, Integer> channelsPerSite = new HashMap<>();
+
+        for (Map<String, Object> execution : schedulerService.getNextScheduledExecutions( lookaheadTasks ))
+        {
+            LocalDateTime nextExecution = (LocalDateTime) execution.get( "nextExecution" );
+            if ( nextExecution.isAfter( horizon ) )
+            {
+                break;  // sorted by next execution
+            }
+
+            Long taskId = (Long) execution.get( "taskId" );
+            if ( nextExecution.equals( warmedRuns.put( taskId, nextExecution ) ) )
+            {
+                continue;
+            }
+            channelsPerSite.merge( (Long) execution.get( "siteId" ), 1, Integer::sum );
+        }
+
+        warmedRuns.values().removeIf( run -> run.isBefore( now.minusHours( 1 ) ) );
+
+        channelsPerSite.forEach( ( siteId, channels ) ->
+                siteRepository.findById( siteId )
+                        .ifPresent( site -> executor.execute( () -> warmSite( site, channels ) ) ) );
+    }
+
+    private void warmSite( Site site, int channels )
+    {
+        if ( !site.isActive() )
+        {
+            return;
+        }
+
+        try
+        {
+            int opened = connectionPool.warmUp( site, channels );
+            if ( opened > 0 )
+            {
+                log.info( "Pre-warmed {} channel(s) for site {}", opened, site.getSiteName() );
+            }
+        }
+        catch (Exception e)
+        {
+            log.warn( "Pre-warm failed for site {}: {}", site.getSiteName(), e.getMessage() );
+        }
+    }
+}
@@ -35,19 +35,29 @@
  */
 package com.nearstar.sftpmanager.service;
 
-import com.jcraft.jsch.*;
 import com.nearstar.sftpmanager.model.dto.FileDTO;
 import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.VerificationStrategy;
 import com.nearstar.sftpmanager.repository.SiteRepository;
-import com.nearstar.sftpmanager.util.EncryptionUtil;
+import com.nearstar.sftpmanager.util.BandwidthShaper;
+import com.nearstar.sftpmanager.util.ByteRange;
+import com.nearstar.sftpmanager.util.MultiDigest;
+import com.nearstar.sftpmanager.util.MultipartStreamReader;
+import com.nearstar.sftpmanager.util.SegmentedTransfer;
+import com.nearstar.sftpmanager.util.SftpAdmissionControl;
+import com.nearstar.sftpmanager.util.SftpClient;
+import com.nearstar.sftpmanager.util.SftpClientProvider;
+import com.nearstar.sftpmanager.util.TransferBufferPool;
+import com.nearstar.sftpmanager.util.TransferVerifier;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
@@ -60,8 +70,12 @@ public class FileManagerService
 {
 
     private final SiteRepository siteRepository;
-    private final EncryptionUtil encryptionUtil;
-    private final Map<String, Session> sessionCache = new HashMap<>();
+    private final SftpClientProvider clientProvider;
+    private final SftpAdmissionControl admissionControl;
+    private final TransferBufferPool bufferPool;
+    private final SegmentedTransfer segmentedTransfer;
+    private final TransferVerifier transferVerifier;
+    private final BandwidthShaper bandwidthShaper;
 
     /**
      * List files in a directory
@@ -71,11 +85,8 @@ public class FileManagerService
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site ) )
         {
-            channelSftp = getChannel( site );
-
             // Normalize path
             if ( path == null || path.isEmpty() )
             {
@@ -84,31 +95,12 @@ public class FileManagerService
 
             log.info( "Listing files for site {} at path: {}", site.getSiteName(), path );
 
-            Vector<ChannelSftp.LsEntry> fileList = channelSftp.ls( path );
             List<FileDTO> files = new ArrayList<>();
 
-            for (ChannelSftp.LsEntry entry : fileList)
+            for (SftpClient.RemoteFile entry : client.list( path ))
             {
-                // Skip . and .. directories
-                if ( ".".equals( entry.getFilename() ) || "..".equals( entry.getFilename() ) )
-                {
-                    continue;
-                }
-
-                FileDTO fileDTO = new FileDTO();
-                fileDTO.setName( entry.getFilename() );
-                fileDTO.setPath( path.endsWith( "/" ) ? path + entry.getFilename() : path + "/" + entry.getFilename() );
-
-                SftpATTRS attrs = entry.getAttrs();
-                fileDTO.setDirectory( attrs.isDir() );
-                fileDTO.setSize( attrs.getSize() );
-                fileDTO.setPermissions( attrs.getPermissionsString() );
-
-                // Convert modification time
-                long mtime = attrs.getMTime() * 1000L; // Convert to milliseconds
-                fileDTO.setModified( LocalDateTime.ofInstant( Instant.ofEpochMilli( mtime ), ZoneId.systemDefault() ) );
-
-                files.add( fileDTO );
+                String entryPath = path.endsWith( "/" ) ? path + entry.getName() : path + "/" + entry.getName();
+                files.add( toFileDTO( entryPath, entry ) );
             }
 
             // Sort: directories first, then by name
@@ -129,63 +121,82 @@ public class FileManagerService
             return files;
 
         }
-        finally
-        {
-            if ( channelSftp != null && !isSessionCached( site ) )
-            {
-                channelSftp.disconnect();
-                if ( channelSftp.getSession() != null )
-                {
-                    channelSftp.getSession().disconnect();
-                }
-            }
-        }
     }
 
     /**
-     * Download a file
+     * Stream a file, or the byte ranges of it the sink asks for, into the sink. The same
+     * client serves the stat and the reads, each range is read from its offset, and data
+     * is copied through one pooled buffer, so memory use does not depend on the file size.
+     * The sink is held to the site's and the requesting user's bandwidth caps.
+     * Returns the number of bytes sent.
+     *
+     * @throws IllegalArgumentException if the path is a directory
      */
-    public byte[] downloadFile( Long siteId, String filePath ) throws Exception
+    public long downloadFile( Long siteId, String filePath, DownloadSink sink ) throws Exception
     {
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site );
+              BandwidthShaper.Lease lease = bandwidthShaper.lease( site ) )
         {
-            channelSftp = getChannel( site );
-            log.info( "Downloading file from site {}: {}", site.getSiteName(), filePath );
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            channelSftp.get( filePath, outputStream );
+            SftpClient.RemoteFile file = client.stat( filePath );
+            if ( file.isDirectory() )
+            {
+                throw new IllegalArgumentException( "Cannot download a directory" );
+            }
 
-            byte[] data = outputStream.toByteArray();
-            log.info( "Downloaded {} bytes", data.length );
-            return data;
+            List<ByteRange> ranges = sink.begin( file );
+            log.info( "Downloading file from site {}: {} ({} bytes, {} range(s))",
+                    site.getSiteName(), filePath, file.getSize(), ranges.size() );
 
-        }
-        finally
-        {
-            if ( channelSftp != null && !isSessionCached( site ) )
+            long sent = 0;
+            for (ByteRange range : ranges)
             {
-                channelSftp.disconnect();
+                OutputStream out = lease.wrap( sink.part( range ) );
+                if ( segmentedTransfer.segmentsFor( site, range.getLength() ) > 1 )
+                {
+                    sent += segmentedTransfer.download( site, filePath, range.getStart(), range.getLength(), out, null );
+                    continue;
+                }
+                try ( InputStream in = client.openRead( filePath, range.getStart() ) )
+                {
+                    long copied = bufferPool.copy( in, out, range.getLength() );
+                    if ( copied < range.getLength() )
+                    {
+                        throw new IOException( "File " + filePath + " ended early - it may have changed during the download" );
+                    }
+                    sent += copied;
+                }
             }
+            sink.end();
+
+            log.info( "Downloaded {} bytes", sent );
+            return sent;
         }
     }
 
     /**
-     * Upload a file with enhanced logging and verification
+     * Upload a file with enhanced logging and the site's default verification
      */
     public void uploadFile( Long siteId, String targetPath, MultipartFile file ) throws Exception
+    {
+        uploadFile( siteId, targetPath, file, null );
+    }
+
+    /**
+     * Upload a file with enhanced logging, checked afterwards with the given
+     * verification strategy (null for the site's default)
+     */
+    public void uploadFile( Long siteId, String targetPath, MultipartFile file,
+                            VerificationStrategy requested ) throws Exception
     {
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
+        VerificationStrategy verification = transferVerifier.resolve( site, requested );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site ) )
         {
-            channelSftp = getChannel( site );
-
             log.info( "=== Starting Upload Process ===" );
             log.info( "Site: {}", site.getSiteName() );
             log.info( "Target Path: {}", targetPath );
@@ -195,16 +206,16 @@ public class FileManagerService
             // Ensure the target path exists and is a directory
             try
             {
-                SftpATTRS attrs = channelSftp.stat( targetPath );
-                if ( !attrs.isDir() )
+                SftpClient.RemoteFile attrs = client.stat( targetPath );
+                if ( !attrs.isDirectory() )
                 {
                     throw new RuntimeException( "Target path is not a directory: " + targetPath );
                 }
                 log.info( "✓ Target directory exists and is valid" );
             }
-            catch (SftpException e)
+            catch (SftpClient.StatusException e)
             {
-                if ( e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE )
+                if ( e.isNoSuchFile() )
                 {
                     log.error( "✗ Target directory does not exist: {}", targetPath );
                     throw new RuntimeException( "Target directory does not exist: " + targetPath );
@@ -218,89 +229,16 @@ public class FileManagerService
 
             log.info( "Full upload path: {}", fullPath );
 
-            // Upload with progress monitoring
+            // Upload with progress logging
+            log.info( "Initiating transfer to: {} (size: {} bytes)", fullPath, file.getSize() );
+            long transferred;
             try ( InputStream inputStream = file.getInputStream() )
             {
-                channelSftp.put( inputStream, fullPath, new SftpProgressMonitor()
-                {
-                    private long transferred = 0;
-                    private long lastLog = 0;
-
-                    @Override
-                    public void init( int op, String src, String dest, long max )
-                    {
-                        log.info( "Initiating transfer to: {} (size: {} bytes)", dest, max );
-                    }
-
-                    @Override
-                    public boolean count( long count )
-                    {
-                        transferred += count;
-                        // Log progress every 10MB
-                        if ( transferred - lastLog >= 10 * 1024 * 1024 )
-                        {
-                            log.info( "Progress: {} bytes transferred", transferred );
-                            lastLog = transferred;
-                        }
-                        return true;
-                    }
-
-                    @Override
-                    public void end()
-                    {
-                        log.info( "✓ Transfer completed. Total transferred: {} bytes", transferred );
-                    }
-                }, ChannelSftp.OVERWRITE );
+                transferred = transfer( site, inputStream, client, fullPath, file.getSize(), null, verification );
             }
+            log.info( "✓ Transfer completed. Total transferred: {} bytes", transferred );
 
-            // Verify the file was uploaded
-            log.info( "Verifying uploaded file..." );
-            try
-            {
-                SftpATTRS uploadedAttrs = channelSftp.stat( fullPath );
-                log.info( "✓ File verified on server:" );
-                log.info( "  - Path: {}", fullPath );
-                log.info( "  - Size on server: {} bytes", uploadedAttrs.getSize() );
-                log.info( "  - Original size: {} bytes", file.getSize() );
-
-                // Compare sizes
-                if ( uploadedAttrs.getSize() != file.getSize() )
-                {
-                    log.warn( "⚠ WARNING: Size mismatch detected!" );
-                    log.warn( "  Expected: {} bytes, Actual: {} bytes",
-                            file.getSize(), uploadedAttrs.getSize() );
-                }
-                else
-                {
-                    log.info( "✓ File size matches - upload successful!" );
-                }
-
-                // List directory to double-check
-                log.info( "Listing directory contents after upload:" );
-                Vector<ChannelSftp.LsEntry> files = channelSftp.ls( targetPath );
-                boolean found = false;
-                for (ChannelSftp.LsEntry entry : files)
-                {
-                    if ( entry.getFilename().equals( file.getOriginalFilename() ) )
-                    {
-                        found = true;
-                        log.info( "✓ File found in directory listing: {} ({} bytes)",
-                                entry.getFilename(), entry.getAttrs().getSize() );
-                        break;
-                    }
-                }
-
-                if ( !found )
-                {
-                    log.error( "✗ File NOT found in directory listing!" );
-                    throw new RuntimeException( "File not found in directory after upload" );
-                }
-            }
-            catch (SftpException e)
-            {
-                log.error( "✗ Failed to verify uploaded file: {}", e.getMessage() );
-                throw new RuntimeException( "File verification failed after upload", e );
-            }
+            log.info( "✓ File verified on server ({}): {}", verification, fullPath );
 
             log.info( "=== Upload Process Completed Successfully ===" );
 
@@ -312,13 +250,6 @@ public class FileManagerService
                     file.getOriginalFilename(), targetPath, e );
             throw e;
         }
-        finally
-        {
-            if ( channelSftp != null && !isSessionCached( site ) )
-            {
-                channelSftp.disconnect();
-            }
-        }
     }
 
     /**
@@ -330,93 +261,122 @@ public class FileManagerService
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site ) )
         {
-            channelSftp = getChannel( site );
-
             String fullPath = targetPath.endsWith( "/" )
                     ? targetPath + fileName
                     : targetPath + "/" + fileName;
 
             log.info( "Starting tracked upload to site {}: {}", site.getSiteName(), fullPath );
+            log.info( "Initiating tracked transfer to: {} (size: {} bytes)", fullPath, fileSize );
+            if ( progressCallback != null )
+            {
+                progressCallback.onProgress( 0, fileSize );
+            }
+
+            VerificationStrategy verification = transferVerifier.resolve( site, null );
+            long transferred = transfer( site, inputStream, client, fullPath, fileSize, progressCallback, verification );
 
-            // Upload with custom progress monitor that calls our callback
-            channelSftp.put( inputStream, fullPath, new SftpProgressMonitor()
+            log.info( "✓ Transfer completed. Total transferred: {} bytes", transferred );
+            if ( progressCallback != null )
             {
-                private long transferred = 0;
-                private long lastCallback = 0;
-                private final long callbackInterval = 1024 * 1024; // Call callback every 1MB
+                progressCallback.onProgress( fileSize, fileSize ); // Ensure 100% is sent
+            }
+
+            log.info( "✓ File verified on server ({}): {}", verification, fullPath );
+
+        }
+    }
 
-                @Override
-                public void init( int op, String src, String dest, long max )
+    /**
+     * Upload file using stream (simple version for backward compatibility)
+     */
+    public void uploadFileStream( Long siteId, String path, InputStream inputStream, String fileName ) throws Exception
+    {
+        // Delegate to the progress version without a callback
+        uploadFileWithProgress( siteId, path, inputStream, fileName, -1, null );
+    }
+
+    /**
+     * Upload the file parts of a multipart/form-data body into targetPath while the body
+     * is still arriving. Each part is piped straight into its remote file, so the client
+     * is only read as fast as the server accepts data. Plain form fields are ignored.
+     */
+    public List<Map<String, Object>> uploadMultipartStream( Long siteId, String targetPath, InputStream body,
+                                                            String boundary ) throws Exception
+    {
+        Site site = siteRepository.findById( siteId )
+                .orElseThrow( () -> new RuntimeException( "Site not found" ) );
+
+        VerificationStrategy verification = transferVerifier.resolve( site, null );
+        byte[] buffer = bufferPool.acquire();
+        try ( SftpClient client = openClient( site ) )
+        {
+            try
+            {
+                if ( !client.stat( targetPath ).isDirectory() )
                 {
-                    log.info( "Initiating tracked transfer to: {} (size: {} bytes)", dest, max );
-                    if ( progressCallback != null )
-                    {
-                        progressCallback.onProgress( 0, fileSize );
-                    }
+                    throw new IllegalArgumentException( "Target path is not a directory: " + targetPath );
                 }
+            }
+            catch (SftpClient.StatusException e)
+            {
+                if ( e.isNoSuchFile() )
+                {
+                    throw new IllegalArgumentException( "Target directory does not exist: " + targetPath );
+                }
+                throw e;
+            }
 
-                @Override
-                public boolean count( long count )
+            List<Map<String, Object>> uploaded = new ArrayList<>();
+            MultipartStreamReader reader = new MultipartStreamReader( body, boundary, buffer );
+            MultipartStreamReader.Part part;
+            while ((part = reader.nextPart()) != null)
+            {
+                if ( !part.isFile() || part.getFileName().isEmpty() )
                 {
-                    transferred += count;
+                    continue;
+                }
 
-                    // Call callback at intervals to avoid too many updates
-                    if ( transferred - lastCallback >= callbackInterval || transferred >= fileSize )
-                    {
-                        if ( progressCallback != null )
-                        {
-                            progressCallback.onProgress( transferred, fileSize );
-                        }
-                        lastCallback = transferred;
-
-                        if ( transferred % (10 * 1024 * 1024) < count )
-                        {
-                            log.info( "Progress: {} / {} bytes ({:.1f}%)",
-                                    transferred, fileSize,
-                                    (double) transferred / fileSize * 100 );
-                        }
-                    }
-                    return true; // Continue transfer
+                // Some browsers send the client-side path; keep only the name
+                String fileName = part.getFileName().substring(
+                        Math.max( part.getFileName().lastIndexOf( '/' ), part.getFileName().lastIndexOf( '\\' ) ) + 1 );
+                if ( fileName.isEmpty() || fileName.equals( "." ) || fileName.equals( ".." ) )
+                {
+                    throw new IllegalArgumentException( "Invalid file name: " + part.getFileName() );
                 }
+                String fullPath = targetPath.endsWith( "/" ) ? targetPath + fileName : targetPath + "/" + fileName;
 
-                @Override
-                public void end()
+                log.info( "Streaming multipart upload to site {}: {}", site.getSiteName(), fullPath );
+                long transferred;
+                try
                 {
-                    log.info( "✓ Transfer completed. Total transferred: {} bytes", transferred );
-                    if ( progressCallback != null )
+                    transferred = transfer( site, part.getContent(), client, fullPath, -1, null, verification );
+                }
+                catch (Exception e)
+                {
+                    // Do not leave a truncated file behind
+                    try
+                    {
+                        client.rm( fullPath );
+                    }
+                    catch (IOException rmError)
                     {
-                        progressCallback.onProgress( fileSize, fileSize ); // Ensure 100% is sent
+                        e.addSuppressed( rmError );
                     }
+                    throw e;
                 }
-            }, ChannelSftp.OVERWRITE );
-
-            // Verify upload
-            SftpATTRS uploadedAttrs = channelSftp.stat( fullPath );
-            log.info( "✓ File verified on server: {} (size: {} bytes)",
-                    fullPath, uploadedAttrs.getSize() );
-
+                log.info( "✓ Streamed {} bytes to {}", transferred, fullPath );
+                uploaded.add( Map.of( "fileName", fileName, "path", fullPath, "size", transferred ) );
+            }
+            return uploaded;
         }
         finally
         {
-            if ( channelSftp != null && !isSessionCached( site ) )
-            {
-                channelSftp.disconnect();
-            }
+            bufferPool.release( buffer );
         }
     }
 
-    /**
-     * Upload file using stream (simple version for backward compatibility)
-     */
-    public void uploadFileStream( Long siteId, String path, InputStream inputStream, String fileName ) throws Exception
-    {
-        // Delegate to the progress version without a callback
-        uploadFileWithProgress( siteId, path, inputStream, fileName, -1, null );
-    }
-
     /**
      * Create a directory
      */
@@ -425,27 +385,17 @@ public class FileManagerService
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site ) )
         {
-            channelSftp = getChannel( site );
-
             String fullPath = path.endsWith( "/" )
                     ? path + directoryName
                     : path + "/" + directoryName;
 
             log.info( "Creating directory on site {}: {}", site.getSiteName(), fullPath );
-            channelSftp.mkdir( fullPath );
+            client.mkdir( fullPath );
             log.info( "Directory created successfully: {}", fullPath );
 
         }
-        finally
-        {
-            if ( channelSftp != null && !isSessionCached( site ) )
-            {
-                channelSftp.disconnect();
-            }
-        }
     }
 
     /**
@@ -456,34 +406,24 @@ public class FileManagerService
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site ) )
         {
-            channelSftp = getChannel( site );
-
             log.info( "Deleting {} on site {}: {}",
                     isDirectory ? "directory" : "file", site.getSiteName(), filePath );
 
             if ( isDirectory )
             {
                 // For directories, we need to delete contents first
-                deleteDirectoryRecursive( channelSftp, filePath );
+                deleteDirectoryRecursive( client, filePath );
             }
             else
             {
-                channelSftp.rm( filePath );
+                client.rm( filePath );
             }
 
             log.info( "Deleted successfully: {}", filePath );
 
         }
-        finally
-        {
-            if ( channelSftp != null && !isSessionCached( site ) )
-            {
-                channelSftp.disconnect();
-            }
-        }
     }
 
     /**
@@ -494,23 +434,13 @@ public class FileManagerService
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site ) )
         {
-            channelSftp = getChannel( site );
-
             log.info( "Renaming on site {}: {} -> {}", site.getSiteName(), oldPath, newPath );
-            channelSftp.rename( oldPath, newPath );
+            client.rename( oldPath, newPath );
             log.info( "Renamed successfully: {} -> {}", oldPath, newPath );
 
         }
-        finally
-        {
-            if ( channelSftp != null && !isSessionCached( site ) )
-            {
-                channelSftp.disconnect();
-            }
-        }
     }
 
     /**
@@ -521,32 +451,9 @@ public class FileManagerService
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site ) )
         {
-            channelSftp = getChannel( site );
-
-            SftpATTRS attrs = channelSftp.stat( filePath );
-
-            FileDTO fileDTO = new FileDTO();
-            fileDTO.setPath( filePath );
-            fileDTO.setName( filePath.substring( filePath.lastIndexOf( '/' ) + 1 ) );
-            fileDTO.setDirectory( attrs.isDir() );
-            fileDTO.setSize( attrs.getSize() );
-            fileDTO.setPermissions( attrs.getPermissionsString() );
-
-            long mtime = attrs.getMTime() * 1000L;
-            fileDTO.setModified( LocalDateTime.ofInstant( Instant.ofEpochMilli( mtime ), ZoneId.systemDefault() ) );
-
-            return fileDTO;
-
-        }
-        finally
-        {
-            if ( channelSftp != null && !isSessionCached( site ) )
-            {
-                channelSftp.disconnect();
-            }
+            return toFileDTO( filePath, client.stat( filePath ) );
         }
     }
 
@@ -558,26 +465,16 @@ public class FileManagerService
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site ) )
         {
-            channelSftp = getChannel( site );
-
             int perms = Integer.parseInt( permissions, 8 ); // Parse octal
             log.info( "Changing permissions on site {} for {}: {}",
                     site.getSiteName(), filePath, permissions );
 
-            channelSftp.chmod( perms, filePath );
+            client.chmod( filePath, perms );
             log.info( "Permissions changed successfully" );
 
         }
-        finally
-        {
-            if ( channelSftp != null && !isSessionCached( site ) )
-            {
-                channelSftp.disconnect();
-            }
-        }
     }
 
     /**
@@ -588,18 +485,15 @@ public class FileManagerService
         Site site = siteRepository.findById( siteId )
                 .orElseThrow( () -> new RuntimeException( "Site not found" ) );
 
-        ChannelSftp channelSftp = null;
-        try
+        try ( SftpClient client = openClient( site ) )
         {
-            channelSftp = getChannel( site );
-
-            String pwd = channelSftp.pwd();
-            String home = channelSftp.getHome();
+            String home = client.pwd();
 
             Map<String, Object> info = new HashMap<>();
             info.put( "connected", true );
-            info.put( "currentDirectory", pwd );
+            info.put( "currentDirectory", home );
             info.put( "homeDirectory", home );
+            info.put( "engine", client.engine() );
             info.put( "siteName", site.getSiteName() );
             info.put( "host", site.getIpAddress() );
             info.put( "port", site.getPort() );
@@ -609,8 +503,9 @@ public class FileManagerService
             try
             {
                 String testFile = home + "/.write_test_" + System.currentTimeMillis();
-                channelSftp.put( new ByteArrayInputStream( "test".getBytes() ), testFile );
-                channelSftp.rm( testFile );
+                transfer( site, new ByteArrayInputStream( "test".getBytes() ), client, testFile, 4, null,
+                        VerificationStrategy.NONE );
+                client.rm( testFile );
                 info.put( "writePermission", true );
                 log.info( "✓ Write permission verified in home directory" );
             }
@@ -623,128 +518,184 @@ public class FileManagerService
             return info;
 
         }
-        finally
-        {
-            if ( channelSftp != null && !isSessionCached( site ) )
-            {
-                channelSftp.disconnect();
-            }
-        }
     }
 
     /**
-     * Helper method to get SFTP channel - now public for testing
+     * Open an SFTP client for a site using its configured engine.
+     * Clients must be closed when done, which hands pooled connections back.
      */
-    public ChannelSftp getChannel( Site site ) throws Exception
+    public SftpClient openClient( Site site ) throws Exception
     {
-        Session session = getSession( site );
-        ChannelSftp channelSftp = (ChannelSftp) session.openChannel( "sftp" );
-        channelSftp.connect( 30000 ); // 30 second timeout
-        log.debug( "SFTP channel opened for site: {}", site.getSiteName() );
-        return channelSftp;
+        SftpClient client = clientProvider.open( site );
+        log.debug( "SFTP client ({}) opened for site: {}", client.engine(), site.getSiteName() );
+        return client;
     }
 
     /**
-     * Helper method to get or create SSH session
+     * Close pooled connections for a site
      */
-    private Session getSession( Site site ) throws Exception
+    public void closeSession( Long siteId )
     {
-        String sessionKey = site.getId().toString();
-
-        // Check if we have a cached session
-        Session session = sessionCache.get( sessionKey );
-        if ( session != null && session.isConnected() )
-        {
-            log.debug( "Using cached session for site: {}", site.getSiteName() );
-            return session;
-        }
-
-        // Create new session
-        log.info( "Creating new SSH session for site: {}", site.getSiteName() );
-        JSch jsch = new JSch();
-        session = jsch.getSession( site.getUsername(), site.getIpAddress(), site.getPort() );
-
-        String password = encryptionUtil.decrypt( site.getEncryptedPassword() );
-        session.setPassword( password );
-
-        Properties config = new Properties();
-        config.put( "StrictHostKeyChecking", "no" );
-        config.put( "PreferredAuthentications", "password" );
-        session.setConfig( config );
-        session.setTimeout( 30000 ); // 30 seconds timeout
-
-        log.info( "Connecting to {}@{}:{}", site.getUsername(), site.getIpAddress(), site.getPort() );
-        session.connect();
-        log.info( "✓ SSH session established successfully" );
-
-        // Cache the session for reuse
-        sessionCache.put( sessionKey, session );
-
-        return session;
+        clientProvider.clearSite( siteId );
+        log.info( "Closed pooled connections for site {}", siteId );
     }
 
     /**
-     * Check if session is cached
+     * Close all pooled connections
      */
-    private boolean isSessionCached( Site site )
+    public void closeAllSessions()
     {
-        String sessionKey = site.getId().toString();
-        Session session = sessionCache.get( sessionKey );
-        return session != null && session.isConnected();
+        clientProvider.clearAll();
+        log.info( "Closed all pooled connections" );
     }
 
     /**
-     * Close cached session for a site
+     * Connection pool and admission queue statistics
      */
-    public void closeSession( Long siteId )
+    public Map<String, Object> getConnectionStats()
     {
-        String sessionKey = siteId.toString();
-        Session session = sessionCache.remove( sessionKey );
-        if ( session != null && session.isConnected() )
-        {
-            session.disconnect();
-            log.info( "Closed cached session for site {}", siteId );
-        }
+        Map<String, Object> stats = clientProvider.getStats();
+        stats.put( "admission", admissionControl.getStats() );
+        stats.put( "transferBuffers", bufferPool.getStats() );
+        stats.put( "segmented", segmentedTransfer.getStats() );
+        stats.put( "bandwidth", bandwidthShaper.getStats() );
+        return stats;
     }
 
     /**
-     * Close all cached sessions
+     * Copy a stream into a new remote file, logging every 10MB and reporting
+     * progress to the callback every 1MB. Large files go over several channels
+     * when the site supports it, and the stream is held to the site's and the
+     * requesting user's bandwidth caps. The file is then checked with the given
+     * strategy; one that fails verification is removed so nothing downstream
+     * picks it up. Returns the number of bytes written.
      */
-    public void closeAllSessions()
+    private long transfer( Site site, InputStream in, SftpClient client, String fullPath, long fileSize,
+                           ProgressCallback progressCallback, VerificationStrategy verification ) throws Exception
     {
-        sessionCache.values().forEach( session ->
+        TransferBufferPool.CopyListener listener = new TransferBufferPool.CopyListener()
+        {
+            private long lastCallback = 0;
+            private long lastLog = 0;
+
+            @Override
+            public void copied( long transferred )
+            {
+                if ( progressCallback != null && transferred - lastCallback >= 1024 * 1024 )
+                {
+                    progressCallback.onProgress( transferred, fileSize );
+                    lastCallback = transferred;
+                }
+                if ( transferred - lastLog >= 10 * 1024 * 1024 )
+                {
+                    log.info( "Progress: {} bytes transferred", transferred );
+                    lastLog = transferred;
+                }
+            }
+        };
+
+        MultiDigest digest = transferVerifier.newDigest( verification );
+        long transferred;
+        try ( BandwidthShaper.Lease lease = bandwidthShaper.lease( site ) )
         {
-            if ( session != null && session.isConnected() )
+            InputStream shaped = lease.wrap( in );
+            InputStream source = digest != null ? digest.wrap( shaped ) : shaped;
+            if ( segmentedTransfer.canUpload( site ) && segmentedTransfer.segmentsFor( site, fileSize ) > 1 )
             {
-                session.disconnect();
+                transferred = segmentedTransfer.upload( site, source, fullPath, fileSize, listener );
             }
-        } );
-        sessionCache.clear();
-        log.info( "Closed all cached sessions" );
+            else
+            {
+                try ( OutputStream out = client.openWrite( fullPath, 0 ) )
+                {
+                    transferred = bufferPool.copy( source, out, listener );
+                }
+            }
+        }
+
+        try
+        {
+            transferVerifier.verify( client, fullPath, verification, transferred,
+                    verification.needsDigest() ? digest.digest( MultiDigest.Algorithm.MD5 ) : null );
+        }
+        catch (TransferVerifier.VerificationException e)
+        {
+            log.error( "✗ {}", e.getMessage() );
+            try
+            {
+                client.rm( fullPath );
+            }
+            catch (IOException rmError)
+            {
+                e.addSuppressed( rmError );
+            }
+            throw e;
+        }
+        if ( fileSize >= 0 && transferred != fileSize )
+        {
+            log.warn( "⚠ Sent {} bytes to {} but {} were announced", transferred, fullPath, fileSize );
+        }
+        if ( digest != null )
+        {
+            log.info( "Checksums of {}: {}", fullPath, digest.format() );
+        }
+        return transferred;
+    }
+
+    private static FileDTO toFileDTO( String path, SftpClient.RemoteFile file )
+    {
+        FileDTO fileDTO = new FileDTO();
+        fileDTO.setName( file.getName() );
+        fileDTO.setPath( path );
+        fileDTO.setDirectory( file.isDirectory() );
+        fileDTO.setSize( file.getSize() );
+        fileDTO.setPermissions( file.getPermissionsString() );
+
+        // Convert modification time
+        fileDTO.setModified( LocalDateTime.ofInstant( Instant.ofEpochSecond( file.getModifiedSeconds() ), ZoneId.systemDefault() ) );
+        return fileDTO;
     }
 
     /**
      * Helper method to delete directory recursively
      */
-    private void deleteDirectoryRecursive( ChannelSftp channelSftp, String path ) throws SftpException
+    private void deleteDirectoryRecursive( SftpClient client, String path ) throws Exception
     {
-        Vector<ChannelSftp.LsEntry> list = channelSftp.ls( path );
-        for (ChannelSftp.LsEntry entry : list)
+        for (SftpClient.RemoteFile entry : client.list( path ))
         {
-            if ( !".".equals( entry.getFilename() ) && !"..".equals( entry.getFilename() ) )
+            String fullPath = path + "/" + entry.getName();
+            if ( entry.isDirectory() )
             {
-                String fullPath = path + "/" + entry.getFilename();
-                if ( entry.getAttrs().isDir() )
-                {
-                    deleteDirectoryRecursive( channelSftp, fullPath );
-                }
-                else
-                {
-                    channelSftp.rm( fullPath );
-                }
+                deleteDirectoryRecursive( client, fullPath );
+            }
+            else
+            {
+                client.rm( fullPath );
             }
         }
-        channelSftp.rmdir( path );
+        client.rmdir( path );
+    }
+
+    /**
+     * Destination for a download, e.g. an HTTP response
+     */
+    public interface DownloadSink
+    {
+        /**
+         * Called once the file's attributes are known. Returns the ranges to send, in
+         * order; an empty list sends no data.
+         */
+        List<ByteRange> begin( SftpClient.RemoteFile file ) throws IOException;
+
+        /**
+         * Stream for the next range's data
+         */
+        OutputStream part( ByteRange range ) throws IOException;
+
+        /**
+         * Called after the last range has been written
+         */
+        void end() throws IOException;
     }
 
     /**
@@ -754,4 +705,4 @@ public class FileManagerService
     {
         void onProgress( long transferred, long total );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,548 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.service;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import com.nearstar.sftpmanager.util.BandwidthShaper;
+import com.nearstar.sftpmanager.util.RingBufferPipe;
+import com.nearstar.sftpmanager.util.SftpClient;
+import com.nearstar.sftpmanager.util.SftpClientProvider;
+import com.nearstar.sftpmanager.util.TransferBufferPool;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies files or whole directory trees from one site to another without passing
+ * them through local disk or the heap: each file is read from the source channel and
+ * written to the destination channel through a small ring of buffers. Directories
+ * are walked on the caller's thread while up to sftp.relay.parallel files are in
+ * flight, each worker holding its own pair of channels. The pairs are opened before
+ * the walk starts and parallelism drops to however many could be opened; with none,
+ * files are copied on the walking channels. All of them share one bandwidth lease on
+ * both sites and the requesting user.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RelayTransferService
+{
+    private static final Object END = new Object();
+
+    private final SiteRepository siteRepository;
+    private final FileManagerService fileManagerService;
+    private final SftpClientProvider clientProvider;
+    private final TransferBufferPool bufferPool;
+    private final BandwidthShaper bandwidthShaper;
+
+    @Value("${sftp.relay.parallel:4}")
+    private int parallel;
+
+    @Value("${sftp.relay.ring.slots:8}")
+    private int ringSlots;
+
+    @Value("${sftp.relay.max.files:100000}")
+    private int maxFiles;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool( new ThreadFactory()
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "sftp-relay-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Copy sourcePath on the source site into the targetPath directory on the target
+     * site, keeping its name. Returns a manifest with one result per file plus totals;
+     * "error" is set if the walk had to stop early.
+     *
+     * @throws IllegalArgumentException if the target is not a directory or lies inside the source
+     */
+    public Map<String, Object> relay( Long sourceSiteId, String sourcePath, Long targetSiteId,
+                                      String targetPath ) throws Exception
+    {
+        Site source = siteRepository.findById( sourceSiteId )
+                .orElseThrow( () -> new RuntimeException( "Source site not found" ) );
+        Site target = siteRepository.findById( targetSiteId )
+                .orElseThrow( () -> new RuntimeException( "Target site not found" ) );
+        String from = trimSlash( sourcePath );
+        String name = from.substring( from.lastIndexOf( '/' ) + 1 );
+        if ( name.isEmpty() )
+        {
+            throw new IllegalArgumentException( "Cannot relay the root directory" );
+        }
+        String to = join( trimSlash( targetPath ), name );
+        if ( source.getId().equals( target.getId() ) && (to.equals( from ) || to.startsWith( from + "/" )) )
+        {
+            throw new IllegalArgumentException( "Target lies inside the source" );
+        }
+
+        long start = System.currentTimeMillis();
+        List<Map<String, Object>> files = Collections.synchronizedList( new ArrayList<>() );
+        String error = null;
+        try ( SftpClient sourceClient = fileManagerService.openClient( source );
+              SftpClient targetClient = fileManagerService.openClient( target );
+              BandwidthShaper.Lease lease = bandwidthShaper.lease( source, target ) )
+        {
+            SftpClient.RemoteFile file = sourceClient.stat( from );
+            if ( !targetClient.stat( trimSlash( targetPath ) ).isDirectory() )
+            {
+                throw new IllegalArgumentException( "Target is not a directory: " + targetPath );
+            }
+
+            if ( !file.isDirectory() )
+            {
+                files.add( copy( sourceClient, targetClient, lease, from, to, file.getSize() ) );
+            }
+            else
+            {
+                error = relayDirectory( source, target, sourceClient, targetClient, lease, from, to, files );
+            }
+        }
+
+        files.sort( Comparator.comparing( f -> (String) f.get( "path" ) ) );
+        int transferred = 0;
+        long bytes = 0;
+        for (Map<String, Object> f : files)
+        {
+            if ( "transferred".equals( f.get( "status" ) ) )
+            {
+                transferred++;
+                bytes += (Long) f.get( "size" );
+            }
+        }
+        long duration = System.currentTimeMillis() - start;
+        log.info( "Relayed {} from site {} to {} on site {}: {} files, {} bytes in {} ms", from,
+                source.getSiteName(), to, target.getSiteName(), transferred, bytes, duration );
+
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put( "source", from );
+        manifest.put( "target", to );
+        manifest.put( "files", files );
+        manifest.put( "transferred", transferred );
+        manifest.put( "failed", files.size() - transferred );
+        manifest.put( "bytes", bytes );
+        manifest.put( "durationMs", duration );
+        if ( error != null )
+        {
+            manifest.put( "error", error );
+        }
+        return manifest;
+    }
+
+    /**
+     * Walk the source tree, creating directories on the target as they are found and
+     * handing files to the workers. Files the workers could not take are copied on the
+     * walking channels. Returns an error if the walk stopped early.
+     */
+    private String relayDirectory( Site source, Site target, SftpClient sourceClient, SftpClient targetClient,
+                                   BandwidthShaper.Lease lease, String from, String to,
+                                   List<Map<String, Object>> files ) throws Exception
+    {
+        List<ChannelPair> pairs = openPairs( source, target );
+        // Bounded so the walk stays only a little ahead of the copies
+        BlockingQueue<Object> queue = new ArrayBlockingQueue<>( Math.max( 1, pairs.size() ) * 2 );
+        Queue<Task> handedBack = new ConcurrentLinkedQueue<>();
+        List<Future<?>> workers = new ArrayList<>();
+        for (ChannelPair pair : pairs)
+        {
+            workers.add( executor.submit( () ->
+            {
+                work( source, target, pair, lease, queue, handedBack, files );
+                return null;
+            } ) );
+        }
+
+        String error = null;
+        boolean inline = workers.isEmpty();
+        try
+        {
+            Deque<String> directories = new ArrayDeque<>();
+            directories.add( "" );
+            int count = 0;
+            while (!directories.isEmpty() && error == null)
+            {
+                String relative = directories.poll();
+                String directory = relative.isEmpty() ? from : from + "/" + relative;
+                List<SftpClient.RemoteFile> children;
+                try
+                {
+                    mkdirs( targetClient, relative.isEmpty() ? to : to + "/" + relative );
+                    children = sourceClient.list( directory );
+                }
+                catch (SftpClient.StatusException e)
+                {
+                    files.add( result( relative.isEmpty() ? "." : relative, "failed", 0, e.getMessage() ) );
+                    continue;
+                }
+                children.sort( Comparator.comparing( SftpClient.RemoteFile::getName ) );
+                for (SftpClient.RemoteFile child : children)
+                {
+                    String path = relative.isEmpty() ? child.getName() : relative + "/" + child.getName();
+                    if ( child.isDirectory() )
+                    {
+                        directories.add( path );
+                        continue;
+                    }
+                    if ( ++count > maxFiles )
+                    {
+                        error = "Directory has more than " + maxFiles + " files";
+                        break;
+                    }
+                    Task task = new Task( from + "/" + path, to + "/" + path, path, child.getSize() );
+                    if ( !inline && !offer( queue, workers, task ) )
+                    {
+                        log.warn( "Relay workers for {} lost their channels - continuing on the walking channels", from );
+                        inline = true;
+                    }
+                    if ( inline )
+                    {
+                        files.add( copy( sourceClient, targetClient, lease, task ) );
+                    }
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            error = e.getMessage();
+        }
+        finally
+        {
+            for (int i = 0; i < workers.size(); i++)
+            {
+                if ( !offer( queue, workers, END ) )
+                {
+                    break;
+                }
+            }
+            for (Future<?> worker : workers)
+            {
+                try
+                {
+                    worker.get();
+                }
+                catch (ExecutionException e)
+                {
+                    log.error( "Relay worker failed: {}", e.getCause().getMessage(), e.getCause() );
+                }
+            }
+        }
+
+        // Files handed back by workers that lost their channels, or still queued when the last one did
+        List<Task> left = new ArrayList<>( handedBack );
+        for (Object item : queue)
+        {
+            if ( item instanceof Task task )
+            {
+                left.add( task );
+            }
+        }
+        for (Task task : left)
+        {
+            if ( error == null )
+            {
+                try
+                {
+                    files.add( copy( sourceClient, targetClient, lease, task ) );
+                    continue;
+                }
+                catch (IOException e)
+                {
+                    error = e.getMessage();
+                }
+            }
+            files.add( result( task.relative(), "failed", 0, error ) );
+        }
+        return error;
+    }
+
+    /**
+     * Worker channel pairs for a relay, as many as both sites can spare up to sftp.relay.parallel
+     */
+    private List<ChannelPair> openPairs( Site source, Site target )
+    {
+        int sourceFree = clientProvider.freeChannels( source );
+        int targetFree = clientProvider.freeChannels( target );
+        int wanted = source.getId().equals( target.getId() )
+                ? Math.min( parallel, sourceFree / 2 )
+                : Math.min( parallel, Math.min( sourceFree, targetFree ) );
+
+        List<ChannelPair> pairs = new ArrayList<>();
+        while (pairs.size() < wanted)
+        {
+            try
+            {
+                pairs.add( openPair( source, target ) );
+            }
+            catch (Exception e)
+            {
+                log.warn( "Relay from site {} to {} continues with {} of {} workers: {}", source.getSiteName(),
+                        target.getSiteName(), pairs.size(), wanted, e.getMessage() );
+                break;
+            }
+        }
+        return pairs;
+    }
+
+    private ChannelPair openPair( Site source, Site target ) throws Exception
+    {
+        SftpClient sourceClient = clientProvider.openChannel( source );
+        try
+        {
+            return new ChannelPair( sourceClient, clientProvider.openChannel( target ) );
+        }
+        catch (Exception e)
+        {
+            sourceClient.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Queue an item for the workers; false once every worker has stopped
+     */
+    private boolean offer( BlockingQueue<Object> queue, List<Future<?>> workers, Object item ) throws InterruptedException
+    {
+        while (!queue.offer( item, 1, TimeUnit.SECONDS ))
+        {
+            if ( workers.stream().allMatch( Future::isDone ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy queued files until the end marker. A pair whose channels break is reopened
+     * for the next file; a worker that cannot reopen them hands that file back and stops,
+     * rather than failing it and every file after it.
+     */
+    private void work( Site source, Site target, ChannelPair pair, BandwidthShaper.Lease lease,
+                       BlockingQueue<Object> queue, Queue<Task> handedBack,
+                       List<Map<String, Object>> files ) throws Exception
+    {
+        try
+        {
+            Object item;
+            while ((item = queue.take()) != END)
+            {
+                Task task = (Task) item;
+                if ( pair == null )
+                {
+                    try
+                    {
+                        pair = openPair( source, target );
+                    }
+                    catch (Exception e)
+                    {
+                        log.warn( "Relay worker stopping, could not reopen its channels: {}", e.getMessage() );
+                        handedBack.add( task );
+                        return;
+                    }
+                }
+
+                try
+                {
+                    files.add( copy( pair.source(), pair.target(), lease, task ) );
+                }
+                catch (Exception e)
+                {
+                    // A broken channel is reopened for the next file
+                    files.add( result( task.relative(), "failed", 0, e.getMessage() ) );
+                    pair.close();
+                    pair = null;
+                }
+            }
+        }
+        finally
+        {
+            if ( pair != null )
+            {
+                pair.close();
+            }
+        }
+    }
+
+    private Map<String, Object> copy( SftpClient sourceClient, SftpClient targetClient, BandwidthShaper.Lease lease,
+                                      Task task ) throws IOException
+    {
+        Map<String, Object> result = copy( sourceClient, targetClient, lease, task.from(), task.to(), task.size() );
+        result.put( "path", task.relative() );
+        return result;
+    }
+
+    /**
+     * Copy one file, removing the partial target if anything goes wrong. Only remote
+     * status errors are reported in the result; others are thrown so the caller can
+     * drop its channels.
+     */
+    private Map<String, Object> copy( SftpClient sourceClient, SftpClient targetClient, BandwidthShaper.Lease lease,
+                                      String from, String to, long size ) throws IOException
+    {
+        String name = to.substring( to.lastIndexOf( '/' ) + 1 );
+        boolean created = false;
+        try ( InputStream in = sourceClient.openRead( from, 0 ) )
+        {
+            long copied;
+            try ( OutputStream out = targetClient.openWrite( to, 0 ) )
+            {
+                created = true;
+                copied = new RingBufferPipe( bufferPool, executor, ringSlots ).pump( lease.wrap( in ), out );
+            }
+            if ( copied != size )
+            {
+                // The listing promised a different size, so the source changed mid-copy
+                SftpClient.RemoteFile now = sourceClient.stat( from );
+                if ( now.getSize() != copied )
+                {
+                    throw new SftpClient.StatusException( SftpClient.SSH_FX_FAILURE,
+                            "Source changed during transfer (" + copied + " of " + now.getSize() + " bytes)", null );
+                }
+            }
+            return result( name, "transferred", copied, null );
+        }
+        catch (SftpClient.StatusException e)
+        {
+            if ( created )
+            {
+                removeQuietly( targetClient, to );
+            }
+            return result( name, "failed", 0, e.getMessage() );
+        }
+        catch (IOException e)
+        {
+            if ( created )
+            {
+                removeQuietly( targetClient, to );
+            }
+            throw e;
+        }
+    }
+
+    private void mkdirs( SftpClient client, String directory ) throws IOException
+    {
+        try
+        {
+            if ( !client.stat( directory ).isDirectory() )
+            {
+                throw new SftpClient.StatusException( SftpClient.SSH_FX_FAILURE,
+                        directory + " exists and is not a directory", null );
+            }
+        }
+        catch (SftpClient.StatusException e)
+        {
+            if ( !e.isNoSuchFile() )
+            {
+                throw e;
+            }
+            client.mkdir( directory );
+        }
+    }
+
+    private static String trimSlash( String path )
+    {
+        return path.length() > 1 && path.endsWith( "/" ) ? path.substring( 0, path.length() - 1 ) : path;
+    }
+
+    private static String join( String directory, String name )
+    {
+        return directory.endsWith( "/" ) ? directory + name : directory + "/" + name;
+    }
+
+    private static void removeQuietly( SftpClient client, String path )
+    {
+        try
+        {
+            client.rm( path );
+        }
+        catch (IOException e)
+        {
+            log.debug( "Could not remove partial file {}: {}", path, e.getMessage() );
+        }
+    }
+
+    private static Map<String, Object> result( String path, String status, long size, String error )
+    {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put( "path", path );
+        result.put( "status", status );
+        result.put( "size", size );
+        if ( error != null )
+        {
+            result.put( "error", error );
+        }
+        return result;
+    }
+
+    private record Task( String from, String to, String relative, long size )
+    {
+    }
+
+    /**
+     * A worker's own source and target channels
+     */
+    private record ChannelPair( SftpClient source, SftpClient target )
+    {
+        void close()
+        {
+            source.close();
+            target.close();
+        }
+    }
+}
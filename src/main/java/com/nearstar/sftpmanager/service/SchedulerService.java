@@ -217,6 +217,7 @@ public class SchedulerService
                 Map<String, Object> execution = new HashMap<>();
                 execution.put( "taskId", task.getId() );
                 execution.put( "taskName", task.getTaskName() );
+                execution.put( "siteId", task.getSite().getId() );
                 execution.put( "siteName", task.getSite().getSiteName() );
                 execution.put( "nextExecution", nextRun );
                 nextExecutions.add( execution );
@@ -36,56 +36,53 @@
 package com.nearstar.sftpmanager.service;
 
 import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
 import com.nearstar.sftpmanager.model.entity.Site;
-import com.nearstar.sftpmanager.util.EncryptionUtil;
+import com.nearstar.sftpmanager.util.SiteCircuitBreaker;
+import com.nearstar.sftpmanager.util.SshSessionRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Properties;
-
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SftpService
 {
 
-    private final EncryptionUtil encryptionUtil;
+    private final SshSessionRegistry sessionRegistry;
+    private final SiteCircuitBreaker circuitBreaker;
+
+    @Value("${sftp.health.timeout.ms:10000}")
+    private int timeoutMs;
 
+    /**
+     * Connect on a fresh session outside the pool and the circuit breaker, so the test
+     * reflects the site's current settings even while its circuit is open
+     */
     public TestConnectionResult testConnection( Site site )
     {
+        log.info( "Testing connection to site: {} ({}:{})",
+                site.getSiteName(), site.getIpAddress(), site.getPort() );
+
         Session session = null;
         ChannelSftp channel = null;
-
         try
         {
-            log.info( "Testing connection to site: {} ({}:{})",
-                    site.getSiteName(), site.getIpAddress(), site.getPort() );
-
-            JSch jsch = new JSch();
-            session = jsch.getSession( site.getUsername(), site.getIpAddress(), site.getPort() );
-
-            String password = encryptionUtil.decrypt( site.getEncryptedPassword() );
-            session.setPassword( password );
-
-            Properties config = new Properties();
-            config.put( "StrictHostKeyChecking", "no" );
-            config.put( "PreferredAuthentications", "password" );
-            session.setConfig( config );
-            session.setTimeout( 30000 );
-
-            session.connect();
-            log.info( "✓ SSH connection established" );
-
+            session = sessionRegistry.openSession( site, timeoutMs );
             channel = (ChannelSftp) session.openChannel( "sftp" );
-            channel.connect( 10000 );
-            log.info( "✓ SFTP channel opened" );
+            channel.connect( timeoutMs );
+            log.info( "✓ SFTP channel connected" );
 
             String pwd = channel.pwd();
             log.info( "✓ Current directory: {}", pwd );
 
+            // The site answered, so stop failing its requests fast
+            if ( circuitBreaker.getState( site.getId() ) != SiteCircuitBreaker.State.CLOSED )
+            {
+                circuitBreaker.reset( site.getId() );
+            }
             return new TestConnectionResult( true,
                     "Connection successful. Current directory: " + pwd );
 
@@ -98,11 +95,11 @@ public class SftpService
         }
         finally
         {
-            if ( channel != null && channel.isConnected() )
+            if ( channel != null )
             {
                 channel.disconnect();
             }
-            if ( session != null && session.isConnected() )
+            if ( session != null )
             {
                 session.disconnect();
             }
@@ -0,0 +1,290 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.service;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import com.nearstar.sftpmanager.util.SiteCircuitBreaker;
+import com.nearstar.sftpmanager.util.SshSessionRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background health sweeper for the whole site fleet.
+ * <p>
+ * Every active site is probed concurrently on a bounded executor with a fresh
+ * SSH session (outside the connection pool), timing the handshake and the first
+ * directory listing separately. Results are written back to the sites table in
+ * JDBC batches instead of one transaction per site.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SiteHealthCheckService
+{
+    private static final String UPDATE_SQL =
+            "UPDATE sites SET last_tested = ?, last_test_result = ?, connection_status = ? WHERE id = ?";
+
+    private final SiteRepository siteRepository;
+    private final SshSessionRegistry sessionRegistry;
+    private final SiteCircuitBreaker circuitBreaker;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${sftp.health.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sftp.health.parallelism:32}")
+    private int parallelism;
+
+    @Value("${sftp.health.timeout.ms:10000}")
+    private int timeoutMs;
+
+    @Value("${sftp.health.batch.size:100}")
+    private int batchSize;
+
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    private volatile Map<String, Object> lastSweep = Map.of();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init()
+    {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool( Math.max( 1, parallelism ), runnable ->
+        {
+            Thread thread = new Thread( runnable, "HealthCheck-" + counter.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${sftp.health.interval.ms:300000}",
+            initialDelayString = "${sftp.health.initial.delay.ms:60000}")
+    public void scheduledSweep()
+    {
+        if ( enabled )
+        {
+            sweep();
+        }
+    }
+
+    /**
+     * Probe every active site and persist the results. Returns false if a sweep is already running.
+     */
+    public boolean sweep()
+    {
+        if ( !sweeping.compareAndSet( false, true ) )
+        {
+            return false;
+        }
+
+        try
+        {
+            long started = System.currentTimeMillis();
+            List<Site> sites = siteRepository.findActiveSites();
+
+            CompletionService<HealthResult> completion = new ExecutorCompletionService<>( executor );
+            for (Site site : sites)
+            {
+                completion.submit( () -> probe( site ) );
+            }
+
+            List<HealthResult> batch = new ArrayList<>();
+            int healthy = 0;
+            long slowestHandshakeMs = 0;
+            for (int i = 0; i < sites.size(); i++)
+            {
+                HealthResult result = completion.take().get();
+                if ( result.isSuccess() )
+                {
+                    healthy++;
+                    slowestHandshakeMs = Math.max( slowestHandshakeMs, result.getHandshakeMs() );
+                }
+                batch.add( result );
+                if ( batch.size() >= batchSize )
+                {
+                    persist( batch );
+                    batch.clear();
+                }
+            }
+            persist( batch );
+
+            long duration = System.currentTimeMillis() - started;
+            Map<String, Object> summary = new HashMap<>();
+            summary.put( "completedAt", LocalDateTime.now() );
+            summary.put( "durationMs", duration );
+            summary.put( "sites", sites.size() );
+            summary.put( "healthy", healthy );
+            summary.put( "failed", sites.size() - healthy );
+            summary.put( "slowestHandshakeMs", slowestHandshakeMs );
+            lastSweep = summary;
+
+            log.info( "Health sweep finished: {}/{} sites healthy in {} ms", healthy, sites.size(), duration );
+            return true;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (Exception e)
+        {
+            log.error( "Health sweep failed", e );
+            return false;
+        }
+        finally
+        {
+            sweeping.set( false );
+        }
+    }
+
+    public Map<String, Object> getLastSweep()
+    {
+        Map<String, Object> status = new HashMap<>( lastSweep );
+        status.put( "running", sweeping.get() );
+        return status;
+    }
+
+    private HealthResult probe( Site site )
+    {
+        HealthResult result = new HealthResult();
+        result.setSiteId( site.getId() );
+        result.setTestedAt( LocalDateTime.now() );
+
+        Session session = null;
+        ChannelSftp channel = null;
+        try
+        {
+            long start = System.nanoTime();
+            session = sessionRegistry.openSession( site, timeoutMs );
+            long connected = System.nanoTime();
+            result.setHandshakeMs( (connected - start) / 1_000_000 );
+
+            channel = (ChannelSftp) session.openChannel( "sftp" );
+            channel.connect( timeoutMs );
+            channel.ls( site.getTargetPath() != null ? site.getTargetPath() : "." );
+            result.setListMs( (System.nanoTime() - connected) / 1_000_000 );
+
+            result.setSuccess( true );
+            result.setMessage( "OK - handshake " + result.getHandshakeMs() + " ms, first ls " + result.getListMs() + " ms" );
+
+            // The site answered, so there is no reason to keep failing its requests fast
+            if ( circuitBreaker.getState( site.getId() ) != SiteCircuitBreaker.State.CLOSED )
+            {
+                circuitBreaker.reset( site.getId() );
+            }
+        }
+        catch (Exception e)
+        {
+            result.setSuccess( false );
+            result.setMessage( "FAILED - " + e.getMessage() );
+            log.debug( "Health check failed for site {}: {}", site.getSiteName(), e.getMessage() );
+        }
+        finally
+        {
+            if ( channel != null )
+            {
+                channel.disconnect();
+            }
+            if ( session != null )
+            {
+                session.disconnect();
+            }
+        }
+        return result;
+    }
+
+    private void persist( List<HealthResult> results )
+    {
+        if ( results.isEmpty() )
+        {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>( results.size() );
+        for (HealthResult result : results)
+        {
+            String message = result.getMessage();
+            rows.add( new Object[]{
+                    Timestamp.valueOf( result.getTestedAt() ),
+                    message != null && message.length() > 500 ? message.substring( 0, 500 ) : message,
+                    (result.isSuccess() ? Site.ConnectionStatus.SUCCESS : Site.ConnectionStatus.FAILED).name(),
+                    result.getSiteId() } );
+        }
+        jdbcTemplate.batchUpdate( UPDATE_SQL, rows );
+    }
+
+    @Data
+    public static class HealthResult
+    {
+        private Long siteId;
+        private boolean success;
+        private long handshakeMs;
+        private long listMs;
+        private String message;
+        private LocalDateTime testedAt;
+    }
+}
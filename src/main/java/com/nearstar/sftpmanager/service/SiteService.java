@@ -38,9 +38,15 @@ package com.nearstar.sftpmanager.service;
 import com.nearstar.sftpmanager.model.dto.SiteDTO;
 import com.nearstar.sftpmanager.model.entity.Site;
 import com.nearstar.sftpmanager.model.entity.User;
+import com.nearstar.sftpmanager.model.enums.SftpEngine;
+import com.nearstar.sftpmanager.model.enums.VerificationStrategy;
+import com.nearstar.sftpmanager.model.enums.TransportProfile;
 import com.nearstar.sftpmanager.repository.SiteRepository;
 import com.nearstar.sftpmanager.repository.UserRepository;
+import com.nearstar.sftpmanager.util.CredentialVault;
 import com.nearstar.sftpmanager.util.EncryptionUtil;
+import com.nearstar.sftpmanager.util.JschRuntime;
+import com.nearstar.sftpmanager.util.SshIdentityCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -48,6 +54,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Slf4j
@@ -59,6 +66,9 @@ public class SiteService
     private final SiteRepository siteRepository;
     private final UserRepository userRepository;
     private final EncryptionUtil encryptionUtil;
+    private final CredentialVault credentialVault;
+    private final JschRuntime jschRuntime;
+    private final SshIdentityCache identityCache;
     private final SftpService sftpService;
 
     @Transactional(readOnly = true)
@@ -91,12 +101,27 @@ public class SiteService
         {
             site.setEncryptedPassword( encryptionUtil.encrypt( siteDTO.getPassword() ) );
         }
+        else if ( siteDTO.getSshKey() != null && !siteDTO.getSshKey().isBlank() )
+        {
+            site.setEncryptedPassword( "" );  // Key-only authentication
+        }
 
         site.setTargetPath( siteDTO.getTargetPath() != null ? siteDTO.getTargetPath() : "/" );
         site.setDescription( siteDTO.getDescription() );
         site.setEmailNotification( siteDTO.getEmailNotification() );
         site.setSshKey( siteDTO.getSshKey() );
+        if ( siteDTO.getSshKeyPassphrase() != null && !siteDTO.getSshKeyPassphrase().isEmpty() )
+        {
+            site.setEncryptedKeyPassphrase( encryptionUtil.encrypt( siteDTO.getSshKeyPassphrase() ) );
+        }
         site.setKnownHostsEntry( siteDTO.getKnownHostsEntry() );
+        site.setSessionIdleTtlSeconds( override( siteDTO.getSessionIdleTtlSeconds(), null ) );
+        site.setSessionMaxLifetimeSeconds( override( siteDTO.getSessionMaxLifetimeSeconds(), null ) );
+        site.setTransferSegments( override( siteDTO.getTransferSegments(), null ) );
+        site.setBandwidthLimitBps( bandwidthLimit( siteDTO.getBandwidthLimitBps(), null ) );
+        site.setTransportProfile( TransportProfile.of( TransportProfile.parse( siteDTO.getTransportProfile() ) ) );
+        site.setSftpEngine( SftpEngine.of( SftpEngine.parse( siteDTO.getSftpEngine() ) ) );
+        site.setVerificationStrategy( VerificationStrategy.of( VerificationStrategy.parse( siteDTO.getVerificationStrategy() ) ) );
 
         // Set creator/owner using provided username instead of Spring Security
         if ( currentUsername != null )
@@ -126,14 +151,52 @@ public class SiteService
 
         if ( siteDTO.getPassword() != null && !siteDTO.getPassword().isEmpty() )
         {
+            credentialVault.forget( site.getEncryptedPassword() );
             site.setEncryptedPassword( encryptionUtil.encrypt( siteDTO.getPassword() ) );
         }
 
         site.setTargetPath( siteDTO.getTargetPath() );
         site.setDescription( siteDTO.getDescription() );
         site.setEmailNotification( siteDTO.getEmailNotification() );
+        String previousKey = site.getSshKey();
+        String previousPassphrase = site.getEncryptedKeyPassphrase();
         site.setSshKey( siteDTO.getSshKey() );
+        if ( siteDTO.getSshKey() == null || siteDTO.getSshKey().isBlank() )
+        {
+            site.setEncryptedKeyPassphrase( null );
+        }
+        else if ( siteDTO.getSshKeyPassphrase() != null && !siteDTO.getSshKeyPassphrase().isEmpty() )
+        {
+            credentialVault.forget( previousPassphrase );
+            site.setEncryptedKeyPassphrase( encryptionUtil.encrypt( siteDTO.getSshKeyPassphrase() ) );
+        }
+        if ( !Objects.equals( previousKey, site.getSshKey() )
+                || !Objects.equals( previousPassphrase, site.getEncryptedKeyPassphrase() ) )
+        {
+            identityCache.invalidate( site.getId() );
+        }
         site.setKnownHostsEntry( siteDTO.getKnownHostsEntry() );
+        // The edit form doesn't send the tuning fields, so leaving one out keeps its stored value
+        site.setSessionIdleTtlSeconds( override( siteDTO.getSessionIdleTtlSeconds(), site.getSessionIdleTtlSeconds() ) );
+        site.setSessionMaxLifetimeSeconds( override( siteDTO.getSessionMaxLifetimeSeconds(),
+                site.getSessionMaxLifetimeSeconds() ) );
+        site.setTransferSegments( override( siteDTO.getTransferSegments(), site.getTransferSegments() ) );
+        site.setBandwidthLimitBps( bandwidthLimit( siteDTO.getBandwidthLimitBps(), site.getBandwidthLimitBps() ) );
+        TransportProfile profile = TransportProfile.parse( siteDTO.getTransportProfile() );
+        if ( profile != null )
+        {
+            site.setTransportProfile( profile );
+        }
+        SftpEngine engine = SftpEngine.parse( siteDTO.getSftpEngine() );
+        if ( engine != null )
+        {
+            site.setSftpEngine( engine );
+        }
+        VerificationStrategy verification = VerificationStrategy.parse( siteDTO.getVerificationStrategy() );
+        if ( verification != null )
+        {
+            site.setVerificationStrategy( verification );
+        }
 
         // Set updater using provided username instead of Spring Security
         if ( currentUsername != null )
@@ -146,7 +209,9 @@ public class SiteService
 
         site.setUpdatedAt( LocalDateTime.now() );
 
-        return siteRepository.save( site );
+        Site savedSite = siteRepository.save( site );
+        jschRuntime.refresh( savedSite );
+        return savedSite;
     }
 
     @Transactional
@@ -157,6 +222,8 @@ public class SiteService
             throw new IllegalArgumentException( "Site not found" );
         }
         siteRepository.deleteById( id );
+        jschRuntime.remove( id );
+        identityCache.invalidate( id );
     }
 
     @Transactional
@@ -212,4 +279,30 @@ public class SiteService
         // TODO: Implement user-site removal if needed
         siteRepository.save( site );
     }
-}
\ No newline at end of file
+
+    /**
+     * Per-site override from an update: null keeps the stored value, zero or less
+     * clears it back to the application default
+     */
+    private static Integer override( Integer requested, Integer current )
+    {
+        if ( requested == null )
+        {
+            return current;
+        }
+        return requested > 0 ? requested : null;
+    }
+
+    /**
+     * Bandwidth cap from a request: null keeps the stored value, 0 means unlimited
+     * and a negative value clears it back to the application default
+     */
+    private static Long bandwidthLimit( Long requested, Long current )
+    {
+        if ( requested == null )
+        {
+            return current;
+        }
+        return requested >= 0 ? requested : null;
+    }
+}
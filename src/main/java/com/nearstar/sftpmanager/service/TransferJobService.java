@@ -0,0 +1,1133 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.service;
+
+import com.nearstar.sftpmanager.model.dto.FileTransferDTO;
+import com.nearstar.sftpmanager.model.dto.FileTransferRequest;
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.entity.TransferJob;
+import com.nearstar.sftpmanager.model.entity.TransferJob.Direction;
+import com.nearstar.sftpmanager.model.entity.TransferJob.JobStatus;
+import com.nearstar.sftpmanager.model.enums.VerificationStrategy;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import com.nearstar.sftpmanager.repository.TransferJobRepository;
+import com.nearstar.sftpmanager.util.BandwidthShaper;
+import com.nearstar.sftpmanager.util.MultiDigest;
+import com.nearstar.sftpmanager.util.RingBufferPipe;
+import com.nearstar.sftpmanager.util.SftpClient;
+import com.nearstar.sftpmanager.util.SftpClientProvider;
+import com.nearstar.sftpmanager.util.SiteCircuitBreaker;
+import com.nearstar.sftpmanager.util.TransferBufferPool;
+import com.nearstar.sftpmanager.util.TransferVerifier;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs queued transfers in the background so clients can submit work and disconnect.
+ * Jobs live in the transfer_jobs table and are started highest priority first, with
+ * at most sftp.jobs.workers.per.site running against any one site. Each job copies
+ * into a temporary file beside the destination and commits its offset as it goes; a
+ * failed attempt is retried with exponential backoff and resumes from that offset,
+ * and jobs interrupted by a restart are picked up again on startup.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransferJobService
+{
+    private static final EnumSet<JobStatus> ACTIVE = EnumSet.of( JobStatus.QUEUED, JobStatus.RUNNING );
+    private static final EnumSet<JobStatus> ENDED = EnumSet.of( JobStatus.COMPLETED, JobStatus.FAILED,
+            JobStatus.CANCELLED );
+
+    private final SiteRepository siteRepository;
+    private final TransferJobRepository transferJobRepository;
+    private final SftpClientProvider clientProvider;
+    private final TransferBufferPool bufferPool;
+    private final TransferVerifier transferVerifier;
+    private final BandwidthShaper bandwidthShaper;
+
+    @Value("${sftp.jobs.workers:16}")
+    private int workers;
+
+    @Value("${sftp.jobs.workers.per.site:4}")
+    private int workersPerSite;
+
+    @Value("${sftp.jobs.max.attempts:5}")
+    private int maxAttempts;
+
+    @Value("${sftp.jobs.backoff.initial.ms:5000}")
+    private long initialBackoffMs;
+
+    @Value("${sftp.jobs.backoff.max.ms:600000}")
+    private long maxBackoffMs;
+
+    @Value("${sftp.jobs.progress.commit.bytes:8388608}")
+    private long commitBytes;
+
+    @Value("${sftp.jobs.ring.slots:8}")
+    private int ringSlots;
+
+    @Value("${sftp.jobs.local.root:${java.io.tmpdir}/sftp-transfers}")
+    private String localRoot;
+
+    @Value("${sftp.jobs.retention.days:7}")
+    private long retentionDays;
+
+    private final Map<Long, Running> running = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> activePerSite = new HashMap<>();
+    private final Object dispatchLock = new Object();
+    private volatile boolean ready;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool( new ThreadFactory()
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "sftp-job-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    @PreDestroy
+    public void shutdown()
+    {
+        ready = false;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Requeue jobs that were running when the application last stopped, then start dispatching
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover()
+    {
+        int requeued = transferJobRepository.requeueRunning( JobStatus.RUNNING, JobStatus.QUEUED, LocalDateTime.now() );
+        if ( requeued > 0 )
+        {
+            log.info( "Requeued {} transfer jobs interrupted by a restart", requeued );
+        }
+        ready = true;
+        dispatch();
+    }
+
+    /**
+     * Queue a transfer
+     *
+     * @throws IllegalArgumentException if the request is incomplete or names an unknown site
+     */
+    public FileTransferDTO submit( FileTransferRequest request, String username )
+    {
+        TransferJob job = transferJobRepository.save( toJob( request, username ) );
+        log.info( "Queued {} job {}: {} -> {} (priority {})", job.getDirection(), job.getId(), job.getSourcePath(),
+                job.getDestinationPath(), job.getPriority() );
+        dispatch();
+        return toDTO( job );
+    }
+
+    /**
+     * Queue several transfers; all are validated before any is queued
+     */
+    public List<FileTransferDTO> submitAll( List<FileTransferRequest> requests, String username )
+    {
+        List<TransferJob> jobs = new ArrayList<>();
+        for (FileTransferRequest request : requests)
+        {
+            jobs.add( toJob( request, username ) );
+        }
+        jobs = transferJobRepository.saveAll( jobs );
+        log.info( "Queued {} transfer jobs", jobs.size() );
+        dispatch();
+        return jobs.stream().map( this::toDTO ).toList();
+    }
+
+    public Optional<FileTransferDTO> find( Long id )
+    {
+        return transferJobRepository.findById( id ).map( this::toDTO );
+    }
+
+    /**
+     * Most recent jobs first, optionally only those in one status
+     */
+    public List<FileTransferDTO> list( JobStatus status, int limit )
+    {
+        PageRequest page = PageRequest.of( 0, Math.max( 1, Math.min( limit, 1000 ) ) );
+        List<TransferJob> jobs = status == null ? transferJobRepository.findAllByOrderByIdDesc( page )
+                : transferJobRepository.findByStatusOrderByIdDesc( status, page );
+        return jobs.stream().map( this::toDTO ).toList();
+    }
+
+    /**
+     * Cancel a queued or running job; a running one stops at its next write
+     *
+     * @return false if the job had already ended
+     */
+    public boolean cancel( Long id )
+    {
+        TransferJob job = transferJobRepository.findById( id )
+                .orElseThrow( () -> new IllegalArgumentException( "Transfer job not found" ) );
+        Running run;
+        // Under the dispatch lock so a job cannot be claimed between the update and the lookup
+        synchronized (dispatchLock)
+        {
+            if ( transferJobRepository.updateStatus( id, ACTIVE, JobStatus.CANCELLED, job.getAttempts(),
+                    LocalDateTime.now(), LocalDateTime.now() ) != 1 )
+            {
+                return false;
+            }
+            run = running.get( id );
+        }
+        if ( run != null )
+        {
+            run.cancelled = true;
+        }
+        else
+        {
+            executor.execute( () -> removeTempFile( job ) );
+        }
+        log.info( "Cancelled transfer job {}", id );
+        return true;
+    }
+
+    /**
+     * Queue a failed or cancelled job again with a fresh set of attempts
+     *
+     * @return false if the job is still active or has completed
+     */
+    public boolean retry( Long id )
+    {
+        if ( transferJobRepository.updateStatus( id, EnumSet.of( JobStatus.FAILED, JobStatus.CANCELLED ),
+                JobStatus.QUEUED, 0, null, LocalDateTime.now() ) != 1 )
+        {
+            return false;
+        }
+        dispatch();
+        return true;
+    }
+
+    public Map<String, Object> getStats()
+    {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (JobStatus status : JobStatus.values())
+        {
+            stats.put( status.name().toLowerCase( Locale.ROOT ), transferJobRepository.countByStatus( status ) );
+        }
+        long bytesPerSecond = 0;
+        for (Running run : running.values())
+        {
+            bytesPerSecond += run.bytesPerSecond();
+        }
+        stats.put( "runningHere", running.size() );
+        stats.put( "bytesPerSecond", bytesPerSecond );
+        synchronized (dispatchLock)
+        {
+            stats.put( "activePerSite", new HashMap<>( activePerSite ) );
+        }
+        return stats;
+    }
+
+    /**
+     * Start due jobs while workers are free. Runs on a timer, on submit, and whenever a job ends.
+     */
+    @Scheduled(fixedDelayString = "${sftp.jobs.poll.interval.ms:2000}")
+    public void dispatch()
+    {
+        if ( !ready )
+        {
+            return;
+        }
+        synchronized (dispatchLock)
+        {
+            if ( running.size() >= workers )
+            {
+                return;
+            }
+            // Saturated sites are left out by the query, so a backlog for one site cannot fill
+            // the page and hide runnable jobs behind it; query again while jobs keep starting
+            PageRequest page = PageRequest.of( 0, Math.max( 100, workers * 4 ) );
+            while (running.size() < workers)
+            {
+                List<TransferJob> due = findDue( page );
+                int started = 0;
+                for (TransferJob job : due)
+                {
+                    if ( running.size() >= workers )
+                    {
+                        break;
+                    }
+                    List<Long> sites = sitesOf( job );
+                    if ( sites.stream().anyMatch( id -> activePerSite.getOrDefault( id, 0 ) >= workersPerSite ) )
+                    {
+                        continue;
+                    }
+                    if ( transferJobRepository.claim( job.getId(), JobStatus.QUEUED, JobStatus.RUNNING,
+                            LocalDateTime.now() ) != 1 )
+                    {
+                        continue;
+                    }
+                    sites.forEach( id -> activePerSite.merge( id, 1, Integer::sum ) );
+                    Running run = new Running( job );
+                    running.put( job.getId(), run );
+                    try
+                    {
+                        executor.execute( () -> execute( run ) );
+                    }
+                    catch (RejectedExecutionException e)
+                    {
+                        // Shutting down; the job is requeued on the next start
+                        release( run );
+                        return;
+                    }
+                    started++;
+                }
+                if ( started == 0 || due.size() < page.getPageSize() )
+                {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Queued jobs that may run now, without those for sites already at their job limit
+     */
+    private List<TransferJob> findDue( PageRequest page )
+    {
+        List<Long> busy = new ArrayList<>();
+        activePerSite.forEach( ( id, active ) ->
+        {
+            if ( active >= workersPerSite )
+            {
+                busy.add( id );
+            }
+        } );
+        if ( busy.isEmpty() )
+        {
+            return transferJobRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByPriorityDescIdAsc(
+                    JobStatus.QUEUED, LocalDateTime.now(), page );
+        }
+        return transferJobRepository.findDueExcludingSites( JobStatus.QUEUED, LocalDateTime.now(), busy, page );
+    }
+
+    /**
+     * Remove jobs that ended longer ago than the retention period
+     */
+    @Scheduled(fixedDelayString = "${sftp.jobs.cleanup.interval.ms:3600000}")
+    public void purgeFinishedJobs()
+    {
+        int removed = transferJobRepository.deleteFinishedBefore( ENDED,
+                LocalDateTime.now().minusDays( retentionDays ) );
+        if ( removed > 0 )
+        {
+            log.info( "Removed {} finished transfer jobs", removed );
+        }
+    }
+
+    private void execute( Running run )
+    {
+        TransferJob job = run.job;
+        try
+        {
+            long bytes = transfer( run );
+            if ( transferJobRepository.finish( job.getId(), JobStatus.RUNNING, JobStatus.COMPLETED, bytes, null,
+                    run.checksums, job.getNextAttemptAt(), LocalDateTime.now(), LocalDateTime.now() ) == 1 )
+            {
+                log.info( "Transfer job {} completed: {} bytes to {} ({})", job.getId(), bytes, job.getDestinationPath(),
+                        run.checksums );
+            }
+            else
+            {
+                log.info( "Transfer job {} was cancelled as it completed; {} is in place", job.getId(),
+                        job.getDestinationPath() );
+            }
+        }
+        catch (Exception e)
+        {
+            fail( run, e );
+        }
+        finally
+        {
+            release( run );
+            dispatch();
+        }
+    }
+
+    /**
+     * One attempt: resume the temporary file at the committed offset, copy the rest and move it into place
+     */
+    private long transfer( Running run ) throws Exception
+    {
+        TransferJob job = run.job;
+        try ( Endpoints endpoints = open( job ) )
+        {
+            long size = endpoints.source.size();
+            long offset = Math.min( job.getBytesTransferred(), size );
+            if ( job.getFileSize() >= 0 && job.getFileSize() != size )
+            {
+                // The source changed since the last attempt, so the partial copy is stale
+                offset = 0;
+            }
+            if ( job.isCreateDirectories() )
+            {
+                endpoints.target.createParents();
+            }
+            offset = endpoints.target.prepare( offset );
+            run.start( offset, size );
+            run.commit( offset );
+            if ( offset > 0 )
+            {
+                log.info( "Resuming transfer job {} at {} of {} bytes", job.getId(), offset, size );
+            }
+
+            // Digests are taken from the source bytes as they stream; a resumed run first
+            // catches up on the part earlier attempts already sent
+            VerificationStrategy verification = VerificationStrategy.of( job.getVerification() );
+            MultiDigest digest = transferVerifier.newDigest( verification );
+            if ( digest != null && offset > 0 )
+            {
+                endpoints.source.digest( digest, offset, bufferPool );
+            }
+            // Held to the caps of the remote sites and of the user who submitted the job
+            try ( BandwidthShaper.Lease lease = bandwidthShaper.lease( job.getCreatedBy(), job.getSite(),
+                    job.getTargetSite() ) )
+            {
+                InputStream source = lease.wrap( endpoints.source.open( offset ) );
+                try ( InputStream in = digest != null ? digest.wrap( source ) : source;
+                      OutputStream out = new ProgressOutputStream( endpoints.target.open( offset ), run ) )
+                {
+                    new RingBufferPipe( bufferPool, executor, ringSlots ).pump( in, out );
+                }
+            }
+            long written = run.bytes.get();
+            boolean checkSize = verification != VerificationStrategy.NONE;
+            if ( written != size || (checkSize && endpoints.target.size() != size) )
+            {
+                throw new IOException( "Copied " + written + " of " + size + " bytes; the source changed during the transfer" );
+            }
+            if ( checkSize && endpoints.source.size() != size )
+            {
+                throw new IOException( "Source size changed during the transfer" );
+            }
+            if ( verification.needsDigest() )
+            {
+                boolean serverSide = verification == VerificationStrategy.REMOTE_CHECKSUM;
+                byte[] expected = digest.digest( MultiDigest.Algorithm.MD5 );
+                byte[] actual = endpoints.target.md5( transferVerifier, serverSide );
+                if ( !MessageDigest.isEqual( expected, actual ) )
+                {
+                    // Start the next attempt over instead of resuming on top of bad data
+                    endpoints.target.discard();
+                    run.commit( 0 );
+                    throw new TransferVerifier.VerificationException( job.getDestinationPath(), "MD5 "
+                            + TransferVerifier.hex( actual ) + " does not match the source's " + TransferVerifier.hex( expected ) );
+                }
+            }
+            endpoints.target.commit();
+            run.checksums = digest != null ? digest.format() : null;
+            return written;
+        }
+    }
+
+    private void fail( Running run, Exception e )
+    {
+        TransferJob job = run.job;
+        LocalDateTime now = LocalDateTime.now();
+        if ( run.cancelled )
+        {
+            removeTempFile( job );
+            log.info( "Transfer job {} stopped after cancellation", job.getId() );
+            return;
+        }
+
+        long committed = run.committed;
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        int limit = job.getMaxAttempts() > 0 ? job.getMaxAttempts() : maxAttempts;
+        if ( !isRetryable( e ) || job.getAttempts() + 1 >= limit )
+        {
+            transferJobRepository.finish( job.getId(), JobStatus.RUNNING, JobStatus.FAILED, committed, error, null,
+                    job.getNextAttemptAt(), now, now );
+            log.warn( "Transfer job {} failed after {} attempts: {}", job.getId(), job.getAttempts() + 1, error );
+            return;
+        }
+
+        long delay = backoff( job.getAttempts() + 1, e );
+        transferJobRepository.finish( job.getId(), JobStatus.RUNNING, JobStatus.QUEUED, committed, error, null,
+                now.plusNanos( delay * 1_000_000 ), null, now );
+        log.warn( "Transfer job {} attempt {} failed, retrying in {} ms from offset {}: {}", job.getId(),
+                job.getAttempts() + 1, delay, committed, error );
+    }
+
+    /**
+     * Exponential backoff with jitter, or the breaker's wait if the site's circuit is open
+     */
+    private long backoff( int attempt, Exception e )
+    {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+        {
+            if ( cause instanceof SiteCircuitBreaker.CircuitOpenException open )
+            {
+                return open.getRetryAfterSeconds() * 1000L;
+            }
+        }
+        long delay = Math.min( maxBackoffMs, initialBackoffMs << Math.min( attempt - 1, 20 ) );
+        return delay / 2 + ThreadLocalRandom.current().nextLong( delay / 2 + 1 );
+    }
+
+    private static boolean isRetryable( Exception e )
+    {
+        if ( e instanceof IllegalArgumentException || e instanceof NoSuchFileException
+                || e instanceof AccessDeniedException )
+        {
+            return false;
+        }
+        if ( e instanceof SftpClient.StatusException status )
+        {
+            return !status.isNoSuchFile() && status.getStatus() != SftpClient.SSH_FX_PERMISSION_DENIED;
+        }
+        return true;
+    }
+
+    private void release( Running run )
+    {
+        synchronized (dispatchLock)
+        {
+            running.remove( run.job.getId() );
+            for (Long id : sitesOf( run.job ))
+            {
+                activePerSite.computeIfPresent( id, ( k, v ) -> v > 1 ? v - 1 : null );
+            }
+        }
+    }
+
+    private void removeTempFile( TransferJob job )
+    {
+        try ( Endpoints endpoints = open( job ) )
+        {
+            endpoints.target.discard();
+        }
+        catch (Exception e)
+        {
+            log.warn( "Could not remove the temporary file of transfer job {}: {}", job.getId(), e.getMessage() );
+        }
+    }
+
+    private TransferJob toJob( FileTransferRequest request, String username )
+    {
+        if ( request.getSiteId() == null || request.getRemotePath() == null || request.getRemotePath().isBlank() )
+        {
+            throw new IllegalArgumentException( "siteId and remotePath are required" );
+        }
+        Direction direction = request.getDirection() != null ? request.getDirection() : Direction.DOWNLOAD;
+        TransferJob job = new TransferJob();
+        job.setDirection( direction );
+        job.setSite( site( request.getSiteId() ) );
+        job.setPriority( request.getPriority() );
+        job.setCreateDirectories( request.isCreateDirectories() );
+        job.setMaxAttempts( maxAttempts );
+        job.setCreatedBy( username );
+
+        String remotePath = request.getRemotePath();
+        switch ( direction )
+        {
+            case DOWNLOAD:
+                job.setSourcePath( remotePath );
+                job.setDestinationPath( localPath( request.getLocalPath() != null && !request.getLocalPath().isBlank()
+                        ? request.getLocalPath() : nameOf( remotePath ) ).toString() );
+                break;
+            case UPLOAD:
+                if ( request.getLocalPath() == null || request.getLocalPath().isBlank() )
+                {
+                    throw new IllegalArgumentException( "localPath is required for an upload" );
+                }
+                Path local = localPath( request.getLocalPath() );
+                if ( !Files.isRegularFile( local ) )
+                {
+                    throw new IllegalArgumentException( "Local file not found: " + request.getLocalPath() );
+                }
+                job.setSourcePath( local.toString() );
+                job.setDestinationPath( remotePath );
+                break;
+            case RELAY:
+                if ( request.getTargetSiteId() == null )
+                {
+                    throw new IllegalArgumentException( "targetSiteId is required for a relay" );
+                }
+                job.setTargetSite( site( request.getTargetSiteId() ) );
+                job.setSourcePath( remotePath );
+                job.setDestinationPath( request.getTargetPath() != null && !request.getTargetPath().isBlank()
+                        ? request.getTargetPath() : remotePath );
+                if ( job.getTargetSite().getId().equals( job.getSite().getId() )
+                        && job.getDestinationPath().equals( job.getSourcePath() ) )
+                {
+                    throw new IllegalArgumentException( "Source and destination are the same file" );
+                }
+                break;
+        }
+        if ( job.getDestinationPath().endsWith( "/" ) )
+        {
+            throw new IllegalArgumentException( "Destination must be a file path: " + job.getDestinationPath() );
+        }
+        job.setFileName( nameOf( job.getDestinationPath() ) );
+        // The receiving site's default decides how much checking a relay gets
+        job.setVerification( transferVerifier.resolve( job.getTargetSite() != null ? job.getTargetSite() : job.getSite(),
+                request.getVerifyTransfer() ) );
+        return job;
+    }
+
+    private Site site( Long id )
+    {
+        return siteRepository.findById( id )
+                .orElseThrow( () -> new IllegalArgumentException( "Site not found: " + id ) );
+    }
+
+    /**
+     * Resolve a path inside the local transfer directory, refusing anything that escapes it
+     */
+    private Path localPath( String path )
+    {
+        Path root = Paths.get( localRoot ).toAbsolutePath().normalize();
+        Path resolved = root.resolve( path.replaceFirst( "^/+", "" ) ).normalize();
+        if ( !resolved.startsWith( root ) || resolved.equals( root ) )
+        {
+            throw new IllegalArgumentException( "Local path must be inside the transfer directory: " + path );
+        }
+        return resolved;
+    }
+
+    private static String nameOf( String path )
+    {
+        String name = path.substring( path.lastIndexOf( '/' ) + 1 );
+        if ( name.isEmpty() )
+        {
+            throw new IllegalArgumentException( "Not a file path: " + path );
+        }
+        return name;
+    }
+
+    private static List<Long> sitesOf( TransferJob job )
+    {
+        if ( job.getTargetSite() != null && !job.getTargetSite().getId().equals( job.getSite().getId() ) )
+        {
+            return List.of( job.getSite().getId(), job.getTargetSite().getId() );
+        }
+        return List.of( job.getSite().getId() );
+    }
+
+    private FileTransferDTO toDTO( TransferJob job )
+    {
+        FileTransferDTO dto = new FileTransferDTO();
+        dto.setId( job.getId() );
+        dto.setFileName( job.getFileName() );
+        dto.setSourcePath( job.getSourcePath() );
+        dto.setDestinationPath( job.getDestinationPath() );
+        dto.setStatus( job.getStatus().name() );
+        dto.setStartTime( job.getStartedAt() );
+        dto.setEndTime( job.getCompletedAt() );
+        dto.setErrorMessage( job.getErrorMessage() );
+        dto.setDirection( job.getDirection().name() );
+        dto.setSiteId( job.getSite().getId() );
+        dto.setTargetSiteId( job.getTargetSite() != null ? job.getTargetSite().getId() : null );
+        dto.setPriority( job.getPriority() );
+        dto.setAttempts( job.getAttempts() );
+        dto.setNextAttemptTime( job.getStatus() == JobStatus.QUEUED ? job.getNextAttemptAt() : null );
+        dto.setVerification( VerificationStrategy.of( job.getVerification() ).name() );
+        dto.setChecksums( MultiDigest.parse( job.getChecksums() ) );
+
+        // A running job's live counters are fresher than its last commit
+        Running run = running.get( job.getId() );
+        dto.setFileSize( run != null && run.size >= 0 ? run.size : Math.max( job.getFileSize(), 0 ) );
+        dto.setBytesTransferred( run != null && run.size >= 0 ? run.bytes.get() : job.getBytesTransferred() );
+        return dto;
+    }
+
+    private Endpoints open( TransferJob job ) throws Exception
+    {
+        Endpoints endpoints = new Endpoints();
+        try
+        {
+            String temp = tempPath( job );
+            switch ( job.getDirection() )
+            {
+                case DOWNLOAD:
+                    endpoints.source = new RemoteSource( endpoints.client( job.getSite() ), job.getSourcePath() );
+                    endpoints.target = new LocalTarget( Paths.get( job.getDestinationPath() ), Paths.get( temp ) );
+                    break;
+                case UPLOAD:
+                    endpoints.source = new LocalSource( Paths.get( job.getSourcePath() ) );
+                    endpoints.target = new RemoteTarget( endpoints.client( job.getSite() ), job.getDestinationPath(), temp );
+                    break;
+                case RELAY:
+                    endpoints.source = new RemoteSource( endpoints.client( job.getSite() ), job.getSourcePath() );
+                    endpoints.target = new RemoteTarget( endpoints.client( job.getTargetSite() ),
+                            job.getDestinationPath(), temp );
+                    break;
+            }
+            return endpoints;
+        }
+        catch (Exception e)
+        {
+            endpoints.close();
+            throw e;
+        }
+    }
+
+    private static String tempPath( TransferJob job )
+    {
+        String destination = job.getDestinationPath();
+        int slash = destination.lastIndexOf( '/' );
+        String directory = slash >= 0 ? destination.substring( 0, slash + 1 ) : "";
+        return directory + "." + job.getFileName() + ".job" + job.getId() + ".part";
+    }
+
+    /**
+     * State of a job running in this process
+     */
+    private class Running
+    {
+        private final TransferJob job;
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile long size = -1;
+        private volatile long committed;
+        private volatile boolean cancelled;
+        private long startOffset;
+        private long startNanos;
+        // Digests of the delivered file, set once an attempt succeeds
+        private String checksums;
+
+        Running( TransferJob job )
+        {
+            this.job = job;
+            this.committed = job.getBytesTransferred();
+        }
+
+        void start( long offset, long size )
+        {
+            this.startOffset = offset;
+            this.startNanos = System.nanoTime();
+            this.committed = offset;
+            this.bytes.set( offset );
+            this.size = size;
+        }
+
+        long bytesPerSecond()
+        {
+            long elapsed = System.nanoTime() - startNanos;
+            return size < 0 || elapsed <= 0 ? 0 : (bytes.get() - startOffset) * 1_000_000_000L / elapsed;
+        }
+
+        /**
+         * Record bytes that have been flushed to the destination
+         */
+        void commit( long offset )
+        {
+            committed = offset;
+            if ( transferJobRepository.updateProgress( job.getId(), JobStatus.RUNNING, offset, size,
+                    LocalDateTime.now() ) != 1 )
+            {
+                // No longer running, so it was cancelled
+                cancelled = true;
+            }
+        }
+    }
+
+    /**
+     * Counts bytes on their way to the destination, flushing and committing the offset
+     * every sftp.jobs.progress.commit.bytes, and stops the copy once the job is cancelled
+     */
+    private class ProgressOutputStream extends FilterOutputStream
+    {
+        private final Running run;
+        private long sinceCommit;
+
+        ProgressOutputStream( OutputStream out, Running run )
+        {
+            super( out );
+            this.run = run;
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException
+        {
+            if ( run.cancelled )
+            {
+                throw new InterruptedIOException( "Transfer job " + run.job.getId() + " was cancelled" );
+            }
+            out.write( b, off, len );
+            run.bytes.addAndGet( len );
+            sinceCommit += len;
+            if ( sinceCommit >= commitBytes )
+            {
+                // Only an offset the destination has acknowledged is safe to resume from
+                out.flush();
+                run.commit( run.bytes.get() );
+                sinceCommit = 0;
+            }
+        }
+
+        @Override
+        public void write( int b ) throws IOException
+        {
+            write( new byte[]{ (byte) b }, 0, 1 );
+        }
+    }
+
+    /**
+     * The two ends of a job and the clients they hold
+     */
+    private class Endpoints implements AutoCloseable
+    {
+        private final List<SftpClient> clients = new ArrayList<>();
+        private Source source;
+        private Target target;
+
+        SftpClient client( Site site ) throws Exception
+        {
+            SftpClient client = clientProvider.openChannel( site );
+            clients.add( client );
+            return client;
+        }
+
+        @Override
+        public void close()
+        {
+            for (SftpClient client : clients)
+            {
+                client.close();
+            }
+        }
+    }
+
+    private interface Source
+    {
+        long size() throws IOException;
+
+        InputStream open( long offset ) throws IOException;
+
+        /**
+         * Feed the first length bytes to a digest
+         */
+        void digest( MultiDigest digest, long length, TransferBufferPool bufferPool ) throws IOException;
+    }
+
+    private interface Target
+    {
+        /**
+         * Make the temporary file hold exactly the first offset bytes, or fewer if that
+         * much never arrived. Returns the offset to resume from.
+         */
+        long prepare( long offset ) throws IOException;
+
+        OutputStream open( long offset ) throws IOException;
+
+        long size() throws IOException;
+
+        /**
+         * MD5 of the temporary file
+         */
+        byte[] md5( TransferVerifier verifier, boolean serverSide ) throws IOException;
+
+        void createParents() throws IOException;
+
+        /**
+         * Move the temporary file into place, replacing the destination
+         */
+        void commit() throws IOException;
+
+        void discard() throws IOException;
+    }
+
+    private record RemoteSource( SftpClient client, String path ) implements Source
+    {
+        @Override
+        public long size() throws IOException
+        {
+            return client.stat( path ).getSize();
+        }
+
+        @Override
+        public InputStream open( long offset ) throws IOException
+        {
+            return client.openRead( path, offset );
+        }
+
+        @Override
+        public void digest( MultiDigest digest, long length, TransferBufferPool bufferPool ) throws IOException
+        {
+            byte[] buffer = bufferPool.acquire();
+            try ( InputStream in = client.openRead( path, 0 ) )
+            {
+                long remaining = length;
+                int read;
+                while (remaining > 0 && (read = in.read( buffer, 0, (int) Math.min( buffer.length, remaining ) )) != -1)
+                {
+                    digest.update( buffer, 0, read );
+                    remaining -= read;
+                }
+            }
+            finally
+            {
+                bufferPool.release( buffer );
+            }
+        }
+    }
+
+    private record LocalSource( Path path ) implements Source
+    {
+        @Override
+        public long size() throws IOException
+        {
+            return Files.size( path );
+        }
+
+        @Override
+        public InputStream open( long offset ) throws IOException
+        {
+            FileChannel channel = FileChannel.open( path, StandardOpenOption.READ );
+            channel.position( offset );
+            return Channels.newInputStream( channel );
+        }
+
+        @Override
+        public void digest( MultiDigest digest, long length, TransferBufferPool bufferPool ) throws IOException
+        {
+            digest.updateFile( path, 0, length );
+        }
+    }
+
+    private record RemoteTarget( SftpClient client, String path, String temp ) implements Target
+    {
+        @Override
+        public long prepare( long offset ) throws IOException
+        {
+            long existing;
+            try
+            {
+                existing = client.stat( temp ).getSize();
+            }
+            catch (SftpClient.StatusException e)
+            {
+                if ( !e.isNoSuchFile() )
+                {
+                    throw e;
+                }
+                return 0;
+            }
+            long resume = Math.min( offset, existing );
+            if ( existing > resume )
+            {
+                client.truncate( temp, resume );
+            }
+            return resume;
+        }
+
+        @Override
+        public OutputStream open( long offset ) throws IOException
+        {
+            return offset == 0 ? client.openWrite( temp, 0 ) : client.openWrite( temp, offset, false );
+        }
+
+        @Override
+        public long size() throws IOException
+        {
+            return client.stat( temp ).getSize();
+        }
+
+        @Override
+        public byte[] md5( TransferVerifier verifier, boolean serverSide ) throws IOException
+        {
+            return verifier.remoteMd5( client, temp, serverSide );
+        }
+
+        @Override
+        public void createParents() throws IOException
+        {
+            List<String> missing = new ArrayList<>();
+            for (String dir = parentOf( path ); dir != null; dir = parentOf( dir ))
+            {
+                try
+                {
+                    if ( client.stat( dir ).isDirectory() )
+                    {
+                        break;
+                    }
+                    throw new IOException( dir + " exists and is not a directory" );
+                }
+                catch (SftpClient.StatusException e)
+                {
+                    if ( !e.isNoSuchFile() )
+                    {
+                        throw e;
+                    }
+                    missing.add( 0, dir );
+                }
+            }
+            for (String dir : missing)
+            {
+                try
+                {
+                    client.mkdir( dir );
+                }
+                catch (SftpClient.StatusException e)
+                {
+                    // Another job may have created it first
+                    if ( !client.stat( dir ).isDirectory() )
+                    {
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void commit() throws IOException
+        {
+            try
+            {
+                client.rm( path );
+            }
+            catch (SftpClient.StatusException e)
+            {
+                if ( !e.isNoSuchFile() )
+                {
+                    throw e;
+                }
+            }
+            client.rename( temp, path );
+        }
+
+        @Override
+        public void discard() throws IOException
+        {
+            try
+            {
+                client.rm( temp );
+            }
+            catch (SftpClient.StatusException e)
+            {
+                if ( !e.isNoSuchFile() )
+                {
+                    throw e;
+                }
+            }
+        }
+
+        private static String parentOf( String path )
+        {
+            int slash = path.lastIndexOf( '/' );
+            return slash > 0 ? path.substring( 0, slash ) : null;
+        }
+    }
+
+    private record LocalTarget( Path path, Path temp ) implements Target
+    {
+        @Override
+        public long prepare( long offset ) throws IOException
+        {
+            if ( !Files.exists( temp ) )
+            {
+                return 0;
+            }
+            long resume = Math.min( offset, Files.size( temp ) );
+            try ( FileChannel channel = FileChannel.open( temp, StandardOpenOption.WRITE ) )
+            {
+                channel.truncate( resume );
+            }
+            return resume;
+        }
+
+        @Override
+        public OutputStream open( long offset ) throws IOException
+        {
+            FileChannel channel = FileChannel.open( temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+            if ( offset == 0 )
+            {
+                channel.truncate( 0 );
+            }
+            channel.position( offset );
+            return Channels.newOutputStream( channel );
+        }
+
+        @Override
+        public long size() throws IOException
+        {
+            return Files.size( temp );
+        }
+
+        @Override
+        public byte[] md5( TransferVerifier verifier, boolean serverSide ) throws IOException
+        {
+            return verifier.md5( temp );
+        }
+
+        @Override
+        public void createParents() throws IOException
+        {
+            Files.createDirectories( path.getParent() );
+        }
+
+        @Override
+        public void commit() throws IOException
+        {
+            Files.move( temp, path, StandardCopyOption.REPLACE_EXISTING );
+        }
+
+        @Override
+        public void discard() throws IOException
+        {
+            Files.deleteIfExists( temp );
+        }
+    }
+}
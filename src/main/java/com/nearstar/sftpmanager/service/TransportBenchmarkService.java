@@ -0,0 +1,381 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.service;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.Session;
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.TransportProfile;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import com.nearstar.sftpmanager.util.BandwidthShaper;
+import com.nearstar.sftpmanager.util.SshSessionRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures upload and download throughput of each {@link TransportProfile} against
+ * a site, using a temporary file in the site's target directory, so the fastest
+ * configuration can be picked per partner.
+ * <p>
+ * Benchmarks run one at a time in the background and are polled for their report.
+ * The data they move is capped by sftp.benchmark.max.total.mb and held to the
+ * site's and the requesting user's bandwidth caps.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransportBenchmarkService
+{
+    private static final int CHUNK_SIZE = 32 * 1024;
+
+    private final SiteRepository siteRepository;
+    private final SshSessionRegistry sessionRegistry;
+    private final BandwidthShaper bandwidthShaper;
+
+    @Value("${sftp.connect.timeout.ms:30000}")
+    private int connectTimeoutMs;
+
+    @Value("${sftp.benchmark.max.size.mb:256}")
+    private int maxSizeMb;
+
+    @Value("${sftp.benchmark.max.total.mb:256}")
+    private int maxTotalMb;
+
+    @Value("${sftp.benchmark.retention.minutes:60}")
+    private long retentionMinutes;
+
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor( runnable ->
+    {
+        Thread thread = new Thread( runnable, "sftp-benchmark" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue a run of every profile against a site and return its report so far;
+     * poll {@link #find} with the report's id for the results
+     *
+     * @param sizeMb       size of the test file
+     * @param compressible CSV-like test data instead of random bytes
+     * @param username     user whose bandwidth cap applies
+     * @throws IllegalStateException if a benchmark of the site is already queued or running
+     */
+    public Map<String, Object> start( Long siteId, int sizeMb, boolean compressible, String username )
+    {
+        Site site = siteRepository.findById( siteId )
+                .orElseThrow( () -> new IllegalArgumentException( "Site not found" ) );
+        // Every profile uploads and downloads the file once
+        int profiles = TransportProfile.values().length;
+        int limit = Math.min( maxSizeMb, maxTotalMb / (2 * profiles) );
+        if ( sizeMb < 1 || sizeMb > limit )
+        {
+            throw new IllegalArgumentException( "Benchmark size must be between 1 and " + limit + " MB" );
+        }
+
+        purgeExpired();
+        Run run = new Run( UUID.randomUUID().toString(), siteId, sizeMb, compressible,
+                TransportProfile.of( site.getTransportProfile() ) );
+        synchronized (runs)
+        {
+            for (Run other : runs.values())
+            {
+                if ( other.siteId.equals( siteId ) && other.finishedAt == null )
+                {
+                    throw new IllegalStateException( "A benchmark of this site is already in progress" );
+                }
+            }
+            runs.put( run.id, run );
+        }
+        executor.submit( () -> execute( run, site, username ) );
+        log.info( "Queued transport benchmark {} of site {} ({} MB per profile)", run.id, site.getSiteName(), sizeMb );
+        return run.report();
+    }
+
+    /**
+     * Report of a benchmark of the given site, while it runs and for a while after
+     */
+    public Optional<Map<String, Object>> find( Long siteId, String benchmarkId )
+    {
+        purgeExpired();
+        Run run = runs.get( benchmarkId );
+        return run != null && run.siteId.equals( siteId ) ? Optional.of( run.report() ) : Optional.empty();
+    }
+
+    private void execute( Run run, Site site, String username )
+    {
+        run.started();
+        try ( BandwidthShaper.Lease lease = bandwidthShaper.lease( username, site ) )
+        {
+            run.finished( benchmark( run, site, lease ), null );
+        }
+        catch (Exception e)
+        {
+            log.warn( "Transport benchmark of site {} failed: {}", site.getSiteName(), e.getMessage() );
+            run.finished( null, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName() );
+        }
+    }
+
+    private void purgeExpired()
+    {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes( retentionMinutes );
+        runs.values().removeIf( run -> run.finishedAt != null && run.finishedAt.isBefore( cutoff ) );
+    }
+
+    /**
+     * Run every profile against a site, returning the recommended profile
+     */
+    private TransportProfile benchmark( Run run, Site site, BandwidthShaper.Lease lease )
+    {
+        byte[] chunk = testData( run.compressible );
+        long totalBytes = run.sizeMb * 1024L * 1024L;
+
+        TransportProfile fastest = null;
+        double fastestScore = 0;
+        for (TransportProfile profile : TransportProfile.values())
+        {
+            Map<String, Object> result = run( site, profile, lease, chunk, totalBytes );
+            run.add( result );
+
+            Object upload = result.get( "uploadMBps" );
+            Object download = result.get( "downloadMBps" );
+            if ( upload != null && download != null )
+            {
+                double score = (double) upload + (double) download;
+                if ( score > fastestScore )
+                {
+                    fastestScore = score;
+                    fastest = profile;
+                }
+            }
+        }
+        return fastest;
+    }
+
+    private Map<String, Object> run( Site site, TransportProfile profile, BandwidthShaper.Lease lease, byte[] chunk,
+                                     long totalBytes )
+    {
+        Map<String, Object> result = new HashMap<>();
+        result.put( "profile", profile.name() );
+        result.put( "description", profile.getDescription() );
+
+        String dir = site.getTargetPath() != null && !site.getTargetPath().isEmpty() ? site.getTargetPath() : ".";
+        String remotePath = (dir.endsWith( "/" ) ? dir : dir + "/") + ".sftpmanager-benchmark-" + UUID.randomUUID() + ".tmp";
+
+        Session session = null;
+        ChannelSftp channel = null;
+        boolean uploaded = false;
+        try
+        {
+            long start = System.nanoTime();
+            session = sessionRegistry.openSession( site, profile, connectTimeoutMs );
+            result.put( "handshakeMs", (System.nanoTime() - start) / 1_000_000 );
+
+            channel = (ChannelSftp) session.openChannel( "sftp" );
+            channel.setBulkRequests( profile.getBulkRequests() );
+            channel.connect( connectTimeoutMs );
+
+            start = System.nanoTime();
+            try ( OutputStream out = lease.wrap( channel.put( remotePath ) ) )
+            {
+                uploaded = true;
+                for (long written = 0; written < totalBytes; written += chunk.length)
+                {
+                    out.write( chunk, 0, (int) Math.min( chunk.length, totalBytes - written ) );
+                }
+            }
+            result.put( "uploadMBps", throughput( totalBytes, System.nanoTime() - start ) );
+
+            start = System.nanoTime();
+            byte[] buffer = new byte[CHUNK_SIZE];
+            long read = 0;
+            try ( InputStream in = lease.wrap( channel.get( remotePath ) ) )
+            {
+                int n;
+                while ((n = in.read( buffer )) != -1)
+                {
+                    read += n;
+                }
+            }
+            result.put( "downloadMBps", throughput( read, System.nanoTime() - start ) );
+        }
+        catch (Exception e)
+        {
+            log.warn( "Transport benchmark of {} failed for site {}: {}", profile, site.getSiteName(), e.getMessage() );
+            result.put( "error", e.getMessage() );
+        }
+        finally
+        {
+            if ( channel != null )
+            {
+                if ( uploaded )
+                {
+                    try
+                    {
+                        channel.rm( remotePath );
+                    }
+                    catch (Exception e)
+                    {
+                        log.warn( "Could not remove benchmark file {}: {}", remotePath, e.getMessage() );
+                    }
+                }
+                channel.disconnect();
+            }
+            if ( session != null )
+            {
+                session.disconnect();
+            }
+        }
+        return result;
+    }
+
+    private static double throughput( long bytes, long nanos )
+    {
+        double mbps = (bytes / (1024.0 * 1024.0)) / Math.max( nanos / 1e9, 1e-9 );
+        return Math.round( mbps * 100 ) / 100.0;
+    }
+
+    private static byte[] testData( boolean compressible )
+    {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        if ( !compressible )
+        {
+            new Random( 42 ).nextBytes( chunk );
+            return chunk;
+        }
+
+        // Rows shaped like a typical partner CSV feed
+        StringBuilder rows = new StringBuilder( CHUNK_SIZE + 64 );
+        for (int row = 0; rows.length() < CHUNK_SIZE; row++)
+        {
+            rows.append( "2025-01-" ).append( 10 + row % 20 ).append( ",ACCT-" ).append( 100000 + row )
+                    .append( ',' ).append( row * 37 % 10000 ).append( '.' ).append( row % 100 )
+                    .append( ",USD,SETTLED\n" );
+        }
+        System.arraycopy( rows.toString().getBytes( StandardCharsets.US_ASCII ), 0, chunk, 0, CHUNK_SIZE );
+        return chunk;
+    }
+
+    /**
+     * One queued, running or finished benchmark
+     */
+    private static class Run
+    {
+        private final String id;
+        private final Long siteId;
+        private final int sizeMb;
+        private final boolean compressible;
+        private final TransportProfile currentProfile;
+        private final LocalDateTime queuedAt = LocalDateTime.now();
+        private final List<Map<String, Object>> results = new ArrayList<>();
+        private LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private TransportProfile recommended;
+        private String error;
+
+        Run( String id, Long siteId, int sizeMb, boolean compressible, TransportProfile currentProfile )
+        {
+            this.id = id;
+            this.siteId = siteId;
+            this.sizeMb = sizeMb;
+            this.compressible = compressible;
+            this.currentProfile = currentProfile;
+        }
+
+        synchronized void started()
+        {
+            startedAt = LocalDateTime.now();
+        }
+
+        synchronized void add( Map<String, Object> result )
+        {
+            results.add( result );
+        }
+
+        synchronized void finished( TransportProfile recommended, String error )
+        {
+            this.recommended = recommended;
+            this.error = error;
+            finishedAt = LocalDateTime.now();
+        }
+
+        synchronized Map<String, Object> report()
+        {
+            String status = finishedAt != null ? (error != null ? "FAILED" : "COMPLETED")
+                    : startedAt != null ? "RUNNING" : "QUEUED";
+            Map<String, Object> report = new HashMap<>();
+            report.put( "benchmarkId", id );
+            report.put( "siteId", siteId );
+            report.put( "status", status );
+            report.put( "sizeMb", sizeMb );
+            report.put( "compressible", compressible );
+            report.put( "profiles", TransportProfile.values().length );
+            report.put( "queuedAt", queuedAt );
+            report.put( "startedAt", startedAt );
+            report.put( "finishedAt", finishedAt );
+            report.put( "currentProfile", currentProfile.name() );
+            report.put( "recommendedProfile", recommended != null ? recommended.name() : null );
+            report.put( "error", error );
+            report.put( "results", new ArrayList<>( results ) );
+            return report;
+        }
+    }
+}
@@ -0,0 +1,567 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.nearstar.sftpmanager.model.dto.UserSession;
+import com.nearstar.sftpmanager.model.entity.ApplicationConfig;
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.repository.ApplicationConfigRepository;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Token-bucket bandwidth shaping for SFTP transfers, nested global &rarr; site &rarr; user.
+ * <p>
+ * A transfer takes a {@link Lease} on the buckets it passes through and wraps its
+ * streams with it. Every chunk is charged to each bucket in the lease at once and the
+ * stream then sleeps for the longest debt among them, so the tightest cap wins and
+ * every level is held to its rate over time. Unlimited buckets cost one volatile read
+ * per chunk and nothing is allocated per chunk.
+ * <p>
+ * Caps are bytes per second (K, M and G suffixes allowed, 0 = unlimited). The global cap
+ * and the defaults for sites and users come from the BANDWIDTH_* keys in the application
+ * configuration, falling back to the sftp.bandwidth.* properties; a user can be given
+ * their own cap with BANDWIDTH_USER_BPS.&lt;username&gt; and a site with its bandwidth
+ * limit. They are re-read on an interval, so changes also slow down or speed up
+ * transfers that are already running.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BandwidthShaper
+{
+    public static final String GLOBAL_KEY = "BANDWIDTH_GLOBAL_BPS";
+    public static final String SITE_KEY = "BANDWIDTH_SITE_BPS";
+    public static final String USER_KEY = "BANDWIDTH_USER_BPS";
+
+    // Largest amount charged at once, so slow caps pace a transfer smoothly
+    private static final int SLICE = 64 * 1024;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final ApplicationConfigRepository configRepository;
+    private final SiteRepository siteRepository;
+
+    @Value("${sftp.bandwidth.global.bps:0}")
+    private String globalDefault;
+
+    @Value("${sftp.bandwidth.site.bps:0}")
+    private String siteDefault;
+
+    @Value("${sftp.bandwidth.user.bps:0}")
+    private String userDefault;
+
+    @Value("${sftp.bandwidth.burst.ms:250}")
+    private long burstMs;
+
+    private final Bucket global = new Bucket( "global" );
+    private final Map<Long, Bucket> sites = new ConcurrentHashMap<>();
+    private final Map<String, Bucket> users = new ConcurrentHashMap<>();
+
+    private volatile long siteRate;
+    private volatile long userRate;
+    private volatile Map<String, Long> userRates = Map.of();
+
+    @PostConstruct
+    public void init()
+    {
+        refresh();
+    }
+
+    /**
+     * Re-read the caps, apply them to the live buckets and drop the buckets
+     * no transfer is using any more
+     */
+    @Scheduled(fixedDelayString = "${sftp.bandwidth.refresh.interval.ms:10000}",
+            initialDelayString = "${sftp.bandwidth.refresh.interval.ms:10000}")
+    public void refresh()
+    {
+        Map<String, String> config = new HashMap<>();
+        try
+        {
+            for (ApplicationConfig entry : configRepository.findAll())
+            {
+                if ( entry.getConfigKey() != null && entry.getConfigKey().startsWith( "BANDWIDTH_" ) )
+                {
+                    config.put( entry.getConfigKey(), entry.getConfigValue() );
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            log.warn( "Could not read bandwidth configuration, keeping the current caps: {}", e.getMessage() );
+            return;
+        }
+
+        Map<String, Long> perUser = new HashMap<>();
+        String prefix = USER_KEY + ".";
+        for (Map.Entry<String, String> entry : config.entrySet())
+        {
+            if ( entry.getKey().startsWith( prefix ) )
+            {
+                Long rate = parseRate( entry.getKey(), entry.getValue() );
+                if ( rate != null )
+                {
+                    perUser.put( entry.getKey().substring( prefix.length() ), rate );
+                }
+            }
+        }
+        userRates = perUser;
+        siteRate = rate( config, SITE_KEY, siteDefault );
+        userRate = rate( config, USER_KEY, userDefault );
+        global.setRate( rate( config, GLOBAL_KEY, globalDefault ), burstMs );
+
+        Map<Long, Site> current = new HashMap<>();
+        if ( !sites.isEmpty() )
+        {
+            for (Site site : siteRepository.findAllById( new ArrayList<>( sites.keySet() ) ))
+            {
+                current.put( site.getId(), site );
+            }
+        }
+        for (Long id : new ArrayList<>( sites.keySet() ))
+        {
+            Bucket bucket = sites.computeIfPresent( id, ( key, b ) -> b.leases == 0 ? null : b );
+            if ( bucket != null )
+            {
+                Site site = current.get( id );
+                bucket.setRate( site != null ? rateOf( site ) : siteRate, burstMs );
+            }
+        }
+        for (String user : new ArrayList<>( users.keySet() ))
+        {
+            Bucket bucket = users.computeIfPresent( user, ( key, b ) -> b.leases == 0 ? null : b );
+            if ( bucket != null )
+            {
+                bucket.setRate( rateOf( user ), burstMs );
+            }
+        }
+    }
+
+    /**
+     * Lease the buckets for the current request's user and the given sites
+     */
+    public Lease lease( Site... sites )
+    {
+        return lease( currentUser(), sites );
+    }
+
+    /**
+     * Lease the buckets for a user (null for none) and the given sites; null sites are
+     * skipped. The lease must be closed when the transfer ends.
+     */
+    public Lease lease( String user, Site... sites )
+    {
+        List<Bucket> chain = new ArrayList<>( sites.length + 2 );
+        List<Long> siteIds = new ArrayList<>( sites.length );
+        if ( user != null )
+        {
+            long rate = rateOf( user );
+            chain.add( users.compute( user, ( key, b ) -> retain( b, "user " + key, rate ) ) );
+        }
+        for (Site site : sites)
+        {
+            if ( site == null || site.getId() == null || siteIds.contains( site.getId() ) )
+            {
+                continue;
+            }
+            long rate = rateOf( site );
+            chain.add( this.sites.compute( site.getId(), ( key, b ) -> retain( b, "site " + site.getSiteName(), rate ) ) );
+            siteIds.add( site.getId() );
+        }
+        chain.add( global );
+        return new Lease( chain.toArray( new Bucket[0] ), user, siteIds );
+    }
+
+    public Map<String, Object> getStats()
+    {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put( "global", global.stats() );
+        Map<String, Object> siteStats = new LinkedHashMap<>();
+        sites.forEach( ( id, bucket ) -> siteStats.put( String.valueOf( id ), bucket.stats() ) );
+        stats.put( "sites", siteStats );
+        Map<String, Object> userStats = new LinkedHashMap<>();
+        users.forEach( ( user, bucket ) -> userStats.put( user, bucket.stats() ) );
+        stats.put( "users", userStats );
+        stats.put( "siteDefaultBps", siteRate );
+        stats.put( "userDefaultBps", userRate );
+        return stats;
+    }
+
+    private Bucket retain( Bucket bucket, String name, long rate )
+    {
+        if ( bucket == null )
+        {
+            bucket = new Bucket( name );
+        }
+        bucket.setRate( rate, burstMs );
+        bucket.leases++;
+        return bucket;
+    }
+
+    private void release( Lease lease )
+    {
+        if ( lease.user != null )
+        {
+            users.computeIfPresent( lease.user, ( key, b ) ->
+            {
+                b.leases--;
+                return b;
+            } );
+        }
+        for (Long id : lease.siteIds)
+        {
+            sites.computeIfPresent( id, ( key, b ) ->
+            {
+                b.leases--;
+                return b;
+            } );
+        }
+    }
+
+    private long rateOf( Site site )
+    {
+        Long own = site.getBandwidthLimitBps();
+        return own != null ? Math.max( 0, own ) : siteRate;
+    }
+
+    private long rateOf( String user )
+    {
+        return userRates.getOrDefault( user, userRate );
+    }
+
+    private long rate( Map<String, String> config, String key, String fallback )
+    {
+        Long rate = parseRate( key, config.get( key ) );
+        if ( rate == null )
+        {
+            rate = parseRate( key, fallback );
+        }
+        return rate != null ? rate : 0;
+    }
+
+    /**
+     * Parse a rate such as 500000, 512K or 10M (bytes per second, binary multiples);
+     * null when blank or invalid
+     */
+    static Long parseRate( String key, String value )
+    {
+        if ( value == null || value.isBlank() )
+        {
+            return null;
+        }
+        String text = value.trim().toUpperCase( Locale.ROOT );
+        long multiplier = 1;
+        switch ( text.charAt( text.length() - 1 ) )
+        {
+            case 'K':
+                multiplier = 1024L;
+                break;
+            case 'M':
+                multiplier = 1024L * 1024;
+                break;
+            case 'G':
+                multiplier = 1024L * 1024 * 1024;
+                break;
+            default:
+                break;
+        }
+        if ( multiplier > 1 )
+        {
+            text = text.substring( 0, text.length() - 1 ).trim();
+        }
+        try
+        {
+            return Math.max( 0, Math.multiplyExact( Long.parseLong( text ), multiplier ) );
+        }
+        catch (ArithmeticException | NumberFormatException e)
+        {
+            log.warn( "Ignoring invalid bandwidth cap {}={}", key, value );
+            return null;
+        }
+    }
+
+    private static String currentUser()
+    {
+        ServletRequestAttributes attributes =
+                (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+        if ( attributes == null )
+        {
+            return null;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        HttpSession session = request.getSession( false );
+        UserSession userSession = session != null ? (UserSession) session.getAttribute( "user" ) : null;
+        if ( userSession != null && userSession.getUsername() != null )
+        {
+            return userSession.getUsername();
+        }
+        return "anonymous@" + request.getRemoteAddr();
+    }
+
+    private static void pause( long nanos ) throws InterruptedIOException
+    {
+        long deadline = System.nanoTime() + nanos;
+        while (nanos > 0)
+        {
+            LockSupport.parkNanos( nanos );
+            if ( Thread.interrupted() )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Interrupted while waiting for bandwidth" );
+            }
+            nanos = deadline - System.nanoTime();
+        }
+    }
+
+    /**
+     * One token bucket. Takes always succeed and may leave the bucket in debt; the
+     * caller then waits until the debt is paid back, which keeps concurrent
+     * transfers in order without a queue.
+     */
+    private static final class Bucket
+    {
+        private final String name;
+        private volatile long rate;
+        private long burst;
+        private long tokens;
+        private long refilledAt = System.nanoTime();
+        private long waited;
+
+        // Guarded by the owning map's compute
+        private int leases;
+
+        Bucket( String name )
+        {
+            this.name = name;
+        }
+
+        synchronized void setRate( long rate, long burstMs )
+        {
+            if ( rate == this.rate )
+            {
+                return;
+            }
+            burst = Math.max( SLICE, rate / 1000 * Math.max( 1, burstMs ) );
+            if ( this.rate <= 0 )
+            {
+                tokens = burst;
+                refilledAt = System.nanoTime();
+            }
+            tokens = Math.min( tokens, burst );
+            this.rate = rate;
+        }
+
+        /**
+         * Charge bytes and return how many nanoseconds the caller must wait
+         */
+        long take( int bytes )
+        {
+            long r = rate;
+            if ( r <= 0 )
+            {
+                return 0;
+            }
+            synchronized (this)
+            {
+                long now = System.nanoTime();
+                long elapsed = now - refilledAt;
+                refilledAt = now;
+                tokens = (long) Math.min( burst, tokens + elapsed * (r / (double) NANOS_PER_SECOND) );
+                tokens -= bytes;
+                if ( tokens >= 0 )
+                {
+                    return 0;
+                }
+                long wait = (long) (-tokens * ((double) NANOS_PER_SECOND / r));
+                waited += wait;
+                return wait;
+            }
+        }
+
+        synchronized Map<String, Object> stats()
+        {
+            return Map.of(
+                    "name", name,
+                    "bps", rate,
+                    "leases", leases,
+                    "throttledMs", waited / 1_000_000 );
+        }
+    }
+
+    /**
+     * The buckets one transfer is charged to. Safe to share between the threads of
+     * a transfer; close it once when the transfer ends.
+     */
+    public final class Lease implements AutoCloseable
+    {
+        private final Bucket[] chain;
+        private final String user;
+        private final List<Long> siteIds;
+        private boolean closed;
+
+        private Lease( Bucket[] chain, String user, List<Long> siteIds )
+        {
+            this.chain = chain;
+            this.user = user;
+            this.siteIds = siteIds;
+        }
+
+        /**
+         * Charge bytes to every bucket and wait out the longest resulting debt
+         */
+        public void acquire( int bytes ) throws InterruptedIOException
+        {
+            long wait = 0;
+            for (Bucket bucket : chain)
+            {
+                wait = Math.max( wait, bucket.take( bytes ) );
+            }
+            if ( wait > 0 )
+            {
+                pause( wait );
+            }
+        }
+
+        /**
+         * Stream that is charged for the bytes read from it
+         */
+        public InputStream wrap( InputStream in )
+        {
+            return new ShapedInputStream( in, this );
+        }
+
+        /**
+         * Stream that is charged for the bytes written to it
+         */
+        public OutputStream wrap( OutputStream out )
+        {
+            return new ShapedOutputStream( out, this );
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            if ( !closed )
+            {
+                closed = true;
+                release( this );
+            }
+        }
+    }
+
+    private static final class ShapedInputStream extends FilterInputStream
+    {
+        private final Lease lease;
+
+        ShapedInputStream( InputStream in, Lease lease )
+        {
+            super( in );
+            this.lease = lease;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+            if ( b >= 0 )
+            {
+                lease.acquire( 1 );
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException
+        {
+            int n = in.read( b, off, Math.min( len, SLICE ) );
+            if ( n > 0 )
+            {
+                lease.acquire( n );
+            }
+            return n;
+        }
+    }
+
+    private static final class ShapedOutputStream extends FilterOutputStream
+    {
+        private final Lease lease;
+
+        ShapedOutputStream( OutputStream out, Lease lease )
+        {
+            super( out );
+            this.lease = lease;
+        }
+
+        @Override
+        public void write( int b ) throws IOException
+        {
+            lease.acquire( 1 );
+            out.write( b );
+        }
+
+        @Override
+        public void write( byte[] b, int off, int len ) throws IOException
+        {
+            while (len > 0)
+            {
+                int n = Math.min( len, SLICE );
+                lease.acquire( n );
+                out.write( b, off, n );
+                off += n;
+                len -= n;
+            }
+        }
+    }
+}
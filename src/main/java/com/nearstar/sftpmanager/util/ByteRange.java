@@ -0,0 +1,153 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Inclusive byte range of a file, as used by HTTP Range requests
+ */
+@Data
+public class ByteRange
+{
+    /**
+     * More ranges than this (after merging) are ignored and the whole file is sent
+     */
+    public static final int MAX_RANGES = 16;
+
+    private final long start;
+    private final long end;
+
+    public long getLength()
+    {
+        return end - start + 1;
+    }
+
+    /**
+     * Content-Range value for this range of a file of the given size
+     */
+    public String toContentRange( long size )
+    {
+        return "bytes " + start + "-" + end + "/" + size;
+    }
+
+    /**
+     * Parse a Range header against a file size. Overlapping and adjacent ranges are
+     * merged and the result is sorted by offset.
+     *
+     * @return the ranges to send; an empty list if none of them can be satisfied;
+     * null if the header is absent, malformed or asks for too many ranges and should be ignored
+     */
+    public static List<ByteRange> parse( String header, long size )
+    {
+        if ( header == null || !header.trim().toLowerCase().startsWith( "bytes=" ) )
+        {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        try
+        {
+            for (String spec : header.trim().substring( 6 ).split( "," ))
+            {
+                String part = spec.trim();
+                int dash = part.indexOf( '-' );
+                if ( dash < 0 )
+                {
+                    return null;
+                }
+
+                String first = part.substring( 0, dash ).trim();
+                String last = part.substring( dash + 1 ).trim();
+                if ( first.isEmpty() )
+                {
+                    // Suffix range: the last N bytes
+                    long suffix = Long.parseLong( last );
+                    if ( suffix > 0 && size > 0 )
+                    {
+                        ranges.add( new ByteRange( Math.max( 0, size - suffix ), size - 1 ) );
+                    }
+                    continue;
+                }
+
+                long start = Long.parseLong( first );
+                long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong( last );
+                if ( start < 0 || end < start )
+                {
+                    return null;
+                }
+                if ( start < size )
+                {
+                    ranges.add( new ByteRange( start, Math.min( end, size - 1 ) ) );
+                }
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            return null;
+        }
+
+        List<ByteRange> merged = merge( ranges );
+        return merged.size() > MAX_RANGES ? null : merged;
+    }
+
+    /**
+     * Union of the given ranges, sorted by offset, with overlapping and adjacent ranges combined
+     */
+    public static List<ByteRange> merge( List<ByteRange> ranges )
+    {
+        List<ByteRange> sorted = new ArrayList<>( ranges );
+        sorted.sort( Comparator.comparingLong( ByteRange::getStart ) );
+        List<ByteRange> merged = new ArrayList<>();
+        for (ByteRange range : sorted)
+        {
+            ByteRange previous = merged.isEmpty() ? null : merged.get( merged.size() - 1 );
+            if ( previous != null && range.start <= previous.end + 1 )
+            {
+                merged.set( merged.size() - 1, new ByteRange( previous.start, Math.max( previous.end, range.end ) ) );
+            }
+            else
+            {
+                merged.add( range );
+            }
+        }
+        return merged;
+    }
+}
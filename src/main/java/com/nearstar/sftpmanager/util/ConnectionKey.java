@@ -0,0 +1,84 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Identifies pooled connections: site id plus a fingerprint of host, port,
+ * username and credentials. A change to any of those yields a new key.
+ */
+@Data
+public class ConnectionKey
+{
+    private final Long siteId;
+    private final String fingerprint;
+
+    public static ConnectionKey of( Site site )
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            for (String part : new String[]{ site.getIpAddress(), String.valueOf( site.getPort() ),
+                    site.getUsername(), site.getEncryptedPassword(), site.getSshKey(),
+                    site.getEncryptedKeyPassphrase(), String.valueOf( site.getTransportProfile() ) })
+            {
+                if ( part != null )
+                {
+                    digest.update( part.getBytes( StandardCharsets.UTF_8 ) );
+                }
+                digest.update( (byte) 0 );
+            }
+            return new ConnectionKey( site.getId(), HexFormat.of().formatHex( digest.digest(), 0, 8 ) );
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException( "SHA-256 not available", e );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return siteId + ":" + fingerprint;
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of decrypted credentials, so reconnect storms don't pay for a
+ * decryption per session.
+ * <p>
+ * Entries are keyed by the stored ciphertext, so a changed credential is never
+ * served stale. Cached plaintext is kept sealed under a random key that only
+ * exists in this process, and it is unsealed into a fresh byte array on each
+ * read. Callers should clear that array once it has been handed to JSch.
+ * Entries expire after {@code credential.vault.ttl.seconds}.
+ * <p>
+ * On startup, stored site passwords still in the legacy format are re-encrypted
+ * into the authenticated envelope.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CredentialVault
+{
+    private static final String SEAL_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+
+    private static final ThreadLocal<Cipher> SEAL_CIPHER = ThreadLocal.withInitial( () ->
+    {
+        try
+        {
+            return Cipher.getInstance( SEAL_TRANSFORMATION );
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException( "Cipher not available: " + SEAL_TRANSFORMATION, e );
+        }
+    } );
+
+    private final EncryptionUtil encryptionUtil;
+    private final SiteRepository siteRepository;
+
+    @Value("${credential.vault.ttl.seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${credential.vault.max.entries:1000}")
+    private int maxEntries;
+
+    @Value("${credential.vault.migrate.on.startup:true}")
+    private boolean migrateOnStartup;
+
+    private final Map<String, SealedEntry> entries = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKey sealKey = generateSealKey();
+
+    /**
+     * Plaintext for a stored secret, as a fresh array the caller may clear
+     */
+    public byte[] reveal( String encrypted )
+    {
+        long now = System.currentTimeMillis();
+        SealedEntry entry = entries.get( encrypted );
+        if ( entry != null && entry.expiresAt > now )
+        {
+            return unseal( entry );
+        }
+
+        byte[] plain = encryptionUtil.decryptBytes( encrypted );
+        if ( ttlSeconds > 0 )
+        {
+            if ( entries.size() >= maxEntries )
+            {
+                purgeExpired();
+            }
+            if ( entries.size() < maxEntries )
+            {
+                entries.put( encrypted, seal( plain, now + ttlSeconds * 1000 ) );
+            }
+        }
+        return plain;
+    }
+
+    /**
+     * Drop a cached secret, e.g. when a credential is replaced
+     */
+    public void forget( String encrypted )
+    {
+        if ( encrypted != null )
+        {
+            entries.remove( encrypted );
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${credential.vault.purge.interval.ms:60000}")
+    public void purgeExpired()
+    {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf( entry -> entry.expiresAt <= now );
+    }
+
+    /**
+     * Re-encrypt legacy site passwords into the authenticated envelope. Runs before
+     * startup pre-warming, so warmed channels are keyed by the migrated values.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void migrateLegacyCredentials()
+    {
+        if ( !migrateOnStartup )
+        {
+            return;
+        }
+
+        int migrated = 0;
+        for (Site site : siteRepository.findAll())
+        {
+            String stored = site.getEncryptedPassword();
+            if ( stored == null || stored.isEmpty() || !encryptionUtil.isLegacy( stored ) )
+            {
+                continue;
+            }
+            try
+            {
+                String upgraded = encryptionUtil.encrypt( encryptionUtil.decrypt( stored ) );
+                if ( siteRepository.updateEncryptedPassword( site.getId(), stored, upgraded ) == 1 )
+                {
+                    migrated++;
+                }
+            }
+            catch (Exception e)
+            {
+                log.warn( "Could not migrate stored password for site {}: {}", site.getSiteName(), e.getMessage() );
+            }
+        }
+
+        if ( migrated > 0 )
+        {
+            log.info( "Migrated {} site password(s) to the AES-GCM envelope", migrated );
+        }
+    }
+
+    private SealedEntry seal( byte[] plain, long expiresAt )
+    {
+        try
+        {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes( iv );
+            Cipher cipher = SEAL_CIPHER.get();
+            cipher.init( Cipher.ENCRYPT_MODE, sealKey, new GCMParameterSpec( 128, iv ) );
+            return new SealedEntry( iv, cipher.doFinal( plain ), expiresAt );
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException( "Error sealing credential", e );
+        }
+    }
+
+    private byte[] unseal( SealedEntry entry )
+    {
+        try
+        {
+            Cipher cipher = SEAL_CIPHER.get();
+            cipher.init( Cipher.DECRYPT_MODE, sealKey, new GCMParameterSpec( 128, entry.iv ) );
+            return cipher.doFinal( entry.sealed );
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException( "Error unsealing credential", e );
+        }
+    }
+
+    private static SecretKey generateSealKey()
+    {
+        try
+        {
+            KeyGenerator generator = KeyGenerator.getInstance( "AES" );
+            generator.init( 256 );
+            return generator.generateKey();
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException( "Could not create credential seal key", e );
+        }
+    }
+
+    /**
+     * Clear a revealed secret once it is no longer needed
+     */
+    public static void wipe( byte[] secret )
+    {
+        if ( secret != null )
+        {
+            Arrays.fill( secret, (byte) 0 );
+        }
+    }
+
+    private static class SealedEntry
+    {
+        private final byte[] iv;
+        private final byte[] sealed;
+        private final long expiresAt;
+
+        SealedEntry( byte[] iv, byte[] sealed, long expiresAt )
+        {
+            this.iv = iv;
+            this.sealed = sealed;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
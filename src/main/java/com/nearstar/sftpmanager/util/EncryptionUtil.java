@@ -35,14 +35,29 @@
  */
 package com.nearstar.sftpmanager.util;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.Base64;
 
+/**
+ * Encrypts stored secrets.
+ * <p>
+ * New values use an authenticated AES-256-GCM envelope: {@code v2:} followed by
+ * Base64 of a random 12-byte IV and the ciphertext with its tag. Values without
+ * the prefix are the legacy AES/ECB format and can still be decrypted, so they
+ * can be migrated in place. Keys are derived once at startup, and cipher
+ * instances are reused per thread.
+ */
 @Slf4j
 @Component
 public class EncryptionUtil
@@ -51,17 +66,42 @@ public class EncryptionUtil
     private String secretKey;
 
     private static final String ALGORITHM = "AES";
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String ENVELOPE_PREFIX = "v2:";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private static final ThreadLocal<Cipher> GCM_CIPHER = ThreadLocal.withInitial( () -> cipher( GCM_TRANSFORMATION ) );
+    private static final ThreadLocal<Cipher> LEGACY_CIPHER = ThreadLocal.withInitial( () -> cipher( ALGORITHM ) );
+
+    private final SecureRandom random = new SecureRandom();
+
+    private SecretKeySpec gcmKey;
+    private SecretKeySpec legacyKey;
+
+    @PostConstruct
+    public void init() throws Exception
+    {
+        byte[] secret = secretKey.getBytes( StandardCharsets.UTF_8 );
+        gcmKey = new SecretKeySpec( MessageDigest.getInstance( "SHA-256" ).digest( secret ), ALGORITHM );
+        legacyKey = new SecretKeySpec( padKey( secretKey ), ALGORITHM );
+    }
 
     public String encrypt( String plainText )
     {
         try
         {
             log.debug( "Encrypting password" );
-            SecretKeySpec keySpec = new SecretKeySpec( padKey( secretKey ), ALGORITHM );
-            Cipher cipher = Cipher.getInstance( ALGORITHM );
-            cipher.init( Cipher.ENCRYPT_MODE, keySpec );
-            byte[] encryptedBytes = cipher.doFinal( plainText.getBytes() );
-            String encrypted = Base64.getEncoder().encodeToString( encryptedBytes );
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes( iv );
+
+            Cipher cipher = GCM_CIPHER.get();
+            cipher.init( Cipher.ENCRYPT_MODE, gcmKey, new GCMParameterSpec( TAG_BITS, iv ) );
+            byte[] encryptedBytes = cipher.doFinal( plainText.getBytes( StandardCharsets.UTF_8 ) );
+
+            ByteBuffer envelope = ByteBuffer.allocate( IV_LENGTH + encryptedBytes.length );
+            envelope.put( iv ).put( encryptedBytes );
+            String encrypted = ENVELOPE_PREFIX + Base64.getEncoder().encodeToString( envelope.array() );
             log.debug( "Password encrypted successfully" );
             return encrypted;
         }
@@ -73,17 +113,34 @@ public class EncryptionUtil
     }
 
     public String decrypt( String encryptedText )
+    {
+        return new String( decryptBytes( encryptedText ), StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Decrypt to raw bytes, so callers that can clear the result afterwards never build a String
+     */
+    public byte[] decryptBytes( String encryptedText )
     {
         try
         {
             log.debug( "Decrypting password" );
-            SecretKeySpec keySpec = new SecretKeySpec( padKey( secretKey ), ALGORITHM );
-            Cipher cipher = Cipher.getInstance( ALGORITHM );
-            cipher.init( Cipher.DECRYPT_MODE, keySpec );
-            byte[] decryptedBytes = cipher.doFinal( Base64.getDecoder().decode( encryptedText ) );
-            String decrypted = new String( decryptedBytes );
+            byte[] decryptedBytes;
+            if ( isLegacy( encryptedText ) )
+            {
+                Cipher cipher = LEGACY_CIPHER.get();
+                cipher.init( Cipher.DECRYPT_MODE, legacyKey );
+                decryptedBytes = cipher.doFinal( Base64.getDecoder().decode( encryptedText ) );
+            }
+            else
+            {
+                byte[] envelope = Base64.getDecoder().decode( encryptedText.substring( ENVELOPE_PREFIX.length() ) );
+                Cipher cipher = GCM_CIPHER.get();
+                cipher.init( Cipher.DECRYPT_MODE, gcmKey, new GCMParameterSpec( TAG_BITS, envelope, 0, IV_LENGTH ) );
+                decryptedBytes = cipher.doFinal( envelope, IV_LENGTH, envelope.length - IV_LENGTH );
+            }
             log.debug( "Password decrypted successfully" );
-            return decrypted;
+            return decryptedBytes;
         }
         catch (Exception e)
         {
@@ -92,6 +149,26 @@ public class EncryptionUtil
         }
     }
 
+    /**
+     * True if the value is in the legacy unauthenticated AES/ECB format
+     */
+    public boolean isLegacy( String encryptedText )
+    {
+        return encryptedText != null && !encryptedText.startsWith( ENVELOPE_PREFIX );
+    }
+
+    private static Cipher cipher( String transformation )
+    {
+        try
+        {
+            return Cipher.getInstance( transformation );
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException( "Cipher not available: " + transformation, e );
+        }
+    }
+
     private byte[] padKey( String key )
     {
         byte[] keyBytes = new byte[16]; // AES-128
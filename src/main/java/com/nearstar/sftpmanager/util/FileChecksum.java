@@ -35,45 +35,51 @@
  */
 package com.nearstar.sftpmanager.util;
 
+import com.nearstar.sftpmanager.util.MultiDigest.Algorithm;
+
+import java.io.IOException;
 import java.io.InputStream;
-import java.security.MessageDigest;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Map;
 
+/**
+ * One-call checksums of a stream or local file. All requested digests come from a
+ * single read of the data; see {@link MultiDigest} for hashing inside a transfer.
+ */
 public class FileChecksum
 {
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     public static String calculateMD5( InputStream inputStream ) throws Exception
     {
-        MessageDigest md = MessageDigest.getInstance( "MD5" );
-        byte[] buffer = new byte[8192];
-        int read;
-        while ((read = inputStream.read( buffer )) > 0)
-        {
-            md.update( buffer, 0, read );
-        }
-        byte[] md5sum = md.digest();
-        StringBuilder result = new StringBuilder();
-        for (byte b : md5sum)
-        {
-            result.append( String.format( "%02x", b ) );
-        }
-        return result.toString();
+        return calculate( inputStream, EnumSet.of( Algorithm.MD5 ) ).get( Algorithm.MD5 );
     }
 
     public static String calculateSHA256( InputStream inputStream ) throws Exception
     {
-        MessageDigest md = MessageDigest.getInstance( "SHA-256" );
-        byte[] buffer = new byte[8192];
-        int read;
-        while ((read = inputStream.read( buffer )) > 0)
-        {
-            md.update( buffer, 0, read );
-        }
-        byte[] sha256sum = md.digest();
-        StringBuilder result = new StringBuilder();
-        for (byte b : sha256sum)
-        {
-            result.append( String.format( "%02x", b ) );
-        }
-        return result.toString();
+        return calculate( inputStream, EnumSet.of( Algorithm.SHA256 ) ).get( Algorithm.SHA256 );
+    }
+
+    /**
+     * Hex digests of everything left in the stream
+     */
+    public static Map<Algorithm, String> calculate( InputStream inputStream, Collection<Algorithm> algorithms )
+            throws IOException
+    {
+        MultiDigest digest = new MultiDigest( algorithms );
+        digest.update( inputStream, new byte[BUFFER_SIZE] );
+        return digest.hex();
+    }
+
+    /**
+     * Hex digests of a local file, read through memory mapping
+     */
+    public static Map<Algorithm, String> calculate( Path file, Collection<Algorithm> algorithms ) throws IOException
+    {
+        MultiDigest digest = new MultiDigest( algorithms );
+        digest.updateFile( file );
+        return digest.hex();
     }
-}
\ No newline at end of file
+}
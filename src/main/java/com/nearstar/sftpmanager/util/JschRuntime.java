@@ -0,0 +1,440 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.jcraft.jsch.HostKey;
+import com.jcraft.jsch.HostKeyRepository;
+import com.jcraft.jsch.Identity;
+import com.jcraft.jsch.IdentityRepository;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.UserInfo;
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.TransportProfile;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The one JSch instance every connection path uses, together with per-site trust
+ * material that is parsed once instead of on every connect.
+ * <p>
+ * For each site we keep a host-key repository built from its known_hosts entry,
+ * an identity repository holding its decoded private key (from the
+ * {@link SshIdentityCache}), and a prebuilt session config. Sites with a known host key are verified strictly, so a changed key is
+ * rejected. Unknown hosts follow {@code sftp.hostkey.unknown.policy}: "accept"
+ * trusts the first key seen, remembers it and optionally stores it on the site,
+ * while "reject" refuses to connect. Trust is rebuilt for a site when its key
+ * material changes.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JschRuntime
+{
+    private final SiteRepository siteRepository;
+    private final SshIdentityCache identityCache;
+
+    @Value("${sftp.hostkey.unknown.policy:accept}")
+    private String unknownHostPolicy;
+
+    @Value("${sftp.hostkey.persist.learned:true}")
+    private boolean persistLearnedKeys;
+
+    private final JSch jsch = new JSch();
+
+    private final Map<Long, SiteTrust> trust = new ConcurrentHashMap<>();
+
+    /**
+     * Create an unconnected session for a site with its host keys, identity and config applied
+     */
+    public Session newSession( Site site ) throws JSchException
+    {
+        return newSession( site, TransportProfile.of( site.getTransportProfile() ) );
+    }
+
+    /**
+     * Create a session using the given transport profile instead of the site's own
+     */
+    public Session newSession( Site site, TransportProfile profile ) throws JSchException
+    {
+        SiteTrust siteTrust = trustFor( site );
+        Session session = jsch.getSession( site.getUsername(), site.getIpAddress(), site.getPort() );
+        session.setHostKeyRepository( siteTrust.hostKeys );
+        if ( siteTrust.identities != null )
+        {
+            session.setIdentityRepository( siteTrust.identities );
+        }
+        session.setConfig( siteTrust.config );
+        session.setConfig( profile.getSessionConfig() );
+        return session;
+    }
+
+    /**
+     * Rebuild the trust material for a site after it was saved
+     */
+    public void refresh( Site site )
+    {
+        trust.put( site.getId(), build( site ) );
+    }
+
+    public void remove( Long siteId )
+    {
+        trust.remove( siteId );
+    }
+
+    /**
+     * Parse every site's host keys and private key up front
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload()
+    {
+        List<Site> sites = siteRepository.findAll();
+        for (Site site : sites)
+        {
+            refresh( site );
+        }
+        log.info( "JSch runtime preloaded trust material for {} sites", sites.size() );
+    }
+
+    private SiteTrust trustFor( Site site )
+    {
+        SiteTrust siteTrust = trust.get( site.getId() );
+        if ( siteTrust == null || !siteTrust.matches( site ) )
+        {
+            siteTrust = build( site );
+            trust.put( site.getId(), siteTrust );
+        }
+        return siteTrust;
+    }
+
+    private SiteTrust build( Site site )
+    {
+        SiteHostKeys hostKeys = new SiteHostKeys( site.getId(), site.getSiteName() );
+        String knownHosts = site.getKnownHostsEntry();
+        if ( knownHosts != null )
+        {
+            for (String line : knownHosts.split( "\\R" ))
+            {
+                HostKey key = parseKnownHostsLine( line );
+                if ( key != null )
+                {
+                    hostKeys.keys.add( key );
+                }
+            }
+        }
+
+        Identity identity = identityCache.identityFor( jsch, site );
+        SiteTrust siteTrust = new SiteTrust( site, hostKeys, identity != null ? new SiteIdentities( identity ) : null );
+        siteTrust.rebuildConfig();
+        return siteTrust;
+    }
+
+    static boolean hasPassword( Site site )
+    {
+        return site.getEncryptedPassword() != null && !site.getEncryptedPassword().isEmpty();
+    }
+
+    private static HostKey parseKnownHostsLine( String line )
+    {
+        String trimmed = line.trim();
+        if ( trimmed.isEmpty() || trimmed.startsWith( "#" ) || trimmed.startsWith( "@" ) )
+        {
+            return null;
+        }
+
+        // "host[,host] type base64 [comment]" or just "type base64"
+        String[] parts = trimmed.split( "\\s+" );
+        int typeIndex = parts[0].startsWith( "ssh-" ) || parts[0].startsWith( "ecdsa-" ) ? 0 : 1;
+        if ( parts.length < typeIndex + 2 )
+        {
+            return null;
+        }
+
+        try
+        {
+            String host = typeIndex == 0 ? "*" : parts[0];
+            return new HostKey( host, Base64.getDecoder().decode( parts[typeIndex + 1] ) );
+        }
+        catch (Exception e)
+        {
+            log.warn( "Ignoring unparseable known_hosts line: {}", e.getMessage() );
+            return null;
+        }
+    }
+
+    private void learned( SiteHostKeys hostKeys, HostKey key )
+    {
+        log.info( "Trusting new {} host key for site {}", key.getType(), hostKeys.siteName );
+        if ( persistLearnedKeys )
+        {
+            try
+            {
+                String entry = key.getHost() + " " + key.getType() + " " + key.getKey();
+                siteRepository.updateKnownHostsEntryIfMissing( hostKeys.siteId, entry );
+            }
+            catch (Exception e)
+            {
+                log.warn( "Could not store host key for site {}: {}", hostKeys.siteName, e.getMessage() );
+            }
+        }
+    }
+
+    /**
+     * Parsed trust material for one site, plus the raw values it was built from
+     */
+    private class SiteTrust
+    {
+        private final String knownHostsSource;
+        private final String sshKeySource;
+        private final String passphraseSource;
+        private final boolean hasPassword;
+        private final SiteHostKeys hostKeys;
+        private final SiteIdentities identities;
+        private volatile Properties config;
+
+        SiteTrust( Site site, SiteHostKeys hostKeys, SiteIdentities identities )
+        {
+            this.knownHostsSource = site.getKnownHostsEntry();
+            this.sshKeySource = site.getSshKey();
+            this.passphraseSource = site.getEncryptedKeyPassphrase();
+            this.hasPassword = hasPassword( site );
+            this.hostKeys = hostKeys;
+            this.identities = identities;
+            hostKeys.owner = this;
+        }
+
+        boolean matches( Site site )
+        {
+            return Objects.equals( knownHostsSource, site.getKnownHostsEntry() )
+                    && Objects.equals( sshKeySource, site.getSshKey() )
+                    && Objects.equals( passphraseSource, site.getEncryptedKeyPassphrase() )
+                    && hasPassword == hasPassword( site );
+        }
+
+        void rebuildConfig()
+        {
+            Properties properties = new Properties();
+            boolean known = !hostKeys.keys.isEmpty();
+            properties.put( "StrictHostKeyChecking", known || "reject".equalsIgnoreCase( unknownHostPolicy ) ? "yes" : "no" );
+            properties.put( "PreferredAuthentications", identities == null ? "password"
+                    : hasPassword ? "publickey,password" : "publickey" );
+            if ( known )
+            {
+                // Negotiate a host key type we can actually verify
+                Set<String> types = new LinkedHashSet<>();
+                for (HostKey key : hostKeys.keys)
+                {
+                    types.add( key.getType() );
+                }
+                types.addAll( Arrays.asList( JSch.getConfig( "server_host_key" ).split( "," ) ) );
+                properties.put( "server_host_key", String.join( ",", types ) );
+            }
+            config = properties;
+        }
+    }
+
+    /**
+     * Host keys trusted for one site. The site's own entry is authoritative, so the
+     * host name in it is not matched against the connection address.
+     */
+    private class SiteHostKeys implements HostKeyRepository
+    {
+        private final Long siteId;
+        private final String siteName;
+        private final List<HostKey> keys = new CopyOnWriteArrayList<>();
+        private SiteTrust owner;
+
+        SiteHostKeys( Long siteId, String siteName )
+        {
+            this.siteId = siteId;
+            this.siteName = siteName;
+        }
+
+        @Override
+        public int check( String host, byte[] key )
+        {
+            String type = keyType( key );
+            boolean sameType = false;
+            for (HostKey known : keys)
+            {
+                if ( known.getType().equals( type ) )
+                {
+                    if ( known.getKey().equals( Base64.getEncoder().encodeToString( key ) ) )
+                    {
+                        return OK;
+                    }
+                    sameType = true;
+                }
+            }
+            return sameType ? CHANGED : NOT_INCLUDED;
+        }
+
+        @Override
+        public void add( HostKey hostkey, UserInfo ui )
+        {
+            // Only reached for unknown hosts when the policy accepts them
+            keys.add( hostkey );
+            owner.rebuildConfig();
+            learned( this, hostkey );
+        }
+
+        @Override
+        public void remove( String host, String type )
+        {
+            keys.removeIf( key -> type == null || key.getType().equals( type ) );
+        }
+
+        @Override
+        public void remove( String host, String type, byte[] key )
+        {
+            String encoded = Base64.getEncoder().encodeToString( key );
+            keys.removeIf( known -> known.getType().equals( type ) && known.getKey().equals( encoded ) );
+        }
+
+        @Override
+        public String getKnownHostsRepositoryID()
+        {
+            return "site-" + siteId;
+        }
+
+        @Override
+        public HostKey[] getHostKey()
+        {
+            return keys.toArray( new HostKey[0] );
+        }
+
+        @Override
+        public HostKey[] getHostKey( String host, String type )
+        {
+            List<HostKey> matches = new ArrayList<>();
+            for (HostKey key : keys)
+            {
+                if ( type == null || key.getType().equals( type ) )
+                {
+                    matches.add( key );
+                }
+            }
+            return matches.toArray( new HostKey[0] );
+        }
+    }
+
+    /**
+     * Identity repository holding the single parsed key of a site
+     */
+    private static class SiteIdentities implements IdentityRepository
+    {
+        private final Vector<Identity> identities = new Vector<>();
+
+        SiteIdentities( Identity identity )
+        {
+            identities.add( identity );
+        }
+
+        @Override
+        public String getName()
+        {
+            return "site-identities";
+        }
+
+        @Override
+        public int getStatus()
+        {
+            return RUNNING;
+        }
+
+        @Override
+        public Vector getIdentities()
+        {
+            return identities;
+        }
+
+        @Override
+        public boolean add( byte[] identity )
+        {
+            return false;
+        }
+
+        @Override
+        public boolean remove( byte[] blob )
+        {
+            return false;
+        }
+
+        @Override
+        public void removeAll()
+        {
+        }
+    }
+
+    /**
+     * Key type name from the leading string of an SSH public key blob
+     */
+    static String keyType( byte[] blob )
+    {
+        if ( blob == null || blob.length < 4 )
+        {
+            return "";
+        }
+        ByteBuffer buffer = ByteBuffer.wrap( blob );
+        int length = buffer.getInt();
+        if ( length <= 0 || length > blob.length - 4 )
+        {
+            return "";
+        }
+        return new String( blob, 4, length, StandardCharsets.US_ASCII );
+    }
+}
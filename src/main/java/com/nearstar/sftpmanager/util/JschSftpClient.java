@@ -0,0 +1,273 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+/**
+ * {@link SftpClient} over a channel borrowed from the {@link SftpConnectionPool}.
+ * Closing the client returns the channel to the pool.
+ */
+public class JschSftpClient implements SftpClient
+{
+    private final ChannelSftp channel;
+    private final SftpConnectionPool connectionPool;
+
+    public JschSftpClient( ChannelSftp channel, SftpConnectionPool connectionPool )
+    {
+        this.channel = channel;
+        this.connectionPool = connectionPool;
+    }
+
+    @Override
+    public List<RemoteFile> list( String path ) throws IOException
+    {
+        try
+        {
+            Vector<ChannelSftp.LsEntry> entries = channel.ls( path );
+            List<RemoteFile> files = new ArrayList<>( entries.size() );
+            for (ChannelSftp.LsEntry entry : entries)
+            {
+                if ( !".".equals( entry.getFilename() ) && !"..".equals( entry.getFilename() ) )
+                {
+                    files.add( toRemoteFile( entry.getFilename(), entry.getAttrs() ) );
+                }
+            }
+            return files;
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public RemoteFile stat( String path ) throws IOException
+    {
+        try
+        {
+            return toRemoteFile( path.substring( path.lastIndexOf( '/' ) + 1 ), channel.stat( path ) );
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public InputStream openRead( String path, long offset ) throws IOException
+    {
+        try
+        {
+            return channel.get( path, null, offset );
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public OutputStream openWrite( String path, long offset, boolean truncate ) throws IOException
+    {
+        if ( truncate && offset != 0 )
+        {
+            throw new IllegalArgumentException( "Truncation is only supported at offset 0" );
+        }
+        try
+        {
+            if ( truncate )
+            {
+                return channel.put( path, ChannelSftp.OVERWRITE );
+            }
+
+            // JSch can only continue a file from its current end
+            long size = 0;
+            try
+            {
+                size = channel.stat( path ).getSize();
+            }
+            catch (SftpException e)
+            {
+                if ( e.id != ChannelSftp.SSH_FX_NO_SUCH_FILE )
+                {
+                    throw e;
+                }
+            }
+            if ( size != offset )
+            {
+                throw new StatusException( SSH_FX_OP_UNSUPPORTED,
+                        "Cannot write " + path + " at offset " + offset + " (file size is " + size + ")", null );
+            }
+            return channel.put( path, null, ChannelSftp.APPEND, 0 );
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public void rename( String oldPath, String newPath ) throws IOException
+    {
+        try
+        {
+            channel.rename( oldPath, newPath );
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public void rm( String path ) throws IOException
+    {
+        try
+        {
+            channel.rm( path );
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public void rmdir( String path ) throws IOException
+    {
+        try
+        {
+            channel.rmdir( path );
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public void mkdir( String path ) throws IOException
+    {
+        try
+        {
+            channel.mkdir( path );
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public void chmod( String path, int permissions ) throws IOException
+    {
+        try
+        {
+            channel.chmod( permissions, path );
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public void truncate( String path, long size ) throws IOException
+    {
+        try
+        {
+            // JSch cannot send the size on its own, so the file's other attributes go back unchanged
+            SftpATTRS attrs = channel.stat( path );
+            attrs.setSIZE( size );
+            channel.setStat( path, attrs );
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public String pwd() throws IOException
+    {
+        try
+        {
+            return channel.getHome();
+        }
+        catch (SftpException e)
+        {
+            throw translate( e );
+        }
+    }
+
+    @Override
+    public String engine()
+    {
+        return "jsch";
+    }
+
+    @Override
+    public void close()
+    {
+        connectionPool.returnObject( channel );
+    }
+
+    private static RemoteFile toRemoteFile( String name, SftpATTRS attrs )
+    {
+        RemoteFile file = new RemoteFile();
+        file.setName( name );
+        file.setSize( attrs.getSize() );
+        file.setDirectory( attrs.isDir() );
+        file.setModifiedSeconds( attrs.getMTime() & 0xFFFFFFFFL );
+        file.setPermissions( attrs.getPermissions() & 07777 );
+        return file;
+    }
+
+    private static StatusException translate( SftpException e )
+    {
+        return new StatusException( e.id, e.getMessage(), e );
+    }
+}
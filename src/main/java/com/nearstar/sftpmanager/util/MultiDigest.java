@@ -0,0 +1,474 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Any set of digests over the same bytes, computed in one pass.
+ * <p>
+ * Feed it directly, wrap a transfer stream with {@link #wrap(InputStream)} or
+ * {@link #wrap(OutputStream)} so the bytes are hashed on their way through, or
+ * hash a local file with {@link #updateFile}, which maps the file instead of
+ * copying it through a heap buffer. Results are fixed by the first call to
+ * {@link #digest}, {@link #hex()} or {@link #format()}; not thread-safe.
+ */
+public class MultiDigest
+{
+    // Mapping window for local files; bounded so huge files don't claim the address space at once
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public enum Algorithm
+    {
+        MD5( "md5" ),
+        SHA1( "sha1" ),
+        SHA256( "sha256" ),
+        CRC32C( "crc32c" ),
+        XXH64( "xxh64" );
+
+        private final String key;
+
+        Algorithm( String key )
+        {
+            this.key = key;
+        }
+
+        /**
+         * Short lower-case name used in stored checksum strings and properties
+         */
+        public String getKey()
+        {
+            return key;
+        }
+
+        public static Algorithm of( String name )
+        {
+            String normalized = name.trim().toLowerCase().replace( "-", "" ).replace( "_", "" );
+            switch (normalized)
+            {
+                case "xxhash":
+                case "xxhash64":
+                    return XXH64;
+                default:
+                    for (Algorithm algorithm : values())
+                    {
+                        if ( algorithm.key.equals( normalized ) )
+                        {
+                            return algorithm;
+                        }
+                    }
+                    throw new IllegalArgumentException( "Unknown checksum algorithm: " + name );
+            }
+        }
+
+        /**
+         * Parse a comma-separated list such as "md5,crc32c"; blank means none
+         */
+        public static EnumSet<Algorithm> parseList( String names )
+        {
+            EnumSet<Algorithm> algorithms = EnumSet.noneOf( Algorithm.class );
+            if ( names != null )
+            {
+                for (String name : names.split( "," ))
+                {
+                    if ( !name.isBlank() )
+                    {
+                        algorithms.add( of( name ) );
+                    }
+                }
+            }
+            return algorithms;
+        }
+    }
+
+    private final Algorithm[] algorithms;
+    private final MessageDigest[] digests;
+    private final Checksum[] checksums;
+    private long length;
+    private Map<Algorithm, byte[]> results;
+
+    public MultiDigest( Collection<Algorithm> algorithms )
+    {
+        EnumSet<Algorithm> ordered = EnumSet.noneOf( Algorithm.class );
+        ordered.addAll( algorithms );
+        this.algorithms = ordered.toArray( new Algorithm[0] );
+        this.digests = new MessageDigest[this.algorithms.length];
+        this.checksums = new Checksum[this.algorithms.length];
+        for (int i = 0; i < this.algorithms.length; i++)
+        {
+            switch (this.algorithms[i])
+            {
+                case MD5:
+                    digests[i] = messageDigest( "MD5" );
+                    break;
+                case SHA1:
+                    digests[i] = messageDigest( "SHA-1" );
+                    break;
+                case SHA256:
+                    digests[i] = messageDigest( "SHA-256" );
+                    break;
+                case CRC32C:
+                    checksums[i] = new CRC32C();
+                    break;
+                case XXH64:
+                    checksums[i] = new XxHash64();
+                    break;
+            }
+        }
+    }
+
+    public static MultiDigest of( Algorithm first, Algorithm... rest )
+    {
+        return new MultiDigest( EnumSet.of( first, rest ) );
+    }
+
+    public Set<Algorithm> getAlgorithms()
+    {
+        EnumSet<Algorithm> set = EnumSet.noneOf( Algorithm.class );
+        set.addAll( Arrays.asList( algorithms ) );
+        return set;
+    }
+
+    public boolean includes( Algorithm algorithm )
+    {
+        for (Algorithm a : algorithms)
+        {
+            if ( a == algorithm )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bytes hashed so far
+     */
+    public long length()
+    {
+        return length;
+    }
+
+    public void update( byte[] b, int off, int len )
+    {
+        checkOpen();
+        for (int i = 0; i < algorithms.length; i++)
+        {
+            if ( digests[i] != null )
+            {
+                digests[i].update( b, off, len );
+            }
+            else
+            {
+                checksums[i].update( b, off, len );
+            }
+        }
+        length += len;
+    }
+
+    /**
+     * Hash the remaining bytes of a buffer, leaving its position at the limit
+     */
+    public void update( ByteBuffer buffer )
+    {
+        checkOpen();
+        int len = buffer.remaining();
+        for (int i = 0; i < algorithms.length; i++)
+        {
+            ByteBuffer view = buffer.duplicate();
+            if ( digests[i] != null )
+            {
+                digests[i].update( view );
+            }
+            else
+            {
+                checksums[i].update( view );
+            }
+        }
+        buffer.position( buffer.limit() );
+        length += len;
+    }
+
+    /**
+     * Hash everything left in a stream through the given buffer
+     */
+    public void update( InputStream in, byte[] buffer ) throws IOException
+    {
+        int read;
+        while ((read = in.read( buffer )) != -1)
+        {
+            update( buffer, 0, read );
+        }
+    }
+
+    /**
+     * Hash length bytes of a local file from offset through memory-mapped windows
+     */
+    public void updateFile( Path path, long offset, long length ) throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ) )
+        {
+            long size = channel.size();
+            long end = size - offset < length ? size : offset + length;
+            for (long position = offset; position < end; position += MAP_WINDOW)
+            {
+                MappedByteBuffer window = channel.map( FileChannel.MapMode.READ_ONLY, position,
+                        Math.min( MAP_WINDOW, end - position ) );
+                update( window );
+            }
+        }
+    }
+
+    /**
+     * Hash a whole local file
+     */
+    public void updateFile( Path path ) throws IOException
+    {
+        updateFile( path, 0, Long.MAX_VALUE );
+    }
+
+    /**
+     * Stream that hashes every byte read through it
+     */
+    public InputStream wrap( InputStream in )
+    {
+        return new FilterInputStream( in )
+        {
+            @Override
+            public int read() throws IOException
+            {
+                int b = super.read();
+                if ( b != -1 )
+                {
+                    update( new byte[]{ (byte) b }, 0, 1 );
+                }
+                return b;
+            }
+
+            @Override
+            public int read( byte[] b, int off, int len ) throws IOException
+            {
+                int read = in.read( b, off, len );
+                if ( read > 0 )
+                {
+                    update( b, off, read );
+                }
+                return read;
+            }
+
+            @Override
+            public long skip( long n ) throws IOException
+            {
+                // Skipped bytes would be missing from the digests
+                throw new IOException( "Skipping is not supported on a hashed stream" );
+            }
+
+            @Override
+            public boolean markSupported()
+            {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Stream that hashes every byte written through it
+     */
+    public OutputStream wrap( OutputStream out )
+    {
+        return new FilterOutputStream( out )
+        {
+            @Override
+            public void write( int b ) throws IOException
+            {
+                out.write( b );
+                update( new byte[]{ (byte) b }, 0, 1 );
+            }
+
+            @Override
+            public void write( byte[] b, int off, int len ) throws IOException
+            {
+                out.write( b, off, len );
+                update( b, off, len );
+            }
+        };
+    }
+
+    /**
+     * Final value of one algorithm; CRC32C and XXH64 come back big-endian, as their tools print them
+     */
+    public byte[] digest( Algorithm algorithm )
+    {
+        byte[] value = finish().get( algorithm );
+        if ( value == null )
+        {
+            throw new IllegalArgumentException( algorithm + " is not being computed" );
+        }
+        return value.clone();
+    }
+
+    /**
+     * Lower-case hex of every digest, in algorithm order
+     */
+    public Map<Algorithm, String> hex()
+    {
+        Map<Algorithm, String> hex = new EnumMap<>( Algorithm.class );
+        finish().forEach( ( algorithm, value ) -> hex.put( algorithm, hex( value ) ) );
+        return hex;
+    }
+
+    /**
+     * Digests as "md5:&lt;hex&gt;,crc32c:&lt;hex&gt;", the form stored on transfer records
+     */
+    public String format()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Algorithm, String> entry : hex().entrySet())
+        {
+            if ( sb.length() > 0 )
+            {
+                sb.append( ',' );
+            }
+            sb.append( entry.getKey().getKey() ).append( ':' ).append( entry.getValue() );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Read back a string written by {@link #format()}
+     */
+    public static Map<String, String> parse( String formatted )
+    {
+        Map<String, String> parsed = new LinkedHashMap<>();
+        if ( formatted != null && !formatted.isBlank() )
+        {
+            for (String part : formatted.split( "," ))
+            {
+                int colon = part.indexOf( ':' );
+                if ( colon > 0 )
+                {
+                    parsed.put( part.substring( 0, colon ), part.substring( colon + 1 ) );
+                }
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Lower-case hex through a lookup table
+     */
+    public static String hex( byte[] bytes )
+    {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++)
+        {
+            out[j++] = HEX[(bytes[i] >> 4) & 0x0F];
+            out[j++] = HEX[bytes[i] & 0x0F];
+        }
+        return new String( out );
+    }
+
+    private Map<Algorithm, byte[]> finish()
+    {
+        if ( results == null )
+        {
+            Map<Algorithm, byte[]> values = new EnumMap<>( Algorithm.class );
+            for (int i = 0; i < algorithms.length; i++)
+            {
+                if ( digests[i] != null )
+                {
+                    values.put( algorithms[i], digests[i].digest() );
+                }
+                else
+                {
+                    int size = algorithms[i] == Algorithm.CRC32C ? 4 : 8;
+                    long value = checksums[i].getValue();
+                    byte[] bytes = new byte[size];
+                    for (int b = size - 1; b >= 0; b--)
+                    {
+                        bytes[b] = (byte) value;
+                        value >>>= 8;
+                    }
+                    values.put( algorithms[i], bytes );
+                }
+            }
+            results = values;
+        }
+        return results;
+    }
+
+    private void checkOpen()
+    {
+        if ( results != null )
+        {
+            throw new IllegalStateException( "Digests already computed" );
+        }
+    }
+
+    private static MessageDigest messageDigest( String name )
+    {
+        try
+        {
+            return MessageDigest.getInstance( name );
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException( name + " not available", e );
+        }
+    }
+}
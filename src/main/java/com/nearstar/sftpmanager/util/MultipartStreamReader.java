@@ -0,0 +1,392 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import lombok.Getter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Incremental multipart/form-data parser. Parts are handed out one at a time as
+ * streams over the request body, so content can be forwarded while the client is
+ * still sending it and nothing is spooled to disk. Everything is parsed out of a
+ * single caller-supplied buffer.
+ */
+public class MultipartStreamReader
+{
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int head;
+    private int tail;
+    private boolean eof;
+    private boolean finished;
+    private Part current;
+    private PartInputStream currentContent;
+
+    public MultipartStreamReader( InputStream in, String boundary, byte[] buffer )
+    {
+        if ( boundary == null || boundary.isEmpty() || boundary.length() > 200 )
+        {
+            throw new IllegalArgumentException( "Invalid multipart boundary" );
+        }
+        if ( buffer.length < 4 * (boundary.length() + 4) )
+        {
+            throw new IllegalArgumentException( "Buffer too small for multipart boundary" );
+        }
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes( StandardCharsets.ISO_8859_1 );
+        this.buffer = buffer;
+
+        // The first boundary has no leading CRLF; pretend it had one
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        this.tail = 2;
+    }
+
+    /**
+     * Boundary parameter of a multipart Content-Type header, or null if there is none
+     */
+    public static String boundaryOf( String contentType )
+    {
+        if ( contentType == null || !contentType.toLowerCase( Locale.ROOT ).startsWith( "multipart/" ) )
+        {
+            return null;
+        }
+        String value = parameter( contentType, "boundary" );
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Advance to the next part, discarding whatever is left of the current one.
+     * Returns null once the closing boundary has been read.
+     */
+    public Part nextPart() throws IOException
+    {
+        if ( current != null )
+        {
+            currentContent.skipToEnd();
+            current = null;
+        }
+        else if ( !finished && !skipPreamble() )
+        {
+            finished = true;
+        }
+        if ( finished )
+        {
+            return null;
+        }
+
+        current = readHeaders();
+        return current;
+    }
+
+    /**
+     * Discard everything up to the first boundary; false if the body holds no parts at all
+     */
+    private boolean skipPreamble() throws IOException
+    {
+        PartInputStream preamble = new PartInputStream();
+        preamble.skipToEnd();
+        return !finished;
+    }
+
+    private Part readHeaders() throws IOException
+    {
+        String name = null;
+        String fileName = null;
+        String contentType = null;
+        int total = 0;
+        String line;
+        while (!(line = readLine()).isEmpty())
+        {
+            total += line.length();
+            if ( total > MAX_HEADER_BYTES )
+            {
+                throw new IOException( "Multipart headers too large" );
+            }
+            int colon = line.indexOf( ':' );
+            if ( colon < 0 )
+            {
+                continue;
+            }
+            String header = line.substring( 0, colon ).trim().toLowerCase( Locale.ROOT );
+            String value = line.substring( colon + 1 ).trim();
+            if ( header.equals( "content-disposition" ) )
+            {
+                name = parameter( value, "name" );
+                fileName = parameter( value, "filename" );
+            }
+            else if ( header.equals( "content-type" ) )
+            {
+                contentType = value;
+            }
+        }
+        currentContent = new PartInputStream();
+        return new Part( name, fileName, contentType, currentContent );
+    }
+
+    private String readLine() throws IOException
+    {
+        int scanned = 0;
+        while (true)
+        {
+            for (int i = head + scanned; i + 1 < tail; i++)
+            {
+                if ( buffer[i] == '\r' && buffer[i + 1] == '\n' )
+                {
+                    String line = new String( buffer, head, i - head, StandardCharsets.UTF_8 );
+                    head = i + 2;
+                    return line;
+                }
+            }
+            scanned = Math.max( 0, tail - head - 1 );
+            if ( tail - head == buffer.length )
+            {
+                throw new IOException( "Multipart header line too long" );
+            }
+            if ( !fill() )
+            {
+                throw new EOFException( "Unexpected end of multipart body" );
+            }
+        }
+    }
+
+    /**
+     * Compact the buffer and read more; false at end of input
+     */
+    private boolean fill() throws IOException
+    {
+        if ( eof )
+        {
+            return false;
+        }
+        if ( head > 0 )
+        {
+            System.arraycopy( buffer, head, buffer, 0, tail - head );
+            tail -= head;
+            head = 0;
+        }
+        int read = in.read( buffer, tail, buffer.length - tail );
+        if ( read < 0 )
+        {
+            eof = true;
+            return false;
+        }
+        tail += read;
+        return true;
+    }
+
+    private int indexOfDelimiter()
+    {
+        int last = tail - delimiter.length;
+        outer:
+        for (int i = head; i <= last; i++)
+        {
+            if ( buffer[i] != '\r' )
+            {
+                continue;
+            }
+            for (int j = 1; j < delimiter.length; j++)
+            {
+                if ( buffer[i + j] != delimiter[j] )
+                {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Consume what follows a delimiter: "--" ends the body, otherwise the rest of the line
+     */
+    private void afterDelimiter() throws IOException
+    {
+        while (tail - head < 2)
+        {
+            if ( !fill() )
+            {
+                throw new EOFException( "Unexpected end of multipart body" );
+            }
+        }
+        if ( buffer[head] == '-' && buffer[head + 1] == '-' )
+        {
+            finished = true;
+            return;
+        }
+        // Transport padding may sit between the boundary and its CRLF
+        readLine();
+    }
+
+    private static String parameter( String header, String name )
+    {
+        for (String token : header.split( ";(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)" ))
+        {
+            int eq = token.indexOf( '=' );
+            if ( eq > 0 && token.substring( 0, eq ).trim().equalsIgnoreCase( name ) )
+            {
+                String value = token.substring( eq + 1 ).trim();
+                if ( value.length() >= 2 && value.startsWith( "\"" ) && value.endsWith( "\"" ) )
+                {
+                    value = value.substring( 1, value.length() - 1 ).replace( "\\\"", "\"" );
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One part: its form field name, file name (null for plain fields) and content
+     */
+    @Getter
+    public static class Part
+    {
+        private final String name;
+        private final String fileName;
+        private final String contentType;
+        private final InputStream content;
+
+        Part( String name, String fileName, String contentType, InputStream content )
+        {
+            this.name = name;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.content = content;
+        }
+
+        public boolean isFile()
+        {
+            return fileName != null;
+        }
+
+        /**
+         * Read a plain form field; values longer than maxBytes are rejected
+         */
+        public String readString( int maxBytes ) throws IOException
+        {
+            byte[] value = content.readNBytes( maxBytes + 1 );
+            if ( value.length > maxBytes )
+            {
+                throw new IOException( "Form field " + name + " is too long" );
+            }
+            return new String( value, StandardCharsets.UTF_8 );
+        }
+    }
+
+    /**
+     * Content of the current part, ending just before the next delimiter
+     */
+    private class PartInputStream extends InputStream
+    {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException
+        {
+            byte[] one = new byte[1];
+            return read( one, 0, 1 ) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len ) throws IOException
+        {
+            if ( done )
+            {
+                return -1;
+            }
+            if ( len == 0 )
+            {
+                return 0;
+            }
+            while (true)
+            {
+                int found = indexOfDelimiter();
+                if ( found == head )
+                {
+                    head += delimiter.length;
+                    done = true;
+                    afterDelimiter();
+                    return -1;
+                }
+
+                // Bytes that cannot be the start of a delimiter are safe to hand out
+                int available = found >= 0 ? found - head : tail - head - (delimiter.length - 1);
+                if ( available > 0 )
+                {
+                    int n = Math.min( available, len );
+                    System.arraycopy( buffer, head, b, off, n );
+                    head += n;
+                    return n;
+                }
+                if ( !fill() )
+                {
+                    throw new EOFException( "Unexpected end of multipart body" );
+                }
+            }
+        }
+
+        void skipToEnd() throws IOException
+        {
+            while (!done)
+            {
+                int found = indexOfDelimiter();
+                if ( found >= 0 )
+                {
+                    // The next read sees the delimiter at the head and consumes it
+                    head = found;
+                    read();
+                }
+                else
+                {
+                    head = Math.max( head, tail - (delimiter.length - 1) );
+                    if ( !fill() )
+                    {
+                        throw new EOFException( "Unexpected end of multipart body" );
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,852 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.AttributeRepository;
+import org.apache.sshd.common.config.keys.KeyUtils;
+import org.apache.sshd.common.config.keys.PublicKeyEntry;
+import org.apache.sshd.common.config.keys.PublicKeyEntryResolver;
+import org.apache.sshd.core.CoreModuleProperties;
+import org.apache.sshd.sftp.client.SftpClient.Attributes;
+import org.apache.sshd.sftp.client.SftpClient.DirEntry;
+import org.apache.sshd.sftp.client.SftpClient.OpenMode;
+import org.apache.sshd.sftp.client.SftpClientFactory;
+import org.apache.sshd.sftp.client.extensions.CheckFileNameExtension;
+import org.apache.sshd.sftp.client.extensions.MD5FileExtension;
+import org.apache.sshd.sftp.client.impl.SftpOutputStreamAsync;
+import org.apache.sshd.sftp.common.SftpException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SFTP engine built on Apache MINA SSHD. Its read and write streams keep many
+ * SSH_FXP_READ/WRITE requests outstanding at once, so a transfer is limited by the
+ * SSH window rather than by one round trip per request - the point of using it on
+ * long-haul links.
+ * <p>
+ * Each site gets one SSH session with one SFTP channel, shared by every concurrent
+ * client since MINA matches replies to requests by id. Clients that want a channel of
+ * their own ({@link #openChannel}) get one on that session until it carries
+ * {@code sftp.pipelined.max.channels.per.session}; past that, further SSH sessions are
+ * opened for them. Connections are keyed like
+ * the JSch pool ({@link ConnectionKey}), go through the {@link SiteCircuitBreaker},
+ * verify host keys against the site's known_hosts entry under the same
+ * {@code sftp.hostkey.unknown.policy}, and are closed after sitting unused for
+ * {@code sftp.pipelined.idle.seconds}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PipelinedSftpEngine
+{
+    private static final AttributeRepository.AttributeKey<Site> SITE = new AttributeRepository.AttributeKey<>();
+
+    private final CredentialVault credentialVault;
+    private final SiteCircuitBreaker circuitBreaker;
+    private final SiteRepository siteRepository;
+    private final SshIdentityCache identityCache;
+
+    @Value("${sftp.connect.timeout.ms:30000}")
+    private int connectTimeoutMs;
+
+    @Value("${sftp.session.keepalive.seconds:30}")
+    private int keepAliveSeconds;
+
+    @Value("${sftp.pipelined.buffer.size:32768}")
+    private int bufferSize;
+
+    @Value("${sftp.pipelined.window.size:8388608}")
+    private long windowSize;
+
+    @Value("${sftp.pipelined.max.channels.per.session:8}")
+    private int maxChannelsPerSession;
+
+    @Value("${sftp.pipelined.idle.seconds:300}")
+    private long idleSeconds;
+
+    @Value("${sftp.hostkey.unknown.policy:accept}")
+    private String unknownHostPolicy;
+
+    @Value("${sftp.hostkey.persist.learned:true}")
+    private boolean persistLearnedKeys;
+
+    private final Map<ConnectionKey, Connection> connections = new ConcurrentHashMap<>();
+
+    // Extra sessions carrying only per-client channels, once the shared session is full
+    private final Map<ConnectionKey, List<Connection>> channelSessions = new ConcurrentHashMap<>();
+
+    // Serializes connects per key so concurrent first requests share one handshake
+    private final Map<ConnectionKey, Object> connectLocks = new ConcurrentHashMap<>();
+
+    private SshClient client;
+
+    @PostConstruct
+    public void init()
+    {
+        client = SshClient.setUpDefaultClient();
+        CoreModuleProperties.HEARTBEAT_INTERVAL.set( client, Duration.ofSeconds( keepAliveSeconds ) );
+        CoreModuleProperties.WINDOW_SIZE.set( client, windowSize );
+        client.setServerKeyVerifier( this::verifyServerKey );
+        client.start();
+        log.info( "Pipelined SFTP engine started ({} byte requests, {} byte window)", bufferSize, windowSize );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        clearAll();
+        if ( client != null )
+        {
+            client.stop();
+        }
+    }
+
+    /**
+     * Client for a site over its shared pipelined connection, connecting first if needed
+     */
+    public SftpClient open( Site site ) throws Exception
+    {
+        return new PipelinedClient( leaseConnection( site ), null );
+    }
+
+    /**
+     * Client with an SFTP channel of its own, so parallel transfers each get their own
+     * channel window. The channel goes on the site's shared session while that has room,
+     * otherwise on an extra session. It is closed with the client.
+     */
+    public SftpClient openChannel( Site site ) throws Exception
+    {
+        Connection connection = leaseConnection( site );
+        if ( !connection.reserveChannel( maxChannelsPerSession ) )
+        {
+            Connection shared = connection;
+            try
+            {
+                connection = leaseChannelSession( shared.key, site );
+            }
+            catch (Exception e)
+            {
+                circuitBreaker.recordFailure( site, e );
+                throw e;
+            }
+            finally
+            {
+                release( shared );
+            }
+        }
+
+        try
+        {
+            return new PipelinedClient( connection, SftpClientFactory.instance().createSftpClient( connection.session ) );
+        }
+        catch (IOException | RuntimeException e)
+        {
+            connection.channels.decrementAndGet();
+            release( connection );
+            throw e;
+        }
+    }
+
+    private Connection leaseConnection( Site site ) throws Exception
+    {
+        ConnectionKey key = ConnectionKey.of( site );
+        retireStaleKeys( key );
+        circuitBreaker.acquirePermission( site );
+        Connection connection;
+        try
+        {
+            connection = lease( key, site );
+        }
+        catch (Exception e)
+        {
+            circuitBreaker.recordFailure( site, e );
+            throw e;
+        }
+        circuitBreaker.recordSuccess( site );
+        return connection;
+    }
+
+    /**
+     * Close a site's connections. Ones in use are closed when their last client is.
+     */
+    public void clearSite( Long siteId )
+    {
+        for (Connection connection : allConnections())
+        {
+            if ( connection.key.getSiteId().equals( siteId ) )
+            {
+                retire( connection );
+            }
+        }
+    }
+
+    public void clearAll()
+    {
+        for (Connection connection : allConnections())
+        {
+            retire( connection );
+        }
+    }
+
+    /**
+     * Close connections nobody has used for the idle timeout, and drop dead ones
+     */
+    @Scheduled(fixedDelayString = "${sftp.pipelined.reaper.interval.ms:60000}")
+    public void closeIdleConnections()
+    {
+        long cutoff = System.currentTimeMillis() - idleSeconds * 1000;
+        for (Connection connection : allConnections())
+        {
+            if ( !connection.isOpen() || (connection.leases.get() == 0 && connection.lastUsed < cutoff) )
+            {
+                log.debug( "Closing idle pipelined SFTP connection {}", connection.key );
+                retire( connection );
+            }
+        }
+    }
+
+    public Map<String, Object> getStats()
+    {
+        Map<String, Object> perSite = new HashMap<>();
+        long now = System.currentTimeMillis();
+        int extraSessions = 0;
+        for (Connection connection : connections.values())
+        {
+            List<Connection> extras = channelSessions.getOrDefault( connection.key, List.of() );
+            int channels = connection.channels.get();
+            for (Connection extra : extras)
+            {
+                channels += extra.channels.get();
+            }
+            extraSessions += extras.size();
+            perSite.put( connection.key.getSiteId().toString(), Map.of(
+                    "clients", connection.leases.get(),
+                    "channels", channels,
+                    "sessions", 1 + extras.size(),
+                    "idleSeconds", (now - connection.lastUsed) / 1000 ) );
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put( "connections", connections.size() );
+        stats.put( "extraSessions", extraSessions );
+        stats.put( "sites", perSite );
+        return stats;
+    }
+
+    private Connection lease( ConnectionKey key, Site site ) throws IOException
+    {
+        // A second pass covers a connection that was reaped between lookup and lease
+        for (int attempt = 0; attempt < 2; attempt++)
+        {
+            Connection connection = connections.get( key );
+            if ( connection == null || !connection.isOpen() )
+            {
+                connection = connect( key, site );
+            }
+            connection.leases.incrementAndGet();
+            if ( connection.isOpen() )
+            {
+                connection.lastUsed = System.currentTimeMillis();
+                return connection;
+            }
+            release( connection );
+        }
+        throw new IOException( "Pipelined SFTP connection to " + site.getSiteName() + " closed while opening" );
+    }
+
+    private Connection connect( ConnectionKey key, Site site ) throws IOException
+    {
+        synchronized (connectLocks.computeIfAbsent( key, k -> new Object() ))
+        {
+            Connection existing = connections.get( key );
+            if ( existing != null && existing.isOpen() )
+            {
+                return existing;
+            }
+            if ( existing != null )
+            {
+                retire( existing );
+            }
+
+            long start = System.nanoTime();
+            ClientSession session = authenticate( site );
+            try
+            {
+                org.apache.sshd.sftp.client.SftpClient sftp = SftpClientFactory.instance().createSftpClient( session );
+                Connection connection = new Connection( key, session, sftp );
+                connections.put( key, connection );
+                log.info( "Pipelined SFTP connection opened for site {} in {} ms", site.getSiteName(),
+                        (System.nanoTime() - start) / 1_000_000 );
+                return connection;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                session.close( true );
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Lease a channel slot on one of the key's extra sessions, opening another when all are full
+     */
+    private Connection leaseChannelSession( ConnectionKey key, Site site ) throws IOException
+    {
+        synchronized (connectLocks.computeIfAbsent( key, k -> new Object() ))
+        {
+            List<Connection> sessions = channelSessions.computeIfAbsent( key, k -> new CopyOnWriteArrayList<>() );
+            for (Connection connection : sessions)
+            {
+                connection.leases.incrementAndGet();
+                if ( connection.isOpen() && connection.reserveChannel( maxChannelsPerSession ) )
+                {
+                    connection.lastUsed = System.currentTimeMillis();
+                    return connection;
+                }
+                release( connection );
+            }
+
+            Connection connection = new Connection( key, authenticate( site ), null );
+            connection.channels.incrementAndGet();
+            connection.leases.incrementAndGet();
+            sessions.add( connection );
+            log.info( "Opened extra pipelined SSH session {} for site {} ({} channels per session)",
+                    sessions.size(), site.getSiteName(), maxChannelsPerSession );
+            return connection;
+        }
+    }
+
+    private ClientSession authenticate( Site site ) throws IOException
+    {
+        ClientSession session = client.connect( site.getUsername(), site.getIpAddress(), site.getPort(),
+                        AttributeRepository.ofKeyValuePair( SITE, site ) )
+                .verify( connectTimeoutMs ).getSession();
+        try
+        {
+            addIdentities( session, site );
+            session.auth().verify( connectTimeoutMs );
+            return session;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            session.close( true );
+            throw e;
+        }
+    }
+
+    private void addIdentities( ClientSession session, Site site )
+    {
+        if ( JschRuntime.hasPassword( site ) )
+        {
+            byte[] password = credentialVault.reveal( site.getEncryptedPassword() );
+            try
+            {
+                session.addPasswordIdentity( new String( password, StandardCharsets.UTF_8 ) );
+            }
+            finally
+            {
+                CredentialVault.wipe( password );
+            }
+        }
+
+        // Decoded once per key and shared with every session of the site
+        for (KeyPair keyPair : identityCache.keyPairsFor( site ))
+        {
+            session.addPublicKeyIdentity( keyPair );
+        }
+    }
+
+    private boolean verifyServerKey( ClientSession session, SocketAddress remoteAddress, PublicKey serverKey )
+    {
+        Site site = session.getConnectionContext().getAttribute( SITE );
+        List<PublicKey> knownKeys = knownKeys( site );
+        if ( knownKeys == null )
+        {
+            log.error( "None of the known_hosts entries for site {} could be read - refusing to connect",
+                    site.getSiteName() );
+            return false;
+        }
+        if ( !knownKeys.isEmpty() )
+        {
+            for (PublicKey knownKey : knownKeys)
+            {
+                if ( KeyUtils.compareKeys( knownKey, serverKey ) )
+                {
+                    return true;
+                }
+            }
+            log.error( "Host key for site {} does not match its known_hosts entry - refusing to connect",
+                    site.getSiteName() );
+            return false;
+        }
+
+        if ( "reject".equalsIgnoreCase( unknownHostPolicy ) )
+        {
+            log.warn( "No known host key for site {} - refusing to connect", site.getSiteName() );
+            return false;
+        }
+
+        log.info( "Trusting new {} host key for site {}", KeyUtils.getKeyType( serverKey ), site.getSiteName() );
+        if ( persistLearnedKeys )
+        {
+            try
+            {
+                String entry = site.getIpAddress() + " " + PublicKeyEntry.toString( serverKey );
+                siteRepository.updateKnownHostsEntryIfMissing( site.getId(), entry );
+            }
+            catch (Exception e)
+            {
+                log.warn( "Could not store host key for site {}: {}", site.getSiteName(), e.getMessage() );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Host keys from the site's known_hosts entry, or null when it has entries but none could be parsed
+     */
+    private static List<PublicKey> knownKeys( Site site )
+    {
+        List<PublicKey> keys = new ArrayList<>();
+        int entries = 0;
+        String knownHosts = site.getKnownHostsEntry();
+        if ( knownHosts == null )
+        {
+            return keys;
+        }
+
+        for (String line : knownHosts.split( "\\R" ))
+        {
+            String trimmed = line.trim();
+            if ( trimmed.isEmpty() || trimmed.startsWith( "#" ) || trimmed.startsWith( "@" ) )
+            {
+                continue;
+            }
+
+            // "host[,host] type base64 [comment]" or just "type base64"
+            String[] parts = trimmed.split( "\\s+" );
+            int typeIndex = parts[0].startsWith( "ssh-" ) || parts[0].startsWith( "ecdsa-" ) ? 0 : 1;
+            if ( parts.length < typeIndex + 2 )
+            {
+                continue;
+            }
+
+            entries++;
+            try
+            {
+                PublicKey key = PublicKeyEntry.parsePublicKeyEntry( parts[typeIndex] + " " + parts[typeIndex + 1] )
+                        .resolvePublicKey( null, null, PublicKeyEntryResolver.IGNORING );
+                if ( key != null )
+                {
+                    keys.add( key );
+                }
+            }
+            catch (Exception e)
+            {
+                log.warn( "Ignoring unparseable known_hosts line for site {}: {}", site.getSiteName(), e.getMessage() );
+            }
+        }
+        return entries > 0 && keys.isEmpty() ? null : keys;
+    }
+
+    private List<Connection> allConnections()
+    {
+        List<Connection> all = new ArrayList<>( connections.values() );
+        for (List<Connection> extras : channelSessions.values())
+        {
+            all.addAll( extras );
+        }
+        return all;
+    }
+
+    private void retireStaleKeys( ConnectionKey current )
+    {
+        for (Connection connection : allConnections())
+        {
+            if ( connection.key.getSiteId().equals( current.getSiteId() ) && !connection.key.equals( current ) )
+            {
+                retire( connection );
+                circuitBreaker.reset( current.getSiteId() );
+                log.info( "Connection settings changed for site {} - retired old pipelined connection", current.getSiteId() );
+            }
+        }
+    }
+
+    private void retire( Connection connection )
+    {
+        connections.remove( connection.key, connection );
+        List<Connection> extras = channelSessions.get( connection.key );
+        if ( extras != null )
+        {
+            extras.remove( connection );
+        }
+        connection.retired = true;
+        if ( connection.leases.get() == 0 )
+        {
+            connection.close();
+        }
+    }
+
+    private void release( Connection connection )
+    {
+        connection.lastUsed = System.currentTimeMillis();
+        if ( connection.leases.decrementAndGet() == 0 && connection.retired )
+        {
+            connection.close();
+        }
+    }
+
+    /**
+     * One SSH session and its shared SFTP channel (none on an extra session)
+     */
+    private static class Connection
+    {
+        private final ConnectionKey key;
+        private final ClientSession session;
+        private final org.apache.sshd.sftp.client.SftpClient sftp;
+        private final AtomicInteger leases = new AtomicInteger();
+        private final AtomicInteger channels;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile boolean retired;
+
+        Connection( ConnectionKey key, ClientSession session, org.apache.sshd.sftp.client.SftpClient sftp )
+        {
+            this.key = key;
+            this.session = session;
+            this.sftp = sftp;
+            this.channels = new AtomicInteger( sftp != null ? 1 : 0 );
+        }
+
+        boolean isOpen()
+        {
+            return !retired && session.isOpen() && (sftp == null || sftp.isOpen());
+        }
+
+        /**
+         * Claim room for one more channel, if the session is below the cap
+         */
+        boolean reserveChannel( int max )
+        {
+            int current;
+            do
+            {
+                current = channels.get();
+                if ( current >= max )
+                {
+                    return false;
+                }
+            }
+            while (!channels.compareAndSet( current, current + 1 ));
+            return true;
+        }
+
+        void close()
+        {
+            if ( sftp != null )
+            {
+                try
+                {
+                    sftp.close();
+                }
+                catch (IOException e)
+                {
+                    log.debug( "Error closing SFTP channel: {}", e.getMessage() );
+                }
+            }
+            session.close( false );
+        }
+    }
+
+    /**
+     * Callback for MINA SFTP calls, so server errors can be translated in one place
+     */
+    private interface SftpCall<T>
+    {
+        T run() throws IOException;
+    }
+
+    /**
+     * Client view of a shared connection; closing it only gives up the lease
+     * (and closes its own channel, if it has one)
+     */
+    private class PipelinedClient implements SftpClient
+    {
+        private final Connection connection;
+        private final org.apache.sshd.sftp.client.SftpClient sftp;
+        private final boolean ownChannel;
+        private boolean closed;
+
+        PipelinedClient( Connection connection, org.apache.sshd.sftp.client.SftpClient channel )
+        {
+            this.connection = connection;
+            this.sftp = channel != null ? channel : connection.sftp;
+            this.ownChannel = channel != null;
+        }
+
+        @Override
+        public List<RemoteFile> list( String path ) throws IOException
+        {
+            return call( () ->
+            {
+                List<RemoteFile> files = new ArrayList<>();
+                for (DirEntry entry : sftp.readDir( path ))
+                {
+                    if ( !".".equals( entry.getFilename() ) && !"..".equals( entry.getFilename() ) )
+                    {
+                        files.add( toRemoteFile( entry.getFilename(), entry.getAttributes() ) );
+                    }
+                }
+                return files;
+            } );
+        }
+
+        @Override
+        public RemoteFile stat( String path ) throws IOException
+        {
+            return call( () -> toRemoteFile( path.substring( path.lastIndexOf( '/' ) + 1 ), sftp.stat( path ) ) );
+        }
+
+        @Override
+        public InputStream openRead( String path, long offset ) throws IOException
+        {
+            return call( () ->
+            {
+                InputStream in = sftp.read( path, bufferSize );
+                long remaining = offset;
+                while (remaining > 0)
+                {
+                    long skipped = in.skip( remaining );
+                    if ( skipped <= 0 )
+                    {
+                        break;
+                    }
+                    remaining -= skipped;
+                }
+                return in;
+            } );
+        }
+
+        @Override
+        public OutputStream openWrite( String path, long offset, boolean truncate ) throws IOException
+        {
+            if ( truncate && offset != 0 )
+            {
+                throw new IllegalArgumentException( "Truncation is only supported at offset 0" );
+            }
+            return call( () ->
+            {
+                if ( truncate )
+                {
+                    return sftp.write( path, bufferSize, OpenMode.Write, OpenMode.Create, OpenMode.Truncate );
+                }
+                OutputStream out = sftp.write( path, bufferSize, OpenMode.Write, OpenMode.Create );
+                ((SftpOutputStreamAsync) out).setOffset( offset );
+                return out;
+            } );
+        }
+
+        @Override
+        public void rename( String oldPath, String newPath ) throws IOException
+        {
+            call( () ->
+            {
+                sftp.rename( oldPath, newPath );
+                return null;
+            } );
+        }
+
+        @Override
+        public void rm( String path ) throws IOException
+        {
+            call( () ->
+            {
+                sftp.remove( path );
+                return null;
+            } );
+        }
+
+        @Override
+        public void rmdir( String path ) throws IOException
+        {
+            call( () ->
+            {
+                sftp.rmdir( path );
+                return null;
+            } );
+        }
+
+        @Override
+        public void mkdir( String path ) throws IOException
+        {
+            call( () ->
+            {
+                sftp.mkdir( path );
+                return null;
+            } );
+        }
+
+        @Override
+        public void chmod( String path, int permissions ) throws IOException
+        {
+            call( () ->
+            {
+                sftp.setStat( path, new Attributes().perms( permissions ) );
+                return null;
+            } );
+        }
+
+        @Override
+        public void truncate( String path, long size ) throws IOException
+        {
+            call( () ->
+            {
+                sftp.setStat( path, new Attributes().size( size ) );
+                return null;
+            } );
+        }
+
+        @Override
+        public String pwd() throws IOException
+        {
+            return call( () -> sftp.canonicalPath( "." ) );
+        }
+
+        @Override
+        public byte[] md5( String path ) throws IOException
+        {
+            return call( () ->
+            {
+                CheckFileNameExtension checkFile = sftp.getExtension( CheckFileNameExtension.class );
+                if ( checkFile.isSupported() )
+                {
+                    // Length 0 and block size 0 hash the whole file in one piece
+                    Map.Entry<String, Collection<byte[]>> result =
+                            checkFile.checkFileName( path, List.of( "md5" ), 0L, 0L, 0 );
+                    if ( result != null && "md5".equalsIgnoreCase( result.getKey() ) && result.getValue().size() == 1 )
+                    {
+                        return result.getValue().iterator().next();
+                    }
+                }
+                MD5FileExtension md5Hash = sftp.getExtension( MD5FileExtension.class );
+                if ( md5Hash.isSupported() )
+                {
+                    return md5Hash.getHash( path, 0L, 0L, new byte[0] );
+                }
+                return null;
+            } );
+        }
+
+        @Override
+        public String engine()
+        {
+            return "pipelined";
+        }
+
+        @Override
+        public void close()
+        {
+            if ( !closed )
+            {
+                closed = true;
+                if ( ownChannel )
+                {
+                    try
+                    {
+                        sftp.close();
+                    }
+                    catch (IOException e)
+                    {
+                        log.debug( "Error closing SFTP channel: {}", e.getMessage() );
+                    }
+                    connection.channels.decrementAndGet();
+                }
+                release( connection );
+            }
+        }
+
+        private <T> T call( SftpCall<T> call ) throws IOException
+        {
+            try
+            {
+                return call.run();
+            }
+            catch (SftpException e)
+            {
+                throw new StatusException( e.getStatus(), e.getMessage(), e );
+            }
+        }
+
+        private RemoteFile toRemoteFile( String name, Attributes attributes )
+        {
+            FileTime modified = attributes.getModifyTime();
+            RemoteFile file = new RemoteFile();
+            file.setName( name );
+            file.setSize( attributes.getSize() );
+            file.setDirectory( attributes.isDirectory() );
+            file.setModifiedSeconds( modified != null ? modified.to( TimeUnit.SECONDS ) : 0 );
+            file.setPermissions( attributes.getPermissions() & 07777 );
+            return file;
+        }
+    }
+}
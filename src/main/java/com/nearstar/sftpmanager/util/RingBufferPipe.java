@@ -0,0 +1,196 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pumps one stream into another through a fixed ring of pooled buffers. A background
+ * task fills free slots from the input while the calling thread drains full slots to
+ * the output, so both sides run at once; when the ring is full the reader waits, and
+ * when it is empty the writer waits, which keeps the pair at the slower side's speed
+ * with bounded memory.
+ */
+public class RingBufferPipe
+{
+    private static final long POLL_MS = 200;
+
+    private final TransferBufferPool bufferPool;
+    private final ExecutorService executor;
+    private final int slots;
+
+    public RingBufferPipe( TransferBufferPool bufferPool, ExecutorService executor, int slots )
+    {
+        this.bufferPool = bufferPool;
+        this.executor = executor;
+        this.slots = Math.max( 2, slots );
+    }
+
+    /**
+     * Copy in to out until in ends. Returns the number of bytes copied. Neither stream is closed.
+     */
+    public long pump( InputStream in, OutputStream out ) throws IOException
+    {
+        Ring ring = new Ring();
+        Future<?> reader = executor.submit( () -> ring.fill( in ) );
+        try
+        {
+            return ring.drain( out );
+        }
+        finally
+        {
+            ring.stopped = true;
+            reader.cancel( true );
+            ring.release();
+        }
+    }
+
+    private record Slot( byte[] buffer, int length )
+    {
+    }
+
+    private class Ring
+    {
+        private final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>( slots );
+        private final BlockingQueue<Slot> full = new ArrayBlockingQueue<>( slots + 1 );
+        private volatile IOException failure;
+        private volatile boolean stopped;
+
+        Ring()
+        {
+            for (int i = 0; i < slots; i++)
+            {
+                free.add( bufferPool.acquire() );
+            }
+        }
+
+        void fill( InputStream in )
+        {
+            try
+            {
+                while (!stopped)
+                {
+                    byte[] buffer = free.poll( POLL_MS, TimeUnit.MILLISECONDS );
+                    if ( buffer == null )
+                    {
+                        continue;
+                    }
+                    int read = in.read( buffer );
+                    if ( read == -1 )
+                    {
+                        free.add( buffer );
+                        break;
+                    }
+                    full.add( new Slot( buffer, read ) );
+                }
+            }
+            catch (IOException e)
+            {
+                failure = e;
+            }
+            catch (InterruptedException e)
+            {
+                failure = new InterruptedIOException( "Relay read interrupted" );
+            }
+            catch (RuntimeException e)
+            {
+                failure = new IOException( "Relay read failed: " + e.getMessage(), e );
+            }
+            finally
+            {
+                // End marker; the ring never holds more than slots buffers, so there is room
+                full.add( new Slot( null, -1 ) );
+            }
+        }
+
+        long drain( OutputStream out ) throws IOException
+        {
+            long total = 0;
+            try
+            {
+                while (true)
+                {
+                    Slot slot = full.poll( POLL_MS, TimeUnit.MILLISECONDS );
+                    if ( slot == null )
+                    {
+                        continue;
+                    }
+                    if ( slot.length() < 0 )
+                    {
+                        if ( failure != null )
+                        {
+                            throw failure;
+                        }
+                        return total;
+                    }
+                    out.write( slot.buffer(), 0, slot.length() );
+                    total += slot.length();
+                    free.add( slot.buffer() );
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Relay write interrupted" );
+            }
+        }
+
+        /**
+         * Return idle buffers to the pool; one still held by an aborted read is left to the collector
+         */
+        void release()
+        {
+            byte[] buffer;
+            while ((buffer = free.poll()) != null)
+            {
+                bufferPool.release( buffer );
+            }
+            Slot slot;
+            while ((slot = full.poll()) != null)
+            {
+                bufferPool.release( slot.buffer() );
+            }
+        }
+    }
+}
@@ -0,0 +1,549 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.SftpEngine;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves one large file over several SFTP channels at once. The file is cut into
+ * fixed-size blocks which a few workers, each on its own channel, read or write at
+ * their offsets. A bounded set of block buffers keeps memory flat and lets the
+ * caller's side of the transfer stay a plain sequential stream.
+ * <p>
+ * A transfer never starts more workers than the site has channels free, and a worker
+ * that cannot get a channel just drops out - the others take over its blocks. Only
+ * when no worker gets a channel does the transfer fail.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SegmentedTransfer
+{
+    private static final long POLL_MS = 200;
+
+    private final SftpClientProvider clientProvider;
+
+    @Value("${sftp.segmented.threshold.bytes:134217728}")
+    private long thresholdBytes;
+
+    @Value("${sftp.segmented.segments:4}")
+    private int defaultSegments;
+
+    @Value("${sftp.segmented.max.per.site:4}")
+    private int maxPerSite;
+
+    @Value("${sftp.segmented.block.size:4194304}")
+    private int blockSize;
+
+    // Extra channels in use per site; the first stream of a transfer is never counted
+    private final Map<Long, Semaphore> siteSlots = new ConcurrentHashMap<>();
+
+    private final AtomicLong uploads = new AtomicLong();
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong bytesTransferred = new AtomicLong();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool( new ThreadFactory()
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r )
+        {
+            Thread thread = new Thread( r, "sftp-segment-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    } );
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Number of parallel streams for a file of this size on this site; 1 means a normal transfer
+     */
+    public int segmentsFor( Site site, long size )
+    {
+        if ( size < thresholdBytes || size <= blockSize )
+        {
+            return 1;
+        }
+        int segments = site.getTransferSegments() != null ? site.getTransferSegments() : defaultSegments;
+        long blocks = (size + blockSize - 1) / blockSize;
+        return (int) Math.max( 1, Math.min( Math.min( segments, maxPerSite ), blocks ) );
+    }
+
+    /**
+     * Uploads need writes at arbitrary offsets, which only the pipelined engine supports
+     */
+    public boolean canUpload( Site site )
+    {
+        return SftpEngine.of( site.getSftpEngine() ) == SftpEngine.PIPELINED;
+    }
+
+    /**
+     * Copy length bytes of a remote file, starting at offset, to out in order.
+     * Fails if the file is shorter than expected or changes while being read.
+     */
+    public long download( Site site, String path, long offset, long length, OutputStream out,
+                          TransferBufferPool.CopyListener listener ) throws IOException
+    {
+        SftpClient.RemoteFile before = statFile( site, path );
+        long blocks = (length + blockSize - 1) / blockSize;
+        Run run = new Run( site, segmentsFor( site, length ) );
+        ConcurrentHashMap<Long, CompletableFuture<byte[]>> ready = new ConcurrentHashMap<>();
+        AtomicLong nextBlock = new AtomicLong();
+        long total = 0;
+
+        try
+        {
+            run.start( client ->
+            {
+                while (true)
+                {
+                    byte[] buffer = run.takeBuffer();
+                    long block = nextBlock.getAndIncrement();
+                    if ( block >= blocks )
+                    {
+                        run.free.offer( buffer );
+                        return;
+                    }
+                    long start = block * blockSize;
+                    int len = (int) Math.min( blockSize, length - start );
+                    try ( InputStream in = client.openRead( path, offset + start ) )
+                    {
+                        if ( in.readNBytes( buffer, 0, len ) != len )
+                        {
+                            throw new EOFException( path + " ended before " + (offset + length) + " bytes" );
+                        }
+                    }
+                    ready.computeIfAbsent( block, b -> new CompletableFuture<>() ).complete( buffer );
+                }
+            } );
+
+            for (long block = 0; block < blocks; block++)
+            {
+                byte[] buffer = run.await( ready.computeIfAbsent( block, b -> new CompletableFuture<>() ) );
+                ready.remove( block );
+                int len = (int) Math.min( blockSize, length - block * blockSize );
+                out.write( buffer, 0, len );
+                run.free.offer( buffer );
+                total += len;
+                if ( listener != null )
+                {
+                    listener.copied( total );
+                }
+            }
+            run.finish();
+        }
+        finally
+        {
+            run.close();
+        }
+
+        SftpClient.RemoteFile after = statFile( site, path );
+        if ( after.getSize() != before.getSize() || after.getModifiedSeconds() != before.getModifiedSeconds() )
+        {
+            throw new IOException( path + " changed while it was being downloaded" );
+        }
+        downloads.incrementAndGet();
+        bytesTransferred.addAndGet( total );
+        log.info( "Segmented download of {} ({} bytes, {} streams) complete", path, total, run.started() );
+        return total;
+    }
+
+    /**
+     * Write a stream of the given size to a new remote file (replacing any existing one)
+     * over several channels, then check the assembled file has exactly that size
+     */
+    public long upload( Site site, InputStream in, String path, long size,
+                        TransferBufferPool.CopyListener listener ) throws IOException
+    {
+        if ( !canUpload( site ) )
+        {
+            throw new IllegalStateException( "Segmented uploads need the pipelined SFTP engine" );
+        }
+        try ( SftpClient client = open( site, false ) )
+        {
+            client.openWrite( path, 0, true ).close();
+        }
+
+        Run run = new Run( site, segmentsFor( site, size ) );
+        BlockingQueue<Block> pending = new LinkedBlockingQueue<>();
+        AtomicLong written = new AtomicLong();
+        long total = 0;
+
+        try
+        {
+            run.start( client ->
+            {
+                while (true)
+                {
+                    Block block = run.poll( pending );
+                    if ( block == null )
+                    {
+                        return;
+                    }
+                    try ( OutputStream out = client.openWrite( path, block.offset, false ) )
+                    {
+                        out.write( block.data, 0, block.length );
+                    }
+                    run.free.offer( block.data );
+                    long done = written.addAndGet( block.length );
+                    if ( listener != null )
+                    {
+                        synchronized (listener)
+                        {
+                            listener.copied( done );
+                        }
+                    }
+                }
+            } );
+
+            while (true)
+            {
+                byte[] buffer = run.takeBuffer();
+                int len = in.readNBytes( buffer, 0, blockSize );
+                if ( len == 0 )
+                {
+                    run.free.offer( buffer );
+                    break;
+                }
+                pending.add( new Block( total, buffer, len ) );
+                total += len;
+                if ( len < blockSize )
+                {
+                    break;
+                }
+            }
+            run.inputDone = true;
+            run.finish();
+        }
+        finally
+        {
+            run.close();
+        }
+
+        long remoteSize = statFile( site, path ).getSize();
+        if ( (size >= 0 && total != size) || remoteSize != total )
+        {
+            throw new IOException( "Segmented upload of " + path + " incomplete: expected " + size
+                    + " bytes, read " + total + ", remote file has " + remoteSize );
+        }
+        uploads.incrementAndGet();
+        bytesTransferred.addAndGet( total );
+        log.info( "Segmented upload of {} ({} bytes, {} streams) complete", path, total, run.started() );
+        return total;
+    }
+
+    public Map<String, Object> getStats()
+    {
+        return Map.of(
+                "uploads", uploads.get(),
+                "downloads", downloads.get(),
+                "bytes", bytesTransferred.get(),
+                "thresholdBytes", thresholdBytes,
+                "blockSize", blockSize );
+    }
+
+    private SftpClient.RemoteFile statFile( Site site, String path ) throws IOException
+    {
+        try ( SftpClient client = open( site, false ) )
+        {
+            return client.stat( path );
+        }
+    }
+
+    private SftpClient open( Site site, boolean ownChannel ) throws IOException
+    {
+        try
+        {
+            return ownChannel ? clientProvider.openChannel( site ) : clientProvider.open( site );
+        }
+        catch (IOException | RuntimeException e)
+        {
+            throw e;
+        }
+        catch (Exception e)
+        {
+            throw new IOException( "Could not open SFTP channel to " + site.getSiteName() + ": " + e.getMessage(), e );
+        }
+    }
+
+    /**
+     * Work done by each stream, on its own client
+     */
+    private interface Worker
+    {
+        void run( SftpClient client ) throws IOException, InterruptedException;
+    }
+
+    private record Block( long offset, byte[] data, int length )
+    {
+    }
+
+    /**
+     * Workers, buffers and failure state of one transfer
+     */
+    private class Run
+    {
+        private final Site site;
+        private final Semaphore slots;
+        private final AtomicInteger extraSlots;
+        private final int workers;
+        private final AtomicInteger unopened = new AtomicInteger();
+        private final BlockingQueue<byte[]> free;
+        private final CompletableFuture<Void> failed = new CompletableFuture<>();
+        private final List<Future<?>> futures = new ArrayList<>();
+        private volatile boolean inputDone;
+        private volatile boolean stopped;
+
+        Run( Site site, int segments )
+        {
+            this.site = site;
+            this.slots = siteSlots.computeIfAbsent( site.getId(), id -> new Semaphore( maxPerSite ) );
+            // No more streams than channels the site can hand out without making them wait
+            int wanted = Math.max( 1, Math.min( segments, clientProvider.freeChannels( site ) ) );
+            int extra = 0;
+            while (extra < wanted - 1 && slots.tryAcquire())
+            {
+                extra++;
+            }
+            this.extraSlots = new AtomicInteger( extra );
+            this.workers = extra + 1;
+
+            // Enough buffers for every worker to hold one while another is handed over
+            this.free = new ArrayBlockingQueue<>( workers + 2 );
+            for (int i = 0; i < workers + 2; i++)
+            {
+                free.add( new byte[blockSize] );
+            }
+        }
+
+        void start( Worker worker )
+        {
+            for (int i = 0; i < workers; i++)
+            {
+                futures.add( executor.submit( () ->
+                {
+                    SftpClient client;
+                    try
+                    {
+                        client = open( site, true );
+                    }
+                    catch (Throwable e)
+                    {
+                        notStarted( e );
+                        return null;
+                    }
+
+                    try ( client )
+                    {
+                        worker.run( client );
+                    }
+                    catch (Throwable e)
+                    {
+                        stopped = true;
+                        failed.completeExceptionally( e );
+                    }
+                    return null;
+                } ) );
+            }
+        }
+
+        int started()
+        {
+            return workers - unopened.get();
+        }
+
+        /**
+         * A worker that could not get a channel leaves its blocks to the others;
+         * the transfer only fails if none of them got one
+         */
+        private void notStarted( Throwable e )
+        {
+            if ( unopened.incrementAndGet() == workers )
+            {
+                stopped = true;
+                failed.completeExceptionally( e );
+                return;
+            }
+            if ( extraSlots.getAndUpdate( n -> Math.max( 0, n - 1 ) ) > 0 )
+            {
+                slots.release();
+            }
+            log.warn( "Segmented transfer on site {} continues with fewer streams: {}", site.getSiteName(), e.getMessage() );
+        }
+
+        byte[] takeBuffer() throws IOException
+        {
+            try
+            {
+                while (true)
+                {
+                    checkFailed();
+                    byte[] buffer = free.poll( POLL_MS, TimeUnit.MILLISECONDS );
+                    if ( buffer != null )
+                    {
+                        return buffer;
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Segmented transfer interrupted" );
+            }
+        }
+
+        /**
+         * Next block for an upload worker, or null once the input is exhausted
+         */
+        Block poll( BlockingQueue<Block> pending ) throws InterruptedException
+        {
+            while (!stopped)
+            {
+                Block block = pending.poll( POLL_MS, TimeUnit.MILLISECONDS );
+                if ( block != null )
+                {
+                    return block;
+                }
+                if ( inputDone && pending.isEmpty() )
+                {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        <T> T await( CompletableFuture<T> future ) throws IOException
+        {
+            try
+            {
+                CompletableFuture.anyOf( future, failed ).get();
+                checkFailed();
+                return future.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Segmented transfer interrupted" );
+            }
+            catch (ExecutionException e)
+            {
+                throw failure( e.getCause() );
+            }
+        }
+
+        /**
+         * Wait for every worker to finish, surfacing the first failure
+         */
+        void finish() throws IOException
+        {
+            for (Future<?> future : futures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException( "Segmented transfer interrupted" );
+                }
+                catch (ExecutionException e)
+                {
+                    throw failure( e.getCause() );
+                }
+            }
+            checkFailed();
+        }
+
+        void close()
+        {
+            stopped = true;
+            for (Future<?> future : futures)
+            {
+                future.cancel( true );
+            }
+            slots.release( extraSlots.getAndSet( 0 ) );
+        }
+
+        private void checkFailed() throws IOException
+        {
+            if ( failed.isCompletedExceptionally() )
+            {
+                try
+                {
+                    failed.join();
+                }
+                catch (CompletionException e)
+                {
+                    throw failure( e.getCause() );
+                }
+            }
+        }
+
+        private IOException failure( Throwable e )
+        {
+            if ( e instanceof IOException io )
+            {
+                return io;
+            }
+            return new IOException( "Segmented transfer failed: " + e.getMessage(), e );
+        }
+    }
+}
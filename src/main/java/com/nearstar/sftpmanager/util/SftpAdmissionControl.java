@@ -0,0 +1,364 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for interactive SFTP operations.
+ * <p>
+ * At most {@code sftp.admission.max.total} operations run at once, no more than
+ * {@code max.per.site} against one site and {@code max.per.user} for one user.
+ * Requests that cannot start immediately wait in a queue per site, and free slots
+ * are handed out round-robin across sites, so a burst against one slow site
+ * cannot starve everyone else. A request that waits longer than the queue
+ * timeout, or finds its site's queue full, is rejected with a retry hint based
+ * on how long operations against that site have recently taken.
+ */
+@Slf4j
+@Component
+public class SftpAdmissionControl
+{
+    @Value("${sftp.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sftp.admission.max.total:64}")
+    private int maxTotal;
+
+    @Value("${sftp.admission.max.per.site:8}")
+    private int maxPerSite;
+
+    @Value("${sftp.admission.max.per.user:4}")
+    private int maxPerUser;
+
+    @Value("${sftp.admission.max.queued:100}")
+    private int maxQueued;
+
+    @Value("${sftp.admission.max.queued.per.site:50}")
+    private int maxQueuedPerSite;
+
+    @Value("${sftp.admission.queue.timeout.seconds:20}")
+    private long queueTimeoutSeconds;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // All of the state below is guarded by the lock
+    private final Map<Long, SiteQueue> sites = new HashMap<>();
+    private final Map<String, Integer> runningPerUser = new HashMap<>();
+    // Sites with waiters, in the order they get their next turn
+    private final ArrayDeque<SiteQueue> rotation = new ArrayDeque<>();
+    private int running;
+    private int queued;
+    private long admitted;
+    private long rejected;
+
+    /**
+     * Wait for a slot to run an operation against a site. The returned permit must be closed when
+     * the operation finishes.
+     *
+     * @throws AdmissionRejectedException if the queue is full or the wait times out
+     */
+    public Permit acquire( Long siteId, String user ) throws InterruptedException
+    {
+        if ( !enabled )
+        {
+            return new Permit( null, user );
+        }
+
+        lock.lock();
+        try
+        {
+            SiteQueue site = sites.computeIfAbsent( siteId, SiteQueue::new );
+            if ( queued >= maxQueued || site.waiters.size() >= maxQueuedPerSite )
+            {
+                rejected++;
+                throw new AdmissionRejectedException( "Too many queued operations for site " + siteId,
+                        retryAfterSeconds( site ) );
+            }
+
+            Waiter waiter = new Waiter( user, lock.newCondition() );
+            if ( site.waiters.isEmpty() )
+            {
+                rotation.addLast( site );
+            }
+            site.waiters.addLast( waiter );
+            queued++;
+            dispatch();
+
+            long remaining = TimeUnit.SECONDS.toNanos( queueTimeoutSeconds );
+            try
+            {
+                while (!waiter.granted && remaining > 0)
+                {
+                    remaining = waiter.condition.awaitNanos( remaining );
+                }
+            }
+            catch (InterruptedException e)
+            {
+                if ( waiter.granted )
+                {
+                    release( site, user, 0 );
+                }
+                else
+                {
+                    dequeue( site, waiter );
+                }
+                throw e;
+            }
+
+            if ( !waiter.granted )
+            {
+                dequeue( site, waiter );
+                rejected++;
+                log.info( "Operation for site {} by {} timed out after {}s in the admission queue",
+                        siteId, user, queueTimeoutSeconds );
+                throw new AdmissionRejectedException( "Site " + siteId + " is busy", retryAfterSeconds( site ) );
+            }
+            admitted++;
+            return new Permit( site, user );
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats()
+    {
+        lock.lock();
+        try
+        {
+            Map<String, Object> perSite = new HashMap<>();
+            for (SiteQueue site : sites.values())
+            {
+                if ( site.running > 0 || !site.waiters.isEmpty() )
+                {
+                    perSite.put( site.siteId.toString(), Map.of(
+                            "running", site.running,
+                            "queued", site.waiters.size(),
+                            "avgOperationMillis", site.avgHoldMillis ) );
+                }
+            }
+
+            Map<String, Object> stats = new HashMap<>();
+            stats.put( "enabled", enabled );
+            stats.put( "running", running );
+            stats.put( "queued", queued );
+            stats.put( "admitted", admitted );
+            stats.put( "rejected", rejected );
+            stats.put( "users", new HashMap<>( runningPerUser ) );
+            stats.put( "sites", perSite );
+            return stats;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grant free slots to waiting requests, one per site per turn
+     */
+    private void dispatch()
+    {
+        boolean progress = true;
+        while (progress && running < maxTotal && !rotation.isEmpty())
+        {
+            progress = false;
+            for (int turns = rotation.size(); turns > 0 && running < maxTotal; turns--)
+            {
+                SiteQueue site = rotation.pollFirst();
+                if ( site.running < maxPerSite && grantNext( site ) )
+                {
+                    progress = true;
+                }
+                if ( !site.waiters.isEmpty() )
+                {
+                    rotation.addLast( site );
+                }
+            }
+        }
+    }
+
+    /**
+     * Admit the oldest waiter for the site whose user is under the per-user cap
+     */
+    private boolean grantNext( SiteQueue site )
+    {
+        Iterator<Waiter> it = site.waiters.iterator();
+        while (it.hasNext())
+        {
+            Waiter waiter = it.next();
+            if ( runningPerUser.getOrDefault( waiter.user, 0 ) < maxPerUser )
+            {
+                it.remove();
+                queued--;
+                running++;
+                site.running++;
+                runningPerUser.merge( waiter.user, 1, Integer::sum );
+                waiter.granted = true;
+                waiter.condition.signal();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void dequeue( SiteQueue site, Waiter waiter )
+    {
+        if ( site.waiters.remove( waiter ) )
+        {
+            queued--;
+            if ( site.waiters.isEmpty() )
+            {
+                rotation.remove( site );
+            }
+        }
+    }
+
+    private void release( SiteQueue site, String user, long heldMillis )
+    {
+        running--;
+        site.running--;
+        if ( runningPerUser.merge( user, -1, Integer::sum ) <= 0 )
+        {
+            runningPerUser.remove( user );
+        }
+        if ( heldMillis > 0 )
+        {
+            site.avgHoldMillis = (site.avgHoldMillis * 7 + heldMillis) / 8;
+        }
+        dispatch();
+    }
+
+    private long retryAfterSeconds( SiteQueue site )
+    {
+        // Time for the site's queue to drain at its current pace
+        long millis = site.avgHoldMillis * (site.waiters.size() + 1) / Math.max( 1, maxPerSite );
+        return Math.max( 1, Math.min( 300, (millis + 999) / 1000 ) );
+    }
+
+    /**
+     * Slot held by one running operation; closing it lets the next waiter in
+     */
+    public class Permit implements AutoCloseable
+    {
+        private final SiteQueue site;
+        private final String user;
+        private final long started = System.currentTimeMillis();
+        private boolean closed;
+
+        private Permit( SiteQueue site, String user )
+        {
+            this.site = site;
+            this.user = user;
+        }
+
+        @Override
+        public void close()
+        {
+            if ( site == null )
+            {
+                return;
+            }
+            lock.lock();
+            try
+            {
+                if ( !closed )
+                {
+                    closed = true;
+                    release( site, user, System.currentTimeMillis() - started );
+                }
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class SiteQueue
+    {
+        private final Long siteId;
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        private int running;
+        private long avgHoldMillis = 1000;
+
+        SiteQueue( Long siteId )
+        {
+            this.siteId = siteId;
+        }
+    }
+
+    private static class Waiter
+    {
+        private final String user;
+        private final Condition condition;
+        private boolean granted;
+
+        Waiter( String user, Condition condition )
+        {
+            this.user = user;
+            this.condition = condition;
+        }
+    }
+
+    /**
+     * Thrown when an operation cannot be admitted in time
+     */
+    @Getter
+    public static class AdmissionRejectedException extends RuntimeException
+    {
+        private final long retryAfterSeconds;
+
+        public AdmissionRejectedException( String message, long retryAfterSeconds )
+        {
+            super( message + " - retry in " + retryAfterSeconds + "s" );
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import lombok.Data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Engine-neutral SFTP operations against one site.
+ * <p>
+ * Clients come from {@link SftpClientProvider} and must be closed after use, which
+ * hands any pooled resources back. Streams opened from a client must be closed
+ * before the client itself. Failures reported by the server surface as
+ * {@link StatusException} carrying the SFTP status code.
+ */
+public interface SftpClient extends AutoCloseable
+{
+    int SSH_FX_NO_SUCH_FILE = 2;
+    int SSH_FX_PERMISSION_DENIED = 3;
+    int SSH_FX_FAILURE = 4;
+    int SSH_FX_OP_UNSUPPORTED = 8;
+
+    List<RemoteFile> list( String path ) throws IOException;
+
+    RemoteFile stat( String path ) throws IOException;
+
+    /**
+     * Stream a remote file, starting at the given byte offset
+     */
+    InputStream openRead( String path, long offset ) throws IOException;
+
+    /**
+     * Write a remote file. Offset 0 creates or truncates the file. A positive offset
+     * continues an existing file from that position without truncating it.
+     */
+    default OutputStream openWrite( String path, long offset ) throws IOException
+    {
+        return openWrite( path, offset, offset == 0 );
+    }
+
+    /**
+     * Write a remote file from the given offset, creating it if needed. Truncation is
+     * only valid at offset 0; without it, existing content outside the written bytes is kept.
+     */
+    OutputStream openWrite( String path, long offset, boolean truncate ) throws IOException;
+
+    void rename( String oldPath, String newPath ) throws IOException;
+
+    void rm( String path ) throws IOException;
+
+    void rmdir( String path ) throws IOException;
+
+    void mkdir( String path ) throws IOException;
+
+    void chmod( String path, int permissions ) throws IOException;
+
+    /**
+     * Cut a file down to the given size
+     */
+    void truncate( String path, long size ) throws IOException;
+
+    /**
+     * Absolute path of the session's working (home) directory
+     */
+    String pwd() throws IOException;
+
+    /**
+     * MD5 of a remote file computed by the server (check-file or md5-hash extension),
+     * or null when the server offers neither and the file has to be read back instead
+     */
+    default byte[] md5( String path ) throws IOException
+    {
+        return null;
+    }
+
+    /**
+     * Name of the engine serving this client, for logs and diagnostics
+     */
+    String engine();
+
+    @Override
+    void close();
+
+    /**
+     * Attributes of a remote file or directory
+     */
+    @Data
+    class RemoteFile
+    {
+        private String name;
+        private long size;
+        private boolean directory;
+        private long modifiedSeconds;
+        private int permissions;
+
+        /**
+         * ls-style permission string, e.g. drwxr-xr-x
+         */
+        public String getPermissionsString()
+        {
+            StringBuilder sb = new StringBuilder( 10 );
+            sb.append( directory ? 'd' : '-' );
+            String flags = "rwxrwxrwx";
+            for (int i = 0; i < 9; i++)
+            {
+                sb.append( ( permissions & ( 1 << ( 8 - i ) ) ) != 0 ? flags.charAt( i ) : '-' );
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Server-side failure with its SFTP status code
+     */
+    class StatusException extends IOException
+    {
+        private final int status;
+
+        public StatusException( int status, String message, Throwable cause )
+        {
+            super( message, cause );
+            this.status = status;
+        }
+
+        public int getStatus()
+        {
+            return status;
+        }
+
+        public boolean isNoSuchFile()
+        {
+            return status == SSH_FX_NO_SUCH_FILE;
+        }
+    }
+}
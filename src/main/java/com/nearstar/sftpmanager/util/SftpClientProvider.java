@@ -0,0 +1,114 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.SftpEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Hands out {@link SftpClient}s backed by the engine each site is configured for
+ */
+@Component
+@RequiredArgsConstructor
+public class SftpClientProvider
+{
+    private final SftpConnectionPool connectionPool;
+    private final PipelinedSftpEngine pipelinedEngine;
+
+    /**
+     * Open a client for a site. The caller must close it when done.
+     */
+    public SftpClient open( Site site ) throws Exception
+    {
+        if ( SftpEngine.of( site.getSftpEngine() ) == SftpEngine.PIPELINED )
+        {
+            return pipelinedEngine.open( site );
+        }
+        return new JschSftpClient( connectionPool.borrowObject( site ), connectionPool );
+    }
+
+    /**
+     * Open a client on a channel of its own, for one of several parallel streams
+     * of a single transfer. Pooled JSch clients already each have their own channel.
+     */
+    public SftpClient openChannel( Site site ) throws Exception
+    {
+        if ( SftpEngine.of( site.getSftpEngine() ) == SftpEngine.PIPELINED )
+        {
+            return pipelinedEngine.openChannel( site );
+        }
+        return open( site );
+    }
+
+    /**
+     * Own-channel clients a site can get right now without waiting for another to be closed.
+     * The pipelined engine opens further sessions as needed, so it is not limited here.
+     */
+    public int freeChannels( Site site )
+    {
+        if ( SftpEngine.of( site.getSftpEngine() ) == SftpEngine.PIPELINED )
+        {
+            return Integer.MAX_VALUE;
+        }
+        return connectionPool.freeCapacity( site );
+    }
+
+    /**
+     * Close idle connections for a site on every engine
+     */
+    public void clearSite( Long siteId )
+    {
+        connectionPool.clearSite( siteId );
+        pipelinedEngine.clearSite( siteId );
+    }
+
+    public void clearAll()
+    {
+        connectionPool.clearAll();
+        pipelinedEngine.clearAll();
+    }
+
+    public Map<String, Object> getStats()
+    {
+        Map<String, Object> stats = connectionPool.getStats();
+        stats.put( "pipelined", pipelinedEngine.getStats() );
+        return stats;
+    }
+}
@@ -36,86 +36,384 @@
 package com.nearstar.sftpmanager.util;
 
 import com.jcraft.jsch.ChannelSftp;
-import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.TransportProfile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
-import org.apache.commons.pool2.impl.GenericObjectPool;
-import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keyed pool of SFTP channels. Each site gets its own sub-pool, keyed by the
+ * site id and a fingerprint of its connection settings, so a credential change
+ * never hands out a channel authenticated with the old settings.
+ * <p>
+ * Pooled channels are multiplexed over SSH sessions leased from the
+ * {@link SshSessionRegistry}, at most {@code sftp.pool.max.channels.per.session}
+ * channels on each session. Connection attempts go through the
+ * {@link SiteCircuitBreaker}, so an unreachable site fails fast instead of
+ * tying up request threads for the full connect timeout.
+ */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class SftpConnectionPool
 {
-    private final GenericObjectPool<ChannelSftp> pool;
+    private final SshSessionRegistry sessionRegistry;
+    private final SiteCircuitBreaker circuitBreaker;
+
+    @Value("${sftp.pool.max.total.per.site:8}")
+    private int maxTotalPerSite;
+
+    @Value("${sftp.pool.max.idle.per.site:4}")
+    private int maxIdlePerSite;
+
+    @Value("${sftp.pool.min.idle.per.site:1}")
+    private int minIdlePerSite;
+
+    @Value("${sftp.pool.max.total:200}")
+    private int maxTotal;
+
+    @Value("${sftp.pool.max.wait.seconds:30}")
+    private long maxWaitSeconds;
+
+    @Value("${sftp.pool.eviction.interval.seconds:60}")
+    private long evictionIntervalSeconds;
 
-    public SftpConnectionPool()
+    @Value("${sftp.pool.soft.idle.seconds:300}")
+    private long softIdleSeconds;
+
+    @Value("${sftp.pool.max.idle.seconds:1800}")
+    private long maxIdleSeconds;
+
+    @Value("${sftp.connect.timeout.ms:30000}")
+    private int connectTimeoutMs;
+
+    // Latest connection settings for each key, read by the factory when it needs a new channel
+    private final Map<ConnectionKey, Site> sites = new ConcurrentHashMap<>();
+
+    // Key each borrowed channel came from, so callers only need the channel to hand it back
+    private final Map<ChannelSftp, ConnectionKey> borrowed = new ConcurrentHashMap<>();
+
+    private GenericKeyedObjectPool<ConnectionKey, ChannelSftp> pool;
+
+    @PostConstruct
+    public void init()
     {
-        GenericObjectPoolConfig<ChannelSftp> config = new GenericObjectPoolConfig<>();
-        config.setMaxTotal( 10 );
-        config.setMaxIdle( 5 );
-        config.setMinIdle( 2 );
-        config.setMaxWait( Duration.ofSeconds( 30 ) );
+        GenericKeyedObjectPoolConfig<ChannelSftp> config = new GenericKeyedObjectPoolConfig<>();
+        config.setMaxTotalPerKey( maxTotalPerSite );
+        config.setMaxIdlePerKey( maxIdlePerSite );
+        config.setMinIdlePerKey( minIdlePerSite );
+        config.setMaxTotal( maxTotal );
+        config.setMaxWait( Duration.ofSeconds( maxWaitSeconds ) );
+        config.setBlockWhenExhausted( true );
         config.setTestOnBorrow( true );
         config.setTestOnReturn( true );
-        this.pool = new GenericObjectPool<>( new SftpChannelFactory(), config );
+        config.setTestWhileIdle( true );
+        config.setTimeBetweenEvictionRuns( Duration.ofSeconds( evictionIntervalSeconds ) );
+        config.setNumTestsPerEvictionRun( -1 ); // Examine every idle channel on each run
+        // Idle channels above min-idle go after the soft timeout; cold sites are dropped entirely after the hard one
+        config.setSoftMinEvictableIdleDuration( Duration.ofSeconds( softIdleSeconds ) );
+        config.setMinEvictableIdleDuration( Duration.ofSeconds( maxIdleSeconds ) );
+        config.setJmxNamePrefix( "sftpConnectionPool" );
+
+        this.pool = new GenericKeyedObjectPool<>( new SftpChannelFactory(), config );
+        log.info( "SFTP connection pool initialized (max {} per site, {} total)", maxTotalPerSite, maxTotal );
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        if ( pool != null )
+        {
+            pool.close();
+            log.info( "SFTP connection pool closed" );
+        }
     }
 
-    public ChannelSftp borrowObject( String host, int port, String username, String password )
-            throws Exception
+    /**
+     * Borrow a connected SFTP channel for a site. The channel must be handed back
+     * with {@link #returnObject(ChannelSftp)} once the operation completes.
+     */
+    public ChannelSftp borrowObject( Site site ) throws Exception
     {
-        // For now, create new connections
-        // In production, implement proper pooling with connection parameters
-        JSch jsch = new JSch();
-        Session session = jsch.getSession( username, host, port );
-        session.setPassword( password );
-        session.setConfig( "StrictHostKeyChecking", "no" );
-        session.setTimeout( 30000 );
-        session.connect();
-        ChannelSftp channel = (ChannelSftp) session.openChannel( "sftp" );
-        channel.connect();
+        ConnectionKey key = register( site );
+        circuitBreaker.acquirePermission( site );
+        ChannelSftp channel;
+        try
+        {
+            channel = pool.borrowObject( key );
+        }
+        catch (NoSuchElementException e)
+        {
+            // Timed out waiting for a free channel - says nothing about the site itself
+            circuitBreaker.release( site );
+            throw e;
+        }
+        catch (Exception e)
+        {
+            circuitBreaker.recordFailure( site, e );
+            throw e;
+        }
+        circuitBreaker.recordSuccess( site );
+        borrowed.put( channel, key );
+        sessionRegistry.touch( channel.getSession() );
         return channel;
     }
 
+    /**
+     * Channels a site could still borrow without waiting: idle ones plus room to create more
+     */
+    public int freeCapacity( Site site )
+    {
+        ConnectionKey key = ConnectionKey.of( site );
+        int perSite = maxTotalPerSite - pool.getNumActive( key );
+        int overall = maxTotal - pool.getNumActive();
+        return Math.max( 0, Math.min( perSite, overall ) );
+    }
+
+    /**
+     * Open idle channels for a site ahead of demand, so the next borrowers skip the
+     * SSH handshake and subsystem setup. Returns the number of channels opened.
+     */
+    public int warmUp( Site site, int channels ) throws Exception
+    {
+        ConnectionKey key = register( site );
+        circuitBreaker.acquirePermission( site );
+        int target = Math.min( channels, Math.min( maxTotalPerSite, maxIdlePerSite ) );
+        int opened = 0;
+        try
+        {
+            while (pool.getNumIdle( key ) + pool.getNumActive( key ) < target)
+            {
+                pool.addObject( key );
+                opened++;
+            }
+        }
+        catch (Exception e)
+        {
+            circuitBreaker.recordFailure( site, e );
+            throw e;
+        }
+        circuitBreaker.recordSuccess( site );
+        return opened;
+    }
+
+    /**
+     * Hand a borrowed channel back to the pool
+     */
     public void returnObject( ChannelSftp channel )
     {
-        if ( channel != null && channel.isConnected() )
+        if ( channel == null )
         {
-            Session session = null;
-            try
+            return;
+        }
+
+        ConnectionKey key = borrowed.remove( channel );
+        if ( key == null )
+        {
+            log.warn( "Returned SFTP channel was not borrowed from the pool - disconnecting" );
+            channel.disconnect();
+            return;
+        }
+
+        try
+        {
+            if ( !sites.containsKey( key ) )
             {
-                session = channel.getSession();
-                channel.disconnect();
+                // Site settings changed while the channel was out
+                pool.invalidateObject( key, channel );
+                return;
             }
-            catch (JSchException e)
+            sessionRegistry.touch( channel.getSession() );
+            pool.returnObject( key, channel );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error returning SFTP channel to pool", e );
+        }
+    }
+
+    /**
+     * Discard a borrowed channel that is known to be broken
+     */
+    public void invalidateObject( ChannelSftp channel )
+    {
+        if ( channel == null )
+        {
+            return;
+        }
+
+        ConnectionKey key = borrowed.remove( channel );
+        if ( key == null )
+        {
+            channel.disconnect();
+            return;
+        }
+
+        try
+        {
+            pool.invalidateObject( key, channel );
+        }
+        catch (Exception e)
+        {
+            log.error( "Error invalidating SFTP channel", e );
+        }
+    }
+
+    /**
+     * Close every idle channel for a site. Channels currently in use are destroyed
+     * when they are returned.
+     */
+    public void clearSite( Long siteId )
+    {
+        for (ConnectionKey key : pool.getKeys())
+        {
+            if ( key.getSiteId().equals( siteId ) )
             {
-                log.error( "Error disconnecting SFTP channel", e );
+                pool.clear( key );
+                sites.remove( key );
+                sessionRegistry.evict( key );
             }
-            finally
+        }
+        log.info( "Cleared pooled SFTP channels for site {}", siteId );
+    }
+
+    /**
+     * Close every idle channel in the pool
+     */
+    public void clearAll()
+    {
+        pool.clear();
+        sites.clear();
+        sessionRegistry.evictAll();
+        log.info( "Cleared all pooled SFTP channels" );
+    }
+
+    /**
+     * Snapshot of pool usage, per site and in total
+     */
+    public Map<String, Object> getStats()
+    {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put( "active", pool.getNumActive() );
+        stats.put( "idle", pool.getNumIdle() );
+        stats.put( "waiters", pool.getNumWaiters() );
+        stats.put( "created", pool.getCreatedCount() );
+        stats.put( "destroyed", pool.getDestroyedCount() );
+        stats.put( "destroyedByEvictor", pool.getDestroyedByEvictorCount() );
+        stats.put( "destroyedByValidation", pool.getDestroyedByBorrowValidationCount() );
+        stats.put( "meanBorrowWaitMillis", pool.getMeanBorrowWaitDuration().toMillis() );
+
+        Map<String, Object> perSite = new HashMap<>();
+        Map<String, Integer> activePerKey = pool.getNumActivePerKey();
+        for (ConnectionKey key : pool.getKeys())
+        {
+            perSite.put( key.getSiteId().toString(), Map.of(
+                    "active", activePerKey.getOrDefault( key.toString(), 0 ),
+                    "idle", pool.getNumIdle( key ),
+                    "sessions", sessionRegistry.sessionCount( key ) ) );
+        }
+        stats.put( "sites", perSite );
+        stats.put( "sessions", sessionRegistry.getStats() );
+        stats.put( "openCircuits", circuitBreaker.getStats() );
+        return stats;
+    }
+
+    private ConnectionKey register( Site site )
+    {
+        ConnectionKey key = ConnectionKey.of( site );
+        if ( sites.put( key, site ) == null )
+        {
+            // Settings changed (or first use) - drop channels built from older settings
+            retireStaleKeys( key );
+        }
+        return key;
+    }
+
+    private void retireStaleKeys( ConnectionKey current )
+    {
+        for (ConnectionKey key : sites.keySet())
+        {
+            if ( key.getSiteId().equals( current.getSiteId() ) && !key.equals( current ) )
             {
-                if ( session != null && session.isConnected() )
-                {
-                    session.disconnect();
-                }
+                sites.remove( key );
+                pool.clear( key );
+                sessionRegistry.evict( key );
+                circuitBreaker.reset( key.getSiteId() );
+                log.info( "Connection settings changed for site {} - retired old pooled channels", key.getSiteId() );
             }
         }
     }
 
-    private static class SftpChannelFactory extends BasePooledObjectFactory<ChannelSftp>
+    private class SftpChannelFactory extends BaseKeyedPooledObjectFactory<ConnectionKey, ChannelSftp>
     {
         @Override
-        public ChannelSftp create() throws Exception
+        public ChannelSftp create( ConnectionKey key ) throws Exception
         {
-            // Implement connection creation
-            // This is a placeholder - in a real implementation, you'd need
-            // to store connection parameters and create connections here
-            return null;
+            Site site = sites.get( key );
+            if ( site == null )
+            {
+                throw new IllegalStateException( "No connection settings registered for " + key );
+            }
+
+            Session session = sessionRegistry.acquire( key, site );
+            try
+            {
+                return openChannel( session, site );
+            }
+            catch (JSchException e)
+            {
+                int leases = sessionRegistry.leases( session );
+                boolean refused = session.isConnected() && leases > 1;
+                if ( refused )
+                {
+                    // Most likely the server's MaxSessions limit - retry once on another session
+                    log.info( "Server refused another channel for site {} - limiting session to {} channels",
+                            site.getSiteName(), leases - 1 );
+                    sessionRegistry.markFull( session );
+                }
+                sessionRegistry.release( session );
+                if ( !refused )
+                {
+                    throw e;
+                }
+            }
+
+            Session retry = sessionRegistry.acquire( key, site );
+            try
+            {
+                return openChannel( retry, site );
+            }
+            catch (JSchException e)
+            {
+                sessionRegistry.release( retry );
+                throw e;
+            }
+        }
+
+        private ChannelSftp openChannel( Session session, Site site ) throws JSchException
+        {
+            ChannelSftp channel = (ChannelSftp) session.openChannel( "sftp" );
+            channel.setBulkRequests( TransportProfile.of( site.getTransportProfile() ).getBulkRequests() );
+            channel.connect( connectTimeoutMs );
+            log.debug( "Pooled SFTP channel created for site: {}", site.getSiteName() );
+            return channel;
         }
 
         @Override
@@ -125,25 +423,45 @@ public class SftpConnectionPool
         }
 
         @Override
-        public boolean validateObject( PooledObject<ChannelSftp> p )
+        public boolean validateObject( ConnectionKey key, PooledObject<ChannelSftp> p )
         {
             ChannelSftp channel = p.getObject();
-            return channel != null && channel.isConnected();
+            if ( channel == null || !channel.isConnected() || channel.isClosed() )
+            {
+                return false;
+            }
+            try
+            {
+                // Channels on evicted sessions are retired instead of going back into service
+                Session session = channel.getSession();
+                return session.isConnected() && !sessionRegistry.isRetired( session );
+            }
+            catch (JSchException e)
+            {
+                return false;
+            }
         }
 
         @Override
-        public void destroyObject( PooledObject<ChannelSftp> p ) throws Exception
+        public void destroyObject( ConnectionKey key, PooledObject<ChannelSftp> p )
         {
             ChannelSftp channel = p.getObject();
-            if ( channel != null && channel.isConnected() )
+            if ( channel == null )
             {
-                Session session = channel.getSession();
-                channel.disconnect();
-                if ( session != null && session.isConnected() )
-                {
-                    session.disconnect();
-                }
+                return;
+            }
+
+            Session session = null;
+            try
+            {
+                session = channel.getSession();
+            }
+            catch (JSchException e)
+            {
+                log.debug( "SFTP channel has no session: {}", e.getMessage() );
             }
+            channel.disconnect();
+            sessionRegistry.release( session );
         }
     }
 }
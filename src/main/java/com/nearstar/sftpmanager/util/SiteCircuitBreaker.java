@@ -0,0 +1,385 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.repository.SiteRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-site circuit breaker for SFTP connections.
+ * <p>
+ * Connection outcomes are counted in a sliding time window. Once enough calls
+ * have been seen and the failure rate crosses the threshold, the circuit opens
+ * and callers are rejected immediately instead of waiting out the connect
+ * timeout. After the open period a single probe is let through (half-open):
+ * success closes the circuit, failure re-opens it for twice as long, up to a
+ * maximum. Transitions are written to {@link Site#getConnectionStatus()}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteCircuitBreaker
+{
+    private final SiteRepository siteRepository;
+
+    @Value("${sftp.circuit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sftp.circuit.window.seconds:60}")
+    private int windowSeconds;
+
+    @Value("${sftp.circuit.minimum.calls:5}")
+    private int minimumCalls;
+
+    @Value("${sftp.circuit.failure.rate.percent:50}")
+    private int failureRatePercent;
+
+    @Value("${sftp.circuit.open.seconds:30}")
+    private long openSeconds;
+
+    @Value("${sftp.circuit.max.open.seconds:300}")
+    private long maxOpenSeconds;
+
+    private final Map<Long, Circuit> circuits = new ConcurrentHashMap<>();
+
+    public enum State
+    {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Check that a connection attempt to the site may proceed. Every permitted call
+     * must be followed by {@link #recordSuccess}, {@link #recordFailure} or {@link #release}.
+     *
+     * @throws CircuitOpenException if the circuit is open or a probe is already in flight
+     */
+    public void acquirePermission( Site site )
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+
+        Circuit circuit = circuit( site.getId() );
+        long retryAfterMillis;
+        boolean probing;
+        synchronized (circuit)
+        {
+            long now = System.currentTimeMillis();
+            if ( circuit.state == State.CLOSED )
+            {
+                return;
+            }
+            if ( circuit.state == State.OPEN && now >= circuit.openUntil )
+            {
+                circuit.state = State.HALF_OPEN;
+                circuit.probeInFlight = false;
+            }
+            probing = circuit.state == State.HALF_OPEN && !circuit.probeInFlight;
+            if ( probing )
+            {
+                circuit.probeInFlight = true;
+                retryAfterMillis = 0;
+            }
+            else
+            {
+                retryAfterMillis = Math.max( 1000, circuit.openUntil - now );
+            }
+        }
+
+        if ( probing )
+        {
+            log.info( "Circuit for site {} half-open - probing connection", site.getSiteName() );
+            return;
+        }
+        throw new CircuitOpenException( site.getSiteName(), (retryAfterMillis + 999) / 1000 );
+    }
+
+    /**
+     * Record a successful connection
+     */
+    public void recordSuccess( Site site )
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+
+        Circuit circuit = circuit( site.getId() );
+        boolean closed = false;
+        synchronized (circuit)
+        {
+            if ( circuit.state == State.HALF_OPEN )
+            {
+                circuit.close();
+                closed = true;
+            }
+            else if ( circuit.state == State.CLOSED )
+            {
+                circuit.record( System.currentTimeMillis() / 1000, false );
+            }
+        }
+
+        if ( closed )
+        {
+            log.info( "Circuit for site {} closed - connection restored", site.getSiteName() );
+            publish( site.getId(), Site.ConnectionStatus.SUCCESS );
+        }
+    }
+
+    /**
+     * Record a failed connection attempt
+     */
+    public void recordFailure( Site site, Exception cause )
+    {
+        if ( !enabled )
+        {
+            return;
+        }
+
+        Circuit circuit = circuit( site.getId() );
+        long openFor = 0;
+        synchronized (circuit)
+        {
+            long now = System.currentTimeMillis();
+            if ( circuit.state == State.HALF_OPEN )
+            {
+                openFor = Math.min( circuit.openSeconds * 2, maxOpenSeconds );
+            }
+            else if ( circuit.state == State.CLOSED )
+            {
+                circuit.record( now / 1000, true );
+                int calls = circuit.calls( now / 1000 );
+                int failures = circuit.failures( now / 1000 );
+                if ( calls >= minimumCalls && failures * 100L >= (long) failureRatePercent * calls )
+                {
+                    openFor = openSeconds;
+                }
+            }
+            if ( openFor > 0 )
+            {
+                circuit.open( now, openFor );
+            }
+        }
+
+        if ( openFor > 0 )
+        {
+            log.warn( "Circuit for site {} opened for {}s: {}", site.getSiteName(), openFor,
+                    cause != null ? cause.getMessage() : "connection failures" );
+            publish( site.getId(), Site.ConnectionStatus.FAILED );
+        }
+    }
+
+    /**
+     * Give back a permission whose outcome says nothing about the site (e.g. local pool exhaustion)
+     */
+    public void release( Site site )
+    {
+        Circuit circuit = circuits.get( site.getId() );
+        if ( circuit != null )
+        {
+            synchronized (circuit)
+            {
+                circuit.probeInFlight = false;
+            }
+        }
+    }
+
+    /**
+     * Forget the history of a site, e.g. after its connection settings changed
+     */
+    public void reset( Long siteId )
+    {
+        Circuit circuit = circuits.remove( siteId );
+        if ( circuit != null && circuit.state != State.CLOSED )
+        {
+            log.info( "Circuit for site {} reset", siteId );
+        }
+    }
+
+    public State getState( Long siteId )
+    {
+        Circuit circuit = circuits.get( siteId );
+        return circuit != null ? circuit.state : State.CLOSED;
+    }
+
+    /**
+     * Sites whose circuit is not closed, with their state and remaining open time
+     */
+    public Map<String, Object> getStats()
+    {
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new HashMap<>();
+        circuits.forEach( ( siteId, circuit ) ->
+        {
+            synchronized (circuit)
+            {
+                if ( circuit.state != State.CLOSED )
+                {
+                    stats.put( siteId.toString(), Map.of(
+                            "state", circuit.state.name(),
+                            "openSeconds", circuit.openSeconds,
+                            "retryAfterSeconds", Math.max( 0, (circuit.openUntil - now) / 1000 ) ) );
+                }
+            }
+        } );
+        return stats;
+    }
+
+    private Circuit circuit( Long siteId )
+    {
+        return circuits.computeIfAbsent( siteId, id -> new Circuit( Math.max( 1, windowSeconds ) ) );
+    }
+
+    private void publish( Long siteId, Site.ConnectionStatus status )
+    {
+        try
+        {
+            siteRepository.updateConnectionStatus( siteId, status );
+        }
+        catch (Exception e)
+        {
+            log.warn( "Could not update connection status for site {}: {}", siteId, e.getMessage() );
+        }
+    }
+
+    /**
+     * Breaker state for one site. Outcomes are kept in one-second buckets covering the window.
+     */
+    private static class Circuit
+    {
+        private final long[] bucketSecond;
+        private final int[] bucketCalls;
+        private final int[] bucketFailures;
+
+        private State state = State.CLOSED;
+        private long openUntil;
+        private long openSeconds;
+        private boolean probeInFlight;
+
+        Circuit( int windowSeconds )
+        {
+            bucketSecond = new long[windowSeconds];
+            bucketCalls = new int[windowSeconds];
+            bucketFailures = new int[windowSeconds];
+        }
+
+        void record( long second, boolean failed )
+        {
+            int i = (int) (second % bucketSecond.length);
+            if ( bucketSecond[i] != second )
+            {
+                bucketSecond[i] = second;
+                bucketCalls[i] = 0;
+                bucketFailures[i] = 0;
+            }
+            bucketCalls[i]++;
+            if ( failed )
+            {
+                bucketFailures[i]++;
+            }
+        }
+
+        int calls( long second )
+        {
+            int total = 0;
+            for (int i = 0; i < bucketSecond.length; i++)
+            {
+                if ( second - bucketSecond[i] < bucketSecond.length )
+                {
+                    total += bucketCalls[i];
+                }
+            }
+            return total;
+        }
+
+        int failures( long second )
+        {
+            int total = 0;
+            for (int i = 0; i < bucketSecond.length; i++)
+            {
+                if ( second - bucketSecond[i] < bucketSecond.length )
+                {
+                    total += bucketFailures[i];
+                }
+            }
+            return total;
+        }
+
+        void open( long now, long seconds )
+        {
+            state = State.OPEN;
+            openSeconds = seconds;
+            openUntil = now + seconds * 1000;
+            probeInFlight = false;
+        }
+
+        void close()
+        {
+            state = State.CLOSED;
+            openSeconds = 0;
+            openUntil = 0;
+            probeInFlight = false;
+            Arrays.fill( bucketCalls, 0 );
+            Arrays.fill( bucketFailures, 0 );
+        }
+    }
+
+    /**
+     * Thrown instead of connecting while a site's circuit is open
+     */
+    @Getter
+    public static class CircuitOpenException extends RuntimeException
+    {
+        private final long retryAfterSeconds;
+
+        public CircuitOpenException( String siteName, long retryAfterSeconds )
+        {
+            super( "Site " + siteName + " is unreachable - retry in " + retryAfterSeconds + "s" );
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+}
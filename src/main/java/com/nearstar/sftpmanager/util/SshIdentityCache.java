@@ -0,0 +1,344 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.jcraft.jsch.Identity;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.KeyPair;
+import com.nearstar.sftpmanager.model.entity.Site;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.sshd.common.NamedResource;
+import org.apache.sshd.common.config.keys.FilePasswordProvider;
+import org.apache.sshd.common.util.security.SecurityUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of decoded site private keys, keyed by site and a hash of the key material.
+ * <p>
+ * Loading a key (and running its passphrase KDF) happens once per key. Sessions
+ * then share the decrypted key pair. A site whose key or passphrase changes gets a
+ * new hash and is parsed again. Keys that fail to load are cached as failures, so
+ * a bad key is not re-parsed on every connect.
+ * <p>
+ * JSch identities and the key pairs of the pipelined (MINA) engine are cached side by
+ * side under the same site id and hash, so {@link #invalidate} drops both.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SshIdentityCache
+{
+    private final CredentialVault credentialVault;
+
+    private final Map<Long, CachedIdentity> identities = new ConcurrentHashMap<>();
+
+    private final Map<Long, CachedKeyPairs> keyPairs = new ConcurrentHashMap<>();
+
+    /**
+     * Decoded identity for a site's private key, or null if the site has no usable key
+     */
+    public Identity identityFor( JSch jsch, Site site )
+    {
+        String sshKey = site.getSshKey();
+        if ( sshKey == null || sshKey.isBlank() )
+        {
+            return null;
+        }
+
+        String keyHash = keyHash( sshKey, site.getEncryptedKeyPassphrase() );
+        CachedIdentity cached = identities.get( site.getId() );
+        if ( cached != null && cached.keyHash.equals( keyHash ) )
+        {
+            return cached.identity;
+        }
+
+        cached = identities.compute( site.getId(), ( id, current ) ->
+                current != null && current.keyHash.equals( keyHash ) ? current
+                        : new CachedIdentity( keyHash, load( jsch, site ) ) );
+        return cached.identity;
+    }
+
+    /**
+     * Decoded key pairs of a site's private key for the MINA engine; empty if the site has no usable key
+     */
+    public List<java.security.KeyPair> keyPairsFor( Site site )
+    {
+        String sshKey = site.getSshKey();
+        if ( sshKey == null || sshKey.isBlank() )
+        {
+            return List.of();
+        }
+
+        String keyHash = keyHash( sshKey, site.getEncryptedKeyPassphrase() );
+        CachedKeyPairs cached = keyPairs.get( site.getId() );
+        if ( cached != null && cached.keyHash.equals( keyHash ) )
+        {
+            return cached.keyPairs;
+        }
+
+        cached = keyPairs.compute( site.getId(), ( id, current ) ->
+                current != null && current.keyHash.equals( keyHash ) ? current
+                        : new CachedKeyPairs( keyHash, loadKeyPairs( site ) ) );
+        return cached.keyPairs;
+    }
+
+    /**
+     * Drop the decoded key of a site, e.g. after its key was changed or the site deleted
+     */
+    public void invalidate( Long siteId )
+    {
+        boolean dropped = identities.remove( siteId ) != null;
+        dropped |= keyPairs.remove( siteId ) != null;
+        if ( dropped )
+        {
+            log.debug( "Cached SSH identity dropped for site {}", siteId );
+        }
+    }
+
+    public int size()
+    {
+        return identities.size() + keyPairs.size();
+    }
+
+    private Identity load( JSch jsch, Site site )
+    {
+        String sshKey = site.getSshKey().trim();
+        if ( sshKey.contains( "BEGIN OPENSSH PRIVATE KEY" ) )
+        {
+            log.warn( "SSH key for site {} is in the new OpenSSH format, which JSch cannot read - "
+                    + "convert it to PEM (ssh-keygen -p -m PEM)", site.getSiteName() );
+            return null;
+        }
+
+        try
+        {
+            long start = System.nanoTime();
+            KeyPair keyPair = KeyPair.load( jsch, sshKey.getBytes( StandardCharsets.UTF_8 ), null );
+            if ( keyPair.isEncrypted() && !decrypt( keyPair, site ) )
+            {
+                return null;
+            }
+            log.info( "Loaded SSH key for site {} in {} ms", site.getSiteName(),
+                    (System.nanoTime() - start) / 1_000_000 );
+            return new KeyPairIdentity( "site-" + site.getId(), keyPair );
+        }
+        catch (JSchException e)
+        {
+            log.warn( "Could not parse SSH key for site {}: {}", site.getSiteName(), e.getMessage() );
+            return null;
+        }
+    }
+
+    private List<java.security.KeyPair> loadKeyPairs( Site site )
+    {
+        FilePasswordProvider passphrase = FilePasswordProvider.EMPTY;
+        String encryptedPassphrase = site.getEncryptedKeyPassphrase();
+        if ( encryptedPassphrase != null && !encryptedPassphrase.isEmpty() )
+        {
+            byte[] revealed = credentialVault.reveal( encryptedPassphrase );
+            passphrase = FilePasswordProvider.of( new String( revealed, StandardCharsets.UTF_8 ) );
+            CredentialVault.wipe( revealed );
+        }
+
+        try
+        {
+            long start = System.nanoTime();
+            List<java.security.KeyPair> loaded = new ArrayList<>();
+            Iterable<java.security.KeyPair> pairs = SecurityUtils.loadKeyPairIdentities( null,
+                    NamedResource.ofName( "site-" + site.getId() ),
+                    new ByteArrayInputStream( site.getSshKey().trim().getBytes( StandardCharsets.UTF_8 ) ), passphrase );
+            if ( pairs != null )
+            {
+                pairs.forEach( loaded::add );
+            }
+            log.info( "Loaded SSH key for site {} in {} ms", site.getSiteName(),
+                    (System.nanoTime() - start) / 1_000_000 );
+            return List.copyOf( loaded );
+        }
+        catch (Exception e)
+        {
+            log.warn( "Could not load SSH key for site {}: {}", site.getSiteName(), e.getMessage() );
+            return List.of();
+        }
+    }
+
+    private boolean decrypt( KeyPair keyPair, Site site )
+    {
+        String encryptedPassphrase = site.getEncryptedKeyPassphrase();
+        if ( encryptedPassphrase == null || encryptedPassphrase.isEmpty() )
+        {
+            log.warn( "SSH key for site {} is passphrase protected but no passphrase is stored", site.getSiteName() );
+            return false;
+        }
+
+        byte[] passphrase = credentialVault.reveal( encryptedPassphrase );
+        try
+        {
+            if ( !keyPair.decrypt( passphrase ) )
+            {
+                log.warn( "Wrong passphrase for the SSH key of site {}", site.getSiteName() );
+                return false;
+            }
+            return true;
+        }
+        finally
+        {
+            CredentialVault.wipe( passphrase );
+        }
+    }
+
+    private static String keyHash( String sshKey, String encryptedPassphrase )
+    {
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance( "SHA-256" );
+            digest.update( sshKey.getBytes( StandardCharsets.UTF_8 ) );
+            digest.update( (byte) 0 );
+            if ( encryptedPassphrase != null )
+            {
+                digest.update( encryptedPassphrase.getBytes( StandardCharsets.UTF_8 ) );
+            }
+            return HexFormat.of().formatHex( digest.digest() );
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException( "SHA-256 not available", e );
+        }
+    }
+
+    private static class CachedIdentity
+    {
+        private final String keyHash;
+        private final Identity identity;
+
+        CachedIdentity( String keyHash, Identity identity )
+        {
+            this.keyHash = keyHash;
+            this.identity = identity;
+        }
+    }
+
+    private static class CachedKeyPairs
+    {
+        private final String keyHash;
+        private final List<java.security.KeyPair> keyPairs;
+
+        CachedKeyPairs( String keyHash, List<java.security.KeyPair> keyPairs )
+        {
+            this.keyHash = keyHash;
+            this.keyPairs = keyPairs;
+        }
+    }
+
+    /**
+     * JSch identity backed by an already parsed and decrypted key pair
+     */
+    static class KeyPairIdentity implements Identity
+    {
+        private final String name;
+        private final KeyPair keyPair;
+        private final String algName;
+
+        KeyPairIdentity( String name, KeyPair keyPair )
+        {
+            this.name = name;
+            this.keyPair = keyPair;
+            this.algName = JschRuntime.keyType( keyPair.getPublicKeyBlob() );
+        }
+
+        @Override
+        public boolean setPassphrase( byte[] passphrase )
+        {
+            return true;
+        }
+
+        @Override
+        public byte[] getPublicKeyBlob()
+        {
+            return keyPair.getPublicKeyBlob();
+        }
+
+        @Override
+        public byte[] getSignature( byte[] data )
+        {
+            return keyPair.getSignature( data );
+        }
+
+        // Still part of the Identity interface JSch 0.1.55 calls; the key is never encrypted here
+        @Override
+        @Deprecated
+        public boolean decrypt()
+        {
+            return true;
+        }
+
+        @Override
+        public String getAlgName()
+        {
+            return algName;
+        }
+
+        @Override
+        public String getName()
+        {
+            return name;
+        }
+
+        @Override
+        public boolean isEncrypted()
+        {
+            return false;
+        }
+
+        @Override
+        public void clear()
+        {
+            // Shared by every session of the site - nothing to clear per session
+        }
+    }
+}
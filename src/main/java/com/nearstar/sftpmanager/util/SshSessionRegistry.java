@@ -0,0 +1,652 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.TransportProfile;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent registry of SSH sessions, grouped per {@link ConnectionKey}.
+ * <p>
+ * Each key has its own lock, so handshakes for different sites never wait on
+ * each other. Connection setup is single-flight: while one thread performs the
+ * handshake for a key, other threads needing a session for that key wait for
+ * its result instead of starting their own.
+ * <p>
+ * Callers lease a channel slot on a session and release it when the channel is
+ * gone. Evicted sessions stop taking new leases and are closed once the last
+ * lease is released, so eviction never cuts off an operation in flight.
+ * <p>
+ * A maintenance loop keeps the registry healthy: sessions send ServerAlive
+ * keepalives, dead sessions are dropped before a request trips over them,
+ * sessions idle past their TTL or older than their max lifetime are retired,
+ * and busy sessions nearing their max lifetime are replaced ahead of time so
+ * requests never wait on the reconnect. Idle TTL and max lifetime can be set
+ * per site and fall back to the {@code sftp.session.*} defaults.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SshSessionRegistry
+{
+    private final CredentialVault credentialVault;
+    private final JschRuntime jschRuntime;
+
+    @Value("${sftp.pool.max.channels.per.session:8}")
+    private int maxChannelsPerSession;
+
+    @Value("${sftp.connect.timeout.ms:30000}")
+    private int connectTimeoutMs;
+
+    @Value("${sftp.session.keepalive.seconds:30}")
+    private int keepAliveSeconds;
+
+    @Value("${sftp.session.keepalive.count.max:3}")
+    private int keepAliveCountMax;
+
+    @Value("${sftp.session.idle.ttl.seconds:900}")
+    private int defaultIdleTtlSeconds;
+
+    @Value("${sftp.session.max.lifetime.seconds:3600}")
+    private int defaultMaxLifetimeSeconds;
+
+    @Value("${sftp.session.reconnect.margin.seconds:60}")
+    private int reconnectMarginSeconds;
+
+    // Eviction and reconnect counters, by reason
+    private final AtomicLong evictedIdle = new AtomicLong();
+    private final AtomicLong evictedLifetime = new AtomicLong();
+    private final AtomicLong evictedDead = new AtomicLong();
+    private final AtomicLong evictedManual = new AtomicLong();
+    private final AtomicLong proactiveReconnects = new AtomicLong();
+    private final AtomicLong failedReconnects = new AtomicLong();
+
+    private final Map<ConnectionKey, SessionGroup> groups = new ConcurrentHashMap<>();
+
+    // Lookup from a JSch session back to its registry entry
+    private final Map<Session, SessionEntry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Lease a channel slot on a connected session for the key, connecting a new
+     * session when none has room. Returns the session the slot belongs to.
+     */
+    public Session acquire( ConnectionKey key, Site site ) throws JSchException
+    {
+        while (true)
+        {
+            SessionGroup group = groups.computeIfAbsent( key, SessionGroup::new );
+            group.site = site;
+            CompletableFuture<SessionEntry> pending;
+            boolean leader = false;
+
+            group.lock.lock();
+            try
+            {
+                if ( group.retired )
+                {
+                    continue; // Evicted while we were looking it up
+                }
+
+                group.sessions.removeIf( e -> !e.session.isConnected() && e.leases == 0 && close( e ) );
+                for (SessionEntry entry : group.sessions)
+                {
+                    if ( entry.session.isConnected() && !entry.retired && entry.leases < entry.capacity )
+                    {
+                        entry.leases++;
+                        entry.lastUsed = System.currentTimeMillis();
+                        return entry.session;
+                    }
+                }
+
+                if ( group.connecting == null )
+                {
+                    group.connecting = new CompletableFuture<>();
+                    leader = true;
+                }
+                pending = group.connecting;
+            }
+            finally
+            {
+                group.lock.unlock();
+            }
+
+            if ( leader )
+            {
+                connect( group, site, pending );
+            }
+            else
+            {
+                await( group, pending );
+            }
+            // Loop round to take a slot on the new session
+        }
+    }
+
+    /**
+     * Release a slot leased by {@link #acquire}. Idle sessions are closed.
+     */
+    public void release( Session session )
+    {
+        if ( session == null )
+        {
+            return;
+        }
+
+        SessionEntry entry = entries.get( session );
+        if ( entry == null )
+        {
+            if ( session.isConnected() )
+            {
+                session.disconnect();
+            }
+            return;
+        }
+
+        SessionGroup group = entry.group;
+        group.lock.lock();
+        try
+        {
+            entry.leases--;
+            if ( entry.leases <= 0 )
+            {
+                group.sessions.remove( entry );
+                close( entry );
+                log.debug( "Closed idle SSH session for {}", group.key );
+            }
+        }
+        finally
+        {
+            group.lock.unlock();
+        }
+    }
+
+    /**
+     * Record activity on a session so the idle TTL starts over
+     */
+    public void touch( Session session )
+    {
+        SessionEntry entry = entries.get( session );
+        if ( entry != null )
+        {
+            entry.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The server refused another channel on this session - cap it at its current load
+     */
+    public void markFull( Session session )
+    {
+        SessionEntry entry = entries.get( session );
+        if ( entry == null )
+        {
+            return;
+        }
+
+        entry.group.lock.lock();
+        try
+        {
+            entry.capacity = Math.max( 1, entry.leases - 1 );
+        }
+        finally
+        {
+            entry.group.lock.unlock();
+        }
+    }
+
+    /**
+     * Whether a session has been evicted and only remains open for leases in flight
+     */
+    public boolean isRetired( Session session )
+    {
+        SessionEntry entry = entries.get( session );
+        return entry == null || entry.retired;
+    }
+
+    /**
+     * Number of leased slots on a session
+     */
+    public int leases( Session session )
+    {
+        SessionEntry entry = entries.get( session );
+        return entry != null ? entry.leases : 0;
+    }
+
+    /**
+     * Evict all sessions for a key. Idle sessions close now, sessions still in
+     * use close when their last lease is released.
+     */
+    public void evict( ConnectionKey key )
+    {
+        SessionGroup group = groups.remove( key );
+        if ( group == null )
+        {
+            return;
+        }
+
+        group.lock.lock();
+        try
+        {
+            group.retired = true;
+            for (SessionEntry entry : group.sessions)
+            {
+                retire( entry );
+                evictedManual.incrementAndGet();
+            }
+            group.sessions.clear();
+        }
+        finally
+        {
+            group.lock.unlock();
+        }
+        log.info( "Evicted SSH sessions for {}", key );
+    }
+
+    public void evictAll()
+    {
+        for (ConnectionKey key : List.copyOf( groups.keySet() ))
+        {
+            evict( key );
+        }
+    }
+
+    /**
+     * Number of open sessions for a key
+     */
+    public int sessionCount( ConnectionKey key )
+    {
+        SessionGroup group = groups.get( key );
+        return group != null ? group.sessions.size() : 0;
+    }
+
+    /**
+     * Eviction and reconnect counters
+     */
+    public Map<String, Object> getStats()
+    {
+        int open = 0;
+        for (SessionGroup group : groups.values())
+        {
+            open += group.sessions.size();
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put( "open", open );
+        stats.put( "evictedIdle", evictedIdle.get() );
+        stats.put( "evictedLifetime", evictedLifetime.get() );
+        stats.put( "evictedDead", evictedDead.get() );
+        stats.put( "evictedManual", evictedManual.get() );
+        stats.put( "proactiveReconnects", proactiveReconnects.get() );
+        stats.put( "failedReconnects", failedReconnects.get() );
+        return stats;
+    }
+
+    /**
+     * Session maintenance: drop dead sessions, retire sessions past their idle TTL
+     * or max lifetime, and replace busy sessions shortly before they expire
+     */
+    @Scheduled(fixedDelayString = "${sftp.session.maintenance.interval.ms:30000}")
+    public void maintainSessions()
+    {
+        long now = System.currentTimeMillis();
+
+        for (SessionGroup group : groups.values())
+        {
+            Site site = group.site;
+            long idleTtl = seconds( site != null ? site.getSessionIdleTtlSeconds() : null, defaultIdleTtlSeconds );
+            long maxLifetime = seconds( site != null ? site.getSessionMaxLifetimeSeconds() : null, defaultMaxLifetimeSeconds );
+            long margin = reconnectMarginSeconds * 1000L;
+            List<SessionEntry> replace = new ArrayList<>();
+
+            group.lock.lock();
+            try
+            {
+                Iterator<SessionEntry> it = group.sessions.iterator();
+                while (it.hasNext())
+                {
+                    SessionEntry entry = it.next();
+                    long idle = now - entry.lastUsed;
+                    long age = now - entry.createdAt;
+
+                    if ( !entry.session.isConnected() )
+                    {
+                        it.remove();
+                        retire( entry );
+                        evictedDead.incrementAndGet();
+                        log.info( "Dropped dead SSH session for {}", group.key );
+                    }
+                    else if ( idleTtl > 0 && idle > idleTtl )
+                    {
+                        it.remove();
+                        retire( entry );
+                        evictedIdle.incrementAndGet();
+                        log.info( "Evicted SSH session for {} after {} s idle", group.key, idle / 1000 );
+                    }
+                    else if ( maxLifetime > 0 && age > maxLifetime )
+                    {
+                        it.remove();
+                        retire( entry );
+                        evictedLifetime.incrementAndGet();
+                        log.info( "Evicted SSH session for {} after {} s lifetime", group.key, age / 1000 );
+                    }
+                    else if ( maxLifetime > 0 && age > maxLifetime - margin && idle < margin && !entry.replacing )
+                    {
+                        // Still in use and about to expire - connect its successor now
+                        entry.replacing = true;
+                        replace.add( entry );
+                    }
+                }
+            }
+            finally
+            {
+                group.lock.unlock();
+            }
+
+            for (SessionEntry entry : replace)
+            {
+                replaceSession( group, entry );
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        evictAll();
+        entries.keySet().forEach( Session::disconnect );
+        entries.clear();
+    }
+
+    private void replaceSession( SessionGroup group, SessionEntry old )
+    {
+        Site site = group.site;
+        CompletableFuture<SessionEntry> pending = null;
+
+        group.lock.lock();
+        try
+        {
+            if ( !group.retired && group.connecting == null && site != null )
+            {
+                pending = group.connecting = new CompletableFuture<>();
+            }
+        }
+        finally
+        {
+            group.lock.unlock();
+        }
+
+        if ( pending == null )
+        {
+            old.replacing = false; // A connect is already under way; try again next run
+            return;
+        }
+
+        try
+        {
+            connect( group, site, pending );
+        }
+        catch (JSchException | RuntimeException e)
+        {
+            failedReconnects.incrementAndGet();
+            old.replacing = false;
+            log.warn( "Proactive reconnect failed for {}: {}", group.key, e.getMessage() );
+            return;
+        }
+
+        group.lock.lock();
+        try
+        {
+            group.sessions.remove( old );
+            retire( old );
+        }
+        finally
+        {
+            group.lock.unlock();
+        }
+        proactiveReconnects.incrementAndGet();
+        log.info( "Replaced SSH session for {} ahead of its max lifetime", group.key );
+    }
+
+    /**
+     * Stop new leases on a session; it closes now if idle, otherwise when its last lease is released.
+     * Caller holds the group lock.
+     */
+    private void retire( SessionEntry entry )
+    {
+        entry.retired = true;
+        if ( entry.leases <= 0 )
+        {
+            close( entry );
+        }
+    }
+
+    private static long seconds( Integer siteValue, int defaultValue )
+    {
+        return (siteValue != null ? siteValue : defaultValue) * 1000L;
+    }
+
+    private void connect( SessionGroup group, Site site, CompletableFuture<SessionEntry> pending ) throws JSchException
+    {
+        try
+        {
+            Session session = openSession( site );
+            SessionEntry entry = new SessionEntry( group, session, maxChannelsPerSession );
+            entries.put( session, entry );
+
+            boolean evicted;
+            group.lock.lock();
+            try
+            {
+                // An evicted group is no longer maintained or leased from, so don't park a session in it
+                evicted = group.retired;
+                if ( evicted )
+                {
+                    retire( entry );
+                }
+                else
+                {
+                    group.sessions.add( entry );
+                }
+                group.connecting = null;
+            }
+            finally
+            {
+                group.lock.unlock();
+            }
+            if ( evicted )
+            {
+                log.info( "Closed SSH session for {} - evicted during the handshake", group.key );
+            }
+            else
+            {
+                log.info( "✓ SSH session established for site {} ({} session(s) open)",
+                        site.getSiteName(), group.sessions.size() );
+            }
+            pending.complete( entry );
+        }
+        catch (JSchException | RuntimeException e)
+        {
+            group.lock.lock();
+            try
+            {
+                group.connecting = null;
+            }
+            finally
+            {
+                group.lock.unlock();
+            }
+            pending.completeExceptionally( e );
+            throw e;
+        }
+    }
+
+    private void await( SessionGroup group, CompletableFuture<SessionEntry> pending ) throws JSchException
+    {
+        try
+        {
+            // Allow for the handshake plus authentication
+            pending.get( connectTimeoutMs * 2L, TimeUnit.MILLISECONDS );
+        }
+        catch (ExecutionException e)
+        {
+            // Share the leader's failure rather than retrying the handshake ourselves
+            Throwable cause = e.getCause();
+            if ( cause instanceof JSchException jsch )
+            {
+                throw jsch;
+            }
+            throw new JSchException( "SSH connection failed for " + group.key + ": " + cause.getMessage(), cause );
+        }
+        catch (TimeoutException e)
+        {
+            throw new JSchException( "Timed out waiting for SSH connection to " + group.key );
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new JSchException( "Interrupted waiting for SSH connection to " + group.key );
+        }
+    }
+
+    private Session openSession( Site site ) throws JSchException
+    {
+        return openSession( site, connectTimeoutMs );
+    }
+
+    /**
+     * Connect a standalone session that is not tracked by the registry, e.g. for
+     * health probes. The caller is responsible for disconnecting it.
+     */
+    public Session openSession( Site site, int timeoutMs ) throws JSchException
+    {
+        return openSession( site, TransportProfile.of( site.getTransportProfile() ), timeoutMs );
+    }
+
+    /**
+     * Connect a standalone session with an explicit transport profile, e.g. to benchmark it
+     */
+    public Session openSession( Site site, TransportProfile profile, int timeoutMs ) throws JSchException
+    {
+        Session session = jschRuntime.newSession( site, profile );
+        if ( JschRuntime.hasPassword( site ) )
+        {
+            byte[] password = credentialVault.reveal( site.getEncryptedPassword() );
+            session.setPassword( password );  // JSch keeps its own copy
+            CredentialVault.wipe( password );
+        }
+
+        session.setTimeout( timeoutMs );
+
+        log.info( "Connecting to {}@{}:{}", site.getUsername(), site.getIpAddress(), site.getPort() );
+        session.connect();
+
+        // Keepalives detect dead peers and keep NAT/firewall state alive between operations
+        if ( keepAliveSeconds > 0 )
+        {
+            session.setServerAliveInterval( keepAliveSeconds * 1000 );
+            session.setServerAliveCountMax( keepAliveCountMax );
+        }
+        return session;
+    }
+
+    private boolean close( SessionEntry entry )
+    {
+        entries.remove( entry.session );
+        if ( entry.session.isConnected() )
+        {
+            entry.session.disconnect();
+        }
+        return true;
+    }
+
+    /**
+     * Sessions for one key, guarded by the group's own lock
+     */
+    private static class SessionGroup
+    {
+        private final ConnectionKey key;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<SessionEntry> sessions = new ArrayList<>();
+        private CompletableFuture<SessionEntry> connecting;
+        private boolean retired;
+        private volatile Site site;
+
+        SessionGroup( ConnectionKey key )
+        {
+            this.key = key;
+        }
+    }
+
+    private static class SessionEntry
+    {
+        private final SessionGroup group;
+        private final Session session;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsed = createdAt;
+        private int capacity;
+        private int leases;
+        private volatile boolean retired;
+        private volatile boolean replacing;
+
+        SessionEntry( SessionGroup group, Session session, int capacity )
+        {
+            this.group = group;
+            this.session = session;
+            this.capacity = capacity;
+        }
+    }
+}
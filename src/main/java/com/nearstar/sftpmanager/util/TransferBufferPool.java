@@ -0,0 +1,175 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size byte buffers for copying file data between SFTP and HTTP streams.
+ * A transfer holds one buffer however large the file, and returned buffers are
+ * kept (up to {@code sftp.transfer.buffer.pool.max}) for the next transfer
+ * instead of being reallocated.
+ */
+@Component
+public class TransferBufferPool
+{
+    @Value("${sftp.transfer.buffer.size:65536}")
+    private int bufferSize;
+
+    @Value("${sftp.transfer.buffer.pool.max:64}")
+    private int maxPooled;
+
+    private final AtomicLong allocated = new AtomicLong();
+
+    private BlockingQueue<byte[]> free;
+
+    @PostConstruct
+    public void init()
+    {
+        free = new ArrayBlockingQueue<>( Math.max( 1, maxPooled ) );
+    }
+
+    public byte[] acquire()
+    {
+        byte[] buffer = free.poll();
+        if ( buffer == null )
+        {
+            allocated.incrementAndGet();
+            buffer = new byte[bufferSize];
+        }
+        return buffer;
+    }
+
+    public void release( byte[] buffer )
+    {
+        if ( buffer != null && buffer.length == bufferSize )
+        {
+            // Dropped when the pool is already full
+            free.offer( buffer );
+        }
+    }
+
+    /**
+     * Copy a stream to the end using a pooled buffer. Returns the number of bytes copied.
+     */
+    public long copy( InputStream in, OutputStream out ) throws IOException
+    {
+        return copy( in, out, null );
+    }
+
+    /**
+     * Copy a stream to the end, reporting the running total after each chunk
+     */
+    public long copy( InputStream in, OutputStream out, CopyListener listener ) throws IOException
+    {
+        byte[] buffer = acquire();
+        try
+        {
+            long total = 0;
+            int read;
+            while ((read = in.read( buffer )) != -1)
+            {
+                out.write( buffer, 0, read );
+                total += read;
+                if ( listener != null )
+                {
+                    listener.copied( total );
+                }
+            }
+            return total;
+        }
+        finally
+        {
+            release( buffer );
+        }
+    }
+
+    /**
+     * Copy at most {@code limit} bytes. Returns the number copied, which is less than
+     * the limit only if the input ended first.
+     */
+    public long copy( InputStream in, OutputStream out, long limit ) throws IOException
+    {
+        byte[] buffer = acquire();
+        try
+        {
+            long total = 0;
+            while (total < limit)
+            {
+                int read = in.read( buffer, 0, (int) Math.min( buffer.length, limit - total ) );
+                if ( read == -1 )
+                {
+                    break;
+                }
+                out.write( buffer, 0, read );
+                total += read;
+            }
+            return total;
+        }
+        finally
+        {
+            release( buffer );
+        }
+    }
+
+    public Map<String, Object> getStats()
+    {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put( "bufferSize", bufferSize );
+        stats.put( "pooled", free.size() );
+        stats.put( "allocated", allocated.get() );
+        return stats;
+    }
+
+    /**
+     * Progress hook for {@link #copy(InputStream, OutputStream, CopyListener)}
+     */
+    public interface CopyListener
+    {
+        void copied( long total ) throws IOException;
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import com.nearstar.sftpmanager.model.entity.Site;
+import com.nearstar.sftpmanager.model.enums.VerificationStrategy;
+import com.nearstar.sftpmanager.util.MultiDigest.Algorithm;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.EnumSet;
+
+/**
+ * Post-transfer checks for the {@link VerificationStrategy} a site or request asks for.
+ * <p>
+ * Everything works on the file itself, so the cost is one stat at most for
+ * {@link VerificationStrategy#SIZE} however many entries share its directory.
+ * Checksum strategies compare MD5s: the sender's digest is taken while the data
+ * streams past ({@link #newDigest}), the receiver's from the server when it
+ * supports it or by reading the file back. The same pass also produces the
+ * checksums listed in sftp.checksum.algorithms, which are recorded with the transfer.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransferVerifier
+{
+    private final TransferBufferPool bufferPool;
+
+    @Value("${sftp.checksum.algorithms:md5,crc32c}")
+    private String checksumAlgorithms;
+
+    private EnumSet<Algorithm> recorded;
+
+    @PostConstruct
+    public void init()
+    {
+        recorded = Algorithm.parseList( checksumAlgorithms );
+    }
+
+    /**
+     * Strategy for a transfer: the requested one, else the site's default
+     */
+    public VerificationStrategy resolve( Site site, VerificationStrategy requested )
+    {
+        return requested != null ? requested : VerificationStrategy.of( site.getVerificationStrategy() );
+    }
+
+    /**
+     * Digests to feed with the sent bytes: the recorded checksums plus MD5 when the
+     * strategy compares content. Null when there is nothing to compute.
+     */
+    public MultiDigest newDigest( VerificationStrategy strategy )
+    {
+        EnumSet<Algorithm> algorithms = EnumSet.copyOf( recorded != null ? recorded : EnumSet.noneOf( Algorithm.class ) );
+        if ( strategy != null && strategy.needsDigest() )
+        {
+            algorithms.add( Algorithm.MD5 );
+        }
+        return algorithms.isEmpty() ? null : new MultiDigest( algorithms );
+    }
+
+    /**
+     * Check a finished remote file. expectedMd5 is only needed for the checksum
+     * strategies; a mismatch throws {@link VerificationException}.
+     */
+    public void verify( SftpClient client, String path, VerificationStrategy strategy, long expectedSize,
+                        byte[] expectedMd5 ) throws IOException
+    {
+        if ( strategy == null || strategy == VerificationStrategy.NONE )
+        {
+            return;
+        }
+
+        // Size first: it is one round trip and catches truncation before any hashing
+        long size = client.stat( path ).getSize();
+        if ( expectedSize >= 0 && size != expectedSize )
+        {
+            throw new VerificationException( path, "expected " + expectedSize + " bytes but found " + size );
+        }
+        if ( !strategy.needsDigest() )
+        {
+            log.debug( "Verified {} by size ({} bytes)", path, size );
+            return;
+        }
+
+        byte[] actual = remoteMd5( client, path, strategy == VerificationStrategy.REMOTE_CHECKSUM );
+        if ( !MessageDigest.isEqual( expectedMd5, actual ) )
+        {
+            throw new VerificationException( path, "MD5 " + hex( actual ) + " does not match " + hex( expectedMd5 ) );
+        }
+        log.debug( "Verified {} by {} (md5 {})", path, strategy, hex( actual ) );
+    }
+
+    /**
+     * MD5 of a remote file, asking the server first when serverSide is set and
+     * falling back to streaming the file back through a pooled buffer
+     */
+    public byte[] remoteMd5( SftpClient client, String path, boolean serverSide ) throws IOException
+    {
+        if ( serverSide )
+        {
+            try
+            {
+                byte[] hash = client.md5( path );
+                if ( hash != null )
+                {
+                    return hash;
+                }
+            }
+            catch (SftpClient.StatusException e)
+            {
+                if ( e.isNoSuchFile() )
+                {
+                    throw e;
+                }
+                log.debug( "Server-side checksum of {} failed ({}), reading it back", path, e.getMessage() );
+            }
+        }
+        try ( InputStream in = client.openRead( path, 0 ) )
+        {
+            return md5( in );
+        }
+    }
+
+    /**
+     * MD5 of everything left in a stream
+     */
+    public byte[] md5( InputStream in ) throws IOException
+    {
+        MultiDigest digest = MultiDigest.of( Algorithm.MD5 );
+        byte[] buffer = bufferPool.acquire();
+        try
+        {
+            digest.update( in, buffer );
+            return digest.digest( Algorithm.MD5 );
+        }
+        finally
+        {
+            bufferPool.release( buffer );
+        }
+    }
+
+    /**
+     * MD5 of a local file
+     */
+    public byte[] md5( Path file ) throws IOException
+    {
+        MultiDigest digest = MultiDigest.of( Algorithm.MD5 );
+        digest.updateFile( file );
+        return digest.digest( Algorithm.MD5 );
+    }
+
+    public static String hex( byte[] hash )
+    {
+        return hash != null ? MultiDigest.hex( hash ) : "none";
+    }
+
+    /**
+     * A transferred file did not match what was sent
+     */
+    public static class VerificationException extends IOException
+    {
+        public VerificationException( String path, String detail )
+        {
+            super( "Verification failed for " + path + ": " + detail );
+        }
+    }
+}
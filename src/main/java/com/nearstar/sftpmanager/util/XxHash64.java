@@ -0,0 +1,239 @@
+/**
+ * NearStar, Inc.
+ * 410 E. Main Street
+ * Lewisville, Texas  76057
+ * Tel: 1.972.221.4068
+ * <p>
+ * Copyright © 2025 NearStar Incorporated. All rights reserved.
+ * <p>
+ * <p>
+ * THIS IS UNPUBLISHED PROPRIETARY SOURCE CODE OF NEARSTAR Inc.
+ * <p>
+ * THIS COPYRIGHT NOTICE DOES NOT EVIDENCE ANY
+ * ACTUAL OR INTENDED PUBLICATION OF SUCH SOURCE CODE.
+ * This software and its source code are proprietary and confidential to NearStar Incorporated.
+ * Unauthorized copying, modification, distribution, or use of this software, in whole or in part,
+ * is strictly prohibited without the prior written consent of the copyright holder.
+ * Portions of this software may utilize or be derived from open-source software
+ * and publicly available frameworks licensed under their respective licenses.
+ * <p>
+ * This code may also include contributions developed with the assistance of AI-based tools.
+ * All open-source dependencies are used in accordance with their applicable licenses,
+ * and full attribution is maintained in the corresponding documentation (e.g., NOTICE or LICENSE files).
+ * For inquiries regarding licensing or usage, please make request by going to nearstar.com.
+ *
+ * @file ${NAME}.java
+ * @author ${USER} <${USER}@nearstar.com>
+ * @version 1.0.0
+ * @date ${DATE}
+ * @project SFTP Site Management System
+ * @package com.nearstar.sftpmanager
+ * <p>
+ * Copyright    ${YEAR} Nearstar
+ * @license Proprietary
+ * @modified
+ */
+package com.nearstar.sftpmanager.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * Streaming XXH64 (seed 0 unless given), matching the reference xxHash
+ * implementation and xxhsum output. Not cryptographic; it exists as a very fast
+ * content fingerprint next to CRC32C.
+ */
+public class XxHash64 implements Checksum
+{
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle( long[].class, ByteOrder.LITTLE_ENDIAN );
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle( int[].class, ByteOrder.LITTLE_ENDIAN );
+
+    private final long seed;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+    private long total;
+
+    // Tail of the input that doesn't fill a 32-byte stripe yet
+    private final byte[] pending = new byte[32];
+    private int pendingSize;
+
+    public XxHash64()
+    {
+        this( 0 );
+    }
+
+    public XxHash64( long seed )
+    {
+        this.seed = seed;
+        reset();
+    }
+
+    @Override
+    public void update( int b )
+    {
+        update( new byte[]{ (byte) b }, 0, 1 );
+    }
+
+    @Override
+    public void update( byte[] b, int off, int len )
+    {
+        total += len;
+        int end = off + len;
+        if ( pendingSize > 0 )
+        {
+            int fill = Math.min( 32 - pendingSize, len );
+            System.arraycopy( b, off, pending, pendingSize, fill );
+            pendingSize += fill;
+            off += fill;
+            if ( pendingSize < 32 )
+            {
+                return;
+            }
+            stripe( pending, 0 );
+            pendingSize = 0;
+        }
+        for (; off + 32 <= end; off += 32)
+        {
+            stripe( b, off );
+        }
+        if ( off < end )
+        {
+            System.arraycopy( b, off, pending, 0, end - off );
+            pendingSize = end - off;
+        }
+    }
+
+    /**
+     * Consume a buffer without copying it when it is direct (e.g. a mapped file)
+     */
+    @Override
+    public void update( ByteBuffer buffer )
+    {
+        if ( buffer.hasArray() )
+        {
+            update( buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining() );
+            buffer.position( buffer.limit() );
+            return;
+        }
+        ByteBuffer in = buffer.slice().order( ByteOrder.LITTLE_ENDIAN );
+        int len = in.remaining();
+        int off = 0;
+        if ( pendingSize > 0 )
+        {
+            int fill = Math.min( 32 - pendingSize, len );
+            in.get( 0, pending, pendingSize, fill );
+            total += fill;
+            pendingSize += fill;
+            off = fill;
+            if ( pendingSize < 32 )
+            {
+                buffer.position( buffer.limit() );
+                return;
+            }
+            stripe( pending, 0 );
+            pendingSize = 0;
+        }
+        for (; off + 32 <= len; off += 32)
+        {
+            v1 = round( v1, in.getLong( off ) );
+            v2 = round( v2, in.getLong( off + 8 ) );
+            v3 = round( v3, in.getLong( off + 16 ) );
+            v4 = round( v4, in.getLong( off + 24 ) );
+            total += 32;
+        }
+        if ( off < len )
+        {
+            in.get( off, pending, 0, len - off );
+            total += len - off;
+            pendingSize = len - off;
+        }
+        buffer.position( buffer.limit() );
+    }
+
+    @Override
+    public long getValue()
+    {
+        long h;
+        if ( total >= 32 )
+        {
+            h = Long.rotateLeft( v1, 1 ) + Long.rotateLeft( v2, 7 ) + Long.rotateLeft( v3, 12 ) + Long.rotateLeft( v4, 18 );
+            h = merge( h, v1 );
+            h = merge( h, v2 );
+            h = merge( h, v3 );
+            h = merge( h, v4 );
+        }
+        else
+        {
+            h = seed + P5;
+        }
+        h += total;
+
+        int p = 0;
+        for (; p + 8 <= pendingSize; p += 8)
+        {
+            h ^= round( 0, (long) LONGS.get( pending, p ) );
+            h = Long.rotateLeft( h, 27 ) * P1 + P4;
+        }
+        if ( p + 4 <= pendingSize )
+        {
+            h ^= ((int) INTS.get( pending, p ) & 0xFFFFFFFFL) * P1;
+            h = Long.rotateLeft( h, 23 ) * P2 + P3;
+            p += 4;
+        }
+        for (; p < pendingSize; p++)
+        {
+            h ^= (pending[p] & 0xFFL) * P5;
+            h = Long.rotateLeft( h, 11 ) * P1;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    @Override
+    public void reset()
+    {
+        v1 = seed + P1 + P2;
+        v2 = seed + P2;
+        v3 = seed;
+        v4 = seed - P1;
+        total = 0;
+        pendingSize = 0;
+    }
+
+    private void stripe( byte[] b, int off )
+    {
+        v1 = round( v1, (long) LONGS.get( b, off ) );
+        v2 = round( v2, (long) LONGS.get( b, off + 8 ) );
+        v3 = round( v3, (long) LONGS.get( b, off + 16 ) );
+        v4 = round( v4, (long) LONGS.get( b, off + 24 ) );
+    }
+
+    private static long round( long acc, long input )
+    {
+        acc += input * P2;
+        acc = Long.rotateLeft( acc, 31 );
+        return acc * P1;
+    }
+
+    private static long merge( long acc, long value )
+    {
+        acc ^= round( 0, value );
+        return acc * P1 + P4;
+    }
+}
@@ -76,7 +76,15 @@ CREATE TABLE IF NOT EXISTS sites
     last_tested        TIMESTAMP    NULL,
     last_test_result   VARCHAR(500),
     ssh_key            TEXT,
+    ssh_key_passphrase TEXT,
     known_hosts_entry  TEXT,
+    transport_profile  VARCHAR(50)  DEFAULT 'BALANCED',
+    sftp_engine        VARCHAR(50)  DEFAULT 'JSCH',
+    session_idle_ttl_seconds     INT NULL,
+    session_max_lifetime_seconds INT NULL,
+    transfer_segments            INT NULL,
+    bandwidth_limit_bps          BIGINT NULL,
+    verification_strategy        VARCHAR(30) DEFAULT 'SIZE',
     created_at         TIMESTAMP    DEFAULT CURRENT_TIMESTAMP,
     updated_at         TIMESTAMP    NULL,
     created_by         BIGINT,
@@ -149,6 +157,58 @@ CREATE TABLE IF NOT EXISTS scheduled_tasks
     FOREIGN KEY (created_by) REFERENCES users (id)
 );
 
+-- Resumable Upload Sessions Table
+CREATE TABLE IF NOT EXISTS upload_sessions
+(
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    upload_id       VARCHAR(36)   NOT NULL UNIQUE,
+    site_id         BIGINT        NOT NULL,
+    file_name       VARCHAR(255)  NOT NULL,
+    target_path     VARCHAR(1000) NOT NULL,
+    temp_path       VARCHAR(1000) NOT NULL,
+    total_size      BIGINT        NOT NULL,
+    received_ranges TEXT,
+    bytes_received  BIGINT      DEFAULT 0,
+    status          VARCHAR(20) DEFAULT 'IN_PROGRESS',
+    created_by      VARCHAR(100),
+    created_at      TIMESTAMP   DEFAULT CURRENT_TIMESTAMP,
+    updated_at      TIMESTAMP   NULL,
+    completed_at    TIMESTAMP   NULL,
+    INDEX idx_upload_status (status, updated_at),
+    FOREIGN KEY (site_id) REFERENCES sites (id)
+);
+
+-- Background Transfer Jobs Table
+CREATE TABLE IF NOT EXISTS transfer_jobs
+(
+    id                 BIGINT AUTO_INCREMENT PRIMARY KEY,
+    direction          VARCHAR(20)   NOT NULL,
+    site_id            BIGINT        NOT NULL,
+    target_site_id     BIGINT,
+    source_path        VARCHAR(1000) NOT NULL,
+    destination_path   VARCHAR(1000) NOT NULL,
+    file_name          VARCHAR(255)  NOT NULL,
+    file_size          BIGINT      DEFAULT -1,
+    bytes_transferred  BIGINT      DEFAULT 0,
+    priority           INT         DEFAULT 0,
+    status             VARCHAR(20) DEFAULT 'QUEUED',
+    attempts           INT         DEFAULT 0,
+    max_attempts       INT         DEFAULT 5,
+    verification       VARCHAR(30) DEFAULT 'SIZE',
+    create_directories BOOLEAN     DEFAULT FALSE,
+    checksums          VARCHAR(500),
+    next_attempt_at    TIMESTAMP   NULL,
+    error_message      TEXT,
+    created_by         VARCHAR(100),
+    created_at         TIMESTAMP   DEFAULT CURRENT_TIMESTAMP,
+    started_at         TIMESTAMP   NULL,
+    completed_at       TIMESTAMP   NULL,
+    updated_at         TIMESTAMP   NULL,
+    INDEX idx_transfer_due (status, priority, next_attempt_at),
+    FOREIGN KEY (site_id) REFERENCES sites (id),
+    FOREIGN KEY (target_site_id) REFERENCES sites (id)
+);
+
 -- Initial Data
 INSERT INTO access_groups (group_name, description)
 VALUES ('ADMIN', 'Full system administrators'),